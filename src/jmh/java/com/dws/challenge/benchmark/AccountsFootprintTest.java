@@ -0,0 +1,160 @@
+package com.dws.challenge.benchmark;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.NotificationEmitter;
+import javax.management.openmbean.CompositeData;
+
+import org.HdrHistogram.Histogram;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.repository.AccountsRepository;
+import com.dws.challenge.repository.AccountsRepositoryInMemory;
+import com.dws.challenge.repository.AccountsRepositoryOffHeap;
+import com.dws.challenge.repository.OffHeapAccountsProperties;
+import com.dws.challenge.service.LockingTransferEngine;
+import com.dws.challenge.service.TransferEngine;
+import com.dws.challenge.service.TransferMetrics;
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Compares the heap footprint and GC pauses of {@link AccountsRepositoryInMemory} and
+ * {@link AccountsRepositoryOffHeap}. Each repository runs in a JVM of its own with the same heap:
+ * the accounts are created, the retained heap and direct memory are measured after a full GC, then
+ * random transfers run for a while and every GC pause is recorded.
+ * <p>
+ * Options, as {@code key=value} arguments: {@code accounts} (default 10000000), {@code heap}
+ * ({@code -Xmx} of the child JVMs, default 4g), {@code threads} (default 4) and {@code duration}
+ * (seconds of transfers, default 30).
+ */
+public final class AccountsFootprintTest {
+
+    private AccountsFootprintTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            String[] option = arg.split("=", 2);
+            options.put(option[0], option.length > 1 ? option[1] : "");
+        }
+        if (options.containsKey("repository")) {
+            run(options.get("repository"), Integer.parseInt(options.getOrDefault("accounts", "10000000")),
+                    Integer.parseInt(options.getOrDefault("threads", "4")),
+                    Duration.ofSeconds(Long.parseLong(options.getOrDefault("duration", "30"))));
+            return;
+        }
+
+        String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+        List<String> results = new ArrayList<>();
+        for (String repository : List.of("memory", "offheap")) {
+            List<String> command = new ArrayList<>(List.of(java, "-Xmx" + options.getOrDefault("heap", "4g"),
+                    "-XX:MaxDirectMemorySize=16g", "-cp", System.getProperty("java.class.path"),
+                    AccountsFootprintTest.class.getName(), "repository=" + repository));
+            for (String arg : args) {
+                command.add(arg);
+            }
+            Process process = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+            String output = new String(process.getInputStream().readAllBytes());
+            System.out.print(output);
+            if (process.waitFor() != 0) {
+                throw new IllegalStateException("Footprint run of the " + repository + " repository failed");
+            }
+            results.add(output.lines().reduce((first, last) -> last).orElse(""));
+        }
+
+        System.out.printf("%n%-9s %12s %12s %10s %10s %12s %10s %10s%n", "store", "heap MiB", "direct MiB",
+                "young GCs", "old GCs", "pauses ms", "p99 ms", "max ms");
+        results.forEach(System.out::println);
+    }
+
+    private static void run(String repositoryType, int accounts, int threads, Duration duration) throws Exception {
+        AccountsRepository repository;
+        if (repositoryType.equals("offheap")) {
+            OffHeapAccountsProperties properties = new OffHeapAccountsProperties();
+            properties.setCapacity(accounts + accounts / 2L);
+            repository = new AccountsRepositoryOffHeap(properties);
+        } else {
+            repository = new AccountsRepositoryInMemory();
+        }
+
+        System.out.printf("Creating %d accounts in the %s repository%n", accounts, repositoryType);
+        for (int i = 0; i < accounts; i++) {
+            repository.createAccount(new Account(accountId(i), BigDecimal.valueOf(1_000_000)));
+        }
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        memory.gc();
+        memory.gc();
+        long heapBytes = memory.getHeapMemoryUsage().getUsed();
+        long directBytes = ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class).stream()
+                .filter(pool -> pool.getName().equals("direct"))
+                .mapToLong(BufferPoolMXBean::getMemoryUsed)
+                .sum();
+
+        // Pauses are taken from the GC notifications, young and old collections are told apart by their action
+        Histogram pauses = new Histogram(TimeUnit.MINUTES.toMillis(1), 3);
+        LongAdder youngCollections = new LongAdder();
+        LongAdder oldCollections = new LongAdder();
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            ((NotificationEmitter) collector).addNotificationListener((notification, handback) -> {
+                if (!notification.getType().equals(GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION)) {
+                    return;
+                }
+                GarbageCollectionNotificationInfo info = GarbageCollectionNotificationInfo.from(
+                        (CompositeData) notification.getUserData());
+                synchronized (pauses) {
+                    pauses.recordValue(Math.min(info.getGcInfo().getDuration(), pauses.getHighestTrackableValue()));
+                }
+                (info.getGcAction().contains("minor") ? youngCollections : oldCollections).increment();
+            }, null, null);
+        }
+
+        System.out.printf("Running transfers on %d threads for %d s%n", threads, duration.toSeconds());
+        TransferEngine engine = new LockingTransferEngine(new TransferMetrics(new SimpleMeterRegistry(), List.of()));
+        long deadline = System.nanoTime() + duration.toNanos();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        for (int t = 0; t < threads; t++) {
+            SplittableRandom random = new SplittableRandom(t);
+            executor.execute(() -> {
+                while (System.nanoTime() < deadline) {
+                    Account accountFrom = repository.getAccount(accountId(random.nextInt(accounts)));
+                    Account accountTo = repository.getAccount(accountId(random.nextInt(accounts)));
+                    if (accountFrom.getAccountId().equals(accountTo.getAccountId())) {
+                        continue;
+                    }
+                    engine.transfer(accountFrom, accountTo, 1);
+                }
+            });
+        }
+        executor.shutdown();
+        executor.awaitTermination(duration.toSeconds() + 60, TimeUnit.SECONDS);
+
+        synchronized (pauses) {
+            System.out.printf("%-9s %12d %12d %10d %10d %12d %10d %10d%n", repositoryType, heapBytes >> 20,
+                    directBytes >> 20, youngCollections.sum(), oldCollections.sum(),
+                    (long) (pauses.getMean() * pauses.getTotalCount()), pauses.getValueAtPercentile(99),
+                    pauses.getMaxValue());
+        }
+    }
+
+    private static String accountId(int index) {
+        return "Id-" + index;
+    }
+}
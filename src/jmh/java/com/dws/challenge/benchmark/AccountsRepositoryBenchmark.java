@@ -0,0 +1,88 @@
+package com.dws.challenge.benchmark;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.repository.AccountsRepository;
+import com.dws.challenge.repository.AccountsRepositoryInMemory;
+import com.dws.challenge.repository.AccountsRepositoryOffHeap;
+import com.dws.challenge.repository.OffHeapAccountsProperties;
+
+/**
+ * Throughput of account lookups and creations on {@link AccountsRepositoryInMemory} and
+ * {@link AccountsRepositoryOffHeap}. The repository is rebuilt before every iteration so creations
+ * always insert into a table of the same size. Heap footprint and GC pauses are compared by
+ * {@link AccountsFootprintTest}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AccountsRepositoryBenchmark {
+
+    private static final int ACCOUNTS = 1 << 17;
+
+    @Param({"memory", "offheap"})
+    public String repositoryType;
+
+    private final AtomicInteger threadIds = new AtomicInteger();
+    private AccountsRepository repository;
+    private String[] accountIds;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        if (repositoryType.equals("offheap")) {
+            OffHeapAccountsProperties properties = new OffHeapAccountsProperties();
+            // Room for the creations of every iteration on top of the preloaded accounts
+            properties.setCapacity(ACCOUNTS * 64L);
+            repository = new AccountsRepositoryOffHeap(properties);
+        } else {
+            repository = new AccountsRepositoryInMemory();
+        }
+        accountIds = new String[ACCOUNTS];
+        for (int i = 0; i < ACCOUNTS; i++) {
+            accountIds[i] = "Id-" + i;
+            repository.createAccount(new Account(accountIds[i], BigDecimal.TEN));
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+
+        private String prefix;
+        private int next;
+
+        @Setup(Level.Iteration)
+        public void setUp(AccountsRepositoryBenchmark benchmark) {
+            prefix = "New-" + benchmark.threadIds.incrementAndGet() + "-";
+            next = 0;
+        }
+    }
+
+    @Benchmark
+    public Account getAccount(Cursor cursor) {
+        return repository.getAccount(accountIds[cursor.next++ & (ACCOUNTS - 1)]);
+    }
+
+    @Benchmark
+    public void createAccount(Cursor cursor) {
+        repository.createAccount(new Account(cursor.prefix + cursor.next++));
+    }
+}
@@ -0,0 +1,254 @@
+package com.dws.challenge.benchmark;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import com.dws.challenge.ChallengeApplication;
+import com.dws.challenge.service.ConsistentHashRing;
+
+/**
+ * Throughput of {@code POST /v1/transfers} on clusters of growing size, see
+ * {@link com.dws.challenge.service.ClusterRouter}. Each node is a JVM of its own on localhost, and
+ * the clients route every transfer to the owner of its source account, as a client that knows the
+ * ring would, so no request is forwarded. The number of clients grows with the number of nodes.
+ * <p>
+ * Nodes on one host share its cores, which would cap the scaling at whatever one node already uses.
+ * When {@code taskset} is available and the host has enough cores, each node is pinned to
+ * {@code cpusPerNode} cores of its own, so that every node added brings the same capacity; the
+ * clients run unpinned in this JVM, on the cores left.
+ * <p>
+ * Options, as {@code key=value} arguments: {@code nodes} (node counts, default 1,2,4),
+ * {@code cpusPerNode} (default: the cores divided by one more than the largest node count),
+ * {@code concurrency} (clients per node, default 64), {@code duration} and {@code warmup} (seconds,
+ * default 20 and 5), {@code accounts} (per node, default 1000), {@code crossPartition} (share of
+ * transfers whose destination is owned by another node, default 0) and {@code heap} ({@code -Xmx}
+ * of the nodes, default 1g).
+ */
+public final class ClusterScalingTest {
+
+    private static final long HIGHEST_TRACKABLE_NANOS = TimeUnit.MINUTES.toNanos(1);
+    private static final Duration STARTUP_TIMEOUT = Duration.ofMinutes(2);
+
+    private ClusterScalingTest() {
+    }
+
+    private record Result(int nodes, int clients, long requests, long errors, Duration duration, Histogram latency) {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            String[] option = arg.split("=", 2);
+            options.put(option[0], option.length > 1 ? option[1] : "");
+        }
+        List<Integer> nodeCounts = new ArrayList<>();
+        for (String count : options.getOrDefault("nodes", "1,2,4").split(",")) {
+            nodeCounts.add(Integer.parseInt(count.trim()));
+        }
+        int maxNodes = nodeCounts.stream().mapToInt(Integer::intValue).max().orElse(1);
+        int cores = Runtime.getRuntime().availableProcessors();
+        int cpusPerNode = Integer.parseInt(options.getOrDefault("cpusPerNode",
+                String.valueOf(Math.max(1, cores / (maxNodes + 1)))));
+        boolean pinned = Files.isExecutable(Path.of("/usr/bin/taskset")) && cpusPerNode * maxNodes < cores;
+        if (!pinned) {
+            System.out.printf("Nodes are not pinned, they share the %d cores of this host: expect the scaling "
+                    + "to stop at whatever one node uses%n", cores);
+        }
+
+        List<Result> results = new ArrayList<>();
+        for (int nodes : nodeCounts) {
+            results.add(run(nodes, pinned ? cpusPerNode : 0, options));
+        }
+
+        double baseline = results.get(0).requests() / (results.get(0).duration().toNanos() / 1e9)
+                / results.get(0).nodes();
+        System.out.printf("%n%-6s %8s %10s %12s %10s %10s %10s %10s %8s%n",
+                "nodes", "clients", "requests", "req/s", "speedup", "p50 ms", "p99 ms", "max ms", "errors");
+        for (Result result : results) {
+            Histogram latency = result.latency();
+            double throughput = result.requests() / (result.duration().toNanos() / 1e9);
+            System.out.printf("%-6d %8d %10d %12.1f %10.2f %10.2f %10.2f %10.2f %8d%n",
+                    result.nodes(), result.clients(), result.requests(), throughput, throughput / baseline,
+                    latency.getValueAtPercentile(50) / 1e6, latency.getValueAtPercentile(99) / 1e6,
+                    latency.getMaxValue() / 1e6, result.errors());
+        }
+    }
+
+    private static Result run(int nodeCount, int cpusPerNode, Map<String, String> options) throws Exception {
+        int concurrency = Integer.parseInt(options.getOrDefault("concurrency", "64")) * nodeCount;
+        Duration duration = Duration.ofSeconds(Long.parseLong(options.getOrDefault("duration", "20")));
+        Duration warmup = Duration.ofSeconds(Long.parseLong(options.getOrDefault("warmup", "5")));
+        int accounts = Integer.parseInt(options.getOrDefault("accounts", "1000")) * nodeCount;
+        double crossPartition = Double.parseDouble(options.getOrDefault("crossPartition", "0"));
+
+        List<String> nodes = new ArrayList<>();
+        for (int i = 0; i < nodeCount; i++) {
+            nodes.add("http://localhost:" + freePort());
+        }
+        List<Process> processes = new ArrayList<>();
+        try {
+            for (int i = 0; i < nodeCount; i++) {
+                processes.add(start(nodes, nodes.get(i), i, cpusPerNode, options.getOrDefault("heap", "1g")));
+            }
+            HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+            for (String node : nodes) {
+                awaitStarted(client, node);
+            }
+
+            // Accounts grouped by owner, each created directly on it
+            ConsistentHashRing ring = new ConsistentHashRing(nodes, 128);
+            Map<String, List<String>> accountsByNode = new LinkedHashMap<>();
+            nodes.forEach(node -> accountsByNode.put(node, new ArrayList<>()));
+            for (int i = 0; i < accounts; i++) {
+                String accountId = "Id-" + i;
+                String owner = ring.ownerOf(accountId);
+                accountsByNode.get(owner).add(accountId);
+                post(client, URI.create(owner + "/v1/accounts"),
+                        "{\"accountId\":\"" + accountId + "\",\"balance\":1000000000}");
+            }
+
+            System.out.printf("Running %d nodes%s: %d clients, %d s warmup, %d s measurement%n", nodeCount,
+                    cpusPerNode > 0 ? " of " + cpusPerNode + " cores" : "", concurrency, warmup.toSeconds(),
+                    duration.toSeconds());
+            drive(client, accountsByNode, concurrency, warmup, crossPartition,
+                    new Recorder(HIGHEST_TRACKABLE_NANOS, 3), new LongAdder());
+
+            Recorder recorder = new Recorder(HIGHEST_TRACKABLE_NANOS, 3);
+            LongAdder errors = new LongAdder();
+            long started = System.nanoTime();
+            drive(client, accountsByNode, concurrency, duration, crossPartition, recorder, errors);
+            Duration elapsed = Duration.ofNanos(System.nanoTime() - started);
+
+            Histogram latency = recorder.getIntervalHistogram();
+            return new Result(nodeCount, concurrency, latency.getTotalCount(), errors.sum(), elapsed, latency);
+        } finally {
+            for (Process process : processes) {
+                process.destroy();
+            }
+            for (Process process : processes) {
+                if (!process.waitFor(30, TimeUnit.SECONDS)) {
+                    process.destroyForcibly();
+                }
+            }
+        }
+    }
+
+    private static Process start(List<String> nodes, String self, int index, int cpusPerNode, String heap)
+            throws IOException {
+        List<String> command = new ArrayList<>();
+        if (cpusPerNode > 0) {
+            command.addAll(List.of("taskset", "-c", index * cpusPerNode + "-" + ((index + 1) * cpusPerNode - 1)));
+        }
+        command.addAll(List.of(Path.of(System.getProperty("java.home"), "bin", "java").toString(), "-Xmx" + heap));
+        if (cpusPerNode > 0) {
+            command.add("-XX:ActiveProcessorCount=" + cpusPerNode);
+        }
+        command.addAll(List.of("-cp", System.getProperty("java.class.path"), ChallengeApplication.class.getName(),
+                "--server.port=" + URI.create(self).getPort(),
+                "--cluster.nodes=" + String.join(",", nodes),
+                "--cluster.self=" + self,
+                "--cluster.secret=benchmark",
+                // Every client sends from one address, admission control would measure itself
+                "--transfer.admission.enabled=false",
+                "--logging.level.root=WARN"));
+        return new ProcessBuilder(command)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start();
+    }
+
+    private static void awaitStarted(HttpClient client, String node) throws InterruptedException {
+        long deadline = System.nanoTime() + STARTUP_TIMEOUT.toNanos();
+        HttpRequest request = HttpRequest.newBuilder(URI.create(node + "/actuator/health")).build();
+        while (System.nanoTime() < deadline) {
+            try {
+                if (client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                    return;
+                }
+            } catch (IOException ex) {
+                // Not listening yet
+            }
+            Thread.sleep(200);
+        }
+        throw new IllegalStateException("Node " + node + " did not start within " + STARTUP_TIMEOUT);
+    }
+
+    // Each client sends transfers back to back to the owner of their source account until the phase ends
+    private static void drive(HttpClient client, Map<String, List<String>> accountsByNode, int concurrency,
+            Duration duration, double crossPartition, Recorder recorder, LongAdder errors)
+            throws InterruptedException {
+        List<String> nodes = new ArrayList<>(accountsByNode.keySet());
+        long deadline = System.nanoTime() + duration.toNanos();
+        ExecutorService clients = Executors.newFixedThreadPool(concurrency);
+        for (int c = 0; c < concurrency; c++) {
+            SplittableRandom random = new SplittableRandom(c);
+            clients.execute(() -> {
+                while (System.nanoTime() < deadline) {
+                    String node = nodes.get(random.nextInt(nodes.size()));
+                    String toNode = nodes.size() > 1 && random.nextDouble() < crossPartition
+                            ? nodes.get((nodes.indexOf(node) + 1 + random.nextInt(nodes.size() - 1)) % nodes.size())
+                            : node;
+                    List<String> from = accountsByNode.get(node);
+                    List<String> to = accountsByNode.get(toNode);
+                    String accountFromId = from.get(random.nextInt(from.size()));
+                    String accountToId = to.get(random.nextInt(to.size()));
+                    if (accountFromId.equals(accountToId)) {
+                        continue;
+                    }
+                    String body = "{\"accountFromId\":\"" + accountFromId + "\",\"accountToId\":\"" + accountToId
+                            + "\",\"amount\":0.01}";
+                    long sent = System.nanoTime();
+                    if (post(client, URI.create(node + "/v1/transfers"), body)) {
+                        recorder.recordValue(Math.min(System.nanoTime() - sent, HIGHEST_TRACKABLE_NANOS));
+                    } else {
+                        errors.increment();
+                    }
+                }
+            });
+        }
+        clients.shutdown();
+        clients.awaitTermination(duration.toSeconds() + 60, TimeUnit.SECONDS);
+    }
+
+    private static boolean post(HttpClient client, URI uri, String body) {
+        HttpRequest request = HttpRequest.newBuilder(uri)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        try {
+            int status = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+            return status >= 200 && status < 300;
+        } catch (IOException ex) {
+            return false;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.dws.challenge.benchmark;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.dto.TransferRequest;
+import com.dws.challenge.repository.AccountsRepositoryInMemory;
+import com.dws.challenge.repository.StripedAccountsProperties;
+import com.dws.challenge.repository.TransactionLog;
+import com.dws.challenge.service.AccountsService;
+import com.dws.challenge.service.ChangeFeed;
+import com.dws.challenge.service.ChangeFeedProperties;
+import com.dws.challenge.service.ClusterClient;
+import com.dws.challenge.service.ClusterProperties;
+import com.dws.challenge.service.ClusterRouter;
+import com.dws.challenge.service.ClusterTransfers;
+import com.dws.challenge.service.FxProperties;
+import com.dws.challenge.service.FxRates;
+import com.dws.challenge.service.LockingTransferEngine;
+import com.dws.challenge.service.NotificationDeadLetterStore;
+import com.dws.challenge.service.NotificationDispatcher;
+import com.dws.challenge.service.NotificationProperties;
+import com.dws.challenge.service.OptimisticTransferEngine;
+import com.dws.challenge.service.ShardedTransferEngine;
+import com.dws.challenge.service.TransferEngine;
+import com.dws.challenge.service.TransferIdempotencyCache;
+import com.dws.challenge.service.TransferMetrics;
+import com.dws.challenge.service.TransferService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Throughput of transfers that all credit the same hot account from random source accounts, with
+ * the hot account plain or striped. Run with increasing thread counts ({@code -t}) to see whether
+ * throughput scales or flattens at one.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HotAccountBenchmark {
+
+    private static final int ACCOUNTS = 10_000;
+    private static final int REQUESTS_PER_THREAD = 1 << 16;
+    private static final String HOT_ACCOUNT_ID = "Id-hot";
+
+    @Param({"false", "true"})
+    public boolean striped;
+
+    @Param({"locking", "sharded", "optimistic"})
+    public String engine;
+
+    private TransferService transferService;
+    private TransferEngine transferEngine;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        StripedAccountsProperties stripedAccounts = new StripedAccountsProperties();
+        if (striped) {
+            stripedAccounts.setIds(Set.of(HOT_ACCOUNT_ID));
+        }
+        AccountsService accountsService = new AccountsService(new AccountsRepositoryInMemory(), stripedAccounts,
+                new TransactionLog(65536, 16), new ChangeFeed(new ChangeFeedProperties()));
+        accountsService.createAccount(new Account(HOT_ACCOUNT_ID, BigDecimal.ZERO));
+        for (int i = 0; i < ACCOUNTS; i++) {
+            accountsService.createAccount(new Account("Id-" + i, BigDecimal.valueOf(1_000_000_000L)));
+        }
+
+        NotificationProperties notificationProperties = new NotificationProperties();
+        notificationProperties.setAsync(false);
+        NotificationDispatcher notificationDispatcher = new NotificationDispatcher((account, description) -> { },
+                new NotificationDeadLetterStore(notificationProperties), notificationProperties, new SimpleMeterRegistry());
+
+        TransferMetrics transferMetrics = new TransferMetrics(new SimpleMeterRegistry(), List.of());
+        transferEngine = switch (engine) {
+            case "sharded" -> new ShardedTransferEngine(0, 4096);
+            case "optimistic" -> new OptimisticTransferEngine(8, transferMetrics);
+            default -> new LockingTransferEngine(transferMetrics);
+        };
+        TransferIdempotencyCache idempotencyCache = new TransferIdempotencyCache(1, Duration.ofMinutes(1),
+                new SimpleMeterRegistry());
+        FxRates fxRates = new FxRates(new FxProperties());
+        // A single node, nothing is ever routed to another one
+        ClusterProperties cluster = new ClusterProperties();
+        ClusterRouter clusterRouter = new ClusterRouter(cluster);
+        ClusterTransfers clusterTransfers = new ClusterTransfers(cluster, clusterRouter,
+                new ClusterClient(cluster, clusterRouter, new ObjectMapper()), accountsService, transferEngine, fxRates,
+                notificationDispatcher);
+        transferService = new TransferService(accountsService, notificationDispatcher, transferEngine, transferMetrics,
+                idempotencyCache, fxRates, clusterTransfers, 1);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        transferService.shutdown();
+        if (transferEngine instanceof ShardedTransferEngine shardedTransferEngine) {
+            shardedTransferEngine.shutdown();
+        }
+    }
+
+    /**
+     * Pre-generated requests of one benchmark thread. Sources hold enough funds that they are not
+     * drained within a benchmark run, so there are no reverse transfers debiting the hot account.
+     */
+    @State(Scope.Thread)
+    public static class Requests {
+
+        private TransferRequest[] requests;
+        private int next;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            SplittableRandom random = new SplittableRandom(Thread.currentThread().threadId());
+            requests = new TransferRequest[REQUESTS_PER_THREAD];
+            for (int i = 0; i < REQUESTS_PER_THREAD; i++) {
+                TransferRequest request = new TransferRequest();
+                request.setAccountFromId("Id-" + random.nextInt(ACCOUNTS));
+                request.setAccountToId(HOT_ACCOUNT_ID);
+                request.setAmount(new BigDecimal("0.01"));
+                requests[i] = request;
+            }
+        }
+
+        TransferRequest next() {
+            return requests[next++ & (REQUESTS_PER_THREAD - 1)];
+        }
+    }
+
+    @Benchmark
+    public void creditHotAccount(Requests requests) {
+        transferService.transferMoney(requests.next());
+    }
+}
@@ -0,0 +1,72 @@
+package com.dws.challenge.benchmark;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.dto.TransferRequest;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Cost of the Jackson (de)serialization done by the web layer for {@link Account} and
+ * {@link TransferRequest}, using an {@link ObjectMapper} configured like Spring MVC's.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JsonBenchmark {
+
+    private ObjectMapper objectMapper;
+    private Account account;
+    private TransferRequest transferRequest;
+    private byte[] accountJson;
+    private byte[] transferRequestJson;
+
+    @Setup
+    public void setUp() throws IOException {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        account = new Account("Id-1234567890", new BigDecimal("123456.78"));
+        transferRequest = new TransferRequest();
+        transferRequest.setAccountFromId("Id-1234567890");
+        transferRequest.setAccountToId("Id-0987654321");
+        transferRequest.setAmount(new BigDecimal("42.50"));
+        accountJson = objectMapper.writeValueAsBytes(account);
+        transferRequestJson = objectMapper.writeValueAsBytes(transferRequest);
+    }
+
+    @Benchmark
+    public byte[] serializeAccount() throws IOException {
+        return objectMapper.writeValueAsBytes(account);
+    }
+
+    @Benchmark
+    public Account deserializeAccount() throws IOException {
+        return objectMapper.readValue(accountJson, Account.class);
+    }
+
+    @Benchmark
+    public byte[] serializeTransferRequest() throws IOException {
+        return objectMapper.writeValueAsBytes(transferRequest);
+    }
+
+    @Benchmark
+    public TransferRequest deserializeTransferRequest() throws IOException {
+        return objectMapper.readValue(transferRequestJson, TransferRequest.class);
+    }
+}
@@ -0,0 +1,194 @@
+package com.dws.challenge.benchmark;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.dto.TransferRequest;
+import com.dws.challenge.repository.AccountsRepositoryInMemory;
+import com.dws.challenge.repository.StripedAccountsProperties;
+import com.dws.challenge.repository.TransactionLog;
+import com.dws.challenge.service.AccountsService;
+import com.dws.challenge.service.ChangeFeed;
+import com.dws.challenge.service.ChangeFeedProperties;
+import com.dws.challenge.service.ClusterClient;
+import com.dws.challenge.service.ClusterProperties;
+import com.dws.challenge.service.ClusterRouter;
+import com.dws.challenge.service.ClusterTransfers;
+import com.dws.challenge.service.FxProperties;
+import com.dws.challenge.service.FxRates;
+import com.dws.challenge.service.LockingTransferEngine;
+import com.dws.challenge.service.NotificationDeadLetterStore;
+import com.dws.challenge.service.NotificationDispatcher;
+import com.dws.challenge.service.NotificationProperties;
+import com.dws.challenge.service.OptimisticTransferEngine;
+import com.dws.challenge.service.ShardedTransferEngine;
+import com.dws.challenge.service.TransferEngine;
+import com.dws.challenge.service.TransferIdempotencyCache;
+import com.dws.challenge.service.TransferMetrics;
+import com.dws.challenge.service.TransferService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Throughput of {@link TransferService#transferMoney} for each transfer engine under three access
+ * patterns: uniformly random account pairs, Zipfian pairs where a few hot accounts take most of the
+ * traffic, and every thread hammering the same pair. Run with several thread counts, for instance
+ * through the {@code jmhTransferScaling} Gradle task. With {@code currencies=mixed} every other
+ * account is held in another currency, so about half the transfers are converted.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TransferBenchmark {
+
+    private static final int ACCOUNTS = 10_000;
+    private static final int REQUESTS_PER_THREAD = 1 << 16;
+    private static final double ZIPF_EXPONENT = 0.99;
+
+    @Param({"uniform", "zipfian", "samePair"})
+    public String distribution;
+
+    @Param({"locking", "sharded", "optimistic"})
+    public String engine;
+
+    @Param({"single", "mixed"})
+    public String currencies;
+
+    private TransferService transferService;
+    private TransferEngine transferEngine;
+    private double[] zipfCumulative;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        AccountsRepositoryInMemory repository = new AccountsRepositoryInMemory();
+        for (int i = 0; i < ACCOUNTS; i++) {
+            String currency = currencies.equals("mixed") && i % 2 == 1 ? "USD" : Account.DEFAULT_CURRENCY;
+            repository.createAccount(new Account("Id-" + i, BigDecimal.valueOf(1_000_000_000L), currency));
+        }
+
+        // Notifications are sent synchronously to a no-op backend so only the transfer itself is measured
+        NotificationProperties notificationProperties = new NotificationProperties();
+        notificationProperties.setAsync(false);
+        NotificationDispatcher notificationDispatcher = new NotificationDispatcher((account, description) -> { },
+                new NotificationDeadLetterStore(notificationProperties), notificationProperties, new SimpleMeterRegistry());
+
+        TransferMetrics transferMetrics = new TransferMetrics(new SimpleMeterRegistry(), List.of());
+        transferEngine = switch (engine) {
+            case "sharded" -> new ShardedTransferEngine(0, 4096);
+            case "optimistic" -> new OptimisticTransferEngine(8, transferMetrics);
+            default -> new LockingTransferEngine(transferMetrics);
+        };
+        TransferIdempotencyCache idempotencyCache = new TransferIdempotencyCache(1, Duration.ofMinutes(1),
+                new SimpleMeterRegistry());
+        AccountsService accountsService = new AccountsService(repository, new StripedAccountsProperties(),
+                new TransactionLog(65536, 16), new ChangeFeed(new ChangeFeedProperties()));
+        FxProperties fxProperties = new FxProperties();
+        fxProperties.setRates(Map.of("USD", new BigDecimal("1.0834")));
+        FxRates fxRates = new FxRates(fxProperties);
+        // A single node, nothing is ever routed to another one
+        ClusterProperties cluster = new ClusterProperties();
+        ClusterRouter clusterRouter = new ClusterRouter(cluster);
+        ClusterTransfers clusterTransfers = new ClusterTransfers(cluster, clusterRouter,
+                new ClusterClient(cluster, clusterRouter, new ObjectMapper()), accountsService, transferEngine, fxRates,
+                notificationDispatcher);
+        transferService = new TransferService(accountsService, notificationDispatcher, transferEngine, transferMetrics,
+                idempotencyCache, fxRates, clusterTransfers, 1);
+
+        zipfCumulative = new double[ACCOUNTS];
+        double sum = 0;
+        for (int rank = 0; rank < ACCOUNTS; rank++) {
+            sum += 1 / Math.pow(rank + 1, ZIPF_EXPONENT);
+            zipfCumulative[rank] = sum;
+        }
+        for (int rank = 0; rank < ACCOUNTS; rank++) {
+            zipfCumulative[rank] /= sum;
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        transferService.shutdown();
+        if (transferEngine instanceof ShardedTransferEngine shardedTransferEngine) {
+            shardedTransferEngine.shutdown();
+        }
+    }
+
+    /**
+     * Pre-generated requests of one benchmark thread. Every request is followed by its reverse, so
+     * balances do not drift however long the benchmark runs.
+     */
+    @State(Scope.Thread)
+    public static class Requests {
+
+        private TransferRequest[] requests;
+        private int next;
+
+        @Setup(Level.Trial)
+        public void setUp(TransferBenchmark benchmark) {
+            SplittableRandom random = new SplittableRandom(Thread.currentThread().threadId());
+            requests = new TransferRequest[REQUESTS_PER_THREAD];
+            for (int i = 0; i < REQUESTS_PER_THREAD; i += 2) {
+                int from;
+                int to;
+                do {
+                    from = benchmark.pick(random);
+                    to = benchmark.pick(random);
+                } while (from == to);
+                requests[i] = request(from, to);
+                requests[i + 1] = request(to, from);
+            }
+        }
+
+        TransferRequest next() {
+            return requests[next++ & (REQUESTS_PER_THREAD - 1)];
+        }
+
+        private static TransferRequest request(int from, int to) {
+            TransferRequest request = new TransferRequest();
+            request.setAccountFromId("Id-" + from);
+            request.setAccountToId("Id-" + to);
+            request.setAmount(BigDecimal.ONE);
+            return request;
+        }
+    }
+
+    @Benchmark
+    public void transferMoney(Requests requests) {
+        transferService.transferMoney(requests.next());
+    }
+
+    private int pick(SplittableRandom random) {
+        return switch (distribution) {
+            case "zipfian" -> {
+                int rank = Arrays.binarySearch(zipfCumulative, random.nextDouble());
+                yield Math.min(rank >= 0 ? rank : -rank - 1, ACCOUNTS - 1);
+            }
+            case "samePair" -> random.nextInt(2);
+            default -> random.nextInt(ACCOUNTS);
+        };
+    }
+}
@@ -0,0 +1,47 @@
+package com.dws.challenge.benchmark;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs {@link TransferBenchmark} at 1, 2, 4, ... threads up to the number of cores and prints one
+ * summary line per engine, distribution and thread count. Extra arguments are passed on to JMH.
+ */
+public final class TransferScalingRunner {
+
+    private TransferScalingRunner() {
+    }
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        CommandLineOptions commandLineOptions = new CommandLineOptions(args);
+        int cores = Runtime.getRuntime().availableProcessors();
+
+        List<RunResult> results = new ArrayList<>();
+        for (int threads = 1; threads <= cores; threads = threads == cores ? cores + 1 : Math.min(threads * 2, cores)) {
+            Collection<RunResult> run = new Runner(new OptionsBuilder()
+                    .parent(commandLineOptions)
+                    .include(TransferBenchmark.class.getSimpleName())
+                    .threads(threads)
+                    .build()).run();
+            results.addAll(run);
+        }
+
+        System.out.printf("%n%-8s %-10s %8s %14s %12s%n", "engine", "pattern", "threads", "ops/ms", "error");
+        for (RunResult result : results) {
+            System.out.printf("%-8s %-10s %8d %14.1f %12.1f%n",
+                    result.getParams().getParam("engine"),
+                    result.getParams().getParam("distribution"),
+                    result.getParams().getThreads(),
+                    result.getPrimaryResult().getScore(),
+                    result.getPrimaryResult().getScoreError());
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package com.dws.challenge.benchmark;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import com.dws.challenge.ChallengeApplication;
+import com.dws.challenge.service.NotificationService;
+
+/**
+ * End-to-end load test of {@code POST /v1/transfers}, run once with the Tomcat platform thread pool
+ * and once with {@code spring.threads.virtual.enabled}. Notifications are sent synchronously to a
+ * backend that sleeps, so request threads spend most of their time blocked, which is the case the
+ * virtual thread mode is meant for.
+ * <p>
+ * Options, as {@code key=value} arguments: {@code concurrency} (clients, default 1000),
+ * {@code duration} and {@code warmup} (seconds, default 20 and 5), {@code accounts} (default 1000)
+ * and {@code notificationDelay} (milliseconds, default 20).
+ */
+public final class WebLoadTest {
+
+    private static final long HIGHEST_TRACKABLE_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private WebLoadTest() {
+    }
+
+    // Only where this test sets the delay: other applications started from this class path scan it too
+    @Configuration
+    @ConditionalOnProperty("loadtest.notification-delay")
+    static class SlowNotifications {
+
+        @Bean
+        @Primary
+        NotificationService slowNotificationService(@Value("${loadtest.notification-delay}") Duration delay) {
+            return (account, transferDescription) -> {
+                try {
+                    Thread.sleep(delay.toMillis());
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            };
+        }
+    }
+
+    private record Result(String mode, long requests, long errors, Duration duration, Histogram latency) {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            String[] option = arg.split("=", 2);
+            options.put(option[0], option.length > 1 ? option[1] : "");
+        }
+        int concurrency = Integer.parseInt(options.getOrDefault("concurrency", "1000"));
+        Duration duration = Duration.ofSeconds(Long.parseLong(options.getOrDefault("duration", "20")));
+        Duration warmup = Duration.ofSeconds(Long.parseLong(options.getOrDefault("warmup", "5")));
+        int accounts = Integer.parseInt(options.getOrDefault("accounts", "1000"));
+        Duration notificationDelay = Duration.ofMillis(Long.parseLong(options.getOrDefault("notificationDelay", "20")));
+
+        List<Result> results = new ArrayList<>();
+        for (boolean virtualThreads : new boolean[] {false, true}) {
+            results.add(run(virtualThreads, concurrency, warmup, duration, accounts, notificationDelay));
+        }
+
+        System.out.printf("%n%-9s %10s %12s %10s %10s %10s %10s %8s%n",
+                "threads", "requests", "req/s", "p50 ms", "p99 ms", "p99.9 ms", "max ms", "errors");
+        for (Result result : results) {
+            Histogram latency = result.latency();
+            System.out.printf("%-9s %10d %12.1f %10.2f %10.2f %10.2f %10.2f %8d%n",
+                    result.mode(), result.requests(),
+                    result.requests() / (result.duration().toNanos() / 1e9),
+                    latency.getValueAtPercentile(50) / 1e6, latency.getValueAtPercentile(99) / 1e6,
+                    latency.getValueAtPercentile(99.9) / 1e6, latency.getMaxValue() / 1e6, result.errors());
+        }
+    }
+
+    private static Result run(boolean virtualThreads, int concurrency, Duration warmup, Duration duration, int accounts,
+            Duration notificationDelay) throws Exception {
+        String mode = virtualThreads ? "virtual" : "platform";
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(ChallengeApplication.class,
+                SlowNotifications.class)
+                .properties("server.port=0",
+                        "spring.threads.virtual.enabled=" + virtualThreads,
+                        "notification.async=false",
+                        // Every client sends from one address, admission control would measure itself
+                        "transfer.admission.enabled=false",
+                        "loadtest.notification-delay=" + notificationDelay.toMillis() + "ms",
+                        "logging.level.root=WARN")
+                .run();
+        try {
+            int port = context.getEnvironment().getRequiredProperty("local.server.port", Integer.class);
+            URI baseUri = URI.create("http://localhost:" + port);
+            HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+            for (int i = 0; i < accounts; i++) {
+                post(client, baseUri.resolve("/v1/accounts"), "{\"accountId\":\"Id-" + i + "\",\"balance\":1000000000}");
+            }
+
+            System.out.printf("Running %s threads: %d clients, %d s warmup, %d s measurement%n",
+                    mode, concurrency, warmup.toSeconds(), duration.toSeconds());
+            drive(client, baseUri, concurrency, warmup, accounts, new Recorder(HIGHEST_TRACKABLE_NANOS, 3), new LongAdder());
+
+            Recorder recorder = new Recorder(HIGHEST_TRACKABLE_NANOS, 3);
+            LongAdder errors = new LongAdder();
+            long started = System.nanoTime();
+            drive(client, baseUri, concurrency, duration, accounts, recorder, errors);
+            Duration elapsed = Duration.ofNanos(System.nanoTime() - started);
+
+            Histogram latency = recorder.getIntervalHistogram();
+            return new Result(mode, latency.getTotalCount(), errors.sum(), elapsed, latency);
+        } finally {
+            context.close();
+        }
+    }
+
+    // Each client sends transfers back to back between random accounts until the phase ends
+    private static void drive(HttpClient client, URI baseUri, int concurrency, Duration duration, int accounts,
+            Recorder recorder, LongAdder errors) throws InterruptedException {
+        URI transfers = baseUri.resolve("/v1/transfers");
+        long deadline = System.nanoTime() + duration.toNanos();
+        ExecutorService clients = Executors.newFixedThreadPool(concurrency);
+        for (int c = 0; c < concurrency; c++) {
+            SplittableRandom random = new SplittableRandom(c);
+            clients.execute(() -> {
+                while (System.nanoTime() < deadline) {
+                    int from = random.nextInt(accounts);
+                    int to = (from + 1 + random.nextInt(accounts - 1)) % accounts;
+                    String body = "{\"accountFromId\":\"Id-" + from + "\",\"accountToId\":\"Id-" + to + "\",\"amount\":0.01}";
+                    long sent = System.nanoTime();
+                    if (post(client, transfers, body)) {
+                        recorder.recordValue(Math.min(System.nanoTime() - sent, HIGHEST_TRACKABLE_NANOS));
+                    } else {
+                        errors.increment();
+                    }
+                }
+            });
+        }
+        clients.shutdown();
+        clients.awaitTermination(duration.toSeconds() + 60, TimeUnit.SECONDS);
+    }
+
+    private static boolean post(HttpClient client, URI uri, String body) {
+        HttpRequest request = HttpRequest.newBuilder(uri)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        try {
+            int status = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+            return status >= 200 && status < 300;
+        } catch (IOException ex) {
+            return false;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.dws.challenge.benchmark;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.dto.AccountBalance;
+import com.dws.challenge.dto.TransferRequest;
+import com.dws.challenge.dto.TransferResult;
+import com.dws.challenge.web.BinaryTransferCodec;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import jakarta.validation.ValidatorFactory;
+
+/**
+ * CPU cost per request of the two wire formats of the transfer endpoints: decoding a transfer or a
+ * batch of {@code batchSize} transfers, and encoding the batch results and a list of balances. The
+ * JSON side includes the bean validation {@code @Valid} triggers in the controller, the binary
+ * endpoints do without it. Single-threaded average time is CPU time, since nothing blocks.
+ * Run with {@code gradle jmh -PjmhArgs='WireFormatBenchmark -prof gc'} to compare the allocations
+ * as well.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WireFormatBenchmark {
+
+    private static final TypeReference<List<TransferRequest>> TRANSFER_LIST = new TypeReference<>() {
+    };
+
+    @Param({"json", "binary"})
+    public String format;
+
+    @Param({"100"})
+    public int batchSize;
+
+    private ObjectMapper objectMapper;
+    private ValidatorFactory validatorFactory;
+    private Validator validator;
+    private List<TransferResult> results;
+    private List<AccountBalance> balances;
+    private byte[] transfer;
+    private byte[] batch;
+
+    @Setup
+    public void setUp() throws IOException {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        validatorFactory = Validation.buildDefaultValidatorFactory();
+        validator = validatorFactory.getValidator();
+
+        List<TransferRequest> transferRequests = new ArrayList<>();
+        results = new ArrayList<>();
+        balances = new ArrayList<>();
+        for (int i = 0; i < batchSize; i++) {
+            TransferRequest transferRequest = new TransferRequest();
+            transferRequest.setAccountFromId("Id-" + (1_000_000 + i));
+            transferRequest.setAccountToId("Id-" + (2_000_000 + i));
+            transferRequest.setAmount(new BigDecimal("42.50"));
+            transferRequests.add(transferRequest);
+            results.add(i % 10 == 0 ? TransferResult.failed(i, "Insufficient balance") : TransferResult.success(i));
+            balances.add(new AccountBalance(transferRequest.getAccountFromId(), new BigDecimal("123456.78"),
+                    Account.DEFAULT_CURRENCY));
+        }
+
+        boolean json = format.equals("json");
+        transfer = json ? objectMapper.writeValueAsBytes(transferRequests.get(0))
+                : BinaryTransferCodec.encodeTransfer(transferRequests.get(0));
+        batch = json ? objectMapper.writeValueAsBytes(transferRequests)
+                : BinaryTransferCodec.encodeTransfers(transferRequests);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        validatorFactory.close();
+    }
+
+    @Benchmark
+    public Object decodeTransfer() throws IOException {
+        if (format.equals("json")) {
+            TransferRequest transferRequest = objectMapper.readValue(transfer, TransferRequest.class);
+            validate(transferRequest);
+            return transferRequest;
+        }
+        return BinaryTransferCodec.decodeTransfer(transfer);
+    }
+
+    @Benchmark
+    public Object decodeBatch() throws IOException {
+        if (format.equals("json")) {
+            List<TransferRequest> transferRequests = objectMapper.readValue(batch, TRANSFER_LIST);
+            // @Valid on a list validates the list itself, which cascades to no element
+            validate(transferRequests);
+            return transferRequests;
+        }
+        return BinaryTransferCodec.decodeTransfers(batch);
+    }
+
+    @Benchmark
+    public byte[] encodeResults() throws IOException {
+        return format.equals("json") ? objectMapper.writeValueAsBytes(results) : BinaryTransferCodec.encodeResults(results);
+    }
+
+    @Benchmark
+    public byte[] encodeBalances() throws IOException {
+        return format.equals("json") ? objectMapper.writeValueAsBytes(balances)
+                : BinaryTransferCodec.encodeBalances(balances);
+    }
+
+    private void validate(Object value) {
+        Set<ConstraintViolation<Object>> violations = validator.validate(value);
+        if (!violations.isEmpty()) {
+            throw new IllegalStateException(violations.toString());
+        }
+    }
+}
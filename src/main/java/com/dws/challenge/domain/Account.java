@@ -1,15 +1,23 @@
 package com.dws.challenge.domain;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 import java.math.BigDecimal;
+import java.util.Comparator;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
+import com.dws.challenge.exception.InsufficientBalanceException;
+import com.dws.challenge.exception.InvalidAmountException;
 import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
 import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotEmpty;
 import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Pattern;
+import lombok.AccessLevel;
 import lombok.Data;
 import lombok.Getter;
 import lombok.Setter;
@@ -19,29 +27,212 @@ import lombok.Setter;
 @Setter
 public class Account {
 
+    // Decimal places of the minor unit (cents) used for every account balance
+    public static final int DEFAULT_SCALE = 2;
+
+    // Currency of accounts created without one, and of accounts journaled before currencies existed
+    public static final String DEFAULT_CURRENCY = "EUR";
+
+    /**
+     * The order in which transfers take the locks of the accounts they need: by
+     * {@linkplain #lockStripe() lock stripe}, then by id. Every kind of account is ordered by the same
+     * key, so the order is total and opposing transfers cannot deadlock. Accounts with the same id
+     * compare equal.
+     */
+    public static final Comparator<Account> LOCK_ORDER =
+            Comparator.comparingInt(Account::lockStripe).thenComparing(Account::getAccountId);
+
+    private static final VarHandle BALANCE;
+    private static final VarHandle VERSION;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            BALANCE = lookup.findVarHandle(Account.class, "balanceMinorUnits", long.class);
+            VERSION = lookup.findVarHandle(Account.class, "version", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
     @NotNull
     @NotEmpty
     private final String accountId;
 
+    // ISO 4217 code, amounts are converted through FxRates when a transfer crosses currencies
     @NotNull
-    @Min(value = 0, message = "Initial balance must be positive.")
-    private BigDecimal balance;
+    @Pattern(regexp = "[A-Z]{3}", message = "Currency must be an ISO 4217 code.")
+    private final String currency;
+
+    // Balance in minor units, only accessed through BALANCE. BigDecimal is used at the JSON boundary only.
+    @JsonIgnore
+    private long balanceMinorUnits;
+
+    @JsonIgnore
+    private final int scale;
+
+    // Bumped by every write of the balance, odd while one is writing. Only accessed through VERSION.
+    @JsonIgnore
+    @Setter(AccessLevel.NONE)
+    private long version;
 
     // Lock for synchronizing access to the account
+    @JsonIgnore
     private final Lock lock;
 
     public Account(String accountId) {
+        this(accountId, DEFAULT_CURRENCY);
+    }
+
+    public Account(String accountId, String currency) {
+        this(accountId, currency, new ReentrantLock());
+    }
+
+    // For accounts whose lock is shared with other accounts rather than owned
+    protected Account(String accountId, String currency, Lock lock) {
         this.accountId = accountId;
-        this.balance = BigDecimal.ZERO;
-        this.lock = new ReentrantLock();
+        this.currency = currency;
+        this.scale = DEFAULT_SCALE;
+        this.lock = lock;
+    }
+
+    public Account(String accountId, BigDecimal balance) {
+        this(accountId, balance, DEFAULT_CURRENCY);
     }
 
     @JsonCreator
     public Account(@JsonProperty("accountId") String accountId,
-                   @JsonProperty("balance") BigDecimal balance) {
+                   @JsonProperty("balance") BigDecimal balance,
+                   @JsonProperty("currency") String currency) {
+        if (balance == null) {
+            throw new IllegalArgumentException("Initial balance must be provided.");
+        }
         this.accountId = accountId;
-        this.balance = balance;
+        this.currency = currency != null ? currency : DEFAULT_CURRENCY;
+        this.scale = DEFAULT_SCALE;
         this.lock = new ReentrantLock();
+        this.balanceMinorUnits = toMinorUnits(balance);
+    }
+
+    @NotNull
+    @Min(value = 0, message = "Initial balance must be positive.")
+    public BigDecimal getBalance() {
+        return BigDecimal.valueOf(getBalanceMinorUnits(), scale);
+    }
+
+    public void setBalance(BigDecimal balance) {
+        setBalanceMinorUnits(toMinorUnits(balance));
+    }
+
+    public long getBalanceMinorUnits() {
+        return (long) BALANCE.getAcquire(this);
+    }
+
+    // Writers are serialized by the transfer engine, so a release store is enough for readers
+    public void setBalanceMinorUnits(long balanceMinorUnits) {
+        BALANCE.setRelease(this, balanceMinorUnits);
+    }
+
+    /**
+     * Whether credits to this account may run concurrently with each other and with a debit, see
+     * {@link StripedAccount}. Transfer engines then only serialize the account's debits.
+     */
+    @JsonIgnore
+    public boolean isStriped() {
+        return false;
+    }
+
+    public long getVersion() {
+        return (long) VERSION.getAcquire(this);
+    }
+
+    /**
+     * Claims this account for an optimistic commit, provided nobody committed or started committing
+     * since {@code version} was read. Balances read after that version are then known to be current.
+     */
+    public boolean tryClaimVersion(long version) {
+        return (version & 1) == 0 && VERSION.compareAndSet(this, version, version + 1);
+    }
+
+    // Ends a claim taken at claimedVersion after the balance was written
+    public void publishVersion(long claimedVersion) {
+        VERSION.setRelease(this, claimedVersion + 2);
+    }
+
+    // Ends a claim taken at claimedVersion without writing anything
+    public void abandonVersion(long claimedVersion) {
+        VERSION.setRelease(this, claimedVersion);
+    }
+
+    /**
+     * Claims the version for a writer that already keeps the other writers out, by holding the lock
+     * or by owning the account. Only a snapshot reader's claim can be in the way, and only for a few
+     * loads, so this spins until it succeeds.
+     *
+     * @return the claimed version, to be published or abandoned
+     */
+    public long claimVersion() {
+        long version;
+        while (!tryClaimVersion(version = getVersion())) {
+            Thread.onSpinWait();
+        }
+        return version;
+    }
+
+    /**
+     * Converts an amount to minor units at this account's scale.
+     *
+     * @throws InvalidAmountException if the amount has more decimal places than the scale or does not fit a long
+     */
+    public long toMinorUnits(BigDecimal amount) {
+        try {
+            return amount.movePointRight(scale).longValueExact();
+        } catch (ArithmeticException ex) {
+            throw new InvalidAmountException("Amount " + amount.toPlainString() + " is not representable with "
+                    + scale + " decimal places");
+        }
+    }
+
+    /**
+     * Removes {@code units} from the balance. The caller must be the only writer of this account.
+     *
+     * @throws InsufficientBalanceException if the balance is lower than {@code units}
+     */
+    public void debit(long units) {
+        long balance = getBalanceMinorUnits();
+        if (balance < units) {
+            throw new InsufficientBalanceException("Insufficient balance");
+        }
+        setBalanceMinorUnits(balance - units);
+    }
+
+    /**
+     * Adds {@code units} to the balance. The caller must be the only writer of this account.
+     *
+     * @throws InvalidAmountException if the balance would overflow
+     */
+    public void credit(long units) {
+        long balance = getBalanceMinorUnits();
+        if (balance > Long.MAX_VALUE - units) {
+            throw new InvalidAmountException("Balance overflow");
+        }
+        setBalanceMinorUnits(balance + units);
+    }
+
+    /**
+     * Whether this account's lock is taken before {@code other}'s when a transfer needs both, see
+     * {@link #LOCK_ORDER}.
+     */
+    public final boolean locksBefore(Account other) {
+        return LOCK_ORDER.compare(this, other) < 0;
+    }
+
+    /**
+     * The stripe of a lock shared by several accounts, which must be taken in stripe order; -1 for an
+     * account with a lock of its own, which is taken before any shared one.
+     */
+    public int lockStripe() {
+        return -1;
     }
 
     // Acquire the lock for this account
@@ -0,0 +1,30 @@
+package com.dws.challenge.domain;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * One event of the change feed. A creation carries the account's currency and its initial balance
+ * as both amounts, and no source account; a transfer debits {@code amount} from the source account
+ * and credits {@code creditedAmount}, which differs when it crossed currencies, to the destination
+ * account. Folding the amounts of every event in sequence order gives the current balances.
+ */
+public record BalanceChange(long sequence, Instant timestamp, Type type, String accountFromId, String accountToId,
+                            @JsonInclude(JsonInclude.Include.NON_NULL) String currency,
+                            @JsonIgnore long amountMinorUnits, @JsonIgnore long creditedMinorUnits) {
+
+    public enum Type {
+        ACCOUNT_CREATED, TRANSFER
+    }
+
+    public BigDecimal getAmount() {
+        return BigDecimal.valueOf(amountMinorUnits, Account.DEFAULT_SCALE);
+    }
+
+    public BigDecimal getCreditedAmount() {
+        return BigDecimal.valueOf(creditedMinorUnits, Account.DEFAULT_SCALE);
+    }
+}
@@ -0,0 +1,45 @@
+package com.dws.challenge.domain;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * Funds of {@code accountId} reserved for a later transfer to {@code accountToId}, such as a card
+ * authorization. While {@code AUTHORIZED} the amount is out of the account's balance; it is then
+ * captured, in full or in part with the rest going back to the account, or goes back in full when
+ * the hold is voided or reaches {@code expiresAt}.
+ * <p>
+ * Each state is immutable, every change is a new instance.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record Hold(String id, String accountId, String accountToId, @JsonIgnore long amountMinorUnits,
+                   String currency, Instant createdAt, Instant expiresAt, Status status,
+                   @JsonIgnore long capturedMinorUnits, Instant finishedAt) {
+
+    public enum Status {
+        AUTHORIZED, CAPTURED, VOIDED, EXPIRED
+    }
+
+    public BigDecimal getAmount() {
+        return BigDecimal.valueOf(amountMinorUnits, Account.DEFAULT_SCALE);
+    }
+
+    // Null until the hold is captured
+    public BigDecimal getCapturedAmount() {
+        return status == Status.CAPTURED ? BigDecimal.valueOf(capturedMinorUnits, Account.DEFAULT_SCALE) : null;
+    }
+
+    public Hold captured(long capturedMinorUnits, Instant now) {
+        return new Hold(id, accountId, accountToId, amountMinorUnits, currency, createdAt, expiresAt,
+                Status.CAPTURED, capturedMinorUnits, now);
+    }
+
+    // Voided or expired, nothing was captured
+    public Hold released(Status status, Instant now) {
+        return new Hold(id, accountId, accountToId, amountMinorUnits, currency, createdAt, expiresAt, status, 0,
+                now);
+    }
+}
@@ -0,0 +1,64 @@
+package com.dws.challenge.domain;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * A future-dated transfer, or a standing order when it has an {@code interval}: occurrence
+ * {@code n}, counted from zero, is due at {@code startAt} plus {@code n} intervals. The interval is
+ * an ISO 8601 duration, calendar-based ({@code P1M}) or exact ({@code PT12H}); calendar intervals
+ * are added in UTC. {@code maxExecutions} is null for a standing order that runs until cancelled.
+ * <p>
+ * Each state is immutable, every change is a new instance. {@code executions} counts the
+ * occurrences started, {@code inFlight} is set between the start of one and its outcome.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record ScheduledTransfer(String id, String accountFromId, String accountToId,
+                                @JsonIgnore long amountMinorUnits, String currency, Instant startAt, String interval,
+                                Long maxExecutions, long executions, Instant nextExecution, Status status,
+                                Instant lastExecution, Result lastResult, String lastMessage,
+                                @JsonIgnore boolean inFlight, Instant finishedAt) {
+
+    public enum Status {
+        ACTIVE, COMPLETED, CANCELLED
+    }
+
+    public enum Result {
+        SUCCESS, FAILED,
+        // Debited, but the credit on another cluster node is not confirmed yet
+        PENDING,
+        // Started before a restart that left no outcome; it is not run again
+        UNKNOWN
+    }
+
+    public BigDecimal getAmount() {
+        return BigDecimal.valueOf(amountMinorUnits, Account.DEFAULT_SCALE);
+    }
+
+    /**
+     * Starts the next occurrence.
+     *
+     * @param next when the one after it is due, null if this is the last one
+     */
+    public ScheduledTransfer started(Instant now, Instant next) {
+        return new ScheduledTransfer(id, accountFromId, accountToId, amountMinorUnits, currency, startAt, interval,
+                maxExecutions, executions + 1, next, status, now, lastResult, lastMessage, true, finishedAt);
+    }
+
+    // Records the outcome of the occurrence in flight, and completes the transfer after the last one
+    public ScheduledTransfer finished(Result result, String message, Instant now) {
+        boolean completed = status == Status.ACTIVE && nextExecution == null;
+        return new ScheduledTransfer(id, accountFromId, accountToId, amountMinorUnits, currency, startAt, interval,
+                maxExecutions, executions, nextExecution, completed ? Status.COMPLETED : status, lastExecution,
+                result, message, false, completed ? now : finishedAt);
+    }
+
+    public ScheduledTransfer cancelled(Instant now) {
+        return new ScheduledTransfer(id, accountFromId, accountToId, amountMinorUnits, currency, startAt, interval,
+                maxExecutions, executions, null, Status.CANCELLED, lastExecution, lastResult, lastMessage, inFlight,
+                now);
+    }
+}
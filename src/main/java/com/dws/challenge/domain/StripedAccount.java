@@ -0,0 +1,118 @@
+package com.dws.challenge.domain;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.dws.challenge.exception.InsufficientBalanceException;
+import com.dws.challenge.exception.InvalidAmountException;
+
+/**
+ * Account for hot destinations such as fee sinks or settlement omnibus accounts, which are credited
+ * by almost every transfer. The balance is spread over padded cells in the style of
+ * {@link java.util.concurrent.atomic.LongAdder}: a credit adds to the calling thread's cell without
+ * taking any lock, and the balance is the sum of the cells.
+ * <p>
+ * Debits are still serialized by the transfer engine, like those of any other account, but they no
+ * longer exclude credits. A debit checks the sum and then draws the amount from the cells one after
+ * another, so a cell that runs short is simply complemented by the next ones. Credits only ever add
+ * to a cell, which is why the amount seen in a cell can always be taken.
+ * <p>
+ * No cell holds more than {@code Long.MAX_VALUE / cells}, so the balance, their sum, cannot overflow
+ * whatever the credits running at once. A credit goes whole into the first cell, from the calling
+ * thread's, that has room for it.
+ */
+public class StripedAccount extends Account {
+
+    // Longs per cell: two cache lines, so neighbouring cells are not invalidated together
+    private static final int CELL_STRIDE = 16;
+
+    private static final AtomicInteger NEXT_THREAD_CELL = new AtomicInteger();
+    private static final ThreadLocal<Integer> THREAD_CELL = ThreadLocal.withInitial(NEXT_THREAD_CELL::getAndIncrement);
+
+    private final AtomicLongArray cells;
+    private final int cellMask;
+    private final long cellCapacity;
+
+    /**
+     * @param cells number of cells, rounded up to a power of two
+     */
+    public StripedAccount(String accountId, int cells) {
+        this(accountId, DEFAULT_CURRENCY, cells);
+    }
+
+    public StripedAccount(String accountId, String currency, int cells) {
+        super(accountId, currency);
+        int cellCount = cells <= 1 ? 1 : Integer.highestOneBit(cells - 1) << 1;
+        this.cells = new AtomicLongArray(cellCount * CELL_STRIDE);
+        this.cellMask = cellCount - 1;
+        this.cellCapacity = Long.MAX_VALUE / cellCount;
+    }
+
+    public static StripedAccount copyOf(Account account, int cells) {
+        StripedAccount stripedAccount = new StripedAccount(account.getAccountId(), account.getCurrency(), cells);
+        stripedAccount.setBalanceMinorUnits(account.getBalanceMinorUnits());
+        return stripedAccount;
+    }
+
+    @Override
+    public boolean isStriped() {
+        return true;
+    }
+
+    public int getCellCount() {
+        return cellMask + 1;
+    }
+
+    @Override
+    public long getBalanceMinorUnits() {
+        long sum = 0;
+        for (int cell = 0; cell <= cellMask; cell++) {
+            sum += cells.get(cell * CELL_STRIDE);
+        }
+        return sum;
+    }
+
+    // Not atomic with respect to concurrent transfers, meant for setting up and recovering the account
+    @Override
+    public void setBalanceMinorUnits(long balanceMinorUnits) {
+        long remaining = balanceMinorUnits;
+        for (int cell = 0; cell <= cellMask; cell++) {
+            long share = cell == cellMask ? remaining : Math.min(remaining, cellCapacity);
+            cells.set(cell * CELL_STRIDE, share);
+            remaining -= share;
+        }
+    }
+
+    @Override
+    public void debit(long units) {
+        if (getBalanceMinorUnits() < units) {
+            throw new InsufficientBalanceException("Insufficient balance");
+        }
+        long remaining = units;
+        int first = THREAD_CELL.get() & cellMask;
+        for (int i = 0; remaining > 0; i++) {
+            int index = ((first + i) & cellMask) * CELL_STRIDE;
+            long taken = Math.min(cells.get(index), remaining);
+            if (taken > 0) {
+                cells.getAndAdd(index, -taken);
+                remaining -= taken;
+            }
+        }
+    }
+
+    @Override
+    public void credit(long units) {
+        int first = THREAD_CELL.get() & cellMask;
+        for (int i = 0; i <= cellMask; i++) {
+            int index = ((first + i) & cellMask) * CELL_STRIDE;
+            long cell = cells.get(index);
+            while (cell <= cellCapacity - units) {
+                if (cells.compareAndSet(index, cell, cell + units)) {
+                    return;
+                }
+                cell = cells.get(index);
+            }
+        }
+        throw new InvalidAmountException("Balance overflow");
+    }
+}
@@ -0,0 +1,21 @@
+package com.dws.challenge.domain;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+/**
+ * One executed transfer as kept in the transaction history. {@code id} increases in the order the
+ * transfers were recorded and doubles as the pagination cursor. The amount is in the source
+ * account's currency, the credited amount in the destination account's.
+ */
+public record Transaction(long id, Instant timestamp, String accountFromId, String accountToId, long amountMinorUnits,
+                          long creditedMinorUnits) {
+
+    public BigDecimal getAmount() {
+        return BigDecimal.valueOf(amountMinorUnits, Account.DEFAULT_SCALE);
+    }
+
+    public BigDecimal getCreditedAmount() {
+        return BigDecimal.valueOf(creditedMinorUnits, Account.DEFAULT_SCALE);
+    }
+}
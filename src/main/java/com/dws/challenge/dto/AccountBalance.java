@@ -0,0 +1,18 @@
+package com.dws.challenge.dto;
+
+import java.math.BigDecimal;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AccountBalance {
+
+    private String accountId;
+    // Copied from the account once, serializing it does not read the live account again
+    private BigDecimal balance;
+    private String currency;
+}
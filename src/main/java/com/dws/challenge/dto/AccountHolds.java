@@ -0,0 +1,25 @@
+package com.dws.challenge.dto;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import com.dws.challenge.domain.Hold;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AccountHolds {
+
+    private String accountId;
+    // The account's balance, what transfers can spend
+    private BigDecimal availableBalance;
+    // Total of the active holds; available plus held is the ledger balance
+    private BigDecimal heldAmount;
+    private String currency;
+    // Active holds, oldest first
+    private List<Hold> holds;
+}
@@ -0,0 +1,29 @@
+package com.dws.challenge.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AccountImportResult {
+
+    public enum Status {
+        DUPLICATE, INVALID
+    }
+
+    // Line of the rejected account in the submitted NDJSON document, starting at 1
+    private long line;
+    private String accountId;
+    private Status status;
+    private String message;
+
+    public static AccountImportResult duplicate(long line, String accountId, String message) {
+        return new AccountImportResult(line, accountId, Status.DUPLICATE, message);
+    }
+
+    public static AccountImportResult invalid(long line, String accountId, String message) {
+        return new AccountImportResult(line, accountId, Status.INVALID, message);
+    }
+}
@@ -0,0 +1,15 @@
+package com.dws.challenge.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AccountImportSummary {
+
+    private long created;
+    private long duplicates;
+    private long invalid;
+}
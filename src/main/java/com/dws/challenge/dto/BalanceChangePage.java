@@ -0,0 +1,19 @@
+package com.dws.challenge.dto;
+
+import java.util.List;
+
+import com.dws.challenge.domain.BalanceChange;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BalanceChangePage {
+
+    private List<BalanceChange> changes;
+    // Sequence number to poll from next
+    private long next;
+}
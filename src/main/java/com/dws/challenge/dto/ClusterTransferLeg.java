@@ -0,0 +1,23 @@
+package com.dws.challenge.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Message of the cross-partition transfer protocol between cluster nodes. Amounts are in minor
+ * units of the currency of their account.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ClusterTransferLeg {
+
+    private String accountFromId;
+    private String accountToId;
+    private long amount;
+    // Set by the participant on prepare, converted to the currency of the destination; what a commit credits
+    private long creditedAmount;
+    // Sent by the coordinator on prepare as the currency of the source, answered with that of the destination
+    private String currency;
+}
@@ -0,0 +1,23 @@
+package com.dws.challenge.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ContendedAccount {
+
+    private String accountId;
+    // Estimated from the samples: lock waits, and the time spent in them
+    private long waits;
+    private long waitNanos;
+    // How much of waitNanos may belong to accounts this one displaced from the sketch
+    private long errorNanos;
+    // Of the sampled waits, within a quarter of the actual value
+    private long p50Nanos;
+    private long p90Nanos;
+    private long p99Nanos;
+    private long maxNanos;
+}
@@ -0,0 +1,22 @@
+package com.dws.challenge.dto;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Map;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FxRateTable {
+
+    private String base;
+    // Units of each currency per unit of the base currency
+    private Map<String, BigDecimal> rates;
+    // Set in responses only, an update gets the next version
+    private Long version;
+    private Instant updatedAt;
+}
@@ -0,0 +1,12 @@
+package com.dws.challenge.dto;
+
+import java.math.BigDecimal;
+
+import lombok.Data;
+
+@Data
+public class HoldCaptureRequest {
+    // Optional, at most the held amount; the whole hold is captured without one and the rest of a
+    // partial capture goes back to the account
+    private BigDecimal amount;
+}
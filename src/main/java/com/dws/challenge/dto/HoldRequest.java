@@ -0,0 +1,17 @@
+package com.dws.challenge.dto;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+import lombok.Data;
+
+@Data
+public class HoldRequest {
+    // The account a capture transfers the funds to, it must be owned by the same cluster node
+    private String accountToId;
+    private BigDecimal amount;
+    // Optional, currency the amount is given in; it must be the account's currency
+    private String currency;
+    // Optional, when the hold is released if not captured; holds.default-ttl from now without one
+    private Instant expiresAt;
+}
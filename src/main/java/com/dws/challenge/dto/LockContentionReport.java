@@ -0,0 +1,26 @@
+package com.dws.challenge.dto;
+
+import java.time.Instant;
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LockContentionReport {
+
+    private boolean enabled;
+    // The transfer.engine in use; the sharded engine takes no account locks, so it has nothing to report
+    private String engine;
+    private int sampleEvery;
+    // Start of the recording, at startup or the last reset
+    private Instant since;
+    private long samples;
+    // Samples not recorded because another one was being recorded at the same time
+    private long dropped;
+    // Most waited for first
+    private List<ContendedAccount> accounts;
+}
@@ -0,0 +1,12 @@
+package com.dws.challenge.dto;
+
+import java.util.List;
+
+import lombok.Data;
+
+@Data
+public class MultiTransferRequest {
+    private String accountFromId;
+    // Credited in one atomic operation, all from accountFromId
+    private List<TransferLeg> legs;
+}
@@ -0,0 +1,20 @@
+package com.dws.challenge.dto;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+import lombok.Data;
+
+@Data
+public class ScheduledTransferRequest {
+    private String accountToId;
+    private BigDecimal amount;
+    // Optional, currency the amount is given in; it must be the source account's currency
+    private String currency;
+    // When the first transfer is due, a time already passed means now
+    private Instant executeAt;
+    // Optional, ISO 8601 period or duration between transfers of a standing order, e.g. P1M or PT12H
+    private String interval;
+    // Optional, number of transfers of a standing order; it runs until cancelled without one
+    private Long executions;
+}
@@ -0,0 +1,15 @@
+package com.dws.challenge.dto;
+
+import java.math.BigDecimal;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TransferLeg {
+    private String accountToId;
+    private BigDecimal amount;
+}
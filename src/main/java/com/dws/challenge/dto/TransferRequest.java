@@ -2,11 +2,22 @@ package com.dws.challenge.dto;
 
 import java.math.BigDecimal;
 
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
 import lombok.Data;
 
 @Data
 public class TransferRequest {
+    @NotNull
+    @NotEmpty
     private String accountFromId;
+    @NotNull
+    @NotEmpty
     private String accountToId;
+    @NotNull
     private BigDecimal amount;
+    // Optional, retries with the same key return the first outcome instead of transferring again
+    private String idempotencyKey;
+    // Optional, currency the amount is given in; it must be the source account's currency
+    private String currency;
 }
\ No newline at end of file
@@ -0,0 +1,34 @@
+package com.dws.challenge.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TransferResult {
+
+    public enum Status {
+        SUCCESS, FAILED,
+        // Debited, but the credit on another cluster node is not confirmed yet
+        PENDING
+    }
+
+    // Position of the transfer in the submitted batch
+    private int index;
+    private Status status;
+    private String message;
+
+    public static TransferResult success(int index) {
+        return new TransferResult(index, Status.SUCCESS, null);
+    }
+
+    public static TransferResult failed(int index, String message) {
+        return new TransferResult(index, Status.FAILED, message);
+    }
+
+    public static TransferResult pending(int index, String message) {
+        return new TransferResult(index, Status.PENDING, message);
+    }
+}
@@ -0,0 +1,11 @@
+package com.dws.challenge.exception;
+
+/**
+ * Thrown when a transfer refers to an account that does not exist.
+ */
+public class AccountNotFoundException extends IllegalArgumentException {
+
+  public AccountNotFoundException(String message) {
+    super(message);
+  }
+}
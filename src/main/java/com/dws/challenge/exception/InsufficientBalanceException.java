@@ -0,0 +1,11 @@
+package com.dws.challenge.exception;
+
+/**
+ * Thrown when the source account does not hold enough funds for a debit.
+ */
+public class InsufficientBalanceException extends IllegalArgumentException {
+
+  public InsufficientBalanceException(String message) {
+    super(message);
+  }
+}
@@ -0,0 +1,11 @@
+package com.dws.challenge.exception;
+
+/**
+ * Thrown when a transfer amount is not positive, not representable or would overflow a balance.
+ */
+public class InvalidAmountException extends IllegalArgumentException {
+
+  public InvalidAmountException(String message) {
+    super(message);
+  }
+}
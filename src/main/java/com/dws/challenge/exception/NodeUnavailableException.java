@@ -0,0 +1,12 @@
+package com.dws.challenge.exception;
+
+/**
+ * Thrown when the cluster node that owns an account did not answer, or answered with an error,
+ * before anything was moved.
+ */
+public class NodeUnavailableException extends RuntimeException {
+
+  public NodeUnavailableException(String message) {
+    super(message);
+  }
+}
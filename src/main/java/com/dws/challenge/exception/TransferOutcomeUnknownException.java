@@ -0,0 +1,13 @@
+package com.dws.challenge.exception;
+
+/**
+ * Thrown for a retry of an idempotent transfer whose first attempt failed after it started moving
+ * money, so that it is not known whether it took effect. The transfer is not run again; the client
+ * has to check the account history before retrying it under a new idempotency key.
+ */
+public class TransferOutcomeUnknownException extends RuntimeException {
+
+  public TransferOutcomeUnknownException(String message, Throwable cause) {
+    super(message, cause);
+  }
+}
@@ -0,0 +1,27 @@
+package com.dws.challenge.exception;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Thrown when a transfer to an account of another cluster node has debited its source, but the
+ * owner of the destination did not confirm the credit in time. The transfer is not lost: it is
+ * either credited or refunded in the background, once that node answers, which completes
+ * {@link #getSettlement()}.
+ */
+public class TransferPendingException extends RuntimeException {
+
+  private final transient CompletableFuture<Void> settlement;
+
+  public TransferPendingException(String message, CompletableFuture<Void> settlement) {
+    super(message);
+    this.settlement = settlement;
+  }
+
+  /**
+   * Completes normally once the transfer is credited, or with an {@link InvalidAmountException}
+   * once it is refused and refunded.
+   */
+  public CompletableFuture<Void> getSettlement() {
+    return settlement;
+  }
+}
@@ -0,0 +1,20 @@
+package com.dws.challenge.exception;
+
+import java.time.Duration;
+
+import lombok.Getter;
+
+/**
+ * Thrown when admission control turns a transfer away before executing it. The client may retry
+ * after {@link #getRetryAfter()}.
+ */
+@Getter
+public class TransferRejectedException extends RuntimeException {
+
+  private final Duration retryAfter;
+
+  public TransferRejectedException(String message, Duration retryAfter) {
+    super(message);
+    this.retryAfter = retryAfter;
+  }
+}
@@ -0,0 +1,13 @@
+package com.dws.challenge.exception;
+
+/**
+ * Thrown when a cluster node is asked to commit a cross-partition transfer it never prepared, or
+ * no longer remembers. It may have applied it before it restarted, so this tells nothing of the
+ * transfer's outcome.
+ */
+public class UnknownTransactionException extends IllegalStateException {
+
+  public UnknownTransactionException(String message) {
+    super(message);
+  }
+}
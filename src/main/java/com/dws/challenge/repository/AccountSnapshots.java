@@ -0,0 +1,267 @@
+package com.dws.challenge.repository;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+import com.dws.challenge.domain.Account;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Reads and writes snapshot files of the journaled account store. A snapshot holds the state folded
+ * from every journal segment below its covered segment index, so recovery only replays the
+ * segments written after it.
+ * <p>
+ * Layout (version 2): a header with magic, version, covered segment index, chunk count, account
+ * count and a table of (offset, length, CRC32C) per chunk, closed by the CRC32C of the header
+ * itself. Each chunk is a run of account records: short id length, UTF-8 id, created flag byte,
+ * short currency length, ASCII currency and long balance in minor units. Chunks are independent so
+ * they are encoded and decoded in parallel. Version 1 snapshots, whose records have no currency, are
+ * still read; their accounts get {@link Account#DEFAULT_CURRENCY}.
+ */
+@Slf4j
+final class AccountSnapshots {
+
+    private static final int MAGIC = 0x44575353; // "DWSS"
+    private static final short VERSION = 2;
+    private static final short VERSION_WITHOUT_CURRENCY = 1;
+    private static final String SUFFIX = ".snapshot";
+    private static final int FIXED_HEADER_LENGTH = Integer.BYTES + Short.BYTES + Integer.BYTES + Integer.BYTES + Long.BYTES;
+    private static final int CHUNK_ENTRY_LENGTH = Long.BYTES + Integer.BYTES + Integer.BYTES;
+    private static final int WRITE_BUFFER_SIZE = 1 << 16;
+
+    private record EncodedChunk(ByteBuffer bytes, int crc) {
+    }
+
+    private final Path directory;
+    private final String name;
+
+    AccountSnapshots(Path directory, String name) {
+        this.directory = directory;
+        this.name = name;
+    }
+
+    /**
+     * Loads the newest snapshot into {@code into}, decoding its chunks on {@code parallelism} threads.
+     *
+     * @return the journal segment index the snapshot covers, or 0 if there is no snapshot
+     * @throws IllegalStateException if the snapshot has an unknown version or a checksum mismatch
+     */
+    int loadLatest(Map<String, RecoveredAccount> into, int parallelism) throws IOException {
+        Optional<Path> latest = list().stream().max(Comparator.comparingInt(this::coveredSegments));
+        if (latest.isEmpty()) {
+            return 0;
+        }
+
+        Path path = latest.get();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer fixedHeader = read(channel, 0, FIXED_HEADER_LENGTH);
+            if (fixedHeader.getInt() != MAGIC) {
+                throw new IllegalStateException(path + " is not an account snapshot");
+            }
+            short version = fixedHeader.getShort();
+            if (version != VERSION && version != VERSION_WITHOUT_CURRENCY) {
+                throw new IllegalStateException("Unsupported snapshot version " + version + " in " + path);
+            }
+            int coveredSegments = fixedHeader.getInt();
+            int chunkCount = fixedHeader.getInt();
+            long accountCount = fixedHeader.getLong();
+
+            ByteBuffer header = read(channel, 0, FIXED_HEADER_LENGTH + chunkCount * CHUNK_ENTRY_LENGTH + Integer.BYTES);
+            verify(header.slice(0, header.limit() - Integer.BYTES), header.getInt(header.limit() - Integer.BYTES), path, "header");
+
+            forEachChunk(chunkCount, parallelism, path, chunk -> {
+                int entry = FIXED_HEADER_LENGTH + chunk * CHUNK_ENTRY_LENGTH;
+                decodeChunk(channel, header.getLong(entry), header.getInt(entry + Long.BYTES),
+                        header.getInt(entry + Long.BYTES + Integer.BYTES), version, path, into);
+            });
+
+            log.info("Loaded {} accounts from snapshot {} in {} chunk(s)", accountCount, path.getFileName(), chunkCount);
+            return coveredSegments;
+        }
+    }
+
+    /**
+     * Writes a snapshot of {@code accounts} covering the journal below {@code coveredSegments},
+     * encoding its chunks on {@code parallelism} threads. The file is written under a temporary name,
+     * forced, atomically renamed into place and the directory forced, so that the snapshot is durable
+     * before the caller deletes the journal segments it covers.
+     */
+    void write(int coveredSegments, Map<String, RecoveredAccount> accounts, int chunkCount, int parallelism)
+            throws IOException {
+        Path target = directory.resolve(String.format("%s-%010d%s", name, coveredSegments, SUFFIX));
+        Path temporary = directory.resolve(target.getFileName() + ".tmp");
+        int headerLength = FIXED_HEADER_LENGTH + chunkCount * CHUNK_ENTRY_LENGTH + Integer.BYTES;
+        ByteBuffer header = ByteBuffer.allocate(headerLength);
+        header.putInt(MAGIC).putShort(VERSION).putInt(coveredSegments).putInt(chunkCount).putLong(accounts.size());
+
+        List<Map.Entry<String, RecoveredAccount>> entries = new ArrayList<>(accounts.entrySet());
+        int accountsPerChunk = Math.max(1, (entries.size() + chunkCount - 1) / chunkCount);
+        EncodedChunk[] chunks = new EncodedChunk[chunkCount];
+        forEachChunk(chunkCount, parallelism, target, chunk -> {
+            int from = Math.min(entries.size(), chunk * accountsPerChunk);
+            chunks[chunk] = encodeChunk(entries.subList(from, Math.min(entries.size(), from + accountsPerChunk)));
+        });
+
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            long offset = headerLength;
+            for (EncodedChunk chunk : chunks) {
+                int length = chunk.bytes().remaining();
+                write(channel, chunk.bytes(), offset);
+                header.putLong(offset).putInt(length).putInt(chunk.crc());
+                offset += length;
+            }
+
+            CRC32C crc = new CRC32C();
+            crc.update(header.array(), 0, header.position());
+            header.putInt((int) crc.getValue());
+            header.flip();
+            write(channel, header, 0);
+            channel.force(true);
+        }
+        Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        forceDirectory();
+    }
+
+    void deleteOlderThan(int coveredSegments) throws IOException {
+        for (Path path : list()) {
+            if (coveredSegments(path) < coveredSegments) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    private void decodeChunk(FileChannel channel, long offset, int length, int expectedCrc, short version, Path path,
+            Map<String, RecoveredAccount> into) {
+        try {
+            ByteBuffer chunk = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+            verify(chunk.duplicate(), expectedCrc, path, "chunk at offset " + offset);
+            while (chunk.hasRemaining()) {
+                byte[] accountId = new byte[chunk.getShort()];
+                chunk.get(accountId);
+                boolean created = chunk.get() != 0;
+                String currency = Account.DEFAULT_CURRENCY;
+                if (version != VERSION_WITHOUT_CURRENCY) {
+                    byte[] code = new byte[chunk.getShort()];
+                    chunk.get(code);
+                    currency = new String(code, StandardCharsets.US_ASCII).intern();
+                }
+                into.put(new String(accountId, StandardCharsets.UTF_8),
+                        new RecoveredAccount(created, currency, chunk.getLong()));
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private List<Path> list() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> {
+                String fileName = path.getFileName().toString();
+                return fileName.startsWith(name + "-") && fileName.endsWith(SUFFIX);
+            }).toList();
+        }
+    }
+
+    private int coveredSegments(Path path) {
+        String fileName = path.getFileName().toString();
+        return Integer.parseInt(fileName.substring(name.length() + 1, fileName.length() - SUFFIX.length()));
+    }
+
+    // Runs action for every chunk index on a pool of its own, parallel streams otherwise share the common pool
+    private static void forEachChunk(int chunkCount, int parallelism, Path path, IntConsumer action)
+            throws IOException {
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            pool.submit(() -> IntStream.range(0, chunkCount).parallel().forEach(action)).get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while processing " + path, ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IOException("Could not process " + path, ex.getCause());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static EncodedChunk encodeChunk(List<Map.Entry<String, RecoveredAccount>> entries) {
+        ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+        for (Map.Entry<String, RecoveredAccount> entry : entries) {
+            byte[] accountId = entry.getKey().getBytes(StandardCharsets.UTF_8);
+            byte[] currency = entry.getValue().currency.getBytes(StandardCharsets.US_ASCII);
+            int length = Short.BYTES + accountId.length + 1 + Short.BYTES + currency.length + Long.BYTES;
+            if (buffer.remaining() < length) {
+                buffer = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + length))
+                        .put(buffer.flip());
+            }
+            buffer.putShort((short) accountId.length).put(accountId)
+                    .put((byte) (entry.getValue().created ? 1 : 0))
+                    .putShort((short) currency.length).put(currency)
+                    .putLong(entry.getValue().balance);
+        }
+        buffer.flip();
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.duplicate());
+        return new EncodedChunk(buffer, (int) crc.getValue());
+    }
+
+    private static void write(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, position + buffer.position());
+        }
+    }
+
+    // Makes the rename durable; platforms that cannot open a directory, Windows among them, have nothing to force
+    private void forceDirectory() throws IOException {
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(directory, StandardOpenOption.READ);
+        } catch (IOException ex) {
+            log.debug("Cannot open {} to force it", directory, ex);
+            return;
+        }
+        try (channel) {
+            channel.force(true);
+        }
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IllegalStateException("Snapshot is truncated");
+            }
+        }
+        return buffer.flip();
+    }
+
+    private static void verify(ByteBuffer bytes, int expectedCrc, Path path, String part) {
+        CRC32C crc = new CRC32C();
+        crc.update(bytes);
+        if ((int) crc.getValue() != expectedCrc) {
+            throw new IllegalStateException("Checksum mismatch in " + part + " of snapshot " + path);
+        }
+    }
+}
@@ -1,5 +1,8 @@
 package com.dws.challenge.repository;
 
+import java.util.List;
+import java.util.function.Consumer;
+
 import com.dws.challenge.domain.Account;
 import com.dws.challenge.exception.DuplicateAccountIdException;
 
@@ -10,4 +13,48 @@ public interface AccountsRepository {
   Account getAccount(String accountId);
 
   void clearAccounts();
+
+  /**
+   * Passes every account to {@code action}, without copying the accounts first. Accounts created or
+   * removed while the iteration runs may or may not be seen.
+   */
+  void forEachAccount(Consumer<Account> action);
+
+  /**
+   * Called once a transfer has been applied: {@code amount} minor units were debited and
+   * {@code creditedAmount}, the same amount unless the transfer crossed currencies, credited. In a
+   * cluster one of the accounts may live on another node, which records its own side. Repositories
+   * that persist balances record it here; by default nothing is done.
+   */
+  default void recordTransfer(String accountFromId, String accountToId, long amount, long creditedAmount) {
+    awaitDurable(appendTransfer(accountFromId, accountToId, amount, creditedAmount));
+  }
+
+  /**
+   * Journals a transfer from the {@code record} callback of the transfer engine, while the engine
+   * still holds the accounts, so that the journal sees the writes of an account in the order they
+   * happen. A transfer that cannot be journaled throws, and the engine undoes it. By default nothing
+   * is journaled.
+   *
+   * @return the position to pass to {@link #awaitDurable(long)}
+   */
+  default long appendTransfer(String accountFromId, String accountToId, long amount, long creditedAmount) {
+    return 0;
+  }
+
+  /**
+   * Like {@link #appendTransfer}, for every leg of a multi-leg transfer at once: either all of them
+   * are journaled or none is.
+   */
+  default long appendTransfers(String accountFromId, List<String> accountToIds, long[] amounts,
+                               long[] creditedAmounts) {
+    return 0;
+  }
+
+  /**
+   * Blocks until everything journaled up to {@code position} is durable, which the engine does not
+   * wait for while it holds the accounts.
+   */
+  default void awaitDurable(long position) {
+  }
 }
@@ -0,0 +1,286 @@
+package com.dws.challenge.repository;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.exception.DuplicateAccountIdException;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Keeps the same {@link ConcurrentHashMap} working set as {@link AccountsRepositoryInMemory}, and
+ * appends every account creation and transfer to a {@link MappedJournal}. Callers return only once
+ * their record is durable, and the accounts are rebuilt from the journal on startup.
+ * <p>
+ * Transfers are appended by the transfer engine while it holds the accounts and before the new
+ * balances are published, and undone if the append fails. The journal thus holds every transfer
+ * that was applied and no other, and sees the credits of an account before any debit they paid for,
+ * so no prefix of it, which is what a crash leaves, replays to a negative balance.
+ * <p>
+ * A background task periodically seals the current journal segment and folds the sealed segments
+ * into a new snapshot, starting from the previous one. It works from the files only, never from the
+ * live accounts, so snapshots are consistent by construction and never block transfers. Startup
+ * loads the newest snapshot and replays only the segments written after it.
+ */
+@Slf4j
+@Repository
+@ConditionalOnProperty(name = "accounts.repository", havingValue = "journal")
+public class AccountsRepositoryJournaled implements AccountsRepository {
+
+    private static final String JOURNAL_NAME = "accounts";
+
+    private static final byte ACCOUNT_CREATED = 1;
+    private static final byte TRANSFER = 2;
+    private static final byte ACCOUNTS_CLEARED = 3;
+    // A transfer across currencies, whose source and destination move by different amounts
+    private static final byte CONVERTED_TRANSFER = 4;
+    // The legs of a multi-leg transfer, journaled together as they are applied together
+    private static final byte MULTI_TRANSFER = 5;
+
+    private final Map<String, Account> accounts = new ConcurrentHashMap<>();
+    private final MappedJournal journal;
+    private final AccountSnapshots snapshots;
+    private final int snapshotParallelism;
+    private final ReentrantLock snapshotLock = new ReentrantLock();
+    private final ScheduledExecutorService snapshotScheduler;
+
+    @Autowired
+    public AccountsRepositoryJournaled(JournalProperties properties, StripedAccountsProperties stripedAccounts)
+            throws IOException {
+        long started = System.nanoTime();
+        this.snapshots = new AccountSnapshots(properties.getDirectory(), JOURNAL_NAME);
+        this.snapshotParallelism = properties.getSnapshotParallelism() > 0
+                ? properties.getSnapshotParallelism() : Runtime.getRuntime().availableProcessors();
+
+        Map<String, RecoveredAccount> recovered = new ConcurrentHashMap<>();
+        int firstSegment = snapshots.loadLatest(recovered, snapshotParallelism);
+        this.journal = MappedJournal.open(properties.getDirectory(), JOURNAL_NAME, properties, firstSegment,
+                (type, payload) -> recover(recovered, type, payload));
+
+        recovered.forEach((accountId, state) -> {
+            if (!state.created) {
+                // Such as the other side of transfers to and from accounts of other cluster nodes
+                log.debug("Ignoring journaled transfers of account {} not created here", accountId);
+                return;
+            }
+            Account account = new Account(accountId, state.currency);
+            account.setBalanceMinorUnits(state.balance);
+            accounts.put(accountId, stripedAccounts.apply(account));
+        });
+        log.info("Recovered {} accounts in {} ms", accounts.size(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+
+        long intervalMillis = properties.getSnapshotInterval().toMillis();
+        if (intervalMillis > 0) {
+            this.snapshotScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "journal-snapshotter-" + JOURNAL_NAME);
+                thread.setDaemon(true);
+                return thread;
+            });
+            snapshotScheduler.scheduleWithFixedDelay(this::snapshotQuietly, intervalMillis, intervalMillis,
+                    TimeUnit.MILLISECONDS);
+        } else {
+            this.snapshotScheduler = null;
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        if (snapshotScheduler != null) {
+            snapshotScheduler.shutdownNow();
+        }
+        journal.close();
+    }
+
+    /**
+     * Folds every sealed journal segment into a new snapshot and deletes the segments it covers.
+     * Does nothing if another snapshot is in progress or nothing was journaled since the last one.
+     */
+    public void snapshot() throws IOException {
+        if (!snapshotLock.tryLock()) {
+            return;
+        }
+        try {
+            long started = System.nanoTime();
+            int sealedSegments = journal.sealCurrentSegment();
+            Map<String, RecoveredAccount> state = new ConcurrentHashMap<>();
+            int coveredSegments = snapshots.loadLatest(state, snapshotParallelism);
+            if (coveredSegments >= sealedSegments) {
+                return;
+            }
+
+            journal.replaySealed(coveredSegments, sealedSegments, (type, payload) -> recover(state, type, payload));
+            snapshots.write(sealedSegments, state, snapshotParallelism, snapshotParallelism);
+            journal.deleteSegmentsBefore(sealedSegments);
+            snapshots.deleteOlderThan(sealedSegments);
+            log.info("Snapshot of {} accounts covering journal segments below {} written in {} ms", state.size(),
+                    sealedSegments, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+        } finally {
+            snapshotLock.unlock();
+        }
+    }
+
+    private void snapshotQuietly() {
+        try {
+            snapshot();
+        } catch (IOException | RuntimeException ex) {
+            log.error("Could not write account snapshot", ex);
+        }
+    }
+
+    @Override
+    public void createAccount(Account account) throws DuplicateAccountIdException {
+        byte[] accountId = encode(account.getAccountId());
+        byte[] currency = encode(account.getCurrency());
+        int scale = account.getScale();
+        // Read before the account is published: later transfers are journaled as deltas of their own
+        long balance = account.getBalanceMinorUnits();
+
+        // Appended before the account is published, so that no transfer into it can reach the journal
+        // ahead of its creation; an append that fails publishes nothing
+        long[] position = new long[1];
+        Account previousAccount = accounts.compute(account.getAccountId(), (id, existing) -> {
+            if (existing != null) {
+                return existing;
+            }
+            position[0] = journal.append(ACCOUNT_CREATED,
+                    Short.BYTES + accountId.length + Integer.BYTES + Long.BYTES + Short.BYTES + currency.length,
+                    buffer -> buffer.putShort((short) accountId.length).put(accountId).putInt(scale).putLong(balance)
+                            .putShort((short) currency.length).put(currency));
+            return account;
+        });
+        if (previousAccount != account) {
+            throw new DuplicateAccountIdException(
+                    "Account id " + account.getAccountId() + " already exists!");
+        }
+
+        try {
+            journal.awaitDurable(position[0]);
+        } catch (RuntimeException ex) {
+            accounts.remove(account.getAccountId(), account);
+            throw ex;
+        }
+    }
+
+    @Override
+    public Account getAccount(String accountId) {
+        return accounts.get(accountId);
+    }
+
+    @Override
+    public void clearAccounts() {
+        journal.awaitDurable(journal.append(ACCOUNTS_CLEARED, 0, buffer -> { }));
+        accounts.clear();
+    }
+
+    @Override
+    public void forEachAccount(Consumer<Account> action) {
+        accounts.values().forEach(action);
+    }
+
+    @Override
+    public long appendTransfer(String accountFromId, String accountToId, long amount, long creditedAmount) {
+        byte[] fromId = encode(accountFromId);
+        byte[] toId = encode(accountToId);
+        boolean converted = creditedAmount != amount;
+        return journal.append(converted ? CONVERTED_TRANSFER : TRANSFER,
+                Short.BYTES + fromId.length + Short.BYTES + toId.length + Long.BYTES + (converted ? Long.BYTES : 0),
+                buffer -> {
+                    buffer.putShort((short) fromId.length).put(fromId)
+                            .putShort((short) toId.length).put(toId)
+                            .putLong(amount);
+                    if (converted) {
+                        buffer.putLong(creditedAmount);
+                    }
+                });
+    }
+
+    @Override
+    public long appendTransfers(String accountFromId, List<String> accountToIds, long[] amounts,
+            long[] creditedAmounts) {
+        if (accountToIds.size() > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many legs to journal");
+        }
+        byte[] fromId = encode(accountFromId);
+        byte[][] toIds = new byte[accountToIds.size()][];
+        int length = Short.BYTES + fromId.length + Short.BYTES;
+        for (int leg = 0; leg < toIds.length; leg++) {
+            toIds[leg] = encode(accountToIds.get(leg));
+            length += Short.BYTES + toIds[leg].length + Long.BYTES + Long.BYTES;
+        }
+        return journal.append(MULTI_TRANSFER, length, buffer -> {
+            buffer.putShort((short) fromId.length).put(fromId).putShort((short) toIds.length);
+            for (int leg = 0; leg < toIds.length; leg++) {
+                buffer.putShort((short) toIds[leg].length).put(toIds[leg])
+                        .putLong(amounts[leg]).putLong(creditedAmounts[leg]);
+            }
+        });
+    }
+
+    @Override
+    public void awaitDurable(long position) {
+        journal.awaitDurable(position);
+    }
+
+    // Balances are rebuilt as the initial balance plus the sum of all transfer deltas. A transfer into an
+    // account is only ever appended after its creation, which is appended before the account is published,
+    // so a crash never keeps a transfer's debit without the creation of the account it credited
+    private static void recover(Map<String, RecoveredAccount> recovered, byte type, ByteBuffer payload) {
+        switch (type) {
+            case ACCOUNT_CREATED -> {
+                RecoveredAccount account = recovered.computeIfAbsent(decode(payload), id -> new RecoveredAccount());
+                payload.getInt(); // scale, every account uses Account.DEFAULT_SCALE
+                account.balance += payload.getLong();
+                // Records written before accounts had a currency end here
+                account.currency = payload.hasRemaining() ? decode(payload).intern() : Account.DEFAULT_CURRENCY;
+                account.created = true;
+            }
+            case TRANSFER, CONVERTED_TRANSFER -> {
+                RecoveredAccount accountFrom = recovered.computeIfAbsent(decode(payload), id -> new RecoveredAccount());
+                RecoveredAccount accountTo = recovered.computeIfAbsent(decode(payload), id -> new RecoveredAccount());
+                long amount = payload.getLong();
+                accountFrom.balance -= amount;
+                accountTo.balance += type == CONVERTED_TRANSFER ? payload.getLong() : amount;
+            }
+            case MULTI_TRANSFER -> {
+                RecoveredAccount accountFrom = recovered.computeIfAbsent(decode(payload), id -> new RecoveredAccount());
+                for (int legs = payload.getShort(); legs > 0; legs--) {
+                    RecoveredAccount accountTo = recovered.computeIfAbsent(decode(payload), id -> new RecoveredAccount());
+                    accountFrom.balance -= payload.getLong();
+                    accountTo.balance += payload.getLong();
+                }
+            }
+            case ACCOUNTS_CLEARED -> recovered.clear();
+            default -> throw new IllegalStateException("Unknown account journal record type " + type);
+        }
+    }
+
+    private static byte[] encode(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Account id or currency is too long");
+        }
+        return bytes;
+    }
+
+    private static String decode(ByteBuffer payload) {
+        byte[] bytes = new byte[payload.getShort()];
+        payload.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,323 @@
+package com.dws.challenge.repository;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.exception.DuplicateAccountIdException;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Keeps accounts off the heap, in an open-addressing hash table of fixed-size slots holding the
+ * account id, the currency, the balance in minor units and the optimistic commit version. The table is split
+ * into segments of direct {@link ByteBuffer}s, each probed linearly on its own, so tens of millions
+ * of accounts cost the garbage collector nothing to trace.
+ * <p>
+ * Lookups are lock-free: a slot's tag is published by a release store once the rest of the slot is
+ * written, and slots are never moved or removed individually. Creations take the lock of their
+ * segment. {@link #getAccount(String)} returns a short-lived view of the slot; instead of a lock of
+ * its own every view shares one of {@code accounts.offheap.lock-stripes} locks, picked by id hash.
+ * <p>
+ * {@linkplain Account#isStriped() Striped} accounts keep their cells on the heap, their slot only
+ * reserves the id. The table is sized once from {@code accounts.offheap.capacity} and does not grow.
+ * <p>
+ * The segments are {@link ByteBuffer}s rather than {@code MemorySegment}s because the foreign memory
+ * API is still a preview API in Java 21, and would need {@code --enable-preview} for every build and run.
+ */
+@Slf4j
+@Repository
+@ConditionalOnProperty(name = "accounts.repository", havingValue = "offheap")
+public class AccountsRepositoryOffHeap implements AccountsRepository {
+
+    // Slot layout; the tag is the id hash with the low bit set, zero marks a free slot
+    private static final int TAG = 0;
+    private static final int BALANCE = 8;
+    private static final int VERSION = 16;
+    private static final int CURRENCY = 24;
+    private static final int ID_LENGTH = 28;
+    private static final int ID = 30;
+
+    private static final int MAX_SEGMENT_BYTES = 1 << 30;
+    private static final int MAX_LOCK_STRIPES = 1 << 20;
+
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    private final int maxIdBytes;
+    private final int slotSize;
+    private final int slotMask;
+    private final int maxSegmentAccounts;
+    private final ByteBuffer[] segments;
+    private final int[] segmentAccounts;
+    private final ReentrantLock[] segmentLocks;
+    private final ReentrantLock[] lockStripes;
+    private final Map<String, Account> stripedAccounts = new ConcurrentHashMap<>();
+    // Views share the currency strings, there are only a few of them
+    private final Map<Integer, String> currencies = new ConcurrentHashMap<>();
+
+    @Autowired
+    public AccountsRepositoryOffHeap(OffHeapAccountsProperties properties) {
+        this.maxIdBytes = properties.getMaxIdBytes();
+        this.slotSize = (ID + maxIdBytes + 7) & ~7;
+
+        long slots = Long.highestOneBit(Math.max(properties.getCapacity(), 1024) - 1) << 1;
+        long maxSegmentSlots = Integer.highestOneBit(MAX_SEGMENT_BYTES / slotSize);
+        // Enough segments to stay below the ByteBuffer size limit, and to let creations run in parallel
+        int segmentCount = (int) Math.max(slots / maxSegmentSlots, Math.max(1, Math.min(64, slots >>> 14)));
+        int segmentSlots = (int) (slots / segmentCount);
+        this.slotMask = segmentSlots - 1;
+        this.maxSegmentAccounts = segmentSlots / 4 * 3;
+
+        this.segments = new ByteBuffer[segmentCount];
+        this.segmentAccounts = new int[segmentCount];
+        this.segmentLocks = new ReentrantLock[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = ByteBuffer.allocateDirect(segmentSlots * slotSize).order(ByteOrder.nativeOrder());
+            segmentLocks[i] = new ReentrantLock();
+        }
+
+        int stripes = Math.min(MAX_LOCK_STRIPES, properties.getLockStripes());
+        this.lockStripes = new ReentrantLock[stripes <= 1 ? 1 : Integer.highestOneBit(stripes - 1) << 1];
+        for (int i = 0; i < lockStripes.length; i++) {
+            lockStripes[i] = new ReentrantLock();
+        }
+        log.info("Allocated {} account slots of {} bytes in {} off-heap segments, {} MiB", slots, slotSize,
+                segmentCount, slots * slotSize >> 20);
+    }
+
+    @Override
+    public void createAccount(Account account) throws DuplicateAccountIdException {
+        String accountId = account.getAccountId();
+        byte[] id = accountId.getBytes(StandardCharsets.UTF_8);
+        if (id.length > maxIdBytes) {
+            throw new IllegalArgumentException("Account id is longer than " + maxIdBytes + " bytes");
+        }
+        byte[] currency = account.getCurrency().getBytes(StandardCharsets.US_ASCII);
+        if (currency.length != 3) {
+            throw new IllegalArgumentException("Currency must be a three letter code");
+        }
+        long hash = hash(accountId);
+        int segmentIndex = segmentIndex(hash);
+        ByteBuffer segment = segments[segmentIndex];
+
+        ReentrantLock segmentLock = segmentLocks[segmentIndex];
+        segmentLock.lock();
+        try {
+            if (find(segment, hash, id) >= 0) {
+                throw new DuplicateAccountIdException("Account id " + accountId + " already exists!");
+            }
+            if (segmentAccounts[segmentIndex] == maxSegmentAccounts) {
+                throw new IllegalStateException("Account table is full, accounts.offheap.capacity must be raised");
+            }
+
+            // Creations are serialized per segment, so the first free slot of the probe sequence stays free
+            int offset = firstFreeSlot(segment, hash);
+            segment.putLong(offset + BALANCE, account.getBalanceMinorUnits());
+            segment.putLong(offset + VERSION, 0);
+            segment.putInt(offset + CURRENCY, (currency[0] & 0xFF) << 16 | (currency[1] & 0xFF) << 8 | currency[2] & 0xFF);
+            segment.putShort(offset + ID_LENGTH, (short) id.length);
+            segment.put(offset + ID, id);
+            if (account.isStriped()) {
+                stripedAccounts.put(accountId, account);
+            }
+            LONGS.setRelease(segment, offset + TAG, hash);
+            segmentAccounts[segmentIndex]++;
+        } finally {
+            segmentLock.unlock();
+        }
+    }
+
+    @Override
+    public Account getAccount(String accountId) {
+        if (!stripedAccounts.isEmpty()) {
+            Account stripedAccount = stripedAccounts.get(accountId);
+            if (stripedAccount != null) {
+                return stripedAccount;
+            }
+        }
+        byte[] id = accountId.getBytes(StandardCharsets.UTF_8);
+        if (id.length > maxIdBytes) {
+            return null;
+        }
+        long hash = hash(accountId);
+        ByteBuffer segment = segments[segmentIndex(hash)];
+        int offset = find(segment, hash, id);
+        return offset < 0 ? null : view(accountId, segment, offset, hash);
+    }
+
+    /**
+     * Frees every slot. Views handed out before must not be used afterwards, as their slots may be
+     * taken by new accounts.
+     */
+    @Override
+    public void clearAccounts() {
+        for (ReentrantLock segmentLock : segmentLocks) {
+            segmentLock.lock();
+        }
+        try {
+            for (int i = 0; i < segments.length; i++) {
+                ByteBuffer segment = segments[i];
+                for (int offset = 0; offset < segment.capacity(); offset += slotSize) {
+                    LONGS.setRelease(segment, offset + TAG, 0L);
+                }
+                segmentAccounts[i] = 0;
+            }
+            stripedAccounts.clear();
+        } finally {
+            for (ReentrantLock segmentLock : segmentLocks) {
+                segmentLock.unlock();
+            }
+        }
+    }
+
+    @Override
+    public void forEachAccount(Consumer<Account> action) {
+        for (ByteBuffer segment : segments) {
+            for (int offset = 0; offset < segment.capacity(); offset += slotSize) {
+                long hash = (long) LONGS.getAcquire(segment, offset + TAG);
+                if (hash == 0) {
+                    continue;
+                }
+                byte[] id = new byte[segment.getShort(offset + ID_LENGTH)];
+                segment.get(offset + ID, id);
+                String accountId = new String(id, StandardCharsets.UTF_8);
+                Account stripedAccount = stripedAccounts.get(accountId);
+                action.accept(stripedAccount != null ? stripedAccount
+                        : view(accountId, segment, offset, hash));
+            }
+        }
+    }
+
+    // Returns the offset of the account's slot, or -1
+    private int find(ByteBuffer segment, long hash, byte[] id) {
+        int slot = slotIndex(hash);
+        for (int probes = 0; probes <= slotMask; probes++) {
+            int offset = slot * slotSize;
+            long tag = (long) LONGS.getAcquire(segment, offset + TAG);
+            if (tag == 0) {
+                return -1;
+            }
+            if (tag == hash && idEquals(segment, offset, id)) {
+                return offset;
+            }
+            slot = (slot + 1) & slotMask;
+        }
+        return -1;
+    }
+
+    private int firstFreeSlot(ByteBuffer segment, long hash) {
+        int slot = slotIndex(hash);
+        while ((long) LONGS.getAcquire(segment, slot * slotSize + TAG) != 0) {
+            slot = (slot + 1) & slotMask;
+        }
+        return slot * slotSize;
+    }
+
+    private static boolean idEquals(ByteBuffer segment, int offset, byte[] id) {
+        if (segment.getShort(offset + ID_LENGTH) != id.length) {
+            return false;
+        }
+        for (int i = 0; i < id.length; i++) {
+            if (segment.get(offset + ID + i) != id[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Slot, segment and lock stripe are taken from different bits of the hash
+    private int slotIndex(long hash) {
+        return (int) (hash >>> 1) & slotMask;
+    }
+
+    private int segmentIndex(long hash) {
+        return (int) (hash >>> 33) & (segments.length - 1);
+    }
+
+    private OffHeapAccount view(String accountId, ByteBuffer segment, int offset, long hash) {
+        int stripe = (int) (hash >>> 44) & (lockStripes.length - 1);
+        String currency = currencies.computeIfAbsent(segment.getInt(offset + CURRENCY),
+                AccountsRepositoryOffHeap::decodeCurrency);
+        return new OffHeapAccount(accountId, currency, segment, offset, stripe, lockStripes[stripe]);
+    }
+
+    private static String decodeCurrency(int code) {
+        return new String(new byte[] { (byte) (code >>> 16), (byte) (code >>> 8), (byte) code },
+                StandardCharsets.US_ASCII);
+    }
+
+    // MurmurHash3's finalizer spreads the id's hash code over 64 bits; the low bit is set so no tag is zero
+    private static long hash(String accountId) {
+        long hash = accountId.hashCode();
+        hash = (hash ^ (hash >>> 33)) * 0xff51afd7ed558ccdL;
+        hash = (hash ^ (hash >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return (hash ^ (hash >>> 33)) | 1;
+    }
+
+    /**
+     * View of one slot. Balance and version live in the slot, accessed with the same memory ordering
+     * as the fields of a heap {@link Account}; the lock is shared with the other accounts of its stripe.
+     */
+    private static final class OffHeapAccount extends Account {
+
+        private final ByteBuffer segment;
+        private final int offset;
+        private final int stripe;
+
+        private OffHeapAccount(String accountId, String currency, ByteBuffer segment, int offset, int stripe,
+                Lock lock) {
+            super(accountId, currency, lock);
+            this.segment = segment;
+            this.offset = offset;
+            this.stripe = stripe;
+        }
+
+        @Override
+        public long getBalanceMinorUnits() {
+            return (long) LONGS.getAcquire(segment, offset + BALANCE);
+        }
+
+        @Override
+        public void setBalanceMinorUnits(long balanceMinorUnits) {
+            LONGS.setRelease(segment, offset + BALANCE, balanceMinorUnits);
+        }
+
+        @Override
+        public long getVersion() {
+            return (long) LONGS.getAcquire(segment, offset + VERSION);
+        }
+
+        @Override
+        public boolean tryClaimVersion(long version) {
+            return (version & 1) == 0 && LONGS.compareAndSet(segment, offset + VERSION, version, version + 1);
+        }
+
+        @Override
+        public void publishVersion(long claimedVersion) {
+            LONGS.setRelease(segment, offset + VERSION, claimedVersion + 2);
+        }
+
+        @Override
+        public void abandonVersion(long claimedVersion) {
+            LONGS.setRelease(segment, offset + VERSION, claimedVersion);
+        }
+
+        // Locks are ordered by stripe, ordering by id could take two shared stripes in opposite orders
+        @Override
+        public int lockStripe() {
+            return stripe;
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.dws.challenge.repository;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import lombok.Data;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "journal")
+public class JournalProperties {
+
+    private Path directory = Path.of("data", "journal");
+
+    // Size of each memory-mapped segment file, at most 2 GiB
+    private int segmentSize = 64 * 1024 * 1024;
+
+    // Disabling fsync leaves durability to the OS page cache
+    private boolean fsync = true;
+
+    // Group commit: one fsync covers every record appended within max-delay, or max-records records
+    private Duration groupCommitMaxDelay = Duration.ofMillis(2);
+    private int groupCommitMaxRecords = 1024;
+
+    // Checking every record's CRC on startup detects corruption at the cost of a slower recovery
+    private boolean verifyChecksums = true;
+
+    // Sealed segments are folded into a snapshot this often, which bounds what startup has to replay; zero disables it
+    private Duration snapshotInterval = Duration.ofMinutes(5);
+
+    // Threads used to encode and decode snapshot chunks (0 = number of cores)
+    private int snapshotParallelism = 0;
+}
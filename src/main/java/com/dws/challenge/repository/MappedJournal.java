@@ -0,0 +1,403 @@
+package com.dws.challenge.repository;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Append-only journal of binary records kept in fixed-size memory-mapped segment files.
+ * <p>
+ * Each record is laid out as an int length, the type byte and payload it covers, and a CRC32C of
+ * those bytes. Segments are zero-filled when created, so a zero length marks the end of the written
+ * part. A torn record at the tail of the last segment is discarded on recovery.
+ * <p>
+ * Appends are serialized by a lock and only copy into the mapping. Durability comes from group
+ * commit: a flusher thread forces the current segment once per batch of records and
+ * {@link #awaitDurable(long)} blocks until the position returned by {@link #append} is covered.
+ */
+@Slf4j
+public class MappedJournal implements Closeable {
+
+    public interface RecordHandler {
+        void handle(byte type, ByteBuffer payload);
+    }
+
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final int FRAME_OVERHEAD = Integer.BYTES + 1 + Integer.BYTES;
+
+    private final Path directory;
+    private final String name;
+    private final JournalProperties properties;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition flushRequested = lock.newCondition();
+    private final Condition flushed = lock.newCondition();
+    private final CRC32C crc = new CRC32C();
+
+    // All guarded by lock
+    private Segment current;
+    private long appendedPosition;
+    private long durablePosition;
+    private int unflushedRecords;
+    private boolean running = true;
+
+    private Thread flusher;
+
+    private MappedJournal(Path directory, String name, JournalProperties properties) {
+        this.directory = directory;
+        this.name = name;
+        this.properties = properties;
+    }
+
+    /**
+     * Opens the journal called {@code name} in {@code directory}, passing every intact record of the
+     * segments from {@code firstSegment} on to {@code handler} in append order before the journal
+     * accepts new records. Older segments are already folded into a snapshot and are deleted.
+     */
+    public static MappedJournal open(Path directory, String name, JournalProperties properties, int firstSegment,
+            RecordHandler handler) throws IOException {
+        Files.createDirectories(directory);
+        MappedJournal journal = new MappedJournal(directory, name, properties);
+        journal.deleteSegmentsBefore(firstSegment);
+        journal.recover(firstSegment, handler);
+        if (properties.isFsync()) {
+            journal.flusher = new Thread(journal::flushLoop, "journal-flusher-" + name);
+            journal.flusher.setDaemon(true);
+            journal.flusher.start();
+        }
+        return journal;
+    }
+
+    /**
+     * Appends a record whose payload, at most {@code maxPayloadLength} bytes, is written by
+     * {@code payloadWriter} straight into the mapped segment.
+     *
+     * @return the journal position just after the record, to be passed to {@link #awaitDurable(long)}
+     */
+    public long append(byte type, int maxPayloadLength, Consumer<ByteBuffer> payloadWriter) {
+        int maxFrameLength = FRAME_OVERHEAD + maxPayloadLength;
+        if (maxFrameLength > properties.getSegmentSize()) {
+            throw new IllegalArgumentException("Record of " + maxPayloadLength + " bytes does not fit a journal segment");
+        }
+
+        lock.lock();
+        try {
+            if (!running) {
+                throw new IllegalStateException("Journal " + name + " is closed");
+            }
+            if (current.buffer.remaining() < maxFrameLength) {
+                roll();
+            }
+
+            ByteBuffer buffer = current.buffer;
+            int start = buffer.position();
+            try {
+                buffer.position(start + Integer.BYTES);
+                buffer.put(type);
+                payloadWriter.accept(buffer);
+            } catch (RuntimeException ex) {
+                buffer.position(start);
+                throw ex;
+            }
+            int length = buffer.position() - start - Integer.BYTES;
+            crc.reset();
+            crc.update(buffer.slice(start + Integer.BYTES, length));
+            buffer.putInt((int) crc.getValue());
+            // The length goes in last, until then the record reads as the end of the segment
+            buffer.putInt(start, length);
+
+            appendedPosition = position(current.index, buffer.position());
+            unflushedRecords++;
+            if (unflushedRecords == 1 || unflushedRecords >= properties.getGroupCommitMaxRecords()) {
+                flushRequested.signal();
+            }
+            return appendedPosition;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Blocks until every record up to {@code position} has been forced to storage. Returns
+     * immediately when fsync is disabled.
+     */
+    public void awaitDurable(long position) {
+        if (!properties.isFsync()) {
+            return;
+        }
+        lock.lock();
+        try {
+            while (durablePosition < position) {
+                flushed.awaitUninterruptibly();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Forces and closes the current segment if it holds any record, so that every record appended
+     * so far lives in a segment below the returned index and will not change any more.
+     */
+    public int sealCurrentSegment() {
+        lock.lock();
+        try {
+            if (current.buffer.position() > 0) {
+                roll();
+            }
+            return current.index;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Replays the sealed segments in {@code [fromSegment, toSegment)} without touching the live one.
+     *
+     * @throws IllegalStateException if one of them is corrupt
+     */
+    public void replaySealed(int fromSegment, int toSegment, RecordHandler handler) throws IOException {
+        CRC32C segmentCrc = new CRC32C();
+        for (int index = fromSegment; index < toSegment; index++) {
+            Path path = segmentPath(index);
+            if (!Files.exists(path)) {
+                continue;
+            }
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                replay(buffer, segmentCrc, handler);
+                if (buffer.remaining() >= Integer.BYTES && buffer.getInt(buffer.position()) != 0) {
+                    throw new IllegalStateException("Journal segment " + path + " is corrupt at offset " + buffer.position());
+                }
+            }
+        }
+    }
+
+    public void deleteSegmentsBefore(int index) throws IOException {
+        for (Path path : listSegments()) {
+            if (segmentIndex(path) < index) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            if (!running) {
+                return;
+            }
+            running = false;
+            flushRequested.signal();
+        } finally {
+            lock.unlock();
+        }
+
+        if (flusher != null) {
+            try {
+                flusher.join(TimeUnit.SECONDS.toMillis(10));
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        lock.lock();
+        try {
+            if (properties.isFsync()) {
+                current.buffer.force();
+            }
+            durablePosition = appendedPosition;
+            flushed.signalAll();
+            current.close();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void recover(int firstSegment, RecordHandler handler) throws IOException {
+        List<Path> segmentFiles = listSegments();
+        long records = 0;
+        for (int i = 0; i < segmentFiles.size(); i++) {
+            Path path = segmentFiles.get(i);
+            Segment segment = Segment.open(path, segmentIndex(path), properties.getSegmentSize());
+            ByteBuffer buffer = segment.buffer;
+            records += replay(buffer, crc, handler);
+
+            boolean last = i == segmentFiles.size() - 1;
+            if (buffer.remaining() >= Integer.BYTES && buffer.getInt(buffer.position()) != 0) {
+                // Only the tail of the last segment can be torn, earlier segments are forced before rolling
+                if (!last) {
+                    throw new IllegalStateException("Journal segment " + path + " is corrupt at offset " + buffer.position());
+                }
+                log.warn("Discarding torn record at offset {} of journal segment {}", buffer.position(), path);
+                for (int offset = buffer.position(); offset < buffer.limit(); offset++) {
+                    buffer.put(offset, (byte) 0);
+                }
+            }
+            if (last) {
+                current = segment;
+            } else {
+                segment.close();
+            }
+        }
+
+        if (current == null) {
+            current = Segment.open(segmentPath(firstSegment), firstSegment, properties.getSegmentSize());
+        }
+        appendedPosition = position(current.index, current.buffer.position());
+        durablePosition = appendedPosition;
+        log.info("Recovered {} records from {} segment(s) of journal {}", records, segmentFiles.size(), name);
+    }
+
+    // Replays the intact records of a segment, leaving the buffer positioned after the last one
+    private long replay(ByteBuffer buffer, CRC32C crc, RecordHandler handler) {
+        long records = 0;
+        while (buffer.remaining() >= FRAME_OVERHEAD) {
+            int start = buffer.position();
+            int length = buffer.getInt(start);
+            if (length <= 0 || length > buffer.remaining() - Integer.BYTES - Integer.BYTES) {
+                break;
+            }
+            if (properties.isVerifyChecksums()) {
+                crc.reset();
+                crc.update(buffer.slice(start + Integer.BYTES, length));
+                if ((int) crc.getValue() != buffer.getInt(start + Integer.BYTES + length)) {
+                    break;
+                }
+            }
+            byte type = buffer.get(start + Integer.BYTES);
+            handler.handle(type, buffer.slice(start + Integer.BYTES + 1, length - 1).asReadOnlyBuffer());
+            buffer.position(start + Integer.BYTES + length + Integer.BYTES);
+            records++;
+        }
+        return records;
+    }
+
+    private void roll() {
+        Segment previous = current;
+        if (properties.isFsync()) {
+            previous.buffer.force();
+        }
+        try {
+            current = Segment.open(segmentPath(previous.index + 1), previous.index + 1, properties.getSegmentSize());
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Could not roll journal " + name, ex);
+        }
+        previous.close();
+    }
+
+    private void flushLoop() {
+        long maxDelayNanos = properties.getGroupCommitMaxDelay().toNanos();
+        while (true) {
+            long target;
+            Segment segment;
+            lock.lock();
+            try {
+                while (running && unflushedRecords == 0) {
+                    flushRequested.awaitUninterruptibly();
+                }
+                if (!running) {
+                    return;
+                }
+                // Let concurrent writers join this commit until the batch is full or the delay is over
+                long deadline = System.nanoTime() + maxDelayNanos;
+                long remaining;
+                while (running && unflushedRecords < properties.getGroupCommitMaxRecords()
+                        && (remaining = deadline - System.nanoTime()) > 0) {
+                    try {
+                        flushRequested.awaitNanos(remaining);
+                    } catch (InterruptedException ex) {
+                        break;
+                    }
+                }
+                target = appendedPosition;
+                segment = current;
+                unflushedRecords = 0;
+            } finally {
+                lock.unlock();
+            }
+
+            segment.buffer.force();
+
+            lock.lock();
+            try {
+                durablePosition = Math.max(durablePosition, target);
+                flushed.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private List<Path> listSegments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> isSegmentOf(path.getFileName().toString()))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private boolean isSegmentOf(String fileName) {
+        return fileName.startsWith(name + "-") && fileName.endsWith(SEGMENT_SUFFIX);
+    }
+
+    private Path segmentPath(int index) {
+        return directory.resolve(String.format("%s-%010d%s", name, index, SEGMENT_SUFFIX));
+    }
+
+    private int segmentIndex(Path path) {
+        String fileName = path.getFileName().toString();
+        return Integer.parseInt(fileName.substring(name.length() + 1, fileName.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    // Positions order records across segments: segment index in the high word, offset in the low word
+    private static long position(int segmentIndex, int offset) {
+        return ((long) segmentIndex << 32) | offset;
+    }
+
+    private static final class Segment {
+
+        final int index;
+        final FileChannel channel;
+        final MappedByteBuffer buffer;
+
+        private Segment(int index, FileChannel channel, MappedByteBuffer buffer) {
+            this.index = index;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+
+        // Maps an existing segment at its own size, or creates a zero-filled one of the given size
+        static Segment open(Path path, int index, int size) throws IOException {
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            long existingSize = channel.size();
+            return new Segment(index, channel,
+                    channel.map(FileChannel.MapMode.READ_WRITE, 0, existingSize > 0 ? existingSize : size));
+        }
+
+        void close() {
+            try {
+                channel.close();
+            } catch (IOException ex) {
+                log.warn("Could not close journal segment {}", index, ex);
+            }
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.dws.challenge.repository;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import lombok.Data;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "accounts.offheap")
+public class OffHeapAccountsProperties {
+
+    // Slots of the account table, rounded up to a power of two; the table does not grow, it holds up to 3/4 of this
+    private long capacity = 1 << 20;
+
+    // Longest account id in UTF-8 bytes, every slot reserves room for one
+    private int maxIdBytes = 48;
+
+    // Locks shared by all accounts, each account uses the stripe its id hashes to
+    private int lockStripes = 4096;
+}
@@ -0,0 +1,23 @@
+package com.dws.challenge.repository;
+
+import com.dws.challenge.domain.Account;
+
+/**
+ * Balance of an account while it is being rebuilt from a snapshot and journal records. Until the
+ * account creation has been seen, {@code balance} only holds the sum of transfer deltas.
+ */
+final class RecoveredAccount {
+
+    boolean created;
+    String currency = Account.DEFAULT_CURRENCY;
+    long balance;
+
+    RecoveredAccount() {
+    }
+
+    RecoveredAccount(boolean created, String currency, long balance) {
+        this.created = created;
+        this.currency = currency;
+        this.balance = balance;
+    }
+}
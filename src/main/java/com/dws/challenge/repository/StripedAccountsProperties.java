@@ -0,0 +1,34 @@
+package com.dws.challenge.repository;
+
+import java.util.Set;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.StripedAccount;
+
+import lombok.Data;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "accounts.striped")
+public class StripedAccountsProperties {
+
+    // Hot accounts, credited by most transfers, whose balance is split into cells
+    private Set<String> ids = Set.of();
+
+    // Cells per striped account, rounded up to a power of two (0 = number of cores)
+    private int cells = 0;
+
+    /**
+     * Returns {@code account} as a {@link StripedAccount} if its id is configured as striped, or
+     * unchanged otherwise.
+     */
+    public Account apply(Account account) {
+        if (account.isStriped() || !ids.contains(account.getAccountId())) {
+            return account;
+        }
+        return StripedAccount.copyOf(account, cells > 0 ? cells : Runtime.getRuntime().availableProcessors());
+    }
+}
@@ -0,0 +1,307 @@
+package com.dws.challenge.repository;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.dws.challenge.domain.Transaction;
+
+/**
+ * In-process history of executed transfers, kept off-heap in fixed-size chunks of fixed-width
+ * records. Records are numbered in the order they are appended. Every record also points back to the
+ * previous record of its source and of its destination account, so each account's history is a chain
+ * that is walked newest first, one record at a time, without any per-account structure on the heap
+ * besides the chain head.
+ * <p>
+ * Each chunk remembers the newest timestamp written to it, a coarse time index: a walk bounded by a
+ * {@code since} time stops at the first chunk that, with every chunk before it, is older, instead
+ * of following the chain to the end of the retained history. An {@code until} bound only filters,
+ * since a chain can only be entered at its head or at a cursor.
+ * <p>
+ * Appending is lock-free: an id is reserved with one atomic increment, the two chain heads are
+ * swapped to it, and the record is written in place and published by a release store of its
+ * timestamp. Chunks form a ring of {@code transactions.max-chunks}; the next chunk is prepared in the
+ * background halfway through the current one, recycling the oldest, so only the newest
+ * {@code transactions.max-chunks - 1} full chunks are guaranteed to be retained.
+ */
+@Component
+public class TransactionLog {
+
+    public static final long NO_TRANSACTION = -1;
+
+    // Record layout; the timestamp is written last and is never zero, so zero means "not yet published"
+    private static final int RECORD_SIZE = 48;
+    private static final int TIMESTAMP = 0;
+    private static final int AMOUNT = 8;
+    private static final int ACCOUNT_FROM = 16;
+    private static final int ACCOUNT_TO = 20;
+    private static final int PREVIOUS_FROM = 24;
+    private static final int PREVIOUS_TO = 32;
+    private static final int CREDITED_AMOUNT = 40;
+
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    private final int chunkShift;
+    private final int chunkRecords;
+    private final AtomicReferenceArray<Chunk> chunks;
+    private final ReentrantLock chunkLock = new ReentrantLock();
+    private final AtomicLong nextId = new AtomicLong();
+
+    private final Map<String, AccountChain> chains = new ConcurrentHashMap<>();
+    private final ReentrantLock accountIdsLock = new ReentrantLock();
+    private volatile String[] accountIds = new String[1024];
+    private int accountCount;
+
+    private static final class Chunk {
+
+        private final ByteBuffer records;
+
+        // Position of the chunk in the log, or -1 while it is being recycled
+        private volatile long index;
+
+        // Newest timestamp published in the chunk, zero while it is empty
+        private final AtomicLong newestTimestamp = new AtomicLong();
+
+        private Chunk(int capacity, long index) {
+            this.records = ByteBuffer.allocateDirect(capacity * RECORD_SIZE).order(ByteOrder.nativeOrder());
+            this.index = index;
+        }
+    }
+
+    private static final class AccountChain {
+
+        private final int index;
+        private final AtomicLong head = new AtomicLong(NO_TRANSACTION);
+
+        private AccountChain(int index) {
+            this.index = index;
+        }
+    }
+
+    /**
+     * @param chunkRecords records per chunk, rounded up to a power of two
+     */
+    @Autowired
+    public TransactionLog(@Value("${transactions.chunk-records:65536}") int chunkRecords,
+            @Value("${transactions.max-chunks:16}") int maxChunks) {
+        this.chunkShift = 32 - Integer.numberOfLeadingZeros(Math.max(2, chunkRecords) - 1);
+        this.chunkRecords = 1 << chunkShift;
+        this.chunks = new AtomicReferenceArray<>(Math.max(2, maxChunks));
+    }
+
+    /**
+     * @param creditedAmount amount the destination received, differs from {@code amount} when the
+     *                       transfer crossed currencies
+     */
+    public void append(String accountFromId, String accountToId, long amount, long creditedAmount) {
+        AccountChain from = chain(accountFromId);
+        AccountChain to = accountToId.equals(accountFromId) ? from : chain(accountToId);
+
+        long id = nextId.getAndIncrement();
+        long previousFrom = from.head.getAndSet(id);
+        long previousTo = to == from ? previousFrom : to.head.getAndSet(id);
+
+        int offset = offset(id);
+        if (offset == (chunkRecords / 2) * RECORD_SIZE) {
+            long nextChunk = (id >>> chunkShift) + 1;
+            CompletableFuture.runAsync(() -> prepareChunk(nextChunk));
+        }
+        Chunk chunk = prepareChunk(id >>> chunkShift);
+        ByteBuffer records = chunk.records;
+        records.putLong(offset + AMOUNT, amount);
+        records.putLong(offset + CREDITED_AMOUNT, creditedAmount);
+        records.putInt(offset + ACCOUNT_FROM, from.index);
+        records.putInt(offset + ACCOUNT_TO, to.index);
+        records.putLong(offset + PREVIOUS_FROM, previousFrom);
+        records.putLong(offset + PREVIOUS_TO, previousTo);
+        long timestamp = System.currentTimeMillis();
+        LONGS.setRelease(records, offset + TIMESTAMP, timestamp);
+        // Only the first record of each millisecond updates the index
+        if (timestamp > chunk.newestTimestamp.get()) {
+            chunk.newestTimestamp.accumulateAndGet(timestamp, Math::max);
+        }
+    }
+
+    /**
+     * @return the id of the newest transaction of {@code accountId}, or {@link #NO_TRANSACTION}
+     */
+    public long newest(String accountId) {
+        AccountChain chain = chains.get(accountId);
+        return chain == null ? NO_TRANSACTION : chain.head.get();
+    }
+
+    /**
+     * Whether {@code id} is a transaction of {@code accountId}, i.e. a valid cursor for it. Ids that
+     * have dropped out of the retained history are accepted as well, they just lead nowhere.
+     */
+    public boolean involves(long id, String accountId) {
+        AccountChain chain = chains.get(accountId);
+        // Visiting stops on the id itself only if it does not exist or belongs to other accounts
+        return chain != null && id >= 0 && visit(chain, id, 1, transaction -> { }) != id;
+    }
+
+    /**
+     * Visits up to {@code limit} transactions of {@code accountId}, newest first, starting with
+     * transaction {@code fromId}. Only one transaction is materialized at a time.
+     *
+     * @return the id to continue from, or {@link #NO_TRANSACTION} if the retained history is exhausted
+     */
+    public long visit(String accountId, long fromId, int limit, Consumer<Transaction> visitor) {
+        return visit(accountId, fromId, limit, Long.MIN_VALUE, Long.MAX_VALUE, visitor);
+    }
+
+    /**
+     * Visits up to {@code limit} transactions of {@code accountId} recorded between {@code sinceMillis}
+     * and {@code untilMillis} inclusive, newest first, starting with transaction {@code fromId}.
+     * Transactions outside the bounds are stepped over and do not count towards the limit.
+     *
+     * @return the id to continue from, or {@link #NO_TRANSACTION} if no older transaction is in bounds
+     */
+    public long visit(String accountId, long fromId, int limit, long sinceMillis, long untilMillis,
+            Consumer<Transaction> visitor) {
+        AccountChain chain = chains.get(accountId);
+        return chain == null ? NO_TRANSACTION : visit(chain, fromId, limit, sinceMillis, untilMillis, visitor);
+    }
+
+    private long visit(AccountChain chain, long fromId, int limit, Consumer<Transaction> visitor) {
+        return visit(chain, fromId, limit, Long.MIN_VALUE, Long.MAX_VALUE, visitor);
+    }
+
+    private long visit(AccountChain chain, long fromId, int limit, long sinceMillis, long untilMillis,
+            Consumer<Transaction> visitor) {
+        long olderIds = sinceMillis == Long.MIN_VALUE ? 0 : olderThan(sinceMillis);
+        long id = fromId;
+        int visited = 0;
+        while (visited < limit && id != NO_TRANSACTION) {
+            if (id < 0 || id >= nextId.get()) {
+                return id;
+            }
+            if (id < olderIds) {
+                return NO_TRANSACTION;
+            }
+            long index = id >>> chunkShift;
+            Chunk chunk = chunks.get(slot(index));
+            if (chunk == null || chunk.index != index) {
+                return NO_TRANSACTION;
+            }
+
+            ByteBuffer records = chunk.records;
+            int offset = offset(id);
+            long timestamp;
+            // The writer reserved the id and linked it before writing it, it is a few stores away
+            while ((timestamp = (long) LONGS.getAcquire(records, offset + TIMESTAMP)) == 0) {
+                if (chunk.index != index) {
+                    return NO_TRANSACTION;
+                }
+                Thread.onSpinWait();
+            }
+            long amount = records.getLong(offset + AMOUNT);
+            long creditedAmount = records.getLong(offset + CREDITED_AMOUNT);
+            int from = records.getInt(offset + ACCOUNT_FROM);
+            int to = records.getInt(offset + ACCOUNT_TO);
+            long next = from == chain.index ? records.getLong(offset + PREVIOUS_FROM) : records.getLong(offset + PREVIOUS_TO);
+            VarHandle.acquireFence();
+            if (chunk.index != index) {
+                return NO_TRANSACTION;
+            }
+            if (from != chain.index && to != chain.index) {
+                return id;
+            }
+
+            if (timestamp >= sinceMillis && timestamp <= untilMillis) {
+                String[] ids = accountIds;
+                visitor.accept(new Transaction(id, Instant.ofEpochMilli(timestamp), ids[from], ids[to], amount,
+                        creditedAmount));
+                visited++;
+            }
+            id = next;
+        }
+        return id;
+    }
+
+    // First id of the oldest chunk that, or one of the chunks before it, holds a timestamp of sinceMillis or newer
+    private long olderThan(long sinceMillis) {
+        long newestChunk = Math.max(0, nextId.get() - 1) >>> chunkShift;
+        long olderIds = 0;
+        long newestTimestamp = 0;
+        for (long index = Math.max(0, newestChunk - chunks.length() + 1); index <= newestChunk; index++) {
+            Chunk chunk = chunks.get(slot(index));
+            if (chunk != null && chunk.index == index) {
+                newestTimestamp = Math.max(newestTimestamp, chunk.newestTimestamp.get());
+            }
+            if (newestTimestamp >= sinceMillis) {
+                break;
+            }
+            olderIds = (index + 1) << chunkShift;
+        }
+        return olderIds;
+    }
+
+    private AccountChain chain(String accountId) {
+        AccountChain chain = chains.get(accountId);
+        return chain != null ? chain : chains.computeIfAbsent(accountId, this::register);
+    }
+
+    private AccountChain register(String accountId) {
+        accountIdsLock.lock();
+        try {
+            String[] ids = accountIds;
+            if (accountCount == ids.length) {
+                ids = Arrays.copyOf(ids, ids.length * 2);
+            }
+            ids[accountCount] = accountId;
+            accountIds = ids;
+            return new AccountChain(accountCount++);
+        } finally {
+            accountIdsLock.unlock();
+        }
+    }
+
+    // Returns the chunk at position index, allocating it or recycling the oldest chunk of the ring
+    private Chunk prepareChunk(long index) {
+        Chunk chunk = chunks.get(slot(index));
+        if (chunk != null && chunk.index == index) {
+            return chunk;
+        }
+        chunkLock.lock();
+        try {
+            chunk = chunks.get(slot(index));
+            if (chunk == null) {
+                chunk = new Chunk(chunkRecords, index);
+                chunks.set(slot(index), chunk);
+            } else if (chunk.index < index) {
+                chunk.index = -1;
+                for (int offset = 0; offset < chunkRecords * RECORD_SIZE; offset += RECORD_SIZE) {
+                    chunk.records.putLong(offset + TIMESTAMP, 0);
+                }
+                chunk.newestTimestamp.set(0);
+                chunk.index = index;
+            }
+            return chunk;
+        } finally {
+            chunkLock.unlock();
+        }
+    }
+
+    private int slot(long chunkIndex) {
+        return (int) (chunkIndex % chunks.length());
+    }
+
+    private int offset(long id) {
+        return (int) (id & (chunkRecords - 1)) * RECORD_SIZE;
+    }
+}
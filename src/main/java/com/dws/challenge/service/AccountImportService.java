@@ -0,0 +1,174 @@
+package com.dws.challenge.service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.dto.AccountImportResult;
+import com.dws.challenge.dto.AccountImportSummary;
+import com.dws.challenge.exception.DuplicateAccountIdException;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import jakarta.annotation.PreDestroy;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+
+/**
+ * Creates accounts from a newline-delimited JSON document, one account per line in the format of
+ * {@code POST /v1/accounts}. The document is read as it arrives and cut into chunks of
+ * {@code accounts.import.chunk-size} lines, which are parsed, validated and inserted in parallel.
+ * Only a bounded number of chunks is in flight, so the document is never held in memory as a whole.
+ * <p>
+ * In a cluster only the accounts owned by this node are created, the others are rejected as invalid
+ * with the node that owns them, so that a document can be imported into every node in turn.
+ */
+@Service
+public class AccountImportService {
+
+    private final AccountsService accountsService;
+    private final ClusterRouter clusterRouter;
+    private final ObjectReader accountReader;
+    private final Validator validator;
+    private final int chunkSize;
+    private final int maxPendingChunks;
+    private final ExecutorService importExecutor;
+
+    private record ChunkResult(int created, List<AccountImportResult> rejected) {
+    }
+
+    @Autowired
+    public AccountImportService(AccountsService accountsService, ClusterRouter clusterRouter,
+            ObjectMapper objectMapper, Validator validator,
+            @Value("${accounts.import.parallelism:0}") int parallelism,
+            @Value("${accounts.import.chunk-size:1000}") int chunkSize) {
+        this.accountsService = accountsService;
+        this.clusterRouter = clusterRouter;
+        this.accountReader = objectMapper.readerFor(Account.class);
+        this.validator = validator;
+        this.chunkSize = Math.max(1, chunkSize);
+        int threads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        this.maxPendingChunks = threads * 2;
+        this.importExecutor = Executors.newFixedThreadPool(threads);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        importExecutor.shutdown();
+    }
+
+    /**
+     * Imports every line of {@code ndjson}, blank lines are skipped. Rejected lines are passed to
+     * {@code rejections} in line order, on the calling thread, while the import is still running.
+     */
+    public AccountImportSummary importAccounts(Reader ndjson, Consumer<AccountImportResult> rejections)
+            throws IOException {
+        AccountImportSummary summary = new AccountImportSummary();
+        Deque<CompletableFuture<ChunkResult>> pending = new ArrayDeque<>();
+        BufferedReader lines = new BufferedReader(ndjson);
+        List<String> chunk = new ArrayList<>(chunkSize);
+        long firstLine = 1;
+        String line;
+        while ((line = lines.readLine()) != null) {
+            chunk.add(line);
+            if (chunk.size() == chunkSize) {
+                if (pending.size() == maxPendingChunks) {
+                    complete(pending.removeFirst(), summary, rejections);
+                }
+                pending.addLast(submit(chunk, firstLine));
+                firstLine += chunk.size();
+                chunk = new ArrayList<>(chunkSize);
+            }
+        }
+        if (!chunk.isEmpty()) {
+            pending.addLast(submit(chunk, firstLine));
+        }
+        while (!pending.isEmpty()) {
+            complete(pending.removeFirst(), summary, rejections);
+        }
+        return summary;
+    }
+
+    private CompletableFuture<ChunkResult> submit(List<String> chunk, long firstLine) {
+        return CompletableFuture.supplyAsync(() -> importChunk(chunk, firstLine), importExecutor);
+    }
+
+    private static void complete(CompletableFuture<ChunkResult> future, AccountImportSummary summary,
+            Consumer<AccountImportResult> rejections) {
+        ChunkResult result = future.join();
+        summary.setCreated(summary.getCreated() + result.created());
+        for (AccountImportResult rejected : result.rejected()) {
+            if (rejected.getStatus() == AccountImportResult.Status.DUPLICATE) {
+                summary.setDuplicates(summary.getDuplicates() + 1);
+            } else {
+                summary.setInvalid(summary.getInvalid() + 1);
+            }
+            rejections.accept(rejected);
+        }
+    }
+
+    private ChunkResult importChunk(List<String> chunk, long firstLine) {
+        int created = 0;
+        List<AccountImportResult> rejected = new ArrayList<>();
+        for (int i = 0; i < chunk.size(); i++) {
+            String json = chunk.get(i);
+            if (json.isBlank()) {
+                continue;
+            }
+            AccountImportResult result = importLine(firstLine + i, json);
+            if (result == null) {
+                created++;
+            } else {
+                rejected.add(result);
+            }
+        }
+        return new ChunkResult(created, rejected);
+    }
+
+    // Returns null once the account is created
+    private AccountImportResult importLine(long line, String json) {
+        Account account;
+        try {
+            account = accountReader.readValue(json);
+        } catch (JsonProcessingException ex) {
+            return AccountImportResult.invalid(line, null, ex.getOriginalMessage());
+        }
+
+        Set<ConstraintViolation<Account>> violations = validator.validate(account);
+        if (!violations.isEmpty()) {
+            return AccountImportResult.invalid(line, account.getAccountId(), violations.stream()
+                    .map(violation -> violation.getPropertyPath() + " " + violation.getMessage())
+                    .sorted()
+                    .collect(Collectors.joining(", ")));
+        }
+
+        if (!clusterRouter.isLocal(account.getAccountId())) {
+            return AccountImportResult.invalid(line, account.getAccountId(),
+                    "Account is owned by node " + clusterRouter.ownerOf(account.getAccountId()));
+        }
+        try {
+            accountsService.createAccount(account);
+            return null;
+        } catch (DuplicateAccountIdException ex) {
+            return AccountImportResult.duplicate(line, account.getAccountId(), ex.getMessage());
+        } catch (IllegalArgumentException ex) {
+            return AccountImportResult.invalid(line, account.getAccountId(), ex.getMessage());
+        }
+    }
+}
@@ -1,7 +1,20 @@
 package com.dws.challenge.service;
 
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
 import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.Transaction;
+import com.dws.challenge.dto.AccountBalance;
+import com.dws.challenge.exception.AccountNotFoundException;
 import com.dws.challenge.repository.AccountsRepository;
+import com.dws.challenge.repository.StripedAccountsProperties;
+import com.dws.challenge.repository.TransactionLog;
 import lombok.Getter;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
@@ -9,19 +22,203 @@ import org.springframework.stereotype.Service;
 @Service
 public class AccountsService {
 
+  private static final int OPTIMISTIC_READS = 8;
+
   @Getter
   private final AccountsRepository accountsRepository;
 
+  private final StripedAccountsProperties stripedAccounts;
+
+  private final TransactionLog transactionLog;
+
+  private final ChangeFeed changeFeed;
+
   @Autowired
-  public AccountsService(AccountsRepository accountsRepository) {
+  public AccountsService(AccountsRepository accountsRepository, StripedAccountsProperties stripedAccounts,
+                         TransactionLog transactionLog, ChangeFeed changeFeed) {
     this.accountsRepository = accountsRepository;
+    this.stripedAccounts = stripedAccounts;
+    this.transactionLog = transactionLog;
+    this.changeFeed = changeFeed;
   }
 
   public void createAccount(Account account) {
-    this.accountsRepository.createAccount(account);
+    // Read before the account is published: transfers into it right away reach the feed as events of their own
+    long balance = account.getBalanceMinorUnits();
+    this.accountsRepository.createAccount(stripedAccounts.apply(account));
+    this.changeFeed.publishCreation(account.getAccountId(), account.getCurrency(), balance);
   }
 
   public Account getAccount(String accountId) {
     return this.accountsRepository.getAccount(accountId);
   }
+
+  /**
+   * Reads the balances of several accounts as of one instant, without taking any lock. The versions
+   * of the accounts are read before and after their balances, like a seqlock; as every write of a
+   * balance happens under a claim of its version, unchanged even versions mean nothing was written in
+   * between. After {@value #OPTIMISTIC_READS} attempts disturbed by writers the versions are claimed
+   * instead, in lock order, which holds the writers of these accounts back for a few loads.
+   * <p>
+   * Credits to {@linkplain Account#isStriped() striped} accounts do not claim the version, their
+   * balance is the sum of the cells as they are read.
+   *
+   * @return one balance per distinct account id, in the order requested
+   * @throws AccountNotFoundException if one of the accounts does not exist
+   */
+  public List<AccountBalance> getBalances(List<String> accountIds) {
+    Map<String, Account> accounts = new LinkedHashMap<>();
+    for (String accountId : accountIds) {
+      if (!accounts.containsKey(accountId)) {
+        Account account = getAccount(accountId);
+        if (account == null) {
+          throw new AccountNotFoundException("Account id " + accountId + " not found");
+        }
+        accounts.put(accountId, account);
+      }
+    }
+
+    List<Account> requested = new ArrayList<>(accounts.values());
+    long[] balances = new long[requested.size()];
+    if (!tryReadBalances(requested, balances)) {
+      readBalancesClaimed(requested, balances);
+    }
+    List<AccountBalance> result = new ArrayList<>(balances.length);
+    for (int i = 0; i < balances.length; i++) {
+      Account account = requested.get(i);
+      result.add(new AccountBalance(account.getAccountId(),
+        BigDecimal.valueOf(balances[i], account.getScale()), account.getCurrency()));
+    }
+    return result;
+  }
+
+  private static boolean tryReadBalances(List<Account> accounts, long[] balances) {
+    long[] versions = new long[balances.length];
+    attempts:
+    for (int attempt = 0; attempt < OPTIMISTIC_READS; attempt++) {
+      for (int i = 0; i < versions.length; i++) {
+        versions[i] = accounts.get(i).getVersion();
+        if ((versions[i] & 1) != 0) {
+          Thread.onSpinWait();
+          continue attempts;
+        }
+      }
+      // Acquire loads, so the second reading of the versions cannot move ahead of the balances
+      for (int i = 0; i < balances.length; i++) {
+        balances[i] = accounts.get(i).getBalanceMinorUnits();
+      }
+      for (int i = 0; i < versions.length; i++) {
+        if (accounts.get(i).getVersion() != versions[i]) {
+          Thread.onSpinWait();
+          continue attempts;
+        }
+      }
+      return true;
+    }
+    return false;
+  }
+
+  private static void readBalancesClaimed(List<Account> accounts, long[] balances) {
+    List<Account> ordered = new ArrayList<>(accounts);
+    ordered.sort(Account.LOCK_ORDER);
+    long[] versions = new long[ordered.size()];
+    for (int i = 0; i < versions.length; i++) {
+      versions[i] = ordered.get(i).claimVersion();
+    }
+    try {
+      for (int i = 0; i < balances.length; i++) {
+        balances[i] = accounts.get(i).getBalanceMinorUnits();
+      }
+    } finally {
+      for (int i = versions.length - 1; i >= 0; i--) {
+        ordered.get(i).abandonVersion(versions[i]);
+      }
+    }
+  }
+
+  public void forEachAccount(Consumer<Account> action) {
+    this.accountsRepository.forEachAccount(action);
+  }
+
+  /**
+   * Records an applied transfer: {@code amount} minor units left the source account and
+   * {@code creditedAmount}, converted to the destination account's currency, reached the destination.
+   */
+  public void recordTransfer(Account accountFrom, Account accountTo, long amount, long creditedAmount) {
+    recordTransfer(accountFrom.getAccountId(), accountTo.getAccountId(), amount, creditedAmount);
+  }
+
+  /**
+   * Journals a transfer from the {@code record} callback of the {@link TransferEngine}, while the
+   * engine holds the accounts; see {@link AccountsRepository#appendTransfer}.
+   *
+   * @return the journal position to pass to {@link #recordTransfer(Account, Account, long, long, long)}
+   */
+  public long journalTransfer(Account accountFrom, Account accountTo, long amount, long creditedAmount) {
+    return journalTransfer(accountFrom.getAccountId(), accountTo.getAccountId(), amount, creditedAmount);
+  }
+
+  // Like journalTransfer(Account, Account, long, long), for a side of a cross-partition transfer
+  public long journalTransfer(String accountFromId, String accountToId, long amount, long creditedAmount) {
+    return this.accountsRepository.appendTransfer(accountFromId, accountToId, amount, creditedAmount);
+  }
+
+  /**
+   * Like {@link #journalTransfer}, for every leg of a multi-leg transfer at once.
+   */
+  public long journalTransfers(Account accountFrom, List<Account> accountsTo, long[] amounts, long[] creditedAmounts) {
+    return this.accountsRepository.appendTransfers(accountFrom.getAccountId(),
+      accountsTo.stream().map(Account::getAccountId).toList(), amounts, creditedAmounts);
+  }
+
+  /**
+   * Records an applied transfer already journaled up to {@code journalPosition}: waits for it to be
+   * durable, then logs and publishes it.
+   */
+  public void recordTransfer(Account accountFrom, Account accountTo, long amount, long creditedAmount,
+                             long journalPosition) {
+    recordTransfer(accountFrom.getAccountId(), accountTo.getAccountId(), amount, creditedAmount, journalPosition);
+  }
+
+  // Waits until everything journaled up to journalPosition survives a crash
+  public void awaitDurable(long journalPosition) {
+    this.accountsRepository.awaitDurable(journalPosition);
+  }
+
+  public void recordTransfer(String accountFromId, String accountToId, long amount, long creditedAmount,
+                             long journalPosition) {
+    this.accountsRepository.awaitDurable(journalPosition);
+    this.transactionLog.append(accountFromId, accountToId, amount, creditedAmount);
+    this.changeFeed.publishTransfer(accountFromId, accountToId, amount, creditedAmount);
+  }
+
+  /**
+   * Records the side of a cross-partition transfer applied on this node, the other account being
+   * owned by another cluster node.
+   */
+  public void recordTransfer(String accountFromId, String accountToId, long amount, long creditedAmount) {
+    this.accountsRepository.recordTransfer(accountFromId, accountToId, amount, creditedAmount);
+    this.transactionLog.append(accountFromId, accountToId, amount, creditedAmount);
+    this.changeFeed.publishTransfer(accountFromId, accountToId, amount, creditedAmount);
+  }
+
+  public boolean isTransactionCursor(String accountId, long cursor) {
+    return this.transactionLog.involves(cursor, accountId);
+  }
+
+  /**
+   * Visits up to {@code limit} transactions of an account, newest first, starting at {@code cursor}
+   * or at the newest transaction if it is null. Only transactions recorded between {@code since} and
+   * {@code until} inclusive are visited, either bound may be null.
+   *
+   * @return the cursor of the next page, or null if there is none
+   */
+  public Long getTransactions(String accountId, Long cursor, int limit, Instant since, Instant until,
+                              Consumer<Transaction> visitor) {
+    long fromId = cursor != null ? cursor : this.transactionLog.newest(accountId);
+    long sinceMillis = since != null ? since.toEpochMilli() : Long.MIN_VALUE;
+    long untilMillis = until != null ? until.toEpochMilli() : Long.MAX_VALUE;
+    long next = this.transactionLog.visit(accountId, fromId, limit, sinceMillis, untilMillis, visitor);
+    return next == TransactionLog.NO_TRANSACTION ? null : next;
+  }
 }
@@ -0,0 +1,142 @@
+package com.dws.challenge.service;
+
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.dws.challenge.domain.BalanceChange;
+
+/**
+ * In-process feed of account creations and transfers, numbered by one sequence. Events are kept in
+ * a ring of {@code changes.capacity}; every subscriber reads at its own position, so a slow one only
+ * falls behind and, once lapped, finds the events it missed gone. Publishing never waits for
+ * subscribers.
+ * <p>
+ * Publishing reserves a sequence number with one atomic increment and stores the event in its slot.
+ * Events are published after the transfer committed, so two concurrent transfers may be numbered in
+ * either order; like the account journal, the feed relies on their amounts adding up the same either
+ * way. Subscribers that have caught up wait on a condition, which a publisher only signals if
+ * somebody started waiting since the last signal.
+ */
+@Component
+public class ChangeFeed {
+
+    private final int mask;
+    private final AtomicReferenceArray<BalanceChange> slots;
+    private final AtomicLong nextSequence = new AtomicLong();
+
+    private final AtomicBoolean awaited = new AtomicBoolean();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition published = lock.newCondition();
+
+    @Autowired
+    public ChangeFeed(ChangeFeedProperties properties) {
+        int capacity = properties.getCapacity() <= 1 ? 1 : Integer.highestOneBit(properties.getCapacity() - 1) << 1;
+        this.mask = capacity - 1;
+        this.slots = new AtomicReferenceArray<>(capacity);
+    }
+
+    public long publishCreation(String accountId, String currency, long balance) {
+        return publish(BalanceChange.Type.ACCOUNT_CREATED, null, accountId, currency, balance, balance);
+    }
+
+    public long publishTransfer(String accountFromId, String accountToId, long amount, long creditedAmount) {
+        return publish(BalanceChange.Type.TRANSFER, accountFromId, accountToId, null, amount, creditedAmount);
+    }
+
+    private long publish(BalanceChange.Type type, String accountFromId, String accountToId, String currency,
+            long amount, long creditedAmount) {
+        long sequence = nextSequence.getAndIncrement();
+        BalanceChange change = new BalanceChange(sequence, Instant.now(), type, accountFromId, accountToId, currency,
+                amount, creditedAmount);
+        int slot = (int) sequence & mask;
+        BalanceChange previous;
+        do {
+            previous = slots.get(slot);
+            // A publisher a whole lap ahead got there first, the event is already gone
+            if (previous != null && previous.sequence() > sequence) {
+                return sequence;
+            }
+        } while (!slots.compareAndSet(slot, previous, change));
+
+        if (awaited.get() && awaited.getAndSet(false)) {
+            lock.lock();
+            try {
+                published.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+        return sequence;
+    }
+
+    // Sequence number the next event will get
+    public long next() {
+        return nextSequence.get();
+    }
+
+    // Oldest sequence number still retained
+    public long oldest() {
+        return Math.max(0, nextSequence.get() - slots.length());
+    }
+
+    /**
+     * Visits up to {@code limit} events, in sequence order, starting with {@code fromSequence}. Stops
+     * early at an event that is not published yet, or no longer retained.
+     *
+     * @return the sequence number to continue from
+     */
+    public long read(long fromSequence, int limit, Consumer<BalanceChange> visitor) {
+        long sequence = fromSequence;
+        long end = Math.min(nextSequence.get(), fromSequence + limit);
+        while (sequence < end) {
+            BalanceChange change = slots.get((int) sequence & mask);
+            if (change == null || change.sequence() != sequence) {
+                break;
+            }
+            visitor.accept(change);
+            sequence++;
+        }
+        return sequence;
+    }
+
+    /**
+     * Waits until the event {@code sequence} is published or the timeout elapses.
+     *
+     * @return whether the event is published
+     */
+    public boolean await(long sequence, long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lock();
+        try {
+            while (!isPublished(sequence)) {
+                if (nanos <= 0) {
+                    return false;
+                }
+                // Set before the check above is repeated, so a publisher either sees it or is seen
+                awaited.set(true);
+                if (isPublished(sequence)) {
+                    return true;
+                }
+                nanos = published.awaitNanos(nanos);
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Lapped events count as published, the reader is to find out they are gone
+    private boolean isPublished(long sequence) {
+        BalanceChange change = slots.get((int) sequence & mask);
+        return change != null && change.sequence() >= sequence;
+    }
+}
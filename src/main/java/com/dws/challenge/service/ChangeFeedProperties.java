@@ -0,0 +1,27 @@
+package com.dws.challenge.service;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import lombok.Data;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "changes")
+public class ChangeFeedProperties {
+
+  // Events retained for subscribers to resume from, rounded up to a power of two
+  private int capacity = 65_536;
+
+  // Concurrent SSE streams, each served by a thread of its own
+  private int maxSubscribers = 64;
+
+  // Events read per pass of a stream or returned per long-poll
+  private int batchSize = 256;
+
+  // Comment sent on an idle SSE stream, and the longest a long-poll may wait
+  private Duration heartbeat = Duration.ofSeconds(15);
+  private Duration maxPollWait = Duration.ofSeconds(30);
+}
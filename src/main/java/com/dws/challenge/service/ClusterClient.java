@@ -0,0 +1,133 @@
+package com.dws.challenge.service;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+
+import com.dws.challenge.exception.NodeUnavailableException;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * HTTP client for the calls between cluster nodes: requests forwarded to the owner of an account,
+ * and the cross-partition transfer protocol. Every request names its sender in
+ * {@link #FORWARDED_HEADER}, so that a node never forwards a request it got from another node: if
+ * two nodes disagree on the owner of an account, the request fails instead of bouncing between them.
+ * It also carries {@code cluster.secret} in {@link #SECRET_HEADER}, which authenticates it as a call
+ * of the cluster's transfer protocol.
+ */
+@Component
+public class ClusterClient {
+
+    public static final String FORWARDED_HEADER = "X-Cluster-Forwarded-By";
+
+    public static final String SECRET_HEADER = "X-Cluster-Secret";
+
+    /**
+     * Status, headers and body of a node's answer.
+     */
+    public record Reply(int status, java.net.http.HttpHeaders headers, byte[] body) {
+
+        public String header(String name) {
+            return headers.firstValue(name).orElse(null);
+        }
+
+        public boolean isSuccess() {
+            return status >= 200 && status < 300;
+        }
+
+        public String text() {
+            return new String(body, StandardCharsets.UTF_8);
+        }
+    }
+
+    private final String self;
+    private final String secret;
+    private final Duration requestTimeout;
+    private final ObjectMapper objectMapper;
+    private final HttpClient httpClient;
+
+    @Autowired
+    public ClusterClient(ClusterProperties properties, ClusterRouter router, ObjectMapper objectMapper) {
+        this.self = router.getSelf();
+        this.secret = properties.getSecret();
+        this.requestTimeout = properties.getRequestTimeout();
+        this.objectMapper = objectMapper;
+        // Tomcat speaks HTTP/1.1 only, unless TLS is set up, and the client keeps the connections alive
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(requestTimeout)
+                .build();
+    }
+
+    /**
+     * Sends a request to {@code node} and waits for the whole answer.
+     *
+     * @param body    sent as is, or null for a request without a body
+     * @param headers header names and values, alternating; a null value leaves the header out
+     * @throws NodeUnavailableException if the node cannot be reached or does not answer in time
+     */
+    public Reply send(String node, String method, String pathAndQuery, byte[] body, String... headers) {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(node + pathAndQuery))
+                .timeout(requestTimeout)
+                .method(method, body == null ? HttpRequest.BodyPublishers.noBody()
+                        : HttpRequest.BodyPublishers.ofByteArray(body))
+                .header(FORWARDED_HEADER, self)
+                .header(SECRET_HEADER, secret);
+        for (int i = 0; i + 1 < headers.length; i += 2) {
+            if (headers[i + 1] != null) {
+                request.header(headers[i], headers[i + 1]);
+            }
+        }
+        try {
+            HttpResponse<byte[]> response = httpClient.send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+            return new Reply(response.statusCode(), response.headers(), response.body());
+        } catch (IOException ex) {
+            throw new NodeUnavailableException("Node " + node + " did not answer: " + ex);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new NodeUnavailableException("Interrupted while waiting for node " + node);
+        }
+    }
+
+    // Posts a message of the transfer protocol as JSON
+    public Reply post(String node, String path, Object message) {
+        try {
+            return send(node, "POST", path, objectMapper.writeValueAsBytes(message),
+                    HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE,
+                    HttpHeaders.ACCEPT, MediaType.APPLICATION_JSON_VALUE);
+        } catch (JsonProcessingException ex) {
+            throw new IllegalStateException("Cannot serialize " + message, ex);
+        }
+    }
+
+    /**
+     * @throws NodeUnavailableException if the body is not the JSON of a {@code type}
+     */
+    public <T> T read(Reply reply, Class<T> type) {
+        return read(reply, objectMapper.constructType(type));
+    }
+
+    public <T> T read(Reply reply, TypeReference<T> type) {
+        return read(reply, objectMapper.constructType(type));
+    }
+
+    private <T> T read(Reply reply, JavaType type) {
+        try {
+            return objectMapper.readValue(reply.body(), type);
+        } catch (IOException ex) {
+            throw new NodeUnavailableException("Unexpected answer from another node: " + reply.text());
+        }
+    }
+}
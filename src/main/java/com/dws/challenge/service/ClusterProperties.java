@@ -0,0 +1,38 @@
+package com.dws.challenge.service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import lombok.Data;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "cluster")
+public class ClusterProperties {
+
+  // Base URLs of every node, this one included; without any, this node owns every account
+  private List<String> nodes = new ArrayList<>();
+
+  // Base URL of this node, exactly as listed in nodes
+  private String self = "";
+
+  // Shared by every node and sent with each call between them; required once there are nodes
+  private String secret = "";
+
+  // Points of each node on the hash ring, more of them spread the accounts more evenly
+  private int virtualNodes = 128;
+
+  // Longest wait for another node, for forwarded requests and transfer protocol calls alike
+  private Duration requestTimeout = Duration.ofSeconds(5);
+
+  // Commit calls made while the client waits, then the pause between background retries
+  private int commitAttempts = 3;
+  private Duration resolveInterval = Duration.ofSeconds(1);
+
+  // How long a prepared transfer waits for its commit before it is refused
+  private Duration transactionRetention = Duration.ofMinutes(10);
+}
@@ -0,0 +1,83 @@
+package com.dws.challenge.service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Tells which cluster node owns an account, by consistent hashing of its id over the nodes listed
+ * in {@code cluster.nodes}. Every node must be given the same list. Without a list this node is on
+ * its own and owns every account, so nothing is ever routed elsewhere.
+ * <p>
+ * The nodes of a cluster prove they are one to another with {@code cluster.secret}, which every
+ * node must be given too.
+ */
+@Slf4j
+@Component
+public class ClusterRouter {
+
+    private final String self;
+    private final byte[] secret;
+    private final ConsistentHashRing ring;
+
+    @Autowired
+    public ClusterRouter(ClusterProperties properties) {
+        List<String> nodes = properties.getNodes().stream().map(ClusterRouter::normalize).toList();
+        this.self = normalize(properties.getSelf());
+        this.secret = properties.getSecret().getBytes(StandardCharsets.UTF_8);
+        if (nodes.isEmpty()) {
+            this.ring = null;
+            return;
+        }
+        if (!nodes.contains(self)) {
+            throw new IllegalStateException("cluster.self " + self + " is not one of cluster.nodes " + nodes);
+        }
+        if (properties.getSecret().isBlank()) {
+            throw new IllegalStateException("cluster.secret must be set for a cluster of nodes " + nodes);
+        }
+        this.ring = new ConsistentHashRing(nodes, properties.getVirtualNodes());
+        log.info("Node {} of a cluster of {} nodes", self, nodes.size());
+    }
+
+    public boolean isClustered() {
+        return ring != null;
+    }
+
+    // Base URL of this node
+    public String getSelf() {
+        return self;
+    }
+
+    // Whether a base URL is one of the nodes of the cluster, this one included
+    public boolean isNode(String url) {
+        return ring != null && url != null && ring.getNodes().contains(normalize(url));
+    }
+
+    /**
+     * Whether a call comes from a node of the cluster: it names one as its sender and carries the
+     * cluster's secret, compared in constant time.
+     */
+    public boolean authenticates(String url, String secret) {
+        return isNode(url) && secret != null
+                && MessageDigest.isEqual(this.secret, secret.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public String ownerOf(String accountId) {
+        return ring == null || accountId == null ? self : ring.ownerOf(accountId);
+    }
+
+    // Requests without an id are answered here, where they fail validation
+    public boolean isLocal(String accountId) {
+        return ring == null || accountId == null || ring.ownerOf(accountId).equals(self);
+    }
+
+    private static String normalize(String url) {
+        String trimmed = url.trim();
+        return trimmed.endsWith("/") ? trimmed.substring(0, trimmed.length() - 1) : trimmed;
+    }
+}
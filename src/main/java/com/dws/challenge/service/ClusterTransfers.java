@@ -0,0 +1,411 @@
+package com.dws.challenge.service;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.dto.ClusterTransferLeg;
+import com.dws.challenge.exception.AccountNotFoundException;
+import com.dws.challenge.exception.InvalidAmountException;
+import com.dws.challenge.exception.NodeUnavailableException;
+import com.dws.challenge.exception.TransferPendingException;
+import com.dws.challenge.exception.UnknownTransactionException;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Transfers between accounts owned by different cluster nodes, as a two-phase reserve/commit
+ * protocol run by the owner of the source account, the coordinator, with the owner of the
+ * destination, the participant:
+ * <ol>
+ * <li>prepare: the coordinator sends the amount in the currency of the source; the participant
+ * checks that the destination exists, converts the amount to its currency and keeps the leg;</li>
+ * <li>reserve: the coordinator debits the source, which makes the funds disappear from the cluster
+ * until the transfer completes, like a handoff between the shards of {@link ShardedTransferEngine}.
+ * The debit is journaled as the coordinator's side of the transfer, and durable before any commit;</li>
+ * <li>commit: the participant credits the destination with the amount it prepared, whatever the
+ * commit says, or refuses, in which case the coordinator refunds the source.</li>
+ * </ol>
+ * A commit is idempotent, the participant remembers its outcome until the coordinator has it and
+ * tells it to forget, so the coordinator may repeat it until it gets an answer. If it gets none
+ * while the client waits, the transfer is reported as pending and a background task keeps asking.
+ * The source is refunded only on a refusal; a participant that does not know the transfer may have
+ * credited it before it restarted, so the transfer then stays pending, with an error logged, for an
+ * operator to settle. Each node records its own side of the transfer.
+ * <p>
+ * Prepared transfers wait {@code cluster.transaction-retention} for their commit, then are refused.
+ * Outcomes and prepared transfers are kept in memory, so a participant that restarts forgets them.
+ * A coordinator that restarts forgets its pending transfers; their sources come back from the
+ * journal debited, as they must if the participant credited them, and a refusal is left for an
+ * operator to refund. A refund is journaled as the reverse transfer.
+ */
+@Slf4j
+@Service
+public class ClusterTransfers {
+
+    static final String PATH = "/internal/cluster/transfers/";
+
+    private enum Outcome {
+        COMMITTING, COMMITTED, REFUSED
+    }
+
+    private record Resolution(Outcome outcome, String message) {
+    }
+
+    private record Prepared(ClusterTransferLeg leg, long at) {
+    }
+
+    // A debited transfer whose commit was not confirmed yet, settled once it is credited or refunded
+    private record Pending(String node, ClusterTransferLeg leg, CompletableFuture<Void> settlement) {
+    }
+
+    private final ClusterRouter router;
+    private final ClusterClient client;
+    private final AccountsService accountsService;
+    private final TransferEngine transferEngine;
+    private final FxRates fxRates;
+    private final NotificationDispatcher notificationDispatcher;
+    private final int commitAttempts;
+    private final long retentionNanos;
+    private final Map<String, Prepared> prepared = new ConcurrentHashMap<>();
+    private final Map<String, Resolution> resolutions = new ConcurrentHashMap<>();
+    private final Map<String, Pending> pending = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService resolver;
+
+    @Autowired
+    public ClusterTransfers(ClusterProperties properties, ClusterRouter router, ClusterClient client,
+            AccountsService accountsService, TransferEngine transferEngine, FxRates fxRates,
+            NotificationDispatcher notificationDispatcher) {
+        this.router = router;
+        this.client = client;
+        this.accountsService = accountsService;
+        this.transferEngine = transferEngine;
+        this.fxRates = fxRates;
+        this.notificationDispatcher = notificationDispatcher;
+        this.commitAttempts = Math.max(1, properties.getCommitAttempts());
+        this.retentionNanos = properties.getTransactionRetention().toNanos();
+
+        if (router.isClustered()) {
+            long intervalMillis = properties.getResolveInterval().toMillis();
+            this.resolver = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "cluster-resolver");
+                thread.setDaemon(true);
+                return thread;
+            });
+            resolver.scheduleWithFixedDelay(this::resolveQuietly, intervalMillis, intervalMillis,
+                    TimeUnit.MILLISECONDS);
+        } else {
+            this.resolver = null;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (resolver != null) {
+            resolver.shutdownNow();
+        }
+    }
+
+    public boolean isRemote(String accountId) {
+        return !router.isLocal(accountId);
+    }
+
+    /**
+     * Coordinates a transfer from a local account to an account of another node.
+     *
+     * @return the amount credited, in minor units of the destination's currency
+     * @throws AccountNotFoundException  if the destination does not exist
+     * @throws IllegalArgumentException  if the source does not hold the amount, it cannot be
+     *                                   converted or the destination refused the credit; the
+     *                                   source is left as it was
+     * @throws NodeUnavailableException  if the owner of the destination cannot be reached before
+     *                                   anything was debited
+     * @throws TransferPendingException  if the source was debited but the credit is not confirmed
+     */
+    public long transfer(Account accountFrom, String accountToId, long amount) {
+        String node = router.ownerOf(accountToId);
+        String transactionId = UUID.randomUUID().toString();
+        ClusterTransferLeg leg = new ClusterTransferLeg(accountFrom.getAccountId(), accountToId, amount, 0,
+                accountFrom.getCurrency());
+
+        ClusterClient.Reply reply = client.post(node, PATH + transactionId + "/prepare", leg);
+        if (reply.status() == 404) {
+            throw new AccountNotFoundException("To or from account Id missing!");
+        }
+        if (reply.status() == 400) {
+            throw new InvalidAmountException(reply.text());
+        }
+        if (!reply.isSuccess()) {
+            throw new NodeUnavailableException("Node " + node + " could not prepare the transfer: " + reply.text());
+        }
+        leg.setCreditedAmount(client.read(reply, ClusterTransferLeg.class).getCreditedAmount());
+
+        // Journaled while the engine holds the source, an append that fails takes the debit back
+        long[] journalPosition = new long[1];
+        try {
+            transferEngine.debit(accountFrom, amount, () -> journalPosition[0] = accountsService.journalTransfer(
+                    leg.getAccountFromId(), accountToId, amount, leg.getCreditedAmount()));
+        } catch (RuntimeException ex) {
+            abortQuietly(node, transactionId);
+            throw ex;
+        }
+        try {
+            // No credit before the debit survives a crash
+            accountsService.awaitDurable(journalPosition[0]);
+        } catch (RuntimeException ex) {
+            abortQuietly(node, transactionId);
+            try {
+                refund(leg);
+            } catch (RuntimeException refundFailure) {
+                ex.addSuppressed(refundFailure);
+                log.error("Transfer {} stays debited from {}, it could not be refunded", transactionId,
+                        leg.getAccountFromId(), refundFailure);
+            }
+            throw ex;
+        }
+
+        Resolution resolution = null;
+        for (int attempt = 0; attempt < commitAttempts && resolution == null; attempt++) {
+            resolution = commit(node, transactionId, leg);
+        }
+        if (resolution != null) {
+            try {
+                complete(node, transactionId, leg, resolution);
+                return leg.getCreditedAmount();
+            } catch (IllegalArgumentException ex) {
+                throw ex;
+            } catch (RuntimeException ex) {
+                log.warn("Could not complete transfer {}, retrying in the background", transactionId, ex);
+            }
+        }
+        CompletableFuture<Void> settlement = new CompletableFuture<>();
+        pending.put(transactionId, new Pending(node, leg, settlement));
+        log.warn("Transfer {} to {} on node {} is debited but not confirmed, retrying in the background",
+                transactionId, accountToId, node);
+        throw new TransferPendingException("Transfer " + transactionId + " is debited, its credit on node "
+                + node + " is not confirmed yet", settlement);
+    }
+
+    // Null when the outcome is still unknown
+    private Resolution commit(String node, String transactionId, ClusterTransferLeg leg) {
+        ClusterClient.Reply reply;
+        try {
+            reply = client.post(node, PATH + transactionId + "/commit", leg);
+        } catch (NodeUnavailableException ex) {
+            return null;
+        }
+        if (reply.isSuccess()) {
+            return new Resolution(Outcome.COMMITTED, null);
+        }
+        if (reply.status() == 400) {
+            return new Resolution(Outcome.REFUSED, reply.text());
+        }
+        // Not known, which is no answer: the participant may have credited it and restarted since
+        if (reply.status() == 409) {
+            log.error("Node {} does not know transfer {} of {} to {}, it stays debited until settled by hand: {}",
+                    node, transactionId, leg.getAccountFromId(), leg.getAccountToId(), reply.text());
+        }
+        return null;
+    }
+
+    // The participant keeps the outcome until told to forget it, which is done once the outcome is applied here
+    private void complete(String node, String transactionId, ClusterTransferLeg leg, Resolution resolution) {
+        if (resolution.outcome() == Outcome.COMMITTED) {
+            // Journaled and durable with the reservation
+            accountsService.recordTransfer(leg.getAccountFromId(), leg.getAccountToId(), leg.getAmount(),
+                    leg.getCreditedAmount(), 0);
+            forgetQuietly(node, transactionId);
+            return;
+        }
+        refund(leg);
+        forgetQuietly(node, transactionId);
+        throw new InvalidAmountException(resolution.message());
+    }
+
+    // Gives the reservation back, journaled as the reverse transfer
+    private void refund(ClusterTransferLeg leg) {
+        Account accountFrom = accountsService.getAccount(leg.getAccountFromId());
+        long[] journalPosition = new long[1];
+        transferEngine.credit(accountFrom, leg.getAmount(), () -> journalPosition[0] = accountsService.journalTransfer(
+                leg.getAccountToId(), leg.getAccountFromId(), leg.getCreditedAmount(), leg.getAmount()));
+        accountsService.awaitDurable(journalPosition[0]);
+    }
+
+    private void forgetQuietly(String node, String transactionId) {
+        try {
+            client.post(node, PATH + transactionId + "/forget", new ClusterTransferLeg());
+        } catch (NodeUnavailableException ex) {
+            log.warn("Could not tell node {} to forget transfer {}", node, transactionId);
+        }
+    }
+
+    private void abortQuietly(String node, String transactionId) {
+        try {
+            client.post(node, PATH + transactionId + "/abort", new ClusterTransferLeg());
+        } catch (NodeUnavailableException ex) {
+            // The participant drops the prepared transfer once it is retained long enough
+            log.debug("Could not abort transfer {} on node {}", transactionId, node);
+        }
+    }
+
+    private void resolveQuietly() {
+        try {
+            resolve();
+        } catch (RuntimeException ex) {
+            log.error("Resolving pending cluster transfers failed", ex);
+        }
+    }
+
+    // Asks again for the outcome of every pending transfer, and forgets what is retained long enough
+    public void resolve() {
+        pending.forEach((transactionId, transfer) -> {
+            Resolution resolution = commit(transfer.node(), transactionId, transfer.leg());
+            if (resolution == null) {
+                return;
+            }
+            try {
+                complete(transfer.node(), transactionId, transfer.leg(), resolution);
+                pending.remove(transactionId);
+                transfer.settlement().complete(null);
+                Account accountFrom = accountsService.getAccount(transfer.leg().getAccountFromId());
+                notificationDispatcher.notifyAboutTransfer(accountFrom,
+                        "Money debited from " + accountFrom.getAccountId());
+                log.info("Pending transfer {} committed", transactionId);
+            } catch (IllegalArgumentException ex) {
+                pending.remove(transactionId);
+                transfer.settlement().completeExceptionally(ex);
+                log.info("Pending transfer {} refused and refunded: {}", transactionId, ex.getMessage());
+            } catch (RuntimeException ex) {
+                // The participant keeps the outcome until told to forget it, so it is asked again
+                log.warn("Could not complete pending transfer {}, retrying", transactionId, ex);
+            }
+        });
+
+        long expired = System.nanoTime() - retentionNanos;
+        prepared.forEach((transactionId, entry) -> {
+            if (entry.at() - expired < 0) {
+                // Under the key of the outcome, so that a commit either comes first or finds the refusal
+                resolutions.compute(transactionId, (id, resolution) -> {
+                    if (resolution != null || !prepared.remove(id, entry)) {
+                        return resolution;
+                    }
+                    return new Resolution(Outcome.REFUSED, "Transfer " + id + " was not committed in time");
+                });
+            }
+        });
+    }
+
+    /**
+     * Participant, first phase: checks that the destination of a transfer is an account of this node
+     * and converts the amount to its currency. The prepared leg is what a commit credits.
+     *
+     * @return the prepared leg, with the currency of the destination and the amount credited to it
+     * @throws AccountNotFoundException if it is not
+     * @throws IllegalArgumentException if the amount is not positive or cannot be converted
+     */
+    public ClusterTransferLeg prepare(String transactionId, ClusterTransferLeg leg) {
+        String accountToId = leg.getAccountToId();
+        Account accountTo = accountToId == null || isRemote(accountToId) ? null
+                : accountsService.getAccount(accountToId);
+        if (accountTo == null) {
+            throw new AccountNotFoundException("Account id " + accountToId + " not found");
+        }
+        if (leg.getAmount() <= 0 || leg.getCurrency() == null) {
+            throw new InvalidAmountException("We do not support overdrafts!");
+        }
+        ClusterTransferLeg preparedLeg = new ClusterTransferLeg(leg.getAccountFromId(), accountToId, leg.getAmount(),
+                fxRates.convert(leg.getCurrency(), accountTo.getCurrency(), leg.getAmount()), accountTo.getCurrency());
+        prepared.put(transactionId, new Prepared(preparedLeg, System.nanoTime()));
+        return preparedLeg;
+    }
+
+    /**
+     * Participant, second phase: credits the destination of a prepared transfer with the amount it
+     * was prepared with; the amounts of {@code leg} are not looked at. Committing again a transfer
+     * that was committed does nothing, so the coordinator may repeat a commit whose answer it did not
+     * get.
+     *
+     * @throws IllegalArgumentException     if the credit is refused, now or when first committed
+     * @throws UnknownTransactionException  if the transfer was never prepared here, or was forgotten;
+     *                                      it may then have been credited before a restart
+     * @throws IllegalStateException        if the same commit is still being applied, or the credit
+     *                                      could not be journaled and may be committed again
+     */
+    public void commit(String transactionId, ClusterTransferLeg leg) {
+        Resolution previous = resolutions.putIfAbsent(transactionId, new Resolution(Outcome.COMMITTING, null));
+        if (previous != null) {
+            switch (previous.outcome()) {
+                case COMMITTED -> {
+                    return;
+                }
+                case REFUSED -> throw new InvalidAmountException(previous.message());
+                default -> throw new IllegalStateException("Transfer " + transactionId + " is being committed");
+            }
+        }
+
+        Prepared entry = prepared.remove(transactionId);
+        if (entry == null) {
+            resolutions.remove(transactionId);
+            throw new UnknownTransactionException("Transfer " + transactionId + " is not prepared on this node");
+        }
+        ClusterTransferLeg preparedLeg = entry.leg();
+        String accountFromId = preparedLeg.getAccountFromId();
+        String accountToId = preparedLeg.getAccountToId();
+        Account accountTo = accountsService.getAccount(accountToId);
+        // Journaled while the engine holds the destination, an append that fails takes the credit back
+        long[] journalPosition = new long[1];
+        try {
+            if (accountTo == null) {
+                throw new AccountNotFoundException("Account id " + accountToId + " not found");
+            }
+            transferEngine.credit(accountTo, preparedLeg.getCreditedAmount(), () -> journalPosition[0] =
+                    accountsService.journalTransfer(accountFromId, accountToId, preparedLeg.getAmount(),
+                            preparedLeg.getCreditedAmount()));
+        } catch (IllegalArgumentException ex) {
+            resolutions.put(transactionId, new Resolution(Outcome.REFUSED, ex.getMessage()));
+            throw ex;
+        } catch (RuntimeException ex) {
+            // Not applied, a repeated commit tries again
+            prepared.put(transactionId, entry);
+            resolutions.remove(transactionId);
+            throw new IllegalStateException("Transfer " + transactionId + " could not be credited: " + ex.getMessage(),
+                    ex);
+        }
+        // Committed from here on, whatever fails while it is recorded
+        resolutions.put(transactionId, new Resolution(Outcome.COMMITTED, null));
+        accountsService.recordTransfer(accountFromId, accountToId, preparedLeg.getAmount(),
+                preparedLeg.getCreditedAmount(), journalPosition[0]);
+
+        notificationDispatcher.notifyAboutTransfer(accountTo, "Money Credited to " + accountToId);
+    }
+
+    // Participant: drops a prepared transfer that will not be committed, the coordinator did not debit it
+    public void abort(String transactionId) {
+        resolutions.compute(transactionId, (id, resolution) -> {
+            if (resolution == null) {
+                prepared.remove(id);
+            }
+            return resolution;
+        });
+    }
+
+    // Participant: drops the outcome of a transfer the coordinator has, it will not commit it again
+    public void forget(String transactionId) {
+        resolutions.computeIfPresent(transactionId,
+                (id, resolution) -> resolution.outcome() == Outcome.COMMITTING ? resolution : null);
+    }
+
+    // Transfers debited here whose credit is not confirmed yet
+    public int getPendingCount() {
+        return pending.size();
+    }
+}
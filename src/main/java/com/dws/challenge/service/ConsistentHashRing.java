@@ -0,0 +1,92 @@
+package com.dws.challenge.service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * Assigns keys to nodes by consistent hashing. Each node is placed on a 64-bit ring at
+ * {@code virtualNodes} points, and a key belongs to the node of the first point at or after its own
+ * hash, wrapping around. Adding or removing a node therefore only moves the keys of its own arcs,
+ * about {@code 1/n} of them, and the many points per node keep the arcs of every node about equally
+ * long.
+ * <p>
+ * The hash depends on the characters of the key only, so every node that is given the same list of
+ * nodes agrees on the owner of every key. A lookup is a binary search over a sorted array.
+ */
+public final class ConsistentHashRing {
+
+    private record Point(long hash, String node) {
+    }
+
+    private final List<String> nodes;
+    private final long[] hashes;
+    private final String[] owners;
+
+    /**
+     * @throws IllegalArgumentException if there are no nodes, a node is listed twice or
+     *                                  {@code virtualNodes} is not positive
+     */
+    public ConsistentHashRing(List<String> nodes, int virtualNodes) {
+        if (nodes.isEmpty()) {
+            throw new IllegalArgumentException("A hash ring needs at least one node");
+        }
+        if (virtualNodes < 1) {
+            throw new IllegalArgumentException("Every node needs at least one point on the ring");
+        }
+        if (new HashSet<>(nodes).size() != nodes.size()) {
+            throw new IllegalArgumentException("Nodes must be listed once each");
+        }
+
+        List<Point> points = new ArrayList<>(nodes.size() * virtualNodes);
+        for (String node : nodes) {
+            for (int i = 0; i < virtualNodes; i++) {
+                points.add(new Point(hash(node + '#' + i), node));
+            }
+        }
+        // Ties are broken by node, so that the ring does not depend on the order of the list
+        points.sort(Comparator.comparingLong(Point::hash).thenComparing(Point::node));
+        this.nodes = List.copyOf(nodes);
+        this.hashes = new long[points.size()];
+        this.owners = new String[points.size()];
+        for (int i = 0; i < hashes.length; i++) {
+            hashes[i] = points.get(i).hash();
+            owners[i] = points.get(i).node();
+        }
+    }
+
+    public List<String> getNodes() {
+        return nodes;
+    }
+
+    public String ownerOf(String key) {
+        long hash = hash(key);
+        // First point at or after the hash: the insertion point when there is no exact match
+        int low = 0;
+        int high = hashes.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (hashes[middle] < hash) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return owners[low == hashes.length ? 0 : low];
+    }
+
+    // 64-bit polynomial hash of the characters, spread over the ring by the MurmurHash3 finalizer
+    static long hash(String key) {
+        long hash = 0;
+        for (int i = 0; i < key.length(); i++) {
+            hash = 31 * hash + key.charAt(i);
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
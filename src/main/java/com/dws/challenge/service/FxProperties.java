@@ -0,0 +1,22 @@
+package com.dws.challenge.service;
+
+import java.math.BigDecimal;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import lombok.Data;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "fx")
+public class FxProperties {
+
+  // Currency the rates are quoted against
+  private String base = "EUR";
+
+  // Rates at startup, units of each currency per unit of the base; PUT /v1/fx/rates replaces them
+  private Map<String, BigDecimal> rates = new LinkedHashMap<>();
+}
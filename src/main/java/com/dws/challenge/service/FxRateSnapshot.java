@@ -0,0 +1,185 @@
+package com.dws.challenge.service;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import com.dws.challenge.exception.InvalidAmountException;
+
+/**
+ * Immutable table of exchange rates, as published by {@link FxRates}. Rates are given as units of
+ * each currency per unit of the base currency; the cross rate of every pair of currencies is worked
+ * out once, when the snapshot is built, and kept as a fixed-point multiplier: a 62-bit mantissa and
+ * a shift, so that converting an amount takes one 64x64-bit multiplication and a shift, without any
+ * {@link BigDecimal} arithmetic on the transfer path.
+ * <p>
+ * The mantissa is rounded up and the product rounded half up. The result is at most
+ * 2<sup>-61</sup> of itself above the exact {@code amount * rate}, so it equals the exact product
+ * rounded half up unless that lies just below a half: for rates with up to six decimal places that
+ * cannot happen below 2<sup>40</sup> minor units, larger amounts may come out one minor unit high.
+ */
+public final class FxRateSnapshot {
+
+    private static final Pattern CURRENCY = Pattern.compile("[A-Z]{3}");
+    private static final MathContext CROSS_RATE = new MathContext(40);
+    // Mantissas stay below 2^62, cross rates between 2^-60 and 2^60 keep the shift within (0, 126)
+    private static final BigDecimal MIN_RATE = BigDecimal.ONE.divide(new BigDecimal(1L << 60));
+    private static final BigDecimal MAX_RATE = new BigDecimal(1L << 60);
+
+    private final long version;
+    private final Instant updatedAt;
+    private final String base;
+    private final Map<String, BigDecimal> rates;
+    private final Map<String, Integer> indexes;
+    private final int currencies;
+    private final long[] multipliers;
+    private final int[] shifts;
+
+    /**
+     * @param rates units of each currency per unit of {@code base}, the base itself may be left out
+     * @throws IllegalArgumentException if a currency is not a three letter code or a rate is not
+     *                                  positive, or a cross rate is out of range
+     */
+    FxRateSnapshot(long version, Instant updatedAt, String base, Map<String, BigDecimal> rates) {
+        if (base == null || !CURRENCY.matcher(base).matches()) {
+            throw new IllegalArgumentException("Base currency must be an ISO 4217 code");
+        }
+        Map<String, BigDecimal> allRates = new LinkedHashMap<>();
+        allRates.put(base, BigDecimal.ONE);
+        rates.forEach((currency, rate) -> {
+            if (currency == null || !CURRENCY.matcher(currency).matches()) {
+                throw new IllegalArgumentException("Currency " + currency + " is not an ISO 4217 code");
+            }
+            if (rate == null || rate.signum() <= 0) {
+                throw new IllegalArgumentException("Rate of " + currency + " must be positive");
+            }
+            if (currency.equals(base) && rate.compareTo(BigDecimal.ONE) != 0) {
+                throw new IllegalArgumentException("Rate of the base currency " + base + " must be 1");
+            }
+            allRates.put(currency, rate);
+        });
+
+        this.version = version;
+        this.updatedAt = updatedAt;
+        this.base = base;
+        this.rates = Collections.unmodifiableMap(allRates);
+        this.currencies = allRates.size();
+        this.indexes = new HashMap<>();
+        BigDecimal[] ordered = new BigDecimal[currencies];
+        for (Map.Entry<String, BigDecimal> entry : allRates.entrySet()) {
+            ordered[indexes.size()] = entry.getValue();
+            indexes.put(entry.getKey(), indexes.size());
+        }
+
+        this.multipliers = new long[currencies * currencies];
+        this.shifts = new int[currencies * currencies];
+        for (int from = 0; from < currencies; from++) {
+            for (int to = 0; to < currencies; to++) {
+                BigDecimal crossRate = ordered[to].divide(ordered[from], CROSS_RATE);
+                if (crossRate.compareTo(MIN_RATE) < 0 || crossRate.compareTo(MAX_RATE) > 0) {
+                    throw new IllegalArgumentException("Cross rate " + crossRate + " is out of range");
+                }
+                fixedPoint(crossRate, from * currencies + to);
+            }
+        }
+    }
+
+    // Picks the shift that puts the mantissa in [2^61, 2^62)
+    private void fixedPoint(BigDecimal rate, int pair) {
+        int shift = 61 - Math.getExponent(rate.doubleValue());
+        long mantissa;
+        while (true) {
+            BigInteger ceiling = rate.multiply(new BigDecimal(BigInteger.ONE.shiftLeft(shift)))
+                    .setScale(0, RoundingMode.CEILING).toBigIntegerExact();
+            if (ceiling.bitLength() > 62) {
+                shift--;
+            } else if (ceiling.bitLength() < 62) {
+                shift++;
+            } else {
+                mantissa = ceiling.longValueExact();
+                break;
+            }
+        }
+        multipliers[pair] = mantissa;
+        shifts[pair] = shift;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public Instant getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public String getBase() {
+        return base;
+    }
+
+    // Units of each currency per unit of the base currency, the base included
+    public Map<String, BigDecimal> getRates() {
+        return rates;
+    }
+
+    /**
+     * Converts {@code amount} minor units of {@code fromCurrency} to minor units of
+     * {@code toCurrency}, rounding half up. Accounts of every currency have the same scale, so minor
+     * units convert at the same rate as major ones.
+     *
+     * @throws InvalidAmountException if a currency has no rate, or the converted amount does not fit a
+     *                                long or rounds to nothing while the amount does not
+     */
+    public long convert(String fromCurrency, String toCurrency, long amount) {
+        if (fromCurrency.equals(toCurrency)) {
+            return amount;
+        }
+        Integer from = indexes.get(fromCurrency);
+        Integer to = indexes.get(toCurrency);
+        if (from == null || to == null) {
+            throw new InvalidAmountException("No exchange rate from " + fromCurrency + " to " + toCurrency);
+        }
+        int pair = from * currencies + to;
+        long converted = multiply(amount, multipliers[pair], shifts[pair]);
+        // The source would be debited for nothing at all on the other side
+        if (converted == 0 && amount != 0) {
+            throw new InvalidAmountException("Amount is too small to be converted from " + fromCurrency + " to "
+                    + toCurrency);
+        }
+        return converted;
+    }
+
+    // (amount * mantissa + 2^(shift - 1)) >> shift on the 128-bit product
+    private static long multiply(long amount, long mantissa, int shift) {
+        if (amount < 0) {
+            throw new InvalidAmountException("Only positive amounts are converted");
+        }
+        long high = Math.multiplyHigh(amount, mantissa);
+        long low = amount * mantissa;
+        if (shift <= 64) {
+            long half = 1L << (shift - 1);
+            long rounded = low + half;
+            if (Long.compareUnsigned(rounded, low) < 0) {
+                high++;
+            }
+            low = rounded;
+        } else {
+            high += 1L << (shift - 65);
+        }
+
+        if (shift >= 64) {
+            return high >>> (shift - 64);
+        }
+        // Bits from 63 up of the shifted product must be clear
+        if (high >>> (shift - 1) != 0) {
+            throw new InvalidAmountException("Converted amount is too large");
+        }
+        return high << (64 - shift) | low >>> shift;
+    }
+}
@@ -0,0 +1,80 @@
+package com.dws.challenge.service;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.dws.challenge.domain.Account;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Exchange rates used to convert transfers between accounts of different currencies. The current
+ * rates are one immutable {@link FxRateSnapshot}, read with a single volatile load; an update builds
+ * a whole new snapshot, precomputing every cross rate, and swaps it in. A transfer therefore
+ * converts with the rates of one snapshot, and never waits for an update.
+ */
+@Slf4j
+@Component
+public class FxRates {
+
+    private final ReentrantLock updateLock = new ReentrantLock();
+    private volatile FxRateSnapshot snapshot;
+
+    @Autowired
+    public FxRates(FxProperties properties) {
+        this.snapshot = new FxRateSnapshot(1, Instant.now(), properties.getBase().toUpperCase(Locale.ROOT),
+                upperCase(properties.getRates()));
+    }
+
+    public FxRateSnapshot current() {
+        return snapshot;
+    }
+
+    /**
+     * Converts {@code amount} minor units from the currency of {@code accountFrom} to that of
+     * {@code accountTo}, see {@link FxRateSnapshot#convert(String, String, long)}.
+     */
+    public long convert(Account accountFrom, Account accountTo, long amount) {
+        return convert(accountFrom.getCurrency(), accountTo.getCurrency(), amount);
+    }
+
+    // For a destination owned by another cluster node, known by its currency only
+    public long convert(String fromCurrency, String toCurrency, long amount) {
+        // Same-currency transfers do not even look at the snapshot
+        return fromCurrency.equals(toCurrency) ? amount : snapshot.convert(fromCurrency, toCurrency, amount);
+    }
+
+    /**
+     * Replaces every rate. Transfers converting at the same time use either the old or the new rates.
+     *
+     * @return the new snapshot
+     * @throws IllegalArgumentException if a currency or a rate is invalid, the current rates then stay
+     */
+    public FxRateSnapshot update(String base, Map<String, BigDecimal> rates) {
+        // Serialized so that versions follow the order the snapshots are published in
+        updateLock.lock();
+        try {
+            FxRateSnapshot updated = new FxRateSnapshot(snapshot.getVersion() + 1, Instant.now(), base, rates);
+            snapshot = updated;
+            log.info("Exchange rates updated to version {}, {} currencies against {}", updated.getVersion(),
+                    updated.getRates().size(), updated.getBase());
+            return updated;
+        } finally {
+            updateLock.unlock();
+        }
+    }
+
+    // Relaxed binding may hand the currency keys over in lower case
+    private static Map<String, BigDecimal> upperCase(Map<String, BigDecimal> rates) {
+        Map<String, BigDecimal> result = new LinkedHashMap<>();
+        rates.forEach((currency, rate) -> result.put(currency.toUpperCase(Locale.ROOT), rate));
+        return result;
+    }
+}
@@ -0,0 +1,28 @@
+package com.dws.challenge.service;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import lombok.Data;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "holds")
+public class HoldProperties {
+
+  // Lifetime of a hold authorized without an expiry, and the longest one accepted
+  private Duration defaultTtl = Duration.ofDays(7);
+  private Duration maxTtl = Duration.ofDays(30);
+
+  // Resolution of the expiry wheels, an expired hold is released at most this late
+  private Duration sweepInterval = Duration.ofMillis(100);
+
+  // Expiry wheels, each behind a lock of its own, so that concurrent authorizations do not queue
+  // on one (0 = number of cores)
+  private int wheels = 0;
+
+  // Captured, voided and expired holds stay readable this long
+  private Duration retention = Duration.ofHours(1);
+}
@@ -0,0 +1,418 @@
+package com.dws.challenge.service;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.Hold;
+import com.dws.challenge.dto.AccountHolds;
+import com.dws.challenge.dto.HoldRequest;
+import com.dws.challenge.exception.AccountNotFoundException;
+import com.dws.challenge.exception.InvalidAmountException;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Authorize, capture and void of balance holds, see {@link Hold}. Authorizing debits the held
+ * amount from the account through {@link TransferEngine#debit}, the same single-account write as
+ * the first half of a cross-node transfer: it costs one account lock, and no transfer of any engine
+ * can spend held funds. The account's balance is therefore its available balance; the held total
+ * is kept beside it, per account, in a book updated with each hold, so that the ledger balance,
+ * available plus held, costs one read.
+ * <p>
+ * Capturing credits the destination and gives back what is not captured, and is recorded as a
+ * transfer of the captured amount; authorizing, voiding and expiring are not recorded. A restart
+ * thus forgets the active holds and the journaled balances come back without them. The transfer is
+ * journaled while the engine holds the destination; a credit that cannot be journaled, or whose
+ * rest cannot be given back, is taken back and the hold stays authorized.
+ * <p>
+ * Expiries wait in {@link TimingWheel}s, several behind locks of their own so that concurrent
+ * authorizations do not serialize on one. A sweeper thread advances them every
+ * {@code holds.sweep-interval} and releases only the holds that expired, without looking at the
+ * others or at the accounts. Finished holds go through the same wheels once more, to be forgotten
+ * after {@code holds.retention}.
+ */
+@Slf4j
+@Service
+public class HoldService {
+
+    private static final int WHEEL_LEVELS = 4;
+
+    // The hold is replaced under the entry's lock and read without it
+    private static final class Entry {
+
+        // Not a monitor, capturing waits for account locks and the engine while holding it
+        final ReentrantLock lock = new ReentrantLock();
+        volatile Hold hold;
+        final Wheel wheel;
+        // Guarded by the lock of its wheel
+        TimingWheel.Timeout<Entry> timeout;
+
+        Entry(Hold hold, Wheel wheel) {
+            this.hold = hold;
+            this.wheel = wheel;
+        }
+    }
+
+    // The active holds of one account and their total
+    private static final class HoldBook {
+
+        final Map<String, Entry> active = new ConcurrentHashMap<>();
+        final AtomicLong held = new AtomicLong();
+    }
+
+    private static final class Wheel {
+
+        final ReentrantLock lock = new ReentrantLock();
+        final TimingWheel<Entry> timeouts;
+
+        Wheel(long tickMillis, long nowMillis) {
+            this.timeouts = new TimingWheel<>(tickMillis, WHEEL_LEVELS, nowMillis);
+        }
+    }
+
+    private final HoldProperties properties;
+    private final AccountsService accountsService;
+    private final TransferEngine transferEngine;
+    private final FxRates fxRates;
+    private final ClusterRouter router;
+    private final NotificationDispatcher notificationDispatcher;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Map<String, HoldBook> books = new ConcurrentHashMap<>();
+    private final Wheel[] wheels;
+    private final AtomicInteger activeCount = new AtomicInteger();
+    private final ScheduledExecutorService sweeper;
+
+    @Autowired
+    public HoldService(HoldProperties properties, AccountsService accountsService, TransferEngine transferEngine,
+            FxRates fxRates, ClusterRouter router, NotificationDispatcher notificationDispatcher,
+            MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.accountsService = accountsService;
+        this.transferEngine = transferEngine;
+        this.fxRates = fxRates;
+        this.router = router;
+        this.notificationDispatcher = notificationDispatcher;
+        long tickMillis = Math.max(1, properties.getSweepInterval().toMillis());
+        long now = System.currentTimeMillis();
+        this.wheels = new Wheel[properties.getWheels() > 0 ? properties.getWheels()
+                : Runtime.getRuntime().availableProcessors()];
+        for (int i = 0; i < wheels.length; i++) {
+            wheels[i] = new Wheel(tickMillis, now);
+        }
+        this.sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "hold-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sweeper.scheduleAtFixedRate(this::sweepQuietly, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+
+        Gauge.builder("holds.active", activeCount, AtomicInteger::get)
+                .description("Authorized holds, neither captured nor released yet")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sweeper.shutdownNow();
+    }
+
+    /**
+     * Reserves funds of {@code accountId}, an account of this node, until the hold is captured,
+     * voided or expires.
+     *
+     * @throws IllegalArgumentException if an account does not exist or is owned by another node, the
+     *                                  amount is not positive, not in the account's currency or not
+     *                                  available, or the expiry is not within {@code holds.max-ttl}
+     */
+    public Hold authorize(String accountId, HoldRequest request) {
+        Account account = accountsService.getAccount(accountId);
+        String accountToId = request.getAccountToId();
+        if (accountToId != null && !router.isLocal(accountToId)) {
+            throw new IllegalArgumentException("A hold cannot be captured to an account of another cluster node");
+        }
+        if (account == null || accountToId == null || accountsService.getAccount(accountToId) == null) {
+            throw new AccountNotFoundException("To or from account Id missing!");
+        }
+        if (request.getAmount() == null || request.getAmount().signum() <= 0) {
+            throw new InvalidAmountException("We do not support overdrafts!");
+        }
+        if (request.getCurrency() != null && !request.getCurrency().equals(account.getCurrency())) {
+            throw new InvalidAmountException("Amount must be given in " + account.getCurrency()
+                    + ", the currency of the account");
+        }
+        long amount = account.toMinorUnits(request.getAmount());
+        Instant now = Instant.now();
+        Instant expiresAt = request.getExpiresAt() != null ? request.getExpiresAt()
+                : now.plus(properties.getDefaultTtl());
+        if (!expiresAt.isAfter(now) || expiresAt.isAfter(now.plus(properties.getMaxTtl()))) {
+            throw new IllegalArgumentException("A hold must expire within " + properties.getMaxTtl() + " from now");
+        }
+
+        transferEngine.debit(account, amount);
+        Hold hold = new Hold(newId(), accountId, accountToId, amount, account.getCurrency(), now, expiresAt,
+                Hold.Status.AUTHORIZED, 0, null);
+        // Any wheel will do, a random one spreads concurrent authorizations over their locks
+        Entry entry = new Entry(hold, wheels[ThreadLocalRandom.current().nextInt(wheels.length)]);
+        entry.lock.lock();
+        try {
+            entries.put(hold.id(), entry);
+            books.compute(accountId, (id, book) -> {
+                HoldBook updated = book != null ? book : new HoldBook();
+                updated.active.put(hold.id(), entry);
+                updated.held.addAndGet(amount);
+                return updated;
+            });
+            activeCount.incrementAndGet();
+            schedule(entry, expiresAt);
+        } finally {
+            entry.lock.unlock();
+        }
+        return hold;
+    }
+
+    /**
+     * Transfers {@code amount}, or the whole hold if null, to the hold's destination and gives the
+     * rest back to the account. If either fails, the hold stays authorized and nothing is credited.
+     *
+     * @return the captured hold, or null if there is no such hold of the account
+     * @throws IllegalArgumentException if the amount is not positive or more than the hold, or the
+     *                                  destination no longer exists or would overflow
+     * @throws IllegalStateException    if the hold is no longer authorized
+     */
+    public Hold capture(String accountId, String id, BigDecimal amount) {
+        Entry entry = find(accountId, id);
+        if (entry == null) {
+            return null;
+        }
+        Account account = accountsService.getAccount(accountId);
+        Account accountTo;
+        Hold hold;
+        long captured;
+        long creditedAmount;
+        long[] journalPosition = new long[1];
+        entry.lock.lock();
+        try {
+            hold = entry.hold;
+            if (hold.status() != Hold.Status.AUTHORIZED) {
+                throw new IllegalStateException("Hold " + id + " is " + hold.status() + ", it cannot be captured");
+            }
+            if (amount != null && amount.signum() <= 0) {
+                throw new InvalidAmountException("We do not support overdrafts!");
+            }
+            captured = amount != null ? account.toMinorUnits(amount) : hold.amountMinorUnits();
+            if (captured > hold.amountMinorUnits()) {
+                throw new InvalidAmountException("Cannot capture more than the held " + hold.getAmount());
+            }
+            accountTo = accountsService.getAccount(hold.accountToId());
+            if (accountTo == null) {
+                throw new AccountNotFoundException("To or from account Id missing!");
+            }
+
+            creditedAmount = fxRates.convert(account, accountTo, captured);
+            // Journaled while the engine holds the destination, an append that fails takes the credit back
+            transferEngine.credit(accountTo, creditedAmount, () -> journalPosition[0] =
+                    accountsService.journalTransfer(account, accountTo, captured, creditedAmount));
+            if (captured < hold.amountMinorUnits()) {
+                try {
+                    transferEngine.credit(account, hold.amountMinorUnits() - captured);
+                } catch (RuntimeException ex) {
+                    takeBack(entry, account, accountTo, captured, creditedAmount, ex);
+                    throw ex;
+                }
+            }
+            // Captured before anything else can fail, so that it is never captured or released again
+            hold = finish(entry, hold.captured(captured, Instant.now()));
+        } finally {
+            entry.lock.unlock();
+        }
+        // Waits for the journal without the hold's lock, the hold is captured already
+        accountsService.recordTransfer(account, accountTo, captured, creditedAmount, journalPosition[0]);
+
+        notificationDispatcher.notifyAboutTransfer(accountTo, "Money Credited to " + accountTo.getAccountId());
+        notificationDispatcher.notifyAboutTransfer(account, "Money debited from " + account.getAccountId());
+        return hold;
+    }
+
+    /**
+     * Gives the held amount back to the account.
+     *
+     * @return the voided hold, as it was if it had already finished, or null if there is no such hold
+     *         of the account
+     */
+    public Hold voidHold(String accountId, String id) {
+        Entry entry = find(accountId, id);
+        if (entry == null) {
+            return null;
+        }
+        entry.lock.lock();
+        try {
+            if (entry.hold.status() == Hold.Status.AUTHORIZED) {
+                release(entry, Hold.Status.VOIDED);
+            }
+            return entry.hold;
+        } finally {
+            entry.lock.unlock();
+        }
+    }
+
+    // Null if there is no such hold of the account
+    public Hold getHold(String accountId, String id) {
+        Entry entry = find(accountId, id);
+        return entry == null ? null : entry.hold;
+    }
+
+    // The account's active holds and their total, null if there is no such account
+    public AccountHolds getHolds(String accountId) {
+        Account account = accountsService.getAccount(accountId);
+        if (account == null) {
+            return null;
+        }
+        HoldBook book = books.get(accountId);
+        List<Hold> holds = new ArrayList<>();
+        long held = 0;
+        if (book != null) {
+            held = book.held.get();
+            book.active.values().forEach(entry -> holds.add(entry.hold));
+            holds.sort(Comparator.comparing(Hold::createdAt).thenComparing(Hold::id));
+        }
+        return new AccountHolds(accountId, account.getBalance(), BigDecimal.valueOf(held, Account.DEFAULT_SCALE),
+                account.getCurrency(), holds);
+    }
+
+    private Entry find(String accountId, String id) {
+        Entry entry = entries.get(id);
+        return entry == null || !entry.hold.accountId().equals(accountId) ? null : entry;
+    }
+
+    // Hold ids are not secrets; unlike UUID.randomUUID() this does not go through a shared SecureRandom
+    private static String newId() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return new UUID(random.nextLong(), random.nextLong()).toString();
+    }
+
+    /**
+     * Called under the entry's lock when the rest of a hold could not be given back after its
+     * destination was credited: takes the credit back, journaled as the reverse transfer, and leaves
+     * the hold authorized. If the destination has spent it already, the hold is captured after all
+     * and the rest stays held back, to be given back by hand.
+     */
+    private void takeBack(Entry entry, Account account, Account accountTo, long captured, long creditedAmount,
+            RuntimeException failure) {
+        try {
+            transferEngine.debit(accountTo, creditedAmount,
+                    () -> accountsService.journalTransfer(accountTo, account, creditedAmount, captured));
+        } catch (RuntimeException ex) {
+            failure.addSuppressed(ex);
+            Hold hold = finish(entry, entry.hold.captured(captured, Instant.now()));
+            log.error("Captured hold {} of {} but could not give back the remaining {}", hold.id(),
+                    hold.accountId(), hold.amountMinorUnits() - captured, failure);
+        }
+    }
+
+    // Called under the entry's lock
+    private void release(Entry entry, Hold.Status status) {
+        Hold hold = entry.hold;
+        // Gone when the accounts were cleared, there is nothing to give back to
+        Account account = accountsService.getAccount(hold.accountId());
+        if (account != null) {
+            transferEngine.credit(account, hold.amountMinorUnits());
+        }
+        finish(entry, hold.released(status, Instant.now()));
+    }
+
+    // Called under the entry's lock: takes the hold out of its account's book and keeps it for the retention
+    private Hold finish(Entry entry, Hold hold) {
+        entry.hold = hold;
+        books.computeIfPresent(hold.accountId(), (id, book) -> {
+            if (book.active.remove(hold.id()) != null) {
+                book.held.addAndGet(-hold.amountMinorUnits());
+            }
+            return book.active.isEmpty() ? null : book;
+        });
+        activeCount.decrementAndGet();
+        unschedule(entry);
+        schedule(entry, hold.finishedAt().plus(properties.getRetention()));
+        return hold;
+    }
+
+    private void sweepQuietly() {
+        try {
+            sweep();
+        } catch (RuntimeException ex) {
+            log.error("Sweeping expired holds failed", ex);
+        }
+    }
+
+    private void sweep() {
+        long now = System.currentTimeMillis();
+        List<Entry> expired = new ArrayList<>();
+        for (Wheel wheel : wheels) {
+            wheel.lock.lock();
+            try {
+                wheel.timeouts.advance(now, expired::add);
+            } finally {
+                wheel.lock.unlock();
+            }
+        }
+        for (Entry entry : expired) {
+            entry.lock.lock();
+            try {
+                Hold hold = entry.hold;
+                if (hold.status() != Hold.Status.AUTHORIZED) {
+                    entries.remove(hold.id(), entry);
+                    continue;
+                }
+                try {
+                    release(entry, Hold.Status.EXPIRED);
+                } catch (RuntimeException ex) {
+                    log.error("Could not release expired hold {} of {}, retrying", hold.id(), hold.accountId(), ex);
+                    schedule(entry, Instant.now().plus(properties.getSweepInterval()));
+                }
+            } finally {
+                entry.lock.unlock();
+            }
+        }
+    }
+
+    private void schedule(Entry entry, Instant when) {
+        Wheel wheel = entry.wheel;
+        wheel.lock.lock();
+        try {
+            entry.timeout = wheel.timeouts.schedule(when.toEpochMilli(), entry);
+        } finally {
+            wheel.lock.unlock();
+        }
+    }
+
+    private void unschedule(Entry entry) {
+        Wheel wheel = entry.wheel;
+        wheel.lock.lock();
+        try {
+            if (entry.timeout != null) {
+                wheel.timeouts.cancel(entry.timeout);
+            }
+        } finally {
+            wheel.lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package com.dws.challenge.service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.dws.challenge.dto.ContendedAccount;
+import com.dws.challenge.dto.LockContentionReport;
+
+/**
+ * Opt-in profile of the accounts whose locks are waited for, fed by {@link TransferMetrics} with
+ * the lock waits the engines already time; an acquisition that does not wait costs nothing. Both
+ * the locking and the optimistic engine, on its locked paths, take their locks through
+ * {@link TransferLegs#lock}; the sharded engine takes none and leaves the profile empty.
+ * <p>
+ * The accounts are kept in a Space-Saving sketch weighted by wait time: {@code capacity} counters,
+ * and a wait for an account without one takes over the counter with the least wait time, adding to
+ * it. Memory is fixed whatever the number of accounts, and any account that accounts for more than
+ * 1/capacity of the total wait time is guaranteed to hold a counter. A counter's time may include
+ * up to {@code errorNanos} of the accounts it displaced; its waits and their histogram only count
+ * since it was taken over. The histograms have four buckets per power of two, so the percentiles
+ * are within a quarter of the actual values.
+ * <p>
+ * To be cheap enough to leave on, only one in {@code sample-every} waits is recorded, and a sample
+ * that finds another being recorded is dropped rather than waited for.
+ */
+@Component
+public class LockContentionProfiler {
+
+  private static final int SUB_BITS = 2;
+  private static final int SUB_BUCKETS = 1 << SUB_BITS;
+  private static final int BUCKETS = SUB_BUCKETS + (Long.SIZE - 1 - SUB_BITS) * SUB_BUCKETS;
+
+  private static final class Counter {
+
+    String accountId;
+    long waitNanos;
+    long errorNanos;
+    long waits;
+    long maxNanos;
+    final int[] histogram = new int[BUCKETS];
+  }
+
+  private final boolean enabled;
+  private final String engine;
+  private final int sampleEvery;
+  private final int capacity;
+  // Guards the counters, the index, since and samples; recording only ever tries it
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Counter[] counters;
+  private final Map<String, Counter> index;
+  private int size;
+  private Instant since = Instant.now();
+  private long samples;
+  private final AtomicLong dropped = new AtomicLong();
+
+  public LockContentionProfiler(LockProfilerProperties properties) {
+    this(properties, "locking");
+  }
+
+  @Autowired
+  public LockContentionProfiler(LockProfilerProperties properties,
+                                @Value("${transfer.engine:locking}") String engine) {
+    this.enabled = properties.isEnabled();
+    this.engine = engine;
+    this.sampleEvery = Math.max(1, properties.getSampleEvery());
+    this.capacity = Math.max(1, properties.getCapacity());
+    this.counters = new Counter[enabled ? capacity : 0];
+    this.index = new HashMap<>(enabled ? capacity * 2 : 0);
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  // Called by the waiting thread, right after it got the lock
+  public void recordWait(String accountId, long waitedNanos) {
+    if (!enabled || (sampleEvery > 1 && ThreadLocalRandom.current().nextInt(sampleEvery) != 0)) {
+      return;
+    }
+    if (!lock.tryLock()) {
+      dropped.incrementAndGet();
+      return;
+    }
+    try {
+      samples++;
+      Counter counter = index.get(accountId);
+      if (counter == null) {
+        counter = take();
+        counter.accountId = accountId;
+        index.put(accountId, counter);
+      }
+      counter.waitNanos += waitedNanos;
+      counter.waits++;
+      counter.maxNanos = Math.max(counter.maxNanos, waitedNanos);
+      counter.histogram[bucket(waitedNanos)]++;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * @param limit accounts to report at most
+   */
+  public LockContentionReport report(int limit) {
+    List<ContendedAccount> accounts = new ArrayList<>();
+    lock.lock();
+    try {
+      for (int i = 0; i < size; i++) {
+        Counter counter = counters[i];
+        accounts.add(new ContendedAccount(counter.accountId, counter.waits * sampleEvery,
+          counter.waitNanos * sampleEvery, counter.errorNanos * sampleEvery, percentile(counter, 0.5),
+          percentile(counter, 0.9), percentile(counter, 0.99), counter.maxNanos));
+      }
+      accounts.sort(Comparator.comparingLong(ContendedAccount::getWaitNanos).reversed()
+        .thenComparing(ContendedAccount::getAccountId));
+      return new LockContentionReport(enabled, engine, sampleEvery, since, samples, dropped.get(),
+        List.copyOf(accounts.subList(0, Math.min(Math.max(0, limit), accounts.size()))));
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  // Forgets everything recorded so far, so that a report shows the contention from now on
+  public void reset() {
+    lock.lock();
+    try {
+      Arrays.fill(counters, null);
+      index.clear();
+      size = 0;
+      since = Instant.now();
+      samples = 0;
+      dropped.set(0);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  // A free counter, or the one with the least wait time taken over; a linear scan, capacity is small
+  private Counter take() {
+    if (size < capacity) {
+      Counter counter = new Counter();
+      counters[size++] = counter;
+      return counter;
+    }
+    Counter least = counters[0];
+    for (int i = 1; i < size; i++) {
+      if (counters[i].waitNanos < least.waitNanos) {
+        least = counters[i];
+      }
+    }
+    index.remove(least.accountId);
+    least.errorNanos = least.waitNanos;
+    least.waits = 0;
+    least.maxNanos = 0;
+    Arrays.fill(least.histogram, 0);
+    return least;
+  }
+
+  private static long percentile(Counter counter, double quantile) {
+    long rank = Math.max(1, (long) Math.ceil(quantile * counter.waits));
+    long seen = 0;
+    for (int bucket = 0; bucket < BUCKETS; bucket++) {
+      seen += counter.histogram[bucket];
+      if (seen >= rank) {
+        return Math.min(upperBound(bucket), counter.maxNanos);
+      }
+    }
+    return counter.maxNanos;
+  }
+
+  // Values below SUB_BUCKETS get a bucket each, the others SUB_BUCKETS per power of two
+  private static int bucket(long nanos) {
+    if (nanos < SUB_BUCKETS) {
+      return (int) Math.max(0, nanos);
+    }
+    int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(nanos);
+    return SUB_BUCKETS + (exponent - SUB_BITS) * SUB_BUCKETS
+      + (int) ((nanos >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1));
+  }
+
+  // The largest value of the bucket; the last one wraps round to Long.MAX_VALUE
+  private static long upperBound(int bucket) {
+    if (bucket < SUB_BUCKETS) {
+      return bucket;
+    }
+    int exponent = (bucket - SUB_BUCKETS) / SUB_BUCKETS + SUB_BITS;
+    int mantissa = (bucket - SUB_BUCKETS) % SUB_BUCKETS;
+    return ((SUB_BUCKETS + mantissa + 1L) << (exponent - SUB_BITS)) - 1;
+  }
+}
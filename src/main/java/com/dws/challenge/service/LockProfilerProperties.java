@@ -0,0 +1,24 @@
+package com.dws.challenge.service;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import lombok.Data;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "metrics.transfers.lock-profiler")
+public class LockProfilerProperties {
+
+  // Records the accounts whose locks are waited for, reported by the lockcontention actuator endpoint
+  private boolean enabled = false;
+
+  // One in this many lock waits is recorded, the reported totals are scaled back up
+  private int sampleEvery = 10;
+
+  // Accounts tracked at once; the ones waited for the longest are kept whatever the number of accounts
+  private int capacity = 64;
+
+  // Accounts reported when the endpoint is read without a limit
+  private int top = 10;
+}
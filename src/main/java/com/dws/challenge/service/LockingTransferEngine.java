@@ -0,0 +1,108 @@
+package com.dws.challenge.service;
+
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import com.dws.challenge.domain.Account;
+
+/**
+ * Default engine: takes the {@link Account} locks of both sides, in the order given by
+ * {@link Account#locksBefore(Account)} so that opposing transfers cannot deadlock. A lock that is not free straight away is waited for with the
+ * wait time and the account reported to {@link TransferMetrics}; the uncontended path takes no clock reading.
+ * <p>
+ * A {@linkplain Account#isStriped() striped} destination is credited without its lock, so transfers
+ * into a hot account only serialize on their source accounts.
+ * <p>
+ * A multi-leg transfer takes the lock of every account involved once, in the same order, striped
+ * ones included since undoing a leg debits its destination.
+ * <p>
+ * The balances are written under claims of the account versions, taken while the locks are held, so
+ * snapshot readers never have to take the locks to see consistent balances.
+ */
+@Component
+@ConditionalOnProperty(name = "transfer.engine", havingValue = "locking", matchIfMissing = true)
+public class LockingTransferEngine implements TransferEngine {
+
+    private final TransferMetrics transferMetrics;
+
+    @Autowired
+    public LockingTransferEngine(TransferMetrics transferMetrics) {
+        this.transferMetrics = transferMetrics;
+    }
+
+    @Override
+    public void transfer(Account accountFrom, Account accountTo, long amount, long creditedAmount, Runnable record) {
+        if (accountTo.isStriped()) {
+            lock(accountFrom);
+            try {
+                TransferLegs.move(accountFrom, null, accountFrom, accountTo, amount, creditedAmount, record);
+            } finally {
+                accountFrom.unlock();
+            }
+            return;
+        }
+
+        Account first = accountFrom.locksBefore(accountTo) ? accountFrom : accountTo;
+        Account second = first == accountFrom ? accountTo : accountFrom;
+        Lock lock1 = first.getLock();
+        Lock lock2 = second.getLock();
+
+        lock(first);
+        try {
+            lock(second);
+            try {
+                TransferLegs.move(first, second, accountFrom, accountTo, amount, creditedAmount, record);
+            } finally {
+                lock2.unlock();
+            }
+        } finally {
+            lock1.unlock();
+        }
+    }
+
+    @Override
+    public void transfer(Account accountFrom, List<Account> accountsTo, long[] amounts, long[] creditedAmounts,
+            Runnable record) {
+        List<Account> accounts = TransferLegs.lockOrder(accountFrom, accountsTo);
+        int locked = 0;
+        try {
+            for (Account account : accounts) {
+                lock(account);
+                locked++;
+            }
+            TransferLegs.commit(accounts, accountFrom, accountsTo, amounts, creditedAmounts, record);
+        } finally {
+            while (locked > 0) {
+                accounts.get(--locked).unlock();
+            }
+        }
+    }
+
+    @Override
+    public void debit(Account account, long amount, Runnable record) {
+        lock(account);
+        try {
+            TransferLegs.debit(account, amount, record);
+        } finally {
+            account.unlock();
+        }
+    }
+
+    @Override
+    public void credit(Account account, long amount, Runnable record) {
+        lock(account);
+        try {
+            TransferLegs.credit(account, amount, record);
+        } finally {
+            account.unlock();
+        }
+    }
+
+    private void lock(Account account) {
+        TransferLegs.lock(account, transferMetrics);
+    }
+}
@@ -0,0 +1,66 @@
+package com.dws.challenge.service;
+
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Keeps the most recent notifications that could not be delivered after all retries. The store is
+ * bounded: once full, the oldest entry is evicted to make room.
+ */
+@Slf4j
+@Component
+public class NotificationDeadLetterStore {
+
+  public record DeadLetter(String accountId, List<String> transferDescriptions, String error, Instant failedAt) {
+  }
+
+  private final int capacity;
+  private final Deque<DeadLetter> deadLetters = new ArrayDeque<>();
+  private final Lock lock = new ReentrantLock();
+
+  @Autowired
+  public NotificationDeadLetterStore(NotificationProperties properties) {
+    this.capacity = properties.getDeadLetterCapacity();
+  }
+
+  public void add(DeadLetter deadLetter) {
+    log.error("Giving up on {} notification(s) for {}: {}", deadLetter.transferDescriptions().size(),
+      deadLetter.accountId(), deadLetter.error());
+    lock.lock();
+    try {
+      if (deadLetters.size() == capacity) {
+        deadLetters.pollFirst();
+      }
+      deadLetters.addLast(deadLetter);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public List<DeadLetter> getDeadLetters() {
+    lock.lock();
+    try {
+      return List.copyOf(deadLetters);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public int size() {
+    lock.lock();
+    try {
+      return deadLetters.size();
+    } finally {
+      lock.unlock();
+    }
+  }
+}
@@ -0,0 +1,238 @@
+package com.dws.challenge.service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.service.NotificationDeadLetterStore.DeadLetter;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Decouples transfer latency from the notification backend. Notifications are put on a bounded
+ * queue and sent by a few worker threads, which coalesce the pending notifications of an account
+ * into one {@link NotificationService#notifyAboutTransfers} call. Failed sends are retried with
+ * exponential backoff on a scheduler of their own, so that an account backing off does not hold up
+ * a worker, and end up in the {@link NotificationDeadLetterStore} once attempts run out or when
+ * the dispatcher shuts down before their retry is due.
+ * A producer that finds the queue full waits for at most {@code notification.offer-timeout}, after
+ * which the notification is dropped and counted rather than slowing the transfer down.
+ */
+@Slf4j
+@Service
+public class NotificationDispatcher {
+
+  private record PendingNotification(Account account, String transferDescription, long enqueuedAtNanos) {
+  }
+
+  // Identity matters, two retries of equal notifications are still two retries
+  private final class Retry implements Runnable {
+
+    private final List<PendingNotification> notifications;
+    private final int attempt;
+    private final long backoffMillis;
+    private final String lastError;
+
+    private Retry(List<PendingNotification> notifications, int attempt, long backoffMillis, String lastError) {
+      this.notifications = notifications;
+      this.attempt = attempt;
+      this.backoffMillis = backoffMillis;
+      this.lastError = lastError;
+    }
+
+    @Override
+    public void run() {
+      // Whoever removes it owns it, this or shutdown() dead-lettering it
+      if (pendingRetries.remove(this)) {
+        attempt(notifications, attempt, backoffMillis);
+      }
+    }
+  }
+
+  private final NotificationService notificationService;
+  private final NotificationDeadLetterStore deadLetterStore;
+  private final NotificationProperties properties;
+  private final BlockingQueue<PendingNotification> queue;
+  private final List<Thread> workers = new ArrayList<>();
+  // Starts its thread on the first retry
+  private final ScheduledExecutorService retries = Executors.newSingleThreadScheduledExecutor(task -> {
+    Thread thread = new Thread(task, "notification-retry");
+    thread.setDaemon(true);
+    return thread;
+  });
+  private final Set<Retry> pendingRetries = ConcurrentHashMap.newKeySet();
+  private volatile boolean running = true;
+
+  private final Counter sent;
+  private final Counter dropped;
+  private final Counter retried;
+  private final Counter deadLettered;
+  private final Timer latency;
+
+  @Autowired
+  public NotificationDispatcher(NotificationService notificationService, NotificationDeadLetterStore deadLetterStore,
+                                NotificationProperties properties, MeterRegistry meterRegistry) {
+    this.notificationService = notificationService;
+    this.deadLetterStore = deadLetterStore;
+    this.properties = properties;
+    this.queue = new ArrayBlockingQueue<>(properties.getQueueCapacity());
+
+    Gauge.builder("notifications.queue.depth", queue, BlockingQueue::size).register(meterRegistry);
+    this.sent = Counter.builder("notifications.sent").register(meterRegistry);
+    this.dropped = Counter.builder("notifications.dropped").register(meterRegistry);
+    this.retried = Counter.builder("notifications.retried").register(meterRegistry);
+    this.deadLettered = Counter.builder("notifications.dead.lettered").register(meterRegistry);
+    this.latency = Timer.builder("notifications.latency")
+      .description("Time from a transfer handing over a notification until it was sent")
+      .publishPercentiles(0.5, 0.99, 0.999)
+      .publishPercentileHistogram()
+      .maximumExpectedValue(Duration.ofMinutes(1))
+      .register(meterRegistry);
+
+    if (properties.isAsync()) {
+      for (int i = 0; i < properties.getWorkers(); i++) {
+        Thread worker = new Thread(this::drain, "notification-dispatcher-" + i);
+        worker.setDaemon(true);
+        worker.start();
+        workers.add(worker);
+      }
+    }
+  }
+
+  @PreDestroy
+  public void shutdown() throws InterruptedException {
+    running = false;
+    for (Thread worker : workers) {
+      worker.interrupt();
+    }
+    for (Thread worker : workers) {
+      worker.join(TimeUnit.SECONDS.toMillis(5));
+    }
+    retries.shutdownNow();
+    retries.awaitTermination(5, TimeUnit.SECONDS);
+    for (Retry retry : pendingRetries) {
+      if (pendingRetries.remove(retry)) {
+        deadLetter(retry.notifications, retry.lastError);
+      }
+    }
+  }
+
+  public void notifyAboutTransfer(Account account, String transferDescription) {
+    long now = System.nanoTime();
+    if (!properties.isAsync()) {
+      notificationService.notifyAboutTransfer(account, transferDescription);
+      latency.record(System.nanoTime() - now, TimeUnit.NANOSECONDS);
+      return;
+    }
+
+    try {
+      if (queue.offer(new PendingNotification(account, transferDescription, now),
+        properties.getOfferTimeout().toNanos(), TimeUnit.NANOSECONDS)) {
+        return;
+      }
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    }
+    dropped.increment();
+    log.warn("Notification queue full, dropping notification for {}", account.getAccountId());
+  }
+
+  public int getQueueDepth() {
+    return queue.size();
+  }
+
+  private void drain() {
+    List<PendingNotification> batch = new ArrayList<>(properties.getBatchSize());
+    // Keep draining after shutdown until the queue is empty so accepted notifications still go out
+    while (running || !queue.isEmpty()) {
+      try {
+        PendingNotification first = running ? queue.take() : queue.poll();
+        if (first == null) {
+          return;
+        }
+        batch.add(first);
+        queue.drainTo(batch, properties.getBatchSize() - 1);
+        send(batch);
+      } catch (InterruptedException ex) {
+        // Woken up by shutdown(), the loop condition decides whether to exit
+      } finally {
+        batch.clear();
+      }
+    }
+  }
+
+  private void send(List<PendingNotification> batch) {
+    Map<String, List<PendingNotification>> notificationsByAccount = new LinkedHashMap<>();
+    for (PendingNotification notification : batch) {
+      notificationsByAccount.computeIfAbsent(notification.account().getAccountId(), id -> new ArrayList<>())
+        .add(notification);
+    }
+    long initialBackoffMillis = properties.getInitialBackoff().toMillis();
+    for (List<PendingNotification> notifications : notificationsByAccount.values()) {
+      attempt(notifications, 1, initialBackoffMillis);
+    }
+  }
+
+  private void attempt(List<PendingNotification> notifications, int attempt, long backoffMillis) {
+    Account account = notifications.get(0).account();
+    List<String> descriptions = notifications.stream().map(PendingNotification::transferDescription).toList();
+    try {
+      if (descriptions.size() == 1) {
+        notificationService.notifyAboutTransfer(account, descriptions.get(0));
+      } else {
+        notificationService.notifyAboutTransfers(account, descriptions);
+      }
+      sent.increment(descriptions.size());
+      long now = System.nanoTime();
+      for (PendingNotification notification : notifications) {
+        latency.record(now - notification.enqueuedAtNanos(), TimeUnit.NANOSECONDS);
+      }
+    } catch (RuntimeException ex) {
+      if (attempt >= properties.getMaxAttempts() || !running) {
+        deadLetter(notifications, ex.toString());
+        return;
+      }
+      retried.increment();
+      log.warn("Notification for {} failed on attempt {}, retrying in {} ms", account.getAccountId(), attempt,
+        backoffMillis);
+      Retry retry = new Retry(notifications, attempt + 1,
+        Math.min(backoffMillis * 2, properties.getMaxBackoff().toMillis()), ex.toString());
+      pendingRetries.add(retry);
+      try {
+        retries.schedule(retry, backoffMillis, TimeUnit.MILLISECONDS);
+      } catch (RejectedExecutionException rejected) {
+        // Shut down in the meantime
+        if (pendingRetries.remove(retry)) {
+          deadLetter(notifications, retry.lastError);
+        }
+      }
+    }
+  }
+
+  private void deadLetter(List<PendingNotification> notifications, String error) {
+    String accountId = notifications.get(0).account().getAccountId();
+    List<String> descriptions = notifications.stream().map(PendingNotification::transferDescription).toList();
+    deadLetterStore.add(new DeadLetter(accountId, descriptions, error, Instant.now()));
+    deadLettered.increment(descriptions.size());
+  }
+}
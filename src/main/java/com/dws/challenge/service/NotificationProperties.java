@@ -0,0 +1,32 @@
+package com.dws.challenge.service;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import lombok.Data;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "notification")
+public class NotificationProperties {
+
+  // Hand notifications to background workers instead of sending them on the transfer thread
+  private boolean async = true;
+
+  // Bound of the pending queue, and how long a producer waits for room before the notification is dropped
+  private int queueCapacity = 10_000;
+  private Duration offerTimeout = Duration.ofMillis(10);
+
+  private int workers = 2;
+
+  // Maximum number of queued notifications taken per drain, coalesced per account
+  private int batchSize = 256;
+
+  private int maxAttempts = 5;
+  private Duration initialBackoff = Duration.ofMillis(100);
+  private Duration maxBackoff = Duration.ofSeconds(5);
+
+  private int deadLetterCapacity = 10_000;
+}
@@ -1,8 +1,18 @@
 package com.dws.challenge.service;
 
+import java.util.List;
+
 import com.dws.challenge.domain.Account;
 
 public interface NotificationService {
 
   void notifyAboutTransfer(Account account, String transferDescription);
+
+  /**
+   * Sends several transfer notifications for the same account at once. Implementations backed by a
+   * batch-capable channel should override this; by default the descriptions go out as one message.
+   */
+  default void notifyAboutTransfers(Account account, List<String> transferDescriptions) {
+    notifyAboutTransfer(account, String.join("\n", transferDescriptions));
+  }
 }
@@ -0,0 +1,181 @@
+package com.dws.challenge.service;
+
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.exception.InsufficientBalanceException;
+import com.dws.challenge.exception.InvalidAmountException;
+
+/**
+ * Lock-free engine for the common uncontended case. Each account carries a version next to its
+ * balance; a transfer reads both versions, then commits by claiming them with compare-and-set (in
+ * account id order), moving the funds and publishing new versions. A claim fails if anybody
+ * committed or started committing in between, in which case the transfer simply retries.
+ * <p>
+ * After {@code transfer.optimistic.max-attempts} failed commits the transfer falls back to the
+ * {@link Account} locks, which queue up the contenders of a hot account instead of letting them
+ * spin against each other. The locked path still commits through the versions, so it stays
+ * consistent with optimistic transfers running at the same time. Its lock waits are reported to
+ * {@link TransferMetrics} as the locking engine's are.
+ * <p>
+ * Multi-leg transfers always take that path: retrying a claim on many accounts would rarely
+ * succeed under contention, so they lock every account involved and then claim all their versions.
+ */
+@Component
+@ConditionalOnProperty(name = "transfer.engine", havingValue = "optimistic")
+public class OptimisticTransferEngine implements TransferEngine {
+
+    private final int maxAttempts;
+    private final TransferMetrics transferMetrics;
+
+    @Autowired
+    public OptimisticTransferEngine(@Value("${transfer.optimistic.max-attempts:8}") int maxAttempts,
+            TransferMetrics transferMetrics) {
+        this.maxAttempts = maxAttempts;
+        this.transferMetrics = transferMetrics;
+    }
+
+    @Override
+    public void transfer(Account accountFrom, Account accountTo, long amount, long creditedAmount, Runnable record) {
+        if (accountFrom == accountTo) {
+            // Nothing moves, but the funds must still be there, as with the locking engine
+            if (accountFrom.getBalanceMinorUnits() < amount) {
+                throw new InsufficientBalanceException("Insufficient balance");
+            }
+            record.run();
+            return;
+        }
+
+        for (int attempt = 0; attempt < maxAttempts; attempt++) {
+            if (tryCommit(accountFrom, accountTo, amount, creditedAmount, record)) {
+                return;
+            }
+            transferMetrics.recordOptimisticConflict();
+            Thread.onSpinWait();
+        }
+
+        transferMetrics.recordOptimisticFallback();
+        // A striped destination is not claimed by commits, so there is no point in queueing on its lock
+        Account first = accountTo.isStriped() || accountFrom.locksBefore(accountTo) ? accountFrom : accountTo;
+        Account second = first == accountFrom ? accountTo : accountFrom;
+        lock(first);
+        try {
+            if (accountTo.isStriped()) {
+                commitSpinning(accountFrom, accountTo, amount, creditedAmount, record);
+                return;
+            }
+            lock(second);
+            try {
+                commitSpinning(accountFrom, accountTo, amount, creditedAmount, record);
+            } finally {
+                second.unlock();
+            }
+        } finally {
+            first.unlock();
+        }
+    }
+
+    @Override
+    public void transfer(Account accountFrom, List<Account> accountsTo, long[] amounts, long[] creditedAmounts,
+            Runnable record) {
+        List<Account> accounts = TransferLegs.lockOrder(accountFrom, accountsTo);
+        int locked = 0;
+        try {
+            for (Account account : accounts) {
+                lock(account);
+                locked++;
+            }
+            TransferLegs.commit(accounts, accountFrom, accountsTo, amounts, creditedAmounts, record);
+        } finally {
+            while (locked > 0) {
+                accounts.get(--locked).unlock();
+            }
+        }
+    }
+
+    // One-sided writes are rare enough to go straight to the locked path
+    @Override
+    public void debit(Account account, long amount, Runnable record) {
+        lock(account);
+        try {
+            TransferLegs.debit(account, amount, record);
+        } finally {
+            account.unlock();
+        }
+    }
+
+    @Override
+    public void credit(Account account, long amount, Runnable record) {
+        lock(account);
+        try {
+            TransferLegs.credit(account, amount, record);
+        } finally {
+            account.unlock();
+        }
+    }
+
+    private void lock(Account account) {
+        TransferLegs.lock(account, transferMetrics);
+    }
+
+    // Only optimistic commits can get in the way now, and they hold a claim for a few stores
+    private static void commitSpinning(Account accountFrom, Account accountTo, long amount, long creditedAmount,
+            Runnable record) {
+        while (!tryCommit(accountFrom, accountTo, amount, creditedAmount, record)) {
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * Makes one commit attempt. Once both versions are claimed nobody else writes either account, so
+     * the debit and credit see current balances and their checks are final. A
+     * {@linkplain Account#isStriped() striped} destination is credited without claiming its version.
+     * The transfer is recorded only by the attempt that commits.
+     *
+     * @return false if another commit got in the way
+     * @throws InsufficientBalanceException if the source balance is too low
+     * @throws InvalidAmountException if the destination balance would overflow
+     */
+    private static boolean tryCommit(Account accountFrom, Account accountTo, long amount, long creditedAmount,
+            Runnable record) {
+        boolean claimDestination = !accountTo.isStriped();
+        boolean fromFirst = !claimDestination || accountFrom.getAccountId().compareTo(accountTo.getAccountId()) < 0;
+        Account first = fromFirst ? accountFrom : accountTo;
+        Account second = fromFirst ? accountTo : accountFrom;
+        long firstVersion = first.getVersion();
+        long secondVersion = second.getVersion();
+
+        if (!first.tryClaimVersion(firstVersion)) {
+            return false;
+        }
+        if (claimDestination && !second.tryClaimVersion(secondVersion)) {
+            first.abandonVersion(firstVersion);
+            return false;
+        }
+        try {
+            accountFrom.debit(amount);
+        } catch (IllegalArgumentException ex) {
+            // Nothing was written, the accounts keep their versions
+            if (claimDestination) {
+                second.abandonVersion(secondVersion);
+            }
+            first.abandonVersion(firstVersion);
+            throw ex;
+        }
+        try {
+            TransferLegs.creditAndRecord(accountFrom, accountTo, amount, creditedAmount, record);
+        } finally {
+            // Published even after a refund: a reader may have seen the balances in between
+            if (claimDestination) {
+                second.publishVersion(secondVersion);
+            }
+            first.publishVersion(firstVersion);
+        }
+        return true;
+    }
+}
@@ -0,0 +1,237 @@
+package com.dws.challenge.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import com.dws.challenge.domain.Account;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Single-writer engine: accounts are partitioned by id across a fixed number of shards, each
+ * owned by one worker thread draining a bounded ring of commands. Only the owning worker ever
+ * mutates an account, so balances are updated without taking any {@link Account} lock.
+ * <p>
+ * A transfer within one shard is applied as a single command. A transfer across shards is a
+ * two-phase handoff: the source shard checks and debits the funds, then the credit is handed to
+ * the destination shard. Between the two phases the amount is in flight and visible on neither
+ * account, to snapshot readers as well; the transfer is recorded with the credit, and if the
+ * destination refuses the credit or it cannot be recorded the source shard is refunded.
+ * <p>
+ * A {@linkplain Account#isStriped() striped} destination accepts credits from any thread, so a
+ * transfer into it runs entirely on the source shard and the hot account's shard is not involved.
+ * <p>
+ * A multi-leg transfer parks the worker of every shard involved, in shard order so that two of them
+ * cannot wait for each other, and applies all legs on the calling thread while no worker runs. Each
+ * shard is stopped once however many legs it owns.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "transfer.engine", havingValue = "sharded")
+public class ShardedTransferEngine implements TransferEngine {
+
+    private final Shard[] shards;
+
+    @Autowired
+    public ShardedTransferEngine(@Value("${transfer.sharded.shard-count:0}") int shardCount,
+            @Value("${transfer.sharded.queue-capacity:4096}") int queueCapacity) {
+        this.shards = new Shard[shardCount > 0 ? shardCount : Runtime.getRuntime().availableProcessors()];
+        for (int i = 0; i < shards.length; i++) {
+            shards[i] = new Shard(i, queueCapacity);
+        }
+        log.info("Started {} transfer shards with queue capacity {}", shards.length, queueCapacity);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (Shard shard : shards) {
+            shard.stop();
+        }
+    }
+
+    @Override
+    public void transfer(Account accountFrom, Account accountTo, long amount, long creditedAmount, Runnable record) {
+        Shard fromShard = shardOf(accountFrom);
+        Shard toShard = shardOf(accountTo);
+
+        if (accountTo.isStriped()) {
+            await(fromShard.submit(() -> TransferLegs.move(accountFrom, null, accountFrom, accountTo, amount,
+                    creditedAmount, record)));
+        } else if (fromShard == toShard) {
+            Account first = accountFrom.locksBefore(accountTo) ? accountFrom : accountTo;
+            Account second = first == accountFrom ? accountTo : accountFrom;
+            await(fromShard.submit(() -> TransferLegs.move(first, second, accountFrom, accountTo, amount,
+                    creditedAmount, record)));
+        } else {
+            await(fromShard.submit(() -> TransferLegs.versioned(accountFrom, () -> accountFrom.debit(amount))));
+            try {
+                await(toShard.submit(() -> TransferLegs.credit(accountTo, creditedAmount, record)));
+            } catch (RuntimeException ex) {
+                // The destination refused or could not record the credit, hand the reserved funds back to the source shard
+                await(fromShard.submit(() -> TransferLegs.versioned(accountFrom, () -> accountFrom.credit(amount))));
+                throw ex;
+            }
+        }
+    }
+
+    @Override
+    public void transfer(Account accountFrom, List<Account> accountsTo, long[] amounts, long[] creditedAmounts,
+            Runnable record) {
+        TreeSet<Integer> involved = new TreeSet<>();
+        involved.add(shardIndex(accountFrom));
+        for (Account accountTo : accountsTo) {
+            involved.add(shardIndex(accountTo));
+        }
+
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            for (int index : involved) {
+                CountDownLatch parked = new CountDownLatch(1);
+                CompletableFuture<Void> parking = shards[index].submit(() -> {
+                    parked.countDown();
+                    awaitUninterruptibly(release);
+                });
+                // A shard that is stopped refuses to park
+                parking.whenComplete((result, failure) -> parked.countDown());
+                awaitUninterruptibly(parked);
+                if (parking.isCompletedExceptionally()) {
+                    await(parking);
+                }
+            }
+            TransferLegs.commit(TransferLegs.lockOrder(accountFrom, accountsTo), accountFrom, accountsTo, amounts,
+                    creditedAmounts, record);
+        } finally {
+            release.countDown();
+        }
+    }
+
+    // One-sided writes run on the owning shard, like either phase of a handoff
+    @Override
+    public void debit(Account account, long amount, Runnable record) {
+        await(shardOf(account).submit(() -> TransferLegs.debit(account, amount, record)));
+    }
+
+    @Override
+    public void credit(Account account, long amount, Runnable record) {
+        await(shardOf(account).submit(() -> TransferLegs.credit(account, amount, record)));
+    }
+
+    private Shard shardOf(Account account) {
+        return shards[shardIndex(account)];
+    }
+
+    private int shardIndex(Account account) {
+        return Math.floorMod(account.getAccountId().hashCode(), shards.length);
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                latch.await();
+                break;
+            } catch (InterruptedException ex) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void await(CompletableFuture<Void> completion) {
+        try {
+            completion.join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (ex.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw ex;
+        }
+    }
+
+    private static final class Shard implements Runnable {
+
+        private final BlockingQueue<Runnable> commands;
+        private final Thread worker;
+        private volatile boolean running = true;
+
+        Shard(int index, int queueCapacity) {
+            this.commands = new ArrayBlockingQueue<>(queueCapacity);
+            this.worker = new Thread(this, "transfer-shard-" + index);
+            this.worker.setDaemon(true);
+            this.worker.start();
+        }
+
+        CompletableFuture<Void> submit(Runnable command) {
+            CompletableFuture<Void> completion = new CompletableFuture<>();
+            Runnable task = () -> {
+                try {
+                    command.run();
+                    completion.complete(null);
+                } catch (Throwable ex) {
+                    // An Error too: the caller must not wait forever, and the worker goes on with the next command
+                    completion.completeExceptionally(ex);
+                }
+            };
+            if (!running) {
+                return CompletableFuture.failedFuture(new IllegalStateException("Transfer shard is stopped"));
+            }
+
+            // A full ring pushes back on the submitting thread; the handoff must not be lost to an interrupt
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    commands.put(task);
+                    break;
+                } catch (InterruptedException ex) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            // Stopped meanwhile: the worker either drained the task and runs it, or never will
+            if (!running && commands.remove(task)) {
+                completion.completeExceptionally(new IllegalStateException("Transfer shard is stopped"));
+            }
+            return completion;
+        }
+
+        @Override
+        public void run() {
+            while (running) {
+                try {
+                    commands.take().run();
+                } catch (InterruptedException ex) {
+                    // Woken up by stop(), the loop condition decides whether to exit
+                }
+            }
+            // Complete whatever was accepted before the shutdown so no caller waits forever
+            List<Runnable> remaining = new ArrayList<>();
+            commands.drainTo(remaining);
+            remaining.forEach(Runnable::run);
+        }
+
+        // Further submissions are refused, those already accepted still run
+        void stop() {
+            running = false;
+            worker.interrupt();
+        }
+    }
+}
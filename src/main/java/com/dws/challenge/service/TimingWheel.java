@@ -0,0 +1,190 @@
+package com.dws.challenge.service;
+
+import java.util.function.Consumer;
+
+/**
+ * Hierarchical timing wheel: {@code levels} wheels of 512 slots each, where a slot of level
+ * {@code l} covers 512<sup>l</sup> ticks. A timeout goes into the lowest level whose current
+ * rotation contains its deadline, in the slot of its deadline; when the clock reaches a slot of a
+ * higher level, its timeouts are cascaded down, and the timeouts in the level-0 slot of the current
+ * tick expire. Scheduling and cancelling are O(1), unlinking from a doubly-linked slot list, and a
+ * timeout is moved at most once per level before it expires.
+ * <p>
+ * With four levels and 10 ms ticks, the wheels span about 21 years; a timeout beyond that waits in
+ * the last slot of the top level and is placed again when that slot comes round.
+ * <p>
+ * Not thread-safe, callers serialize access.
+ */
+public final class TimingWheel<T> {
+
+    private static final int SLOT_BITS = 9;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final int MAX_LEVELS = 6;
+
+    public static final class Timeout<T> {
+
+        private final T value;
+        private final long deadlineTick;
+        private Timeout<T> previous;
+        private Timeout<T> next;
+        // -1 once expired or cancelled
+        private int level = -1;
+        private int slot;
+
+        private Timeout(T value, long deadlineTick) {
+            this.value = value;
+            this.deadlineTick = deadlineTick;
+        }
+
+        public T getValue() {
+            return value;
+        }
+
+        public boolean isPending() {
+            return level >= 0;
+        }
+    }
+
+    private final long tickMillis;
+    private final int levels;
+    private final Timeout<T>[][] slots;
+    private long currentTick;
+    private int size;
+
+    @SuppressWarnings("unchecked")
+    public TimingWheel(long tickMillis, int levels, long nowMillis) {
+        if (tickMillis <= 0 || levels < 1 || levels > MAX_LEVELS) {
+            throw new IllegalArgumentException("Tick must be positive and levels between 1 and " + MAX_LEVELS);
+        }
+        this.tickMillis = tickMillis;
+        this.levels = levels;
+        this.slots = new Timeout[levels][SLOTS];
+        this.currentTick = Math.floorDiv(nowMillis, tickMillis);
+    }
+
+    /**
+     * Schedules {@code value} to expire on the first {@link #advance} at or after
+     * {@code deadlineMillis}, rounded up to a tick. A deadline already passed expires on the next tick.
+     */
+    public Timeout<T> schedule(long deadlineMillis, T value) {
+        long deadlineTick = Math.max(-Math.floorDiv(-deadlineMillis, tickMillis), currentTick + 1);
+        Timeout<T> timeout = new Timeout<>(value, deadlineTick);
+        insert(timeout);
+        size++;
+        return timeout;
+    }
+
+    /**
+     * @return false if the timeout already expired or was cancelled
+     */
+    public boolean cancel(Timeout<T> timeout) {
+        if (timeout.level < 0) {
+            return false;
+        }
+        unlink(timeout);
+        size--;
+        return true;
+    }
+
+    /**
+     * Moves the clock to {@code nowMillis}, tick by tick, passing the value of every timeout that
+     * expires to {@code expired} in deadline order.
+     */
+    public void advance(long nowMillis, Consumer<T> expired) {
+        long targetTick = Math.floorDiv(nowMillis, tickMillis);
+        while (currentTick < targetTick) {
+            if (size == 0) {
+                currentTick = targetTick;
+                return;
+            }
+            currentTick++;
+            // Higher levels first, their timeouts may land in the slots cascaded or expired next
+            for (int level = levels - 1; level > 0; level--) {
+                if ((currentTick & ((1L << (SLOT_BITS * level)) - 1)) == 0) {
+                    cascade(level, expired);
+                }
+            }
+            Timeout<T> timeout = slots[0][(int) (currentTick & SLOT_MASK)];
+            while (timeout != null) {
+                Timeout<T> next = timeout.next;
+                unlink(timeout);
+                if (timeout.deadlineTick > currentTick) {
+                    // Beyond the span of a single level wheel, it came round early
+                    insert(timeout);
+                } else {
+                    size--;
+                    expired.accept(timeout.value);
+                }
+                timeout = next;
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private void cascade(int level, Consumer<T> expired) {
+        int slot = digit(currentTick, level);
+        Timeout<T> timeout = slots[level][slot];
+        slots[level][slot] = null;
+        while (timeout != null) {
+            Timeout<T> next = timeout.next;
+            timeout.previous = null;
+            timeout.next = null;
+            if (timeout.deadlineTick <= currentTick) {
+                timeout.level = -1;
+                size--;
+                expired.accept(timeout.value);
+            } else {
+                insert(timeout);
+            }
+            timeout = next;
+        }
+    }
+
+    // The deadline is after the current tick
+    private void insert(Timeout<T> timeout) {
+        long deadline = timeout.deadlineTick;
+        int level = 0;
+        while (level < levels && deadline >>> (SLOT_BITS * (level + 1)) != currentTick >>> (SLOT_BITS * (level + 1))) {
+            level++;
+        }
+        int slot;
+        if (level == levels) {
+            // Beyond the span: the slot of the top level that comes round last
+            level = levels - 1;
+            slot = digit(currentTick, level);
+        } else {
+            slot = digit(deadline, level);
+        }
+
+        Timeout<T> head = slots[level][slot];
+        timeout.next = head;
+        if (head != null) {
+            head.previous = timeout;
+        }
+        slots[level][slot] = timeout;
+        timeout.level = level;
+        timeout.slot = slot;
+    }
+
+    private void unlink(Timeout<T> timeout) {
+        if (timeout.previous != null) {
+            timeout.previous.next = timeout.next;
+        } else {
+            slots[timeout.level][timeout.slot] = timeout.next;
+        }
+        if (timeout.next != null) {
+            timeout.next.previous = timeout.previous;
+        }
+        timeout.previous = null;
+        timeout.next = null;
+        timeout.level = -1;
+    }
+
+    private static int digit(long tick, int level) {
+        return (int) (tick >>> (SLOT_BITS * level)) & SLOT_MASK;
+    }
+}
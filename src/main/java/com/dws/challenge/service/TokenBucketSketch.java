@@ -0,0 +1,112 @@
+package com.dws.challenge.service;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Token buckets for an unbounded set of keys in a fixed amount of memory. Each bucket is a single
+ * long in the style of the generic cell rate algorithm: the time at which it will be full again,
+ * advanced by a compare-and-set per admitted request, so there is no lock and no refill task.
+ * <p>
+ * Keys are hashed into two rows of buckets, as in a count-min sketch. A key that shares its bucket
+ * with a busy key in one row almost never does in the other, so a request is admitted if either of
+ * its buckets has room, and charged to the buckets that have. A key over its limit fills both of its
+ * buckets and is rejected. Tokens taken for a request that is turned away later can be refunded.
+ */
+public class TokenBucketSketch {
+
+  private static final int ROWS = 2;
+
+  private final AtomicLongArray buckets;
+  private final int mask;
+  private final long interval;
+  private final long capacity;
+  private final long origin = System.nanoTime();
+
+  /**
+   * @param buckets buckets per row, rounded up to a power of two
+   * @param ratePerSecond sustained requests per second per key
+   * @param burst requests a key may send at once after being idle
+   */
+  public TokenBucketSketch(int buckets, double ratePerSecond, int burst) {
+    int perRow = buckets <= 1 ? 1 : Integer.highestOneBit(buckets - 1) << 1;
+    this.buckets = new AtomicLongArray(perRow * ROWS);
+    this.mask = perRow - 1;
+    this.interval = Math.max(1, (long) (1e9 / ratePerSecond));
+    this.capacity = interval * Math.max(1, burst);
+  }
+
+  /**
+   * Takes {@code cost} tokens for {@code key}.
+   *
+   * @return 0 if admitted, otherwise the nanoseconds until the tokens would be available
+   */
+  public long tryAcquire(String key, int cost) {
+    long now = now();
+    long charge = interval * cost;
+    int hash = key.hashCode();
+
+    long firstWait = charge(first(hash), now, charge);
+    long secondWait = charge(second(hash), now, charge);
+    return firstWait == 0 || secondWait == 0 ? 0 : Math.min(firstWait, secondWait);
+  }
+
+  /**
+   * Gives back {@code cost} tokens that {@link #tryAcquire} took for {@code key}. Both of the key's
+   * buckets are credited, also one the request was not charged to; that at worst lets the keys
+   * sharing it through a little early, as no bucket is ever fuller than its burst.
+   */
+  public void refund(String key, int cost) {
+    long now = now();
+    long charge = interval * cost;
+    int hash = key.hashCode();
+    refund(first(hash), now, charge);
+    refund(second(hash), now, charge);
+  }
+
+  /**
+   * @return whether {@code cost} tokens could ever be taken at once, that is fit in the burst
+   */
+  public boolean fits(int cost) {
+    return interval * cost <= capacity;
+  }
+
+  // Offset so that an untouched bucket, whose full time is 0, is full
+  private long now() {
+    return System.nanoTime() - origin + capacity;
+  }
+
+  private int first(int hash) {
+    return spread(hash) & mask;
+  }
+
+  private int second(int hash) {
+    return (spread(hash * 0x9e3779b9) & mask) + mask + 1;
+  }
+
+  // Returns 0 once the bucket is charged, otherwise how long it takes until it has room
+  private long charge(int bucket, long now, long charge) {
+    while (true) {
+      long full = buckets.get(bucket);
+      long next = Math.max(full, now) + charge;
+      if (next - now > capacity) {
+        return next - now - capacity;
+      }
+      if (buckets.compareAndSet(bucket, full, next)) {
+        return 0;
+      }
+    }
+  }
+
+  private void refund(int bucket, long now, long charge) {
+    while (true) {
+      long full = buckets.get(bucket);
+      if (full <= now || buckets.compareAndSet(bucket, full, Math.max(now, full - charge))) {
+        return;
+      }
+    }
+  }
+
+  private static int spread(int hash) {
+    return hash ^ (hash >>> 16);
+  }
+}
@@ -0,0 +1,123 @@
+package com.dws.challenge.service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.dws.challenge.exception.TransferRejectedException;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Admission control for the transfer endpoints. A request is checked against a global cap on
+ * in-flight transfers, then against token buckets per client and per source account, and is
+ * rejected before {@link TransferService} looks up or locks any account. Rejections are counted as
+ * {@code transfers.rejected} tagged with the limit that was hit.
+ * <p>
+ * Every check is a compare-and-set on a counter or a bucket, and the buckets live in fixed-size
+ * {@link TokenBucketSketch}es, so the limiter takes no lock and its memory does not grow with the
+ * number of accounts or clients. Tokens taken by a request that a later check rejects are given
+ * back, so a rejected request costs nothing.
+ */
+@Component
+public class TransferAdmissionControl {
+
+  private static final Duration FULL_RETRY_AFTER = Duration.ofSeconds(1);
+
+  /**
+   * Held while an admitted request executes, released once it is done.
+   */
+  public interface Permit {
+
+    void release();
+  }
+
+  private final boolean enabled;
+  private final int maxInFlight;
+  private final int maxTransfers;
+  private final AtomicInteger inFlight = new AtomicInteger();
+  private final TokenBucketSketch clientBuckets;
+  private final TokenBucketSketch accountBuckets;
+  private final Permit release = inFlight::decrementAndGet;
+  private final Counter rejectedInFlight;
+  private final Counter rejectedClient;
+  private final Counter rejectedAccount;
+
+  @Autowired
+  public TransferAdmissionControl(TransferAdmissionProperties properties, MeterRegistry meterRegistry) {
+    this.enabled = properties.isEnabled();
+    this.maxInFlight = properties.getMaxInFlight();
+    this.maxTransfers = Math.min(Math.max(1, properties.getClientBurst()), maxInFlight);
+    this.clientBuckets = new TokenBucketSketch(properties.getBuckets(), properties.getClientRate(),
+      properties.getClientBurst());
+    this.accountBuckets = new TokenBucketSketch(properties.getBuckets(), properties.getAccountRate(),
+      properties.getAccountBurst());
+    this.rejectedInFlight = rejected(meterRegistry, "in_flight");
+    this.rejectedClient = rejected(meterRegistry, "client");
+    this.rejectedAccount = rejected(meterRegistry, "account");
+  }
+
+  private static Counter rejected(MeterRegistry meterRegistry, String limit) {
+    return Counter.builder("transfers.rejected")
+      .description("Transfer requests turned away by admission control")
+      .tag("limit", limit)
+      .register(meterRegistry);
+  }
+
+  /**
+   * Admits a request of {@code client} moving money out of {@code accountFromIds}, one entry per
+   * transfer. Each transfer counts against the in-flight cap until the permit is released, and the
+   * client is charged one token per transfer; each distinct source account is charged one token per
+   * request, as a batch touches it once.
+   *
+   * @throws TransferRejectedException if a limit is exceeded
+   * @throws IllegalArgumentException if the request has more transfers than the client burst or the
+   * in-flight cap, so that it would never be admitted
+   */
+  public Permit admit(String client, List<String> accountFromIds) {
+    if (!enabled) {
+      return () -> { };
+    }
+    int transfers = accountFromIds.size();
+    if (transfers > maxTransfers || !clientBuckets.fits(transfers)) {
+      throw new IllegalArgumentException("A request may hold at most " + maxTransfers + " transfers");
+    }
+    if (inFlight.addAndGet(transfers) > maxInFlight) {
+      inFlight.addAndGet(-transfers);
+      rejectedInFlight.increment();
+      throw new TransferRejectedException("Too many transfers in flight", FULL_RETRY_AFTER);
+    }
+
+    long wait = clientBuckets.tryAcquire(client, transfers);
+    if (wait > 0) {
+      inFlight.addAndGet(-transfers);
+      rejectedClient.increment();
+      throw new TransferRejectedException("Transfer rate limit exceeded for client " + client,
+        Duration.ofNanos(wait));
+    }
+    // Null sources are rejected by the transfers themselves
+    Set<String> sources = new LinkedHashSet<>(accountFromIds);
+    sources.remove(null);
+    List<String> charged = new ArrayList<>(sources.size());
+    for (String accountFromId : sources) {
+      wait = accountBuckets.tryAcquire(accountFromId, 1);
+      if (wait > 0) {
+        charged.forEach(accountId -> accountBuckets.refund(accountId, 1));
+        clientBuckets.refund(client, transfers);
+        inFlight.addAndGet(-transfers);
+        rejectedAccount.increment();
+        throw new TransferRejectedException("Transfer rate limit exceeded for account " + accountFromId,
+          Duration.ofNanos(wait));
+      }
+      charged.add(accountFromId);
+    }
+    return transfers == 1 ? release : () -> inFlight.addAndGet(-transfers);
+  }
+}
@@ -0,0 +1,29 @@
+package com.dws.challenge.service;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import lombok.Data;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "transfer.admission")
+public class TransferAdmissionProperties {
+
+  private boolean enabled = true;
+
+  // Transfers executing at once across all clients, a batch counts each of its transfers
+  private int maxInFlight = 1000;
+
+  // Sustained transfers per second and burst, per source account and per client
+  private double accountRate = 100;
+  private int accountBurst = 200;
+  private double clientRate = 2000;
+  private int clientBurst = 4000;
+
+  // Request header identifying the client; requests without it are limited by remote address
+  private String clientHeader = "X-Client-Id";
+
+  // Token buckets per row of each sketch, accounts and clients that hash alike share a bucket
+  private int buckets = 65536;
+}
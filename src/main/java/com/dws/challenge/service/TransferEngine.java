@@ -0,0 +1,110 @@
+package com.dws.challenge.service;
+
+import java.util.List;
+
+import com.dws.challenge.domain.Account;
+
+/**
+ * Applies the balance movement of a validated transfer. Implementations decide how concurrent
+ * transfers touching the same accounts are serialized; the active one is selected with the
+ * {@code transfer.engine} property.
+ * <p>
+ * Every write takes a {@code record} callback, which journals it: it runs once the write is applied,
+ * while no other write of this engine can touch the accounts and before snapshot readers see the new
+ * balances, so that a journal sees the writes of an account in the order they happen. If it throws,
+ * the write is undone and the exception rethrown. A {@linkplain Account#isStriped() striped}
+ * destination, whose credits are visible at once, is recorded right before it is credited instead.
+ */
+public interface TransferEngine {
+
+    /**
+     * Debits {@code amount} minor units from {@code accountFrom} and credits them to {@code accountTo}.
+     * Either both sides are applied or neither is.
+     *
+     * @throws IllegalArgumentException if the source account does not hold enough funds or the
+     *                                  destination balance would overflow
+     */
+    default void transfer(Account accountFrom, Account accountTo, long amount) throws IllegalArgumentException {
+        transfer(accountFrom, accountTo, amount, amount);
+    }
+
+    /**
+     * Debits {@code amount} minor units from {@code accountFrom} and credits {@code creditedAmount}
+     * to {@code accountTo}, the two differing when the transfer converts between currencies. Either
+     * both sides are applied or neither is.
+     *
+     * @throws IllegalArgumentException if the source account does not hold enough funds or the
+     *                                  destination balance would overflow
+     */
+    default void transfer(Account accountFrom, Account accountTo, long amount, long creditedAmount)
+            throws IllegalArgumentException {
+        transfer(accountFrom, accountTo, amount, creditedAmount, () -> { });
+    }
+
+    /**
+     * Like {@link #transfer(Account, Account, long, long)}, and runs {@code record} to journal it.
+     */
+    void transfer(Account accountFrom, Account accountTo, long amount, long creditedAmount, Runnable record)
+            throws IllegalArgumentException;
+
+    /**
+     * Debits the sum of {@code amounts} from {@code accountFrom} once and credits {@code amounts[i]}
+     * to {@code accountsTo.get(i)}, as one atomic operation: either every leg is applied or none is.
+     * The sum must not overflow.
+     *
+     * @throws IllegalArgumentException if the source account does not hold the sum of the legs or a
+     *                                  destination balance would overflow
+     */
+    default void transfer(Account accountFrom, List<Account> accountsTo, long[] amounts)
+            throws IllegalArgumentException {
+        transfer(accountFrom, accountsTo, amounts, amounts);
+    }
+
+    /**
+     * Like {@link #transfer(Account, List, long[])}, but credits {@code creditedAmounts[i]}, the
+     * amount of leg {@code i} converted to the currency of its destination.
+     */
+    default void transfer(Account accountFrom, List<Account> accountsTo, long[] amounts, long[] creditedAmounts)
+            throws IllegalArgumentException {
+        transfer(accountFrom, accountsTo, amounts, creditedAmounts, () -> { });
+    }
+
+    /**
+     * Like {@link #transfer(Account, List, long[], long[])}, and runs {@code record} once to journal
+     * every leg.
+     */
+    void transfer(Account accountFrom, List<Account> accountsTo, long[] amounts, long[] creditedAmounts,
+            Runnable record) throws IllegalArgumentException;
+
+    /**
+     * Debits {@code amount} minor units from {@code account} alone: the first half of a transfer to
+     * an account owned by another cluster node, whose credit is applied there. The write excludes
+     * every transfer of this engine touching the account.
+     *
+     * @throws IllegalArgumentException if the account does not hold enough funds
+     */
+    default void debit(Account account, long amount) throws IllegalArgumentException {
+        debit(account, amount, () -> { });
+    }
+
+    /**
+     * Like {@link #debit(Account, long)}, and runs {@code record} to journal it.
+     */
+    void debit(Account account, long amount, Runnable record) throws IllegalArgumentException;
+
+    /**
+     * Credits {@code amount} minor units to {@code account} alone: the second half of a transfer from
+     * an account owned by another cluster node, or the refund of a {@link #debit(Account, long)}
+     * whose credit was refused.
+     *
+     * @throws IllegalArgumentException if the balance would overflow
+     */
+    default void credit(Account account, long amount) throws IllegalArgumentException {
+        credit(account, amount, () -> { });
+    }
+
+    /**
+     * Like {@link #credit(Account, long)}, and runs {@code record} to journal it.
+     */
+    void credit(Account account, long amount, Runnable record) throws IllegalArgumentException;
+}
@@ -0,0 +1,136 @@
+package com.dws.challenge.service;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.dws.challenge.dto.TransferRequest;
+import com.dws.challenge.exception.TransferOutcomeUnknownException;
+import com.dws.challenge.exception.TransferPendingException;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+/**
+ * Remembers the outcome of transfers submitted with an idempotency key, so a client retry returns
+ * the original result instead of moving money twice. Keys are scoped per client, two clients that
+ * happen to pick the same key do not see each other's transfers. Entries are bounded by count and
+ * expire after {@code transfer.idempotency.ttl}; hit and miss counts are published as
+ * {@code cache.gets} with {@code cache=transfer.idempotency}.
+ * <p>
+ * Business outcomes are remembered: a success or an {@link IllegalArgumentException}. Any other
+ * failure forgets the key so the retry runs the transfer again, but only when it happened before
+ * the transfer started moving money; after that point it may have taken effect, so retries get a
+ * {@link TransferOutcomeUnknownException} instead. A retry that arrives while the original is still
+ * running waits for it rather than running concurrently. A {@link TransferPendingException} is not
+ * final: retries get it until the transfer is settled in the background, then the settled outcome.
+ */
+@Component
+public class TransferIdempotencyCache {
+
+  /**
+   * A transfer, which runs {@code movingMoney} right before it starts moving money.
+   */
+  public interface Transfer {
+
+    void run(Runnable movingMoney);
+  }
+
+  private record Key(String client, String idempotencyKey) {
+  }
+
+  private record Entry(TransferRequest request, CompletableFuture<Void> outcome) {
+  }
+
+  private final Cache<Key, Entry> cache;
+
+  @Autowired
+  public TransferIdempotencyCache(@Value("${transfer.idempotency.max-size:100000}") long maxSize,
+                                  @Value("${transfer.idempotency.ttl:24h}") Duration ttl,
+                                  MeterRegistry meterRegistry) {
+    this.cache = Caffeine.newBuilder()
+      .maximumSize(maxSize)
+      .expireAfterWrite(ttl)
+      .recordStats()
+      .build();
+    CaffeineCacheMetrics.monitor(meterRegistry, cache, "transfer.idempotency");
+  }
+
+  /**
+   * Runs {@code transfer} unless {@code client} submitted a transfer with the same key before, in
+   * which case its outcome is replayed.
+   *
+   * @param client who submitted the transfer, or null for transfers the service submits itself
+   * @throws IllegalArgumentException if the key was used before for a different transfer
+   * @throws TransferOutcomeUnknownException if an earlier attempt failed after it started moving money
+   */
+  public void execute(String client, String idempotencyKey, TransferRequest transferRequest, Transfer transfer) {
+    Key key = new Key(client, idempotencyKey);
+    Entry ours = new Entry(transferRequest, new CompletableFuture<>());
+    Entry entry = cache.get(key, k -> ours);
+    if (entry != ours) {
+      replay(idempotencyKey, entry, transferRequest);
+      return;
+    }
+
+    boolean[] movingMoney = new boolean[1];
+    try {
+      transfer.run(() -> movingMoney[0] = true);
+      ours.outcome().complete(null);
+    } catch (IllegalArgumentException | TransferPendingException ex) {
+      // A pending cross-partition transfer has debited its source, a retry must not run it again
+      ours.outcome().completeExceptionally(ex);
+      throw ex;
+    } catch (RuntimeException ex) {
+      if (movingMoney[0]) {
+        ours.outcome().completeExceptionally(new TransferOutcomeUnknownException("Transfer with idempotency key "
+          + idempotencyKey + " failed after it started moving money, it may or may not have taken effect", ex));
+      } else {
+        cache.asMap().remove(key, ours);
+        ours.outcome().completeExceptionally(ex);
+      }
+      throw ex;
+    }
+  }
+
+  private static void replay(String idempotencyKey, Entry entry, TransferRequest transferRequest) {
+    if (!sameTransfer(entry.request(), transferRequest)) {
+      throw new IllegalArgumentException("Idempotency key " + idempotencyKey + " was already used for a different transfer");
+    }
+    try {
+      join(entry.outcome());
+    } catch (TransferPendingException ex) {
+      if (ex.getSettlement().isDone()) {
+        join(ex.getSettlement());
+        return;
+      }
+      throw ex;
+    }
+  }
+
+  private static void join(CompletableFuture<Void> outcome) {
+    try {
+      outcome.join();
+    } catch (CompletionException ex) {
+      if (ex.getCause() instanceof RuntimeException cause) {
+        throw cause;
+      }
+      throw ex;
+    }
+  }
+
+  // Amounts compare by value so that a retry sending 10.0 instead of 10 is still the same transfer
+  private static boolean sameTransfer(TransferRequest first, TransferRequest second) {
+    return Objects.equals(first.getAccountFromId(), second.getAccountFromId())
+      && Objects.equals(first.getAccountToId(), second.getAccountToId())
+      && first.getAmount() != null && second.getAmount() != null
+      && first.getAmount().compareTo(second.getAmount()) == 0;
+  }
+}
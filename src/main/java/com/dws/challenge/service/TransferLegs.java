@@ -0,0 +1,234 @@
+package com.dws.challenge.service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.exception.InsufficientBalanceException;
+
+/**
+ * Helpers shared by the engines: timed lock acquisition, versioned writes, one-sided or on both
+ * sides of a transfer, and multi-leg transfers with one debit from a source account and one credit
+ * per leg. Each runs the {@code record} callback of {@link TransferEngine} once the write is applied
+ * and before its versions are published, and undoes the write if the callback throws.
+ * <p>
+ * Every write of a balance happens under a claim of the account's version, so that snapshot readers
+ * can tell it happened. Writers that keep each other out by other means claim with
+ * {@link Account#claimVersion()}, in lock order, because a snapshot reader that keeps losing its
+ * optimistic reads claims the versions of the accounts it reads in that order too.
+ */
+final class TransferLegs {
+
+    private TransferLegs() {
+    }
+
+    /**
+     * Takes the lock of {@code account}. A lock that is not free straight away is waited for with the
+     * wait time and the account reported to {@link TransferMetrics}; the uncontended path takes no
+     * clock reading.
+     */
+    static void lock(Account account, TransferMetrics transferMetrics) {
+        Lock lock = account.getLock();
+        if (lock.tryLock()) {
+            return;
+        }
+        long started = System.nanoTime();
+        lock.lock();
+        transferMetrics.recordLockWait(account, System.nanoTime() - started);
+    }
+
+    /**
+     * Applies a write to one account under a claim of its version, so snapshot readers see it on its
+     * own. The caller must be the only writer of the account.
+     */
+    static void versioned(Account account, Runnable write) {
+        long version = account.claimVersion();
+        try {
+            write.run();
+        } finally {
+            account.publishVersion(version);
+        }
+    }
+
+    /**
+     * Debits one account under a claim of its version, see {@link #versioned}, and records it.
+     */
+    static void debit(Account account, long amount, Runnable record) {
+        versioned(account, () -> {
+            account.debit(amount);
+            try {
+                record.run();
+            } catch (RuntimeException ex) {
+                account.credit(amount);
+                throw ex;
+            }
+        });
+    }
+
+    /**
+     * Credits one account under a claim of its version, see {@link #versioned}, and records it.
+     */
+    static void credit(Account account, long amount, Runnable record) {
+        versioned(account, () -> {
+            account.credit(amount);
+            try {
+                record.run();
+            } catch (RuntimeException ex) {
+                account.debit(amount);
+                throw ex;
+            }
+        });
+    }
+
+    /**
+     * Every account involved, once each, in the order their locks must be taken. Accounts are told
+     * apart by id, since a repository may return several objects for one account.
+     */
+    static List<Account> lockOrder(Account accountFrom, List<Account> accountsTo) {
+        Map<String, Account> accounts = new LinkedHashMap<>();
+        accounts.put(accountFrom.getAccountId(), accountFrom);
+        for (Account accountTo : accountsTo) {
+            accounts.putIfAbsent(accountTo.getAccountId(), accountTo);
+        }
+        List<Account> ordered = new ArrayList<>(accounts.values());
+        ordered.sort(Account.LOCK_ORDER);
+        return ordered;
+    }
+
+    /**
+     * Debits {@code amount} from one and credits {@code creditedAmount} to the other of two accounts
+     * the caller is the only writer of, under claims of
+     * their versions. {@code first} and {@code second} are the two accounts in lock order; a
+     * {@linkplain Account#isStriped() striped} destination is credited without a claim and passed as
+     * {@code second = null}. The versions are published even if nothing moved, which at worst costs a
+     * snapshot reader one more attempt.
+     *
+     * @throws IllegalArgumentException if the source balance is too low or the destination balance
+     *                                  would overflow
+     */
+    static void move(Account first, Account second, Account accountFrom, Account accountTo, long amount,
+            long creditedAmount, Runnable record) {
+        // A transfer to the same account must not wait for its own claim
+        boolean claimSecond = second != null && !second.getAccountId().equals(first.getAccountId());
+        long firstVersion = first.claimVersion();
+        long secondVersion = claimSecond ? second.claimVersion() : 0;
+        try {
+            accountFrom.debit(amount);
+            creditAndRecord(accountFrom, accountTo, amount, creditedAmount, record);
+        } finally {
+            if (claimSecond) {
+                second.publishVersion(secondVersion);
+            }
+            first.publishVersion(firstVersion);
+        }
+    }
+
+    /**
+     * Credits the destination of a transfer whose source is already debited, and records the
+     * transfer. If either fails, the source is refunded and the credit, if made, taken back. A
+     * {@linkplain Account#isStriped() striped} destination is recorded first, as its credit is
+     * visible at once and cannot be taken back by a writer that does not hold its lock.
+     */
+    static void creditAndRecord(Account accountFrom, Account accountTo, long amount, long creditedAmount,
+            Runnable record) {
+        if (accountTo.isStriped()) {
+            try {
+                record.run();
+                accountTo.credit(creditedAmount);
+            } catch (RuntimeException ex) {
+                accountFrom.credit(amount);
+                throw ex;
+            }
+            return;
+        }
+        try {
+            accountTo.credit(creditedAmount);
+        } catch (IllegalArgumentException ex) {
+            accountFrom.credit(amount);
+            throw ex;
+        }
+        try {
+            record.run();
+        } catch (RuntimeException ex) {
+            accountTo.debit(creditedAmount);
+            accountFrom.credit(amount);
+            throw ex;
+        }
+    }
+
+    /**
+     * Applies a multi-leg transfer under claims of the versions of every account involved, given in
+     * lock order by {@code accounts}, and records it. The caller must be the only writer of all of
+     * them, apart from lock-free credits to striped accounts.
+     */
+    static void commit(List<Account> accounts, Account accountFrom, List<Account> accountsTo, long[] amounts,
+            long[] creditedAmounts, Runnable record) {
+        long[] versions = new long[accounts.size()];
+        for (int i = 0; i < versions.length; i++) {
+            versions[i] = accounts.get(i).claimVersion();
+        }
+        // Undone legs count as written, a reader may have seen the balances in between
+        boolean written = true;
+        try {
+            move(accountFrom, accountsTo, amounts, creditedAmounts);
+            try {
+                record.run();
+            } catch (RuntimeException ex) {
+                undo(accountFrom, accountsTo, amounts.length, amounts, creditedAmounts);
+                throw ex;
+            }
+        } catch (InsufficientBalanceException ex) {
+            // The debit comes first, nothing was written
+            written = false;
+            throw ex;
+        } finally {
+            for (int i = versions.length - 1; i >= 0; i--) {
+                if (written) {
+                    accounts.get(i).publishVersion(versions[i]);
+                } else {
+                    accounts.get(i).abandonVersion(versions[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Debits the sum of the legs and credits every leg its credited amount. If a credit fails the credits made so far
+     * are taken back and the source is refunded, so either all legs are applied or none is. The
+     * caller must be the only writer of every account involved.
+     *
+     * @throws IllegalArgumentException if the source account does not hold the sum of the legs or a
+     *                                  destination balance would overflow
+     */
+    static void move(Account accountFrom, List<Account> accountsTo, long[] amounts, long[] creditedAmounts) {
+        accountFrom.debit(total(amounts));
+        for (int leg = 0; leg < amounts.length; leg++) {
+            try {
+                accountsTo.get(leg).credit(creditedAmounts[leg]);
+            } catch (IllegalArgumentException ex) {
+                undo(accountFrom, accountsTo, leg, amounts, creditedAmounts);
+                throw ex;
+            }
+        }
+    }
+
+    // Takes back the credits of the first legs and refunds the source
+    private static void undo(Account accountFrom, List<Account> accountsTo, int legs, long[] amounts,
+            long[] creditedAmounts) {
+        for (int applied = legs - 1; applied >= 0; applied--) {
+            accountsTo.get(applied).debit(creditedAmounts[applied]);
+        }
+        accountFrom.credit(total(amounts));
+    }
+
+    private static long total(long[] amounts) {
+        long total = 0;
+        for (long amount : amounts) {
+            total += amount;
+        }
+        return total;
+    }
+}
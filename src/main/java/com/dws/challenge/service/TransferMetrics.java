@@ -0,0 +1,139 @@
+package com.dws.challenge.service;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.exception.AccountNotFoundException;
+import com.dws.challenge.exception.InsufficientBalanceException;
+import com.dws.challenge.exception.InvalidAmountException;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Transfer instrumentation. Every meter is registered up front, so recording a sample is a counter
+ * increment or a histogram update on primitives without any allocation or registry lookup.
+ * <p>
+ * Lock contention is tagged per account only for the accounts listed in
+ * {@code metrics.transfers.hot-accounts}; all others share the {@code other} tag to keep the
+ * number of time series bounded. Which of them are waited for is told by the
+ * {@link LockContentionProfiler}, when it is enabled.
+ */
+@Component
+public class TransferMetrics {
+
+  private static final String OTHER_ACCOUNTS = "other";
+
+  private final Counter succeeded;
+  private final Counter insufficientBalance;
+  private final Counter unknownAccount;
+  private final Counter invalidAmount;
+  private final Counter failed;
+  private final Timer latency;
+  private final Timer lockWait;
+  private final Map<String, Counter> contentionByHotAccount = new HashMap<>();
+  private final Counter contentionOnOtherAccounts;
+  private final Counter optimisticConflicts;
+  private final Counter optimisticFallbacks;
+  private final LockContentionProfiler lockContentionProfiler;
+
+  // Without the lock contention profile
+  public TransferMetrics(MeterRegistry meterRegistry, List<String> hotAccounts) {
+    this(meterRegistry, hotAccounts, new LockContentionProfiler(new LockProfilerProperties()));
+  }
+
+  @Autowired
+  public TransferMetrics(MeterRegistry meterRegistry,
+                         @Value("${metrics.transfers.hot-accounts:}") List<String> hotAccounts,
+                         LockContentionProfiler lockContentionProfiler) {
+    this.lockContentionProfiler = lockContentionProfiler;
+    this.succeeded = outcome(meterRegistry, "success");
+    this.insufficientBalance = outcome(meterRegistry, "insufficient_balance");
+    this.unknownAccount = outcome(meterRegistry, "unknown_account");
+    this.invalidAmount = outcome(meterRegistry, "invalid_amount");
+    this.failed = outcome(meterRegistry, "failed");
+
+    this.latency = Timer.builder("transfers.latency")
+      .description("Time spent in TransferService.transferMoney, notifications excluded")
+      .publishPercentiles(0.5, 0.99, 0.999)
+      .publishPercentileHistogram()
+      .minimumExpectedValue(Duration.ofNanos(500))
+      .maximumExpectedValue(Duration.ofSeconds(5))
+      .register(meterRegistry);
+    this.lockWait = Timer.builder("transfers.lock.wait")
+      .description("Time spent waiting for an account lock that was already held")
+      .publishPercentiles(0.5, 0.99, 0.999)
+      .publishPercentileHistogram()
+      .minimumExpectedValue(Duration.ofNanos(100))
+      .maximumExpectedValue(Duration.ofSeconds(5))
+      .register(meterRegistry);
+
+    for (String accountId : hotAccounts) {
+      contentionByHotAccount.put(accountId, contention(meterRegistry, accountId));
+    }
+    this.contentionOnOtherAccounts = contention(meterRegistry, OTHER_ACCOUNTS);
+
+    this.optimisticConflicts = Counter.builder("transfers.optimistic.conflicts")
+      .description("Optimistic commits that lost a race and were retried")
+      .register(meterRegistry);
+    this.optimisticFallbacks = Counter.builder("transfers.optimistic.fallbacks")
+      .description("Optimistic transfers that ran out of attempts and took the account locks")
+      .register(meterRegistry);
+  }
+
+  public void recordSuccess(long elapsedNanos) {
+    succeeded.increment();
+    latency.record(elapsedNanos, TimeUnit.NANOSECONDS);
+  }
+
+  public void recordFailure(RuntimeException failure, long elapsedNanos) {
+    if (failure instanceof InsufficientBalanceException) {
+      insufficientBalance.increment();
+    } else if (failure instanceof AccountNotFoundException) {
+      unknownAccount.increment();
+    } else if (failure instanceof InvalidAmountException) {
+      invalidAmount.increment();
+    } else {
+      failed.increment();
+    }
+    latency.record(elapsedNanos, TimeUnit.NANOSECONDS);
+  }
+
+  // Only called when the lock could not be taken straight away
+  public void recordLockWait(Account account, long waitedNanos) {
+    lockWait.record(waitedNanos, TimeUnit.NANOSECONDS);
+    contentionByHotAccount.getOrDefault(account.getAccountId(), contentionOnOtherAccounts).increment();
+    lockContentionProfiler.recordWait(account.getAccountId(), waitedNanos);
+  }
+
+  public void recordOptimisticConflict() {
+    optimisticConflicts.increment();
+  }
+
+  public void recordOptimisticFallback() {
+    optimisticFallbacks.increment();
+  }
+
+  private static Counter outcome(MeterRegistry meterRegistry, String outcome) {
+    return Counter.builder("transfers")
+      .description("Transfers by outcome")
+      .tag("outcome", outcome)
+      .register(meterRegistry);
+  }
+
+  private static Counter contention(MeterRegistry meterRegistry, String accountId) {
+    return Counter.builder("transfers.lock.contended")
+      .description("Account lock acquisitions that had to wait")
+      .tag("account", accountId)
+      .register(meterRegistry);
+  }
+}
@@ -0,0 +1,604 @@
+package com.dws.challenge.service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.Period;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.TemporalAmount;
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.ScheduledTransfer;
+import com.dws.challenge.dto.ScheduledTransferRequest;
+import com.dws.challenge.dto.TransferRequest;
+import com.dws.challenge.exception.AccountNotFoundException;
+import com.dws.challenge.exception.InvalidAmountException;
+import com.dws.challenge.exception.TransferPendingException;
+import com.dws.challenge.repository.JournalProperties;
+import com.dws.challenge.repository.MappedJournal;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Future-dated transfers and standing orders, see {@link ScheduledTransfer}. Pending occurrences
+ * wait in a {@link TimingWheel}, so that millions of them cost O(1) each to schedule and cancel,
+ * and nothing to keep. A ticker thread advances the wheel once per {@code transfer.scheduler.tick}
+ * and releases the due transfers to a pool of workers at {@code release-rate} per second: a
+ * midnight full of standing orders drains at a steady pace instead of all at once.
+ * <p>
+ * With {@code transfer.scheduler.journaled}, every change of a scheduled transfer is appended to a
+ * {@link MappedJournal} as its full state, and startup keeps the last state of each. An occurrence
+ * is journaled as started, and durable, before it runs, and its outcome after: an occurrence a
+ * restart interrupted is reported as {@link ScheduledTransfer.Result#UNKNOWN} and never run twice.
+ * The journal is compacted by rewriting the live transfers and deleting the segments before them.
+ */
+@Slf4j
+@Service
+public class TransferScheduler {
+
+    private static final String JOURNAL_NAME = "scheduled-transfers";
+    private static final byte STATE = 1;
+    private static final int WHEEL_LEVELS = 4;
+    private static final int MAX_MESSAGE_LENGTH = 1000;
+
+    // The state is replaced under the entry's monitor and read without it
+    private static final class Entry {
+
+        volatile ScheduledTransfer transfer;
+        final TemporalAmount interval;
+        // Guarded by wheelLock
+        TimingWheel.Timeout<Entry> timeout;
+
+        Entry(ScheduledTransfer transfer, TemporalAmount interval) {
+            this.transfer = transfer;
+            this.interval = interval;
+        }
+    }
+
+    private final TransferSchedulerProperties properties;
+    private final TransferService transferService;
+    private final AccountsService accountsService;
+    private final ClusterRouter router;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> idsByAccount = new ConcurrentHashMap<>();
+    private final ReentrantLock wheelLock = new ReentrantLock();
+    private final TimingWheel<Entry> wheel;
+    // Only touched by the ticker thread
+    private final ArrayDeque<Entry> due = new ArrayDeque<>();
+    private final double releasesPerNano;
+    private double releaseBudget;
+    private long lastRelease = System.nanoTime();
+    private volatile int dueCount;
+    private final int workerCount;
+    private final ThreadPoolExecutor workers;
+    private final ScheduledExecutorService ticker;
+    private final ScheduledExecutorService compactor;
+    private final MappedJournal journal;
+    private final AtomicLong changesSinceCompaction = new AtomicLong();
+    private final ReentrantLock compactionLock = new ReentrantLock();
+
+    @Autowired
+    public TransferScheduler(TransferSchedulerProperties properties, JournalProperties journalProperties,
+            TransferService transferService, AccountsService accountsService, ClusterRouter router,
+            MeterRegistry meterRegistry) throws IOException {
+        this.properties = properties;
+        this.transferService = transferService;
+        this.accountsService = accountsService;
+        this.router = router;
+        long tickMillis = Math.max(1, properties.getTick().toMillis());
+        this.wheel = new TimingWheel<>(tickMillis, WHEEL_LEVELS, System.currentTimeMillis());
+        this.releasesPerNano = Math.max(1, properties.getReleaseRate()) / 1e9;
+        this.releaseBudget = Math.max(1, properties.getReleaseBurst());
+
+        if (properties.isJournaled()) {
+            Map<String, ScheduledTransfer> recovered = new HashMap<>();
+            this.journal = MappedJournal.open(journalProperties.getDirectory(), JOURNAL_NAME, journalProperties, 0,
+                    (type, payload) -> recover(recovered, type, payload));
+            Instant now = Instant.now();
+            long position = -1;
+            for (ScheduledTransfer transfer : recovered.values()) {
+                if (transfer.inFlight()) {
+                    transfer = transfer.finished(ScheduledTransfer.Result.UNKNOWN,
+                            "Interrupted by a restart, the transfer may or may not have been executed", now);
+                    position = append(transfer);
+                }
+                Entry entry = new Entry(transfer, parseInterval(transfer.interval()));
+                index(entry);
+                if (transfer.status() == ScheduledTransfer.Status.ACTIVE) {
+                    schedule(entry, transfer.nextExecution());
+                }
+            }
+            awaitDurable(position);
+            log.info("Recovered {} scheduled transfers, {} of them active", recovered.size(), wheel.size());
+        } else {
+            this.journal = null;
+        }
+
+        this.workerCount = properties.getWorkers() > 0 ? properties.getWorkers()
+                : Runtime.getRuntime().availableProcessors();
+        AtomicInteger workerIds = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(workerCount, workerCount, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "transfer-scheduler-worker-" + workerIds.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.ticker = Executors.newScheduledThreadPool(1, runnable -> {
+            Thread thread = new Thread(runnable, "transfer-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker.scheduleAtFixedRate(this::tickQuietly, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+        long compactionMillis = properties.getCompactionInterval().toMillis();
+        if (compactionMillis > 0) {
+            // A thread of its own, rewriting the journal must not hold up the ticks
+            this.compactor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "transfer-scheduler-compactor");
+                thread.setDaemon(true);
+                return thread;
+            });
+            compactor.scheduleWithFixedDelay(this::compactQuietly, compactionMillis, compactionMillis,
+                    TimeUnit.MILLISECONDS);
+        } else {
+            this.compactor = null;
+        }
+
+        Gauge.builder("transfers.scheduled.pending", wheel, TimingWheel::size)
+                .description("Occurrences of scheduled transfers waiting for their time")
+                .register(meterRegistry);
+        Gauge.builder("transfers.scheduled.due", this, scheduler -> scheduler.dueCount)
+                .description("Scheduled transfers that are due and wait to be released")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        ticker.shutdownNow();
+        if (compactor != null) {
+            compactor.shutdownNow();
+        }
+        workers.shutdown();
+        // Lets the transfers in flight record their outcome
+        workers.awaitTermination(10, TimeUnit.SECONDS);
+        if (journal != null) {
+            journal.close();
+        }
+    }
+
+    /**
+     * Schedules transfers from {@code accountFromId}, an account of this node.
+     *
+     * @throws IllegalArgumentException if an account does not exist, the amount is not positive or
+     *                                  not in the source's currency, or the schedule is invalid
+     */
+    public ScheduledTransfer schedule(String accountFromId, ScheduledTransferRequest request) {
+        Account accountFrom = accountsService.getAccount(accountFromId);
+        String accountToId = request.getAccountToId();
+        // A destination on another cluster node is checked when the transfer runs
+        if (accountFrom == null || accountToId == null
+                || (router.isLocal(accountToId) && accountsService.getAccount(accountToId) == null)) {
+            throw new AccountNotFoundException("To or from account Id missing!");
+        }
+        if (request.getAmount() == null || request.getAmount().signum() <= 0) {
+            throw new InvalidAmountException("We do not support overdrafts!");
+        }
+        if (request.getCurrency() != null && !request.getCurrency().equals(accountFrom.getCurrency())) {
+            throw new InvalidAmountException("Amount must be given in " + accountFrom.getCurrency()
+                    + ", the currency of the source account");
+        }
+        long amount = accountFrom.toMinorUnits(request.getAmount());
+        if (request.getExecuteAt() == null) {
+            throw new IllegalArgumentException("The time of the first transfer must be given");
+        }
+        try {
+            request.getExecuteAt().toEpochMilli();
+        } catch (ArithmeticException ex) {
+            throw new IllegalArgumentException("The time of the first transfer is out of range");
+        }
+        TemporalAmount interval = parseInterval(request.getInterval());
+        Long executions = request.getExecutions();
+        if (executions != null && executions < 1) {
+            throw new IllegalArgumentException("A scheduled transfer runs at least once");
+        }
+        if (interval == null) {
+            if (executions != null && executions != 1) {
+                throw new IllegalArgumentException("Repeated transfers need an interval");
+            }
+            executions = 1L;
+        }
+
+        ScheduledTransfer transfer = new ScheduledTransfer(UUID.randomUUID().toString(), accountFromId, accountToId,
+                amount, accountFrom.getCurrency(), request.getExecuteAt(), request.getInterval(), executions, 0,
+                request.getExecuteAt(), ScheduledTransfer.Status.ACTIVE, null, null, null, false, null);
+        Entry entry = new Entry(transfer, interval);
+        long position;
+        synchronized (entry) {
+            // Indexed before it is journaled, so that a compaction running meanwhile cannot miss it
+            index(entry);
+            try {
+                position = update(entry, transfer);
+            } catch (RuntimeException ex) {
+                unindex(entry);
+                throw ex;
+            }
+            schedule(entry, transfer.nextExecution());
+        }
+        awaitDurable(position);
+        log.info("Scheduled transfer {} from {} to {} at {}", transfer.id(), accountFromId, accountToId,
+                transfer.startAt());
+        return transfer;
+    }
+
+    // Null if there is no such transfer from the account
+    public ScheduledTransfer getScheduledTransfer(String accountFromId, String id) {
+        Entry entry = entries.get(id);
+        return entry == null || !entry.transfer.accountFromId().equals(accountFromId) ? null : entry.transfer;
+    }
+
+    // Transfers scheduled from the account, the finished ones until they are retained long enough
+    public List<ScheduledTransfer> getScheduledTransfers(String accountFromId) {
+        return idsByAccount.getOrDefault(accountFromId, Set.of()).stream()
+                .map(entries::get)
+                .filter(entry -> entry != null)
+                .map(entry -> entry.transfer)
+                .sorted(Comparator.comparing(ScheduledTransfer::startAt).thenComparing(ScheduledTransfer::id))
+                .toList();
+    }
+
+    /**
+     * Cancels the occurrences to come. One already released keeps running.
+     *
+     * @return the cancelled transfer, as it was if it had already finished, or null if there is no
+     *         such transfer from the account
+     */
+    public ScheduledTransfer cancel(String accountFromId, String id) {
+        Entry entry = entries.get(id);
+        if (entry == null || !entry.transfer.accountFromId().equals(accountFromId)) {
+            return null;
+        }
+        long position = -1;
+        synchronized (entry) {
+            if (entry.transfer.status() == ScheduledTransfer.Status.ACTIVE) {
+                position = update(entry, entry.transfer.cancelled(Instant.now()));
+                unschedule(entry);
+            }
+        }
+        awaitDurable(position);
+        return entry.transfer;
+    }
+
+    private void tickQuietly() {
+        try {
+            tick();
+        } catch (RuntimeException ex) {
+            log.error("Releasing due transfers failed", ex);
+        }
+    }
+
+    private void tick() {
+        wheelLock.lock();
+        try {
+            wheel.advance(System.currentTimeMillis(), due::add);
+        } finally {
+            wheelLock.unlock();
+        }
+
+        long now = System.nanoTime();
+        releaseBudget = Math.min(Math.max(1, properties.getReleaseBurst()),
+                releaseBudget + (now - lastRelease) * releasesPerNano);
+        lastRelease = now;
+        // Transfers stay here rather than queue up in front of busy workers
+        while (releaseBudget >= 1 && !due.isEmpty() && workers.getQueue().size() < workerCount) {
+            Entry entry = due.poll();
+            releaseBudget--;
+            workers.execute(() -> executeQuietly(entry));
+        }
+        dueCount = due.size();
+    }
+
+    private void executeQuietly(Entry entry) {
+        try {
+            execute(entry);
+        } catch (RuntimeException ex) {
+            log.error("Scheduled transfer {} failed", entry.transfer.id(), ex);
+        }
+    }
+
+    private void execute(Entry entry) {
+        ScheduledTransfer transfer;
+        long position;
+        synchronized (entry) {
+            transfer = entry.transfer;
+            if (transfer.status() != ScheduledTransfer.Status.ACTIVE || transfer.inFlight()) {
+                return;
+            }
+            transfer = transfer.started(Instant.now(), next(transfer, entry.interval));
+            position = update(entry, transfer);
+        }
+        awaitDurable(position);
+
+        ScheduledTransfer.Result result = ScheduledTransfer.Result.SUCCESS;
+        String message = null;
+        try {
+            TransferRequest transferRequest = new TransferRequest();
+            transferRequest.setAccountFromId(transfer.accountFromId());
+            transferRequest.setAccountToId(transfer.accountToId());
+            transferRequest.setAmount(transfer.getAmount());
+            transferRequest.setCurrency(transfer.currency());
+            transferService.transferMoney(transferRequest);
+        } catch (TransferPendingException ex) {
+            result = ScheduledTransfer.Result.PENDING;
+            message = ex.getMessage();
+        } catch (RuntimeException ex) {
+            result = ScheduledTransfer.Result.FAILED;
+            message = ex.getMessage();
+        }
+
+        synchronized (entry) {
+            transfer = entry.transfer.finished(result, message, Instant.now());
+            update(entry, transfer);
+            if (transfer.status() == ScheduledTransfer.Status.ACTIVE) {
+                schedule(entry, transfer.nextExecution());
+            }
+        }
+    }
+
+    // When the occurrence after the one being started is due, null if there is none
+    private static Instant next(ScheduledTransfer transfer, TemporalAmount interval) {
+        long index = transfer.executions() + 1;
+        if (interval == null || (transfer.maxExecutions() != null && index >= transfer.maxExecutions())) {
+            return null;
+        }
+        try {
+            // Counted from the start, so that the 31st plus months does not drift to the 28th
+            Instant next = interval instanceof Period period
+                    ? transfer.startAt().atOffset(ZoneOffset.UTC)
+                            .plus(period.multipliedBy(Math.toIntExact(index))).toInstant()
+                    : transfer.startAt().plus(((Duration) interval).multipliedBy(index));
+            // The wheel counts in milliseconds since the epoch
+            next.toEpochMilli();
+            return next;
+        } catch (ArithmeticException | DateTimeException ex) {
+            return null;
+        }
+    }
+
+    private static TemporalAmount parseInterval(String interval) {
+        if (interval == null) {
+            return null;
+        }
+        try {
+            if (interval.contains("T")) {
+                Duration duration = Duration.parse(interval);
+                if (duration.isNegative() || duration.isZero()) {
+                    throw new IllegalArgumentException("Interval must be positive");
+                }
+                return duration;
+            }
+            Period period = Period.parse(interval);
+            if (period.isNegative() || period.isZero()) {
+                throw new IllegalArgumentException("Interval must be positive");
+            }
+            return period;
+        } catch (DateTimeParseException ex) {
+            throw new IllegalArgumentException("Interval must be an ISO 8601 period or duration, such as P1M or PT12H");
+        }
+    }
+
+    private void schedule(Entry entry, Instant when) {
+        wheelLock.lock();
+        try {
+            entry.timeout = wheel.schedule(when.toEpochMilli(), entry);
+        } finally {
+            wheelLock.unlock();
+        }
+    }
+
+    private void unschedule(Entry entry) {
+        wheelLock.lock();
+        try {
+            if (entry.timeout != null) {
+                wheel.cancel(entry.timeout);
+            }
+        } finally {
+            wheelLock.unlock();
+        }
+    }
+
+    private void index(Entry entry) {
+        ScheduledTransfer transfer = entry.transfer;
+        entries.put(transfer.id(), entry);
+        idsByAccount.compute(transfer.accountFromId(), (accountId, ids) -> {
+            Set<String> updated = ids != null ? ids : ConcurrentHashMap.newKeySet();
+            updated.add(transfer.id());
+            return updated;
+        });
+    }
+
+    private void unindex(Entry entry) {
+        ScheduledTransfer transfer = entry.transfer;
+        entries.remove(transfer.id(), entry);
+        idsByAccount.computeIfPresent(transfer.accountFromId(), (accountId, ids) -> {
+            ids.remove(transfer.id());
+            return ids.isEmpty() ? null : ids;
+        });
+    }
+
+    // Called under the entry's monitor, so that the journal orders the states of a transfer as they happened
+    private long update(Entry entry, ScheduledTransfer transfer) {
+        long position = append(transfer);
+        entry.transfer = transfer;
+        changesSinceCompaction.incrementAndGet();
+        return position;
+    }
+
+    private void compactQuietly() {
+        try {
+            compact();
+        } catch (IOException | RuntimeException ex) {
+            log.error("Could not compact the scheduled transfer journal", ex);
+        }
+    }
+
+    /**
+     * Forgets the transfers that finished longer than {@code transfer.scheduler.retention} ago, and
+     * rewrites the journal with the others if anything changed since the last compaction.
+     */
+    public void compact() throws IOException {
+        if (!compactionLock.tryLock()) {
+            return;
+        }
+        try {
+            boolean rewrite = journal != null && changesSinceCompaction.getAndSet(0) > 0;
+            // Every record appended from here on lands in this segment or a later one
+            int sealedSegments = rewrite ? journal.sealCurrentSegment() : 0;
+            Instant expired = Instant.now().minus(properties.getRetention());
+            long position = -1;
+            int forgotten = 0;
+            for (Entry entry : entries.values()) {
+                synchronized (entry) {
+                    ScheduledTransfer transfer = entry.transfer;
+                    if (transfer.finishedAt() != null && !transfer.inFlight() && transfer.finishedAt().isBefore(expired)) {
+                        unindex(entry);
+                        forgotten++;
+                    } else if (rewrite) {
+                        position = append(transfer);
+                    }
+                }
+            }
+            if (rewrite) {
+                awaitDurable(position);
+                journal.deleteSegmentsBefore(sealedSegments);
+                log.info("Compacted the scheduled transfer journal to {} transfers, forgot {}", entries.size(),
+                        forgotten);
+            }
+        } finally {
+            compactionLock.unlock();
+        }
+    }
+
+    private long append(ScheduledTransfer transfer) {
+        if (journal == null) {
+            return -1;
+        }
+        byte[][] strings = {encode(transfer.id()), encode(transfer.accountFromId()), encode(transfer.accountToId()),
+                encode(transfer.currency()), encode(transfer.interval()), encode(message(transfer.lastMessage()))};
+        int length = strings.length * Short.BYTES + 4 * (Long.BYTES + Integer.BYTES) + 3 * Long.BYTES + 3;
+        for (byte[] string : strings) {
+            length += string.length;
+        }
+        return journal.append(STATE, length, buffer -> {
+            putString(buffer, strings[0]);
+            putString(buffer, strings[1]);
+            putString(buffer, strings[2]);
+            buffer.putLong(transfer.amountMinorUnits());
+            putString(buffer, strings[3]);
+            putInstant(buffer, transfer.startAt());
+            putString(buffer, strings[4]);
+            buffer.putLong(transfer.maxExecutions() == null ? -1 : transfer.maxExecutions());
+            buffer.putLong(transfer.executions());
+            putInstant(buffer, transfer.nextExecution());
+            buffer.put((byte) transfer.status().ordinal());
+            putInstant(buffer, transfer.lastExecution());
+            buffer.put(transfer.lastResult() == null ? -1 : (byte) transfer.lastResult().ordinal());
+            putString(buffer, strings[5]);
+            buffer.put(transfer.inFlight() ? (byte) 1 : 0);
+            putInstant(buffer, transfer.finishedAt());
+        });
+    }
+
+    private void awaitDurable(long position) {
+        if (journal != null && position >= 0) {
+            journal.awaitDurable(position);
+        }
+    }
+
+    // The last state of each transfer wins
+    private static void recover(Map<String, ScheduledTransfer> recovered, byte type, ByteBuffer payload) {
+        if (type != STATE) {
+            throw new IllegalStateException("Unknown scheduled transfer journal record type " + type);
+        }
+        String id = getString(payload);
+        String accountFromId = getString(payload);
+        String accountToId = getString(payload);
+        long amount = payload.getLong();
+        String currency = getString(payload);
+        Instant startAt = getInstant(payload);
+        String interval = getString(payload);
+        long maxExecutions = payload.getLong();
+        long executions = payload.getLong();
+        Instant nextExecution = getInstant(payload);
+        ScheduledTransfer.Status status = ScheduledTransfer.Status.values()[payload.get()];
+        Instant lastExecution = getInstant(payload);
+        byte result = payload.get();
+        String lastMessage = getString(payload);
+        boolean inFlight = payload.get() != 0;
+        Instant finishedAt = getInstant(payload);
+        recovered.put(id, new ScheduledTransfer(id, accountFromId, accountToId, amount, currency, startAt,
+                interval.isEmpty() ? null : interval, maxExecutions < 0 ? null : maxExecutions, executions,
+                nextExecution, status, lastExecution, result < 0 ? null : ScheduledTransfer.Result.values()[result],
+                lastMessage.isEmpty() ? null : lastMessage, inFlight, finishedAt));
+    }
+
+    private static String message(String message) {
+        return message != null && message.length() > MAX_MESSAGE_LENGTH
+                ? message.substring(0, MAX_MESSAGE_LENGTH) : message;
+    }
+
+    // Null is written as the empty string
+    private static byte[] encode(String value) {
+        byte[] bytes = value == null ? new byte[0] : value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Account id is too long");
+        }
+        return bytes;
+    }
+
+    private static void putString(ByteBuffer buffer, byte[] bytes) {
+        buffer.putShort((short) bytes.length).put(bytes);
+    }
+
+    private static String getString(ByteBuffer payload) {
+        byte[] bytes = new byte[payload.getShort()];
+        payload.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // Seconds and nanoseconds, Long.MIN_VALUE seconds for null
+    private static void putInstant(ByteBuffer buffer, Instant instant) {
+        buffer.putLong(instant == null ? Long.MIN_VALUE : instant.getEpochSecond())
+                .putInt(instant == null ? 0 : instant.getNano());
+    }
+
+    private static Instant getInstant(ByteBuffer payload) {
+        long seconds = payload.getLong();
+        int nanos = payload.getInt();
+        return seconds == Long.MIN_VALUE ? null : Instant.ofEpochSecond(seconds, nanos);
+    }
+}
@@ -0,0 +1,34 @@
+package com.dws.challenge.service;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import lombok.Data;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "transfer.scheduler")
+public class TransferSchedulerProperties {
+
+  // Resolution of the timing wheel, due transfers are released at most this late
+  private Duration tick = Duration.ofMillis(10);
+
+  // Threads running due transfers (0 = number of cores)
+  private int workers = 0;
+
+  // Due transfers released per second, and at once after an idle spell; a burst of due transfers
+  // beyond that waits its turn instead of hitting the accounts all together
+  private int releaseRate = 1000;
+  private int releaseBurst = 100;
+
+  // Journal scheduled transfers under journal.directory, so that they survive a restart
+  private boolean journaled = false;
+
+  // Completed and cancelled transfers stay readable this long
+  private Duration retention = Duration.ofDays(1);
+
+  // The journal is rewritten with only the live scheduled transfers this often; zero disables it
+  private Duration compactionInterval = Duration.ofMinutes(10);
+}
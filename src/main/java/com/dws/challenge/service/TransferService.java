@@ -1,64 +1,301 @@
 package com.dws.challenge.service;
 
-import java.util.Optional;
-import java.util.concurrent.locks.Lock;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import com.dws.challenge.domain.Account;
+import com.dws.challenge.dto.MultiTransferRequest;
+import com.dws.challenge.dto.TransferLeg;
 import com.dws.challenge.dto.TransferRequest;
+import com.dws.challenge.dto.TransferResult;
+import com.dws.challenge.exception.AccountNotFoundException;
+import com.dws.challenge.exception.InvalidAmountException;
+import com.dws.challenge.exception.TransferPendingException;
+
+import jakarta.annotation.PreDestroy;
 
 @Service
 public class TransferService {
 
     private final AccountsService accountService;
-    private final EmailNotificationService notificationService;
+    private final NotificationDispatcher notificationDispatcher;
+    private final TransferEngine transferEngine;
+    private final TransferMetrics transferMetrics;
+    private final TransferIdempotencyCache idempotencyCache;
+    private final FxRates fxRates;
+    private final ClusterTransfers clusterTransfers;
+    private final ExecutorService batchExecutor;
 
     @Autowired
-    public TransferService(AccountsService accountService, EmailNotificationService notificationService) {
+    public TransferService(AccountsService accountService, NotificationDispatcher notificationDispatcher,
+            TransferEngine transferEngine, TransferMetrics transferMetrics, TransferIdempotencyCache idempotencyCache,
+            FxRates fxRates, ClusterTransfers clusterTransfers,
+            @Value("${transfer.batch.parallelism:0}") int batchParallelism) {
         this.accountService = accountService;
-        this.notificationService = notificationService;
+        this.notificationDispatcher = notificationDispatcher;
+        this.transferEngine = transferEngine;
+        this.transferMetrics = transferMetrics;
+        this.idempotencyCache = idempotencyCache;
+        this.fxRates = fxRates;
+        this.clusterTransfers = clusterTransfers;
+        this.batchExecutor = Executors.newFixedThreadPool(
+                batchParallelism > 0 ? batchParallelism : Runtime.getRuntime().availableProcessors());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        batchExecutor.shutdown();
     }
 
     public void transferMoney(TransferRequest transferRequest) throws IllegalArgumentException {
-    	Account accountFrom = accountService.getAccount(transferRequest.getAccountFromId());
-    	Account accountTo = accountService.getAccount(transferRequest.getAccountToId());
+        transferMoney(transferRequest, null);
+    }
+
+    /**
+     * @param client who submitted the transfer; its idempotency key is only matched against the
+     * earlier transfers of the same client
+     */
+    public void transferMoney(TransferRequest transferRequest, String client) throws IllegalArgumentException {
+        if (transferRequest.getIdempotencyKey() == null) {
+            executeTransfer(transferRequest, () -> { });
+        } else {
+            idempotencyCache.execute(client, transferRequest.getIdempotencyKey(), transferRequest,
+                    movingMoney -> executeTransfer(transferRequest, movingMoney));
+        }
+    }
 
-        Lock lock1 = null;
-        Lock lock2 = null;
+    /**
+     * Executes a transfer from an account of this node. A destination owned by another cluster node
+     * is credited there, see {@link ClusterTransfers}. {@code movingMoney} runs once the request is
+     * validated, right before the first balance changes.
+     */
+    private void executeTransfer(TransferRequest transferRequest, Runnable movingMoney) {
+        long started = System.nanoTime();
+        Account accountFrom;
+        Account accountTo;
+        boolean remote = clusterTransfers.isRemote(transferRequest.getAccountToId());
         try {
-            if (accountFrom != null && accountTo != null) {
-                // Acquire locks for the involved accounts
-                lock1 = accountFrom.getAccountId().compareTo(accountTo.getAccountId()) < 0 ? accountFrom.getLock() : accountTo.getLock();
-                lock2 = accountFrom.getAccountId().compareTo(accountTo.getAccountId()) < 0 ? accountTo.getLock() : accountFrom.getLock();
-
-                lock1.lock();
-                lock2.lock();
-                
-                if (transferRequest.getAmount().signum() <= 0) {
-                    throw new IllegalArgumentException("We do not support overdrafts!");
+            accountFrom = accountService.getAccount(transferRequest.getAccountFromId());
+            // A repository may hand out a new view per lookup, a self transfer must still see a single account
+            accountTo = remote ? null
+                    : Objects.equals(transferRequest.getAccountToId(), transferRequest.getAccountFromId())
+                    ? accountFrom : accountService.getAccount(transferRequest.getAccountToId());
+
+            if (accountFrom == null || (accountTo == null && !remote)) {
+                throw new AccountNotFoundException("To or from account Id missing!");
+            }
+            if (transferRequest.getAmount().signum() <= 0) {
+                throw new InvalidAmountException("We do not support overdrafts!");
+            }
+            String currency = transferRequest.getCurrency();
+            if (currency != null && !currency.equals(accountFrom.getCurrency())) {
+                throw new InvalidAmountException("Amount must be given in " + accountFrom.getCurrency()
+                        + ", the currency of the source account");
+            }
+
+            // BigDecimal stops at the request, the engines work on minor units
+            long amount = accountFrom.toMinorUnits(transferRequest.getAmount());
+            if (remote) {
+                movingMoney.run();
+                clusterTransfers.transfer(accountFrom, transferRequest.getAccountToId(), amount);
+            } else {
+                long creditedAmount = fxRates.convert(accountFrom, accountTo, amount);
+                movingMoney.run();
+                // Journaled while the engine holds the accounts, an append that fails undoes the transfer
+                long[] journalPosition = new long[1];
+                try {
+                    transferEngine.transfer(accountFrom, accountTo, amount, creditedAmount, () -> journalPosition[0] =
+                            accountService.journalTransfer(accountFrom, accountTo, amount, creditedAmount));
+                } catch (IllegalArgumentException ex) {
+                    if (journalPosition[0] != 0) {
+                        // Only a striped destination is journaled before it is credited, and it refused the credit
+                        accountService.journalTransfer(accountTo, accountFrom, creditedAmount, amount);
+                    }
+                    throw ex;
                 }
+                accountService.recordTransfer(accountFrom, accountTo, amount, creditedAmount, journalPosition[0]);
+            }
+        } catch (RuntimeException ex) {
+            transferMetrics.recordFailure(ex, System.nanoTime() - started);
+            throw ex;
+        }
+        transferMetrics.recordSuccess(System.nanoTime() - started);
 
-                if (accountFrom.getBalance().compareTo(transferRequest.getAmount()) < 0) {
-                    throw new IllegalArgumentException("Insufficient balance");
+        // Send notifications, the dispatcher takes them off the request thread; a remote
+        // destination is notified by its own node
+        if (accountTo != null) {
+            notificationDispatcher.notifyAboutTransfer(accountTo, "Money Credited to " + accountTo.getAccountId());
+        }
+        notificationDispatcher.notifyAboutTransfer(accountFrom, "Money debited from " + accountFrom.getAccountId());
+    }
+
+    /**
+     * Executes a multi-leg transfer: the sum of the legs is debited from the source account once and
+     * every leg is credited, converted to the currency of its destination, as one atomic operation.
+     * Each leg is then recorded as a transfer of its own. All accounts must be owned by this cluster
+     * node, an atomic multi-leg transfer does not span partitions.
+     */
+    public void transferMoneyMulti(MultiTransferRequest transferRequest) throws IllegalArgumentException {
+        long started = System.nanoTime();
+        Account accountFrom;
+        List<Account> accountsTo;
+        long[] amounts;
+        long[] creditedAmounts;
+        try {
+            List<TransferLeg> legs = transferRequest.getLegs();
+            if (legs == null || legs.isEmpty()) {
+                throw new InvalidAmountException("A multi-leg transfer needs at least one leg");
+            }
+            accountFrom = transferRequest.getAccountFromId() == null ? null
+                    : accountService.getAccount(transferRequest.getAccountFromId());
+            if (accountFrom == null) {
+                throw new AccountNotFoundException("To or from account Id missing!");
+            }
+
+            accountsTo = new ArrayList<>(legs.size());
+            amounts = new long[legs.size()];
+            creditedAmounts = new long[legs.size()];
+            long total = 0;
+            for (int i = 0; i < amounts.length; i++) {
+                TransferLeg leg = legs.get(i);
+                if (clusterTransfers.isRemote(leg.getAccountToId())) {
+                    throw new InvalidAmountException("Account " + leg.getAccountToId()
+                            + " is owned by another cluster node, a multi-leg transfer cannot span partitions");
+                }
+                Account accountTo = leg.getAccountToId() == null ? null
+                        : leg.getAccountToId().equals(accountFrom.getAccountId()) ? accountFrom
+                        : accountService.getAccount(leg.getAccountToId());
+                if (accountTo == null) {
+                    throw new AccountNotFoundException("To or from account Id missing!");
                 }
+                if (leg.getAmount() == null || leg.getAmount().signum() <= 0) {
+                    throw new InvalidAmountException("We do not support overdrafts!");
+                }
+                accountsTo.add(accountTo);
+                amounts[i] = accountFrom.toMinorUnits(leg.getAmount());
+                creditedAmounts[i] = fxRates.convert(accountFrom, accountTo, amounts[i]);
+                try {
+                    total = Math.addExact(total, amounts[i]);
+                } catch (ArithmeticException ex) {
+                    throw new InvalidAmountException("Sum of the legs is too large");
+                }
+            }
 
-                accountFrom.setBalance(accountFrom.getBalance().subtract(transferRequest.getAmount()));
-                accountTo.setBalance(accountTo.getBalance().add(transferRequest.getAmount()));
-            } else {
-                throw new IllegalArgumentException("To or from account Id missing!");
+            long[] journalPosition = new long[1];
+            Account source = accountFrom;
+            List<Account> destinations = accountsTo;
+            transferEngine.transfer(accountFrom, accountsTo, amounts, creditedAmounts, () -> journalPosition[0] =
+                    accountService.journalTransfers(source, destinations, amounts, creditedAmounts));
+            for (int i = 0; i < amounts.length; i++) {
+                accountService.recordTransfer(accountFrom, accountsTo.get(i), amounts[i], creditedAmounts[i],
+                        journalPosition[0]);
+            }
+        } catch (RuntimeException ex) {
+            transferMetrics.recordFailure(ex, System.nanoTime() - started);
+            throw ex;
+        }
+        transferMetrics.recordSuccess(System.nanoTime() - started);
+
+        for (Account accountTo : accountsTo) {
+            notificationDispatcher.notifyAboutTransfer(accountTo, "Money Credited to " + accountTo.getAccountId());
+        }
+        notificationDispatcher.notifyAboutTransfer(accountFrom, "Money debited from " + accountFrom.getAccountId());
+    }
+
+    /**
+     * Executes a batch of transfers and returns one result per item, in submission order.
+     * Transfers are grouped by the accounts they touch: groups with disjoint accounts run
+     * in parallel, while transfers within a group run sequentially in submission order.
+     */
+    public List<TransferResult> transferMoneyBatch(List<TransferRequest> transferRequests) {
+        return transferMoneyBatch(transferRequests, null);
+    }
+
+    /**
+     * @param client who submitted the batch, see {@link #transferMoney(TransferRequest, String)}
+     */
+    public List<TransferResult> transferMoneyBatch(List<TransferRequest> transferRequests, String client) {
+        TransferResult[] results = new TransferResult[transferRequests.size()];
+        List<List<Integer>> groups = groupByAccounts(transferRequests);
+
+        if (groups.size() == 1) {
+            executeGroup(transferRequests, groups.get(0), client, results);
+        } else {
+            CompletableFuture<?>[] futures = new CompletableFuture<?>[groups.size()];
+            for (int i = 0; i < groups.size(); i++) {
+                List<Integer> group = groups.get(i);
+                futures[i] = CompletableFuture.runAsync(() -> executeGroup(transferRequests, group, client, results),
+                        batchExecutor);
+            }
+            CompletableFuture.allOf(futures).join();
+        }
+        return List.of(results);
+    }
+
+    private void executeGroup(List<TransferRequest> transferRequests, List<Integer> group, String client,
+            TransferResult[] results) {
+        for (int index : group) {
+            // A failing item must not abort the rest of the batch
+            try {
+                transferMoney(transferRequests.get(index), client);
+                results[index] = TransferResult.success(index);
+            } catch (TransferPendingException ex) {
+                results[index] = TransferResult.pending(index, ex.getMessage());
+            } catch (RuntimeException ex) {
+                results[index] = TransferResult.failed(index, ex.getMessage());
             }
-        } finally {
-            // Release locks
-        	if(lock1 != null)
-        		lock1.unlock();
-        	if(lock2 != null)
-        		lock2.unlock();
+        }
+    }
+
+    // Union-find over account ids: two transfers end up in the same group when they share an account
+    private static List<List<Integer>> groupByAccounts(List<TransferRequest> transferRequests) {
+        int size = transferRequests.size();
+        int[] parent = new int[size];
+        Map<String, Integer> firstUseByAccount = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            parent[i] = i;
+            TransferRequest request = transferRequests.get(i);
+            union(parent, firstUseByAccount, request.getAccountFromId(), i);
+            union(parent, firstUseByAccount, request.getAccountToId(), i);
         }
 
-        // Send notifications
-        notificationService.notifyAboutTransfer(accountTo, "Money Credited to " + accountTo.getAccountId());
-        notificationService.notifyAboutTransfer(accountFrom, "Money debited from " + accountFrom.getAccountId());
+        Map<Integer, List<Integer>> groupsByRoot = new HashMap<>();
+        List<List<Integer>> groups = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            List<Integer> group = groupsByRoot.computeIfAbsent(find(parent, i), root -> new ArrayList<>());
+            if (group.isEmpty()) {
+                groups.add(group);
+            }
+            group.add(i);
+        }
+        return groups;
+    }
+
+    private static void union(int[] parent, Map<String, Integer> firstUseByAccount, String accountId, int index) {
+        if (accountId == null) {
+            return;
+        }
+        Integer previous = firstUseByAccount.putIfAbsent(accountId, index);
+        if (previous != null) {
+            parent[find(parent, index)] = find(parent, previous);
+        }
+    }
+
+    private static int find(int[] parent, int index) {
+        while (parent[index] != index) {
+            parent[index] = parent[parent[index]];
+            index = parent[index];
+        }
+        return index;
     }
 }
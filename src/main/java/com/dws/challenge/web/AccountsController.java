@@ -1,6 +1,19 @@
 package com.dws.challenge.web;
 
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
@@ -10,12 +23,24 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import com.dws.challenge.domain.Account;
+import com.dws.challenge.dto.AccountBalance;
+import com.dws.challenge.dto.AccountImportSummary;
+import com.dws.challenge.exception.AccountNotFoundException;
 import com.dws.challenge.exception.DuplicateAccountIdException;
+import com.dws.challenge.exception.NodeUnavailableException;
+import com.dws.challenge.service.AccountImportService;
 import com.dws.challenge.service.AccountsService;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.extern.slf4j.Slf4j;
 
@@ -24,15 +49,37 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 public class AccountsController {
 
+  private static final int MAX_TRANSACTIONS_PAGE = 1000;
+
+  private static final int MAX_BALANCES = 1000;
+
   private final AccountsService accountsService;
 
+  private final AccountImportService accountImportService;
+
+  private final ClusterForwarder clusterForwarder;
+
+  private final ObjectMapper objectMapper;
+
+  // NDJSON lines are left to the generator's buffer instead of being flushed one by one
+  private final ObjectWriter lineWriter;
+
   @Autowired
-  public AccountsController(AccountsService accountsService) {
+  public AccountsController(AccountsService accountsService, AccountImportService accountImportService,
+                            ClusterForwarder clusterForwarder, ObjectMapper objectMapper) {
     this.accountsService = accountsService;
+    this.accountImportService = accountImportService;
+    this.clusterForwarder = clusterForwarder;
+    this.objectMapper = objectMapper;
+    this.lineWriter = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
   }
 
   @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE)
-  public ResponseEntity<Object> createAccount(@RequestBody @Valid Account account) {
+  public ResponseEntity<Object> createAccount(@RequestBody @Valid Account account, HttpServletRequest request) {
+    ResponseEntity<Object> forwarded = this.clusterForwarder.forwardIfRemote(account.getAccountId(), request, account);
+    if (forwarded != null) {
+      return forwarded;
+    }
     log.info("Creating account {}", account);
 
     try {
@@ -44,10 +91,204 @@ public class AccountsController {
     return new ResponseEntity<>(HttpStatus.CREATED);
   }
 
+  /**
+   * Creates the accounts of an NDJSON document, one account per line. The response is NDJSON as
+   * well: one line per rejected account, written while the import runs, followed by a summary line.
+   * In a cluster every node imports the accounts it owns and rejects the others.
+   */
+  @PostMapping(path = "/import", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+  public ResponseEntity<StreamingResponseBody> importAccounts(InputStream ndjson) {
+    log.info("Importing accounts");
+
+    StreamingResponseBody body = out -> {
+      try (JsonGenerator json = ndjsonGenerator(out)) {
+        AccountImportSummary summary = this.accountImportService.importAccounts(
+          new InputStreamReader(ndjson, StandardCharsets.UTF_8), rejected -> writeLine(json, rejected));
+        writeLine(json, summary);
+        log.info("Imported {} accounts, rejected {} duplicates and {} invalid lines", summary.getCreated(),
+          summary.getDuplicates(), summary.getInvalid());
+      }
+    };
+    return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+  }
+
+  /**
+   * Streams every account as NDJSON, in the format accepted by the import. Accounts are written as
+   * the repository is walked, so the export is not a snapshot of one instant. In a cluster every node
+   * exports the accounts it owns.
+   */
+  @GetMapping(path = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+  public ResponseEntity<StreamingResponseBody> exportAccounts() {
+    log.info("Exporting accounts");
+
+    StreamingResponseBody body = out -> {
+      try (JsonGenerator json = ndjsonGenerator(out)) {
+        this.accountsService.forEachAccount(account -> writeLine(json, account));
+      }
+    };
+    return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+  }
+
   @GetMapping(path = "/{accountId}")
-  public Account getAccount(@PathVariable String accountId) {
+  public ResponseEntity<Object> getAccount(@PathVariable String accountId, HttpServletRequest request) {
+    ResponseEntity<Object> forwarded = this.clusterForwarder.forwardIfRemote(accountId, request, null);
+    if (forwarded != null) {
+      return forwarded;
+    }
     log.info("Retrieving account for id {}", accountId);
-    return this.accountsService.getAccount(accountId);
+    // A single balance is one atomic load, it needs no snapshot read
+    Account account = this.accountsService.getAccount(accountId);
+    return ResponseEntity.ok(account == null ? null
+      : new AccountBalance(account.getAccountId(), account.getBalance(), account.getCurrency()));
+  }
+
+  // The balance in the BinaryTransferCodec encoding, for clients that poll it at a high rate
+  @GetMapping(path = "/{accountId}", produces = BinaryTransferCodec.MEDIA_TYPE_VALUE)
+  public ResponseEntity<Object> getAccountBinary(@PathVariable String accountId, HttpServletRequest request) {
+    ResponseEntity<Object> forwarded = this.clusterForwarder.forwardIfRemote(accountId, request, null);
+    if (forwarded != null) {
+      return forwarded;
+    }
+    Account account = this.accountsService.getAccount(accountId);
+    if (account == null) {
+      return new ResponseEntity<>("Account id " + accountId + " not found", HttpStatus.NOT_FOUND);
+    }
+    return binary(List.of(new AccountBalance(account.getAccountId(), account.getBalance(), account.getCurrency())));
+  }
+
+  /**
+   * Returns the balances of several accounts as of one instant, see
+   * {@link AccountsService#getBalances(java.util.List)}. Neither this nor the single account lookup
+   * waits for transfers in progress. In a cluster the balances of each node are read with one request
+   * to it, so they are of one instant per node only.
+   */
+  @GetMapping
+  public ResponseEntity<Object> getBalances(@RequestParam List<String> ids, HttpServletRequest request) {
+    return balances(ids, request, ResponseEntity::ok);
+  }
+
+  @GetMapping(produces = BinaryTransferCodec.MEDIA_TYPE_VALUE)
+  public ResponseEntity<Object> getBalancesBinary(@RequestParam List<String> ids, HttpServletRequest request) {
+    return balances(ids, request, AccountsController::binary);
+  }
+
+  /**
+   * Returns a page of the account's transactions, newest first, optionally only those recorded
+   * between {@code since} and {@code until} (ISO-8601 instants, inclusive). The response carries the
+   * cursor of the next page, which is asked for with the same bounds, and is written out while the
+   * history is walked rather than collected first.
+   */
+  @GetMapping(path = "/{accountId}/transactions")
+  public ResponseEntity<StreamingResponseBody> getTransactions(@PathVariable String accountId,
+                                                               @RequestParam(required = false) Long cursor,
+                                                               @RequestParam(defaultValue = "50") int limit,
+                                                               @RequestParam(required = false) Instant since,
+                                                               @RequestParam(required = false) Instant until,
+                                                               HttpServletRequest request) {
+    ResponseEntity<Object> forwarded = this.clusterForwarder.forwardIfRemote(accountId, request, null);
+    if (forwarded != null) {
+      return ResponseEntity.status(forwarded.getStatusCode()).headers(forwarded.getHeaders())
+        .body(out -> out.write(forwarded.hasBody() ? (byte[]) forwarded.getBody() : new byte[0]));
+    }
+    log.info("Retrieving transactions for id {} from cursor {}", accountId, cursor);
+    if (this.accountsService.getAccount(accountId) == null) {
+      return message("Account id " + accountId + " not found", HttpStatus.NOT_FOUND);
+    }
+    if (limit < 1 || limit > MAX_TRANSACTIONS_PAGE) {
+      return message("Limit must be between 1 and " + MAX_TRANSACTIONS_PAGE, HttpStatus.BAD_REQUEST);
+    }
+    if (cursor != null && !this.accountsService.isTransactionCursor(accountId, cursor)) {
+      return message("Invalid cursor " + cursor, HttpStatus.BAD_REQUEST);
+    }
+    if (since != null && until != null && since.isAfter(until)) {
+      return message("Since must not be after until", HttpStatus.BAD_REQUEST);
+    }
+
+    StreamingResponseBody body = out -> {
+      try (JsonGenerator json = this.objectMapper.getFactory().createGenerator(out)) {
+        json.writeStartObject();
+        json.writeArrayFieldStart("transactions");
+        Long nextCursor = this.accountsService.getTransactions(accountId, cursor, limit, since, until, transaction -> {
+          try {
+            json.writeStartObject();
+            json.writeNumberField("id", transaction.id());
+            json.writeStringField("timestamp", transaction.timestamp().toString());
+            json.writeStringField("accountFromId", transaction.accountFromId());
+            json.writeStringField("accountToId", transaction.accountToId());
+            json.writeNumberField("amount", transaction.getAmount());
+            json.writeNumberField("creditedAmount", transaction.getCreditedAmount());
+            json.writeEndObject();
+          } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+          }
+        });
+        json.writeEndArray();
+        if (nextCursor != null) {
+          json.writeNumberField("nextCursor", nextCursor);
+        } else {
+          json.writeNullField("nextCursor");
+        }
+        json.writeEndObject();
+      }
+    };
+    return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+  }
+
+  // Lines end with their own newline, the generator must not separate root values with a space
+  private JsonGenerator ndjsonGenerator(OutputStream out) throws IOException {
+    return this.objectMapper.getFactory().createGenerator(out).setRootValueSeparator(null);
+  }
+
+  private void writeLine(JsonGenerator json, Object value) {
+    try {
+      this.lineWriter.writeValue(json, value);
+      json.writeRaw('\n');
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+  }
+
+  private ResponseEntity<Object> balances(List<String> ids, HttpServletRequest request,
+                                          Function<List<AccountBalance>, ResponseEntity<Object>> response) {
+    log.info("Retrieving balances for {} ids", ids.size());
+    if (ids.isEmpty() || ids.size() > MAX_BALANCES) {
+      return new ResponseEntity<>("Between 1 and " + MAX_BALANCES + " ids must be given", HttpStatus.BAD_REQUEST);
+    }
+    try {
+      if (!this.clusterForwarder.isClustered()) {
+        return response.apply(this.accountsService.getBalances(ids));
+      }
+      Map<String, List<String>> idsByNode = this.clusterForwarder.byOwner(ids.stream().distinct().toList());
+      Map<String, AccountBalance> balances = new HashMap<>();
+      for (Map.Entry<String, List<String>> node : idsByNode.entrySet()) {
+        List<String> nodeIds = node.getValue();
+        if (this.clusterForwarder.isLocal(node.getKey())) {
+          this.accountsService.getBalances(nodeIds).forEach(balance -> balances.put(balance.getAccountId(), balance));
+        } else if (this.clusterForwarder.isForwarded(request)) {
+          return this.clusterForwarder.misdirected(nodeIds.get(0));
+        } else {
+          this.clusterForwarder.fetchBalances(node.getKey(), nodeIds, request)
+            .forEach(balance -> balances.put(balance.getAccountId(), balance));
+        }
+      }
+      List<AccountBalance> ordered = new ArrayList<>(balances.size());
+      ids.stream().distinct().forEach(id -> ordered.add(balances.get(id)));
+      return response.apply(ordered);
+    } catch (AccountNotFoundException ex) {
+      return new ResponseEntity<>(ex.getMessage(), HttpStatus.NOT_FOUND);
+    } catch (NodeUnavailableException ex) {
+      return new ResponseEntity<>(ex.getMessage(), HttpStatus.BAD_GATEWAY);
+    }
+  }
+
+  private static ResponseEntity<Object> binary(List<AccountBalance> balances) {
+    return ResponseEntity.ok().contentType(BinaryTransferCodec.MEDIA_TYPE)
+      .body(BinaryTransferCodec.encodeBalances(balances));
+  }
+
+  private static ResponseEntity<StreamingResponseBody> message(String message, HttpStatus status) {
+    return ResponseEntity.status(status).contentType(MediaType.TEXT_PLAIN)
+      .body(out -> out.write(message.getBytes(StandardCharsets.UTF_8)));
   }
 
 }
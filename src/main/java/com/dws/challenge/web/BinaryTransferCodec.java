@@ -0,0 +1,261 @@
+package com.dws.challenge.web;
+
+import java.math.BigDecimal;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.http.MediaType;
+
+import com.dws.challenge.dto.AccountBalance;
+import com.dws.challenge.dto.MultiTransferRequest;
+import com.dws.challenge.dto.TransferLeg;
+import com.dws.challenge.dto.TransferRequest;
+import com.dws.challenge.dto.TransferResult;
+
+/**
+ * Fixed-layout binary encoding of the transfer and balance messages, for clients that send so many
+ * transfers that JSON parsing shows up in the server's CPU profile. It maps to the same DTOs as the
+ * JSON endpoints. Decoding reads the fields straight from the request body: the only allocations
+ * are the DTO, its id strings and its amount.
+ * <p>
+ * All integers are big-endian. A string is an unsigned 16-bit byte length followed by that many
+ * UTF-8 bytes, a length of {@code 0xFFFF} being null. An amount is the 64-bit unscaled value
+ * followed by the scale as one byte. Messages:
+ * <ul>
+ * <li>transfer: accountFromId, accountToId, amount, idempotencyKey, currency</li>
+ * <li>multi-leg transfer: accountFromId, unsigned 16-bit leg count, then accountToId and amount
+ * per leg</li>
+ * <li>transfer result: 32-bit index, status byte (0 success, 1 failed, 2 pending), message</li>
+ * <li>balance: accountId, amount, currency</li>
+ * </ul>
+ * A batch, of transfers or of their results, and a list of balances are messages laid end to end
+ * up to the end of the body, without a count.
+ */
+public final class BinaryTransferCodec {
+
+    public static final String MEDIA_TYPE_VALUE = "application/vnd.dws.transfer";
+    public static final MediaType MEDIA_TYPE = MediaType.parseMediaType(MEDIA_TYPE_VALUE);
+
+    private static final int NULL_LENGTH = 0xFFFF;
+
+    private BinaryTransferCodec() {
+    }
+
+    /**
+     * @throws IllegalArgumentException if the body is truncated or has bytes left over
+     */
+    public static TransferRequest decodeTransfer(byte[] body) {
+        ByteBuffer in = ByteBuffer.wrap(body);
+        TransferRequest transferRequest = decode(in, BinaryTransferCodec::readTransfer);
+        requireEnd(in);
+        return transferRequest;
+    }
+
+    public static List<TransferRequest> decodeTransfers(byte[] body) {
+        ByteBuffer in = ByteBuffer.wrap(body);
+        List<TransferRequest> transferRequests = new ArrayList<>();
+        while (in.hasRemaining()) {
+            transferRequests.add(decode(in, BinaryTransferCodec::readTransfer));
+        }
+        return transferRequests;
+    }
+
+    public static MultiTransferRequest decodeMultiTransfer(byte[] body) {
+        ByteBuffer in = ByteBuffer.wrap(body);
+        MultiTransferRequest transferRequest = decode(in, buffer -> {
+            MultiTransferRequest multi = new MultiTransferRequest();
+            multi.setAccountFromId(readString(buffer));
+            int legCount = Short.toUnsignedInt(buffer.getShort());
+            List<TransferLeg> legs = new ArrayList<>(legCount);
+            for (int i = 0; i < legCount; i++) {
+                legs.add(new TransferLeg(readString(buffer), readAmount(buffer)));
+            }
+            multi.setLegs(legs);
+            return multi;
+        });
+        requireEnd(in);
+        return transferRequest;
+    }
+
+    public static List<TransferResult> decodeResults(byte[] body) {
+        ByteBuffer in = ByteBuffer.wrap(body);
+        List<TransferResult> results = new ArrayList<>();
+        while (in.hasRemaining()) {
+            results.add(decode(in, buffer -> new TransferResult(buffer.getInt(),
+                    TransferResult.Status.values()[buffer.get()], readString(buffer))));
+        }
+        return results;
+    }
+
+    public static List<AccountBalance> decodeBalances(byte[] body) {
+        ByteBuffer in = ByteBuffer.wrap(body);
+        List<AccountBalance> balances = new ArrayList<>();
+        while (in.hasRemaining()) {
+            balances.add(decode(in, buffer -> new AccountBalance(readString(buffer), readAmount(buffer),
+                    readString(buffer))));
+        }
+        return balances;
+    }
+
+    public static byte[] encodeTransfer(TransferRequest transferRequest) {
+        return encodeTransfers(List.of(transferRequest));
+    }
+
+    public static byte[] encodeTransfers(List<TransferRequest> transferRequests) {
+        Encoder out = new Encoder(transferRequests.size() * 56);
+        for (TransferRequest transferRequest : transferRequests) {
+            out.string(transferRequest.getAccountFromId());
+            out.string(transferRequest.getAccountToId());
+            out.amount(transferRequest.getAmount());
+            out.string(transferRequest.getIdempotencyKey());
+            out.string(transferRequest.getCurrency());
+        }
+        return out.toByteArray();
+    }
+
+    public static byte[] encodeMultiTransfer(MultiTransferRequest transferRequest) {
+        List<TransferLeg> legs = transferRequest.getLegs();
+        if (legs.size() >= 1 << 16) {
+            throw new IllegalArgumentException("Too many legs for the binary encoding");
+        }
+        Encoder out = new Encoder(24 + legs.size() * 32);
+        out.string(transferRequest.getAccountFromId());
+        out.putShort(legs.size());
+        for (TransferLeg leg : legs) {
+            out.string(leg.getAccountToId());
+            out.amount(leg.getAmount());
+        }
+        return out.toByteArray();
+    }
+
+    public static byte[] encodeResults(List<TransferResult> results) {
+        Encoder out = new Encoder(results.size() * 8);
+        for (TransferResult result : results) {
+            out.putInt(result.getIndex());
+            out.put(result.getStatus().ordinal());
+            out.string(result.getMessage());
+        }
+        return out.toByteArray();
+    }
+
+    public static byte[] encodeBalances(List<AccountBalance> balances) {
+        Encoder out = new Encoder(balances.size() * 40);
+        for (AccountBalance balance : balances) {
+            out.string(balance.getAccountId());
+            out.amount(balance.getBalance());
+            out.string(balance.getCurrency());
+        }
+        return out.toByteArray();
+    }
+
+    private interface Reader<T> {
+        T read(ByteBuffer in);
+    }
+
+    // A truncated body shows up as an underflow, an unknown status as an index out of bounds
+    private static <T> T decode(ByteBuffer in, Reader<T> reader) {
+        try {
+            return reader.read(in);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException ex) {
+            throw new IllegalArgumentException("Malformed binary message");
+        }
+    }
+
+    private static void requireEnd(ByteBuffer in) {
+        if (in.hasRemaining()) {
+            throw new IllegalArgumentException("Malformed binary message");
+        }
+    }
+
+    private static TransferRequest readTransfer(ByteBuffer in) {
+        TransferRequest transferRequest = new TransferRequest();
+        transferRequest.setAccountFromId(readString(in));
+        transferRequest.setAccountToId(readString(in));
+        transferRequest.setAmount(readAmount(in));
+        transferRequest.setIdempotencyKey(readString(in));
+        transferRequest.setCurrency(readString(in));
+        return transferRequest;
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = Short.toUnsignedInt(in.getShort());
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+        if (length > in.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        String value = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+        in.position(in.position() + length);
+        return value;
+    }
+
+    private static BigDecimal readAmount(ByteBuffer in) {
+        long unscaled = in.getLong();
+        return BigDecimal.valueOf(unscaled, in.get());
+    }
+
+    // Grows like a ByteArrayOutputStream, without its synchronization
+    private static final class Encoder {
+
+        private ByteBuffer buffer;
+
+        Encoder(int expectedSize) {
+            this.buffer = ByteBuffer.allocate(Math.max(64, expectedSize));
+        }
+
+        void put(int value) {
+            ensure(1).put((byte) value);
+        }
+
+        void putShort(int value) {
+            ensure(2).putShort((short) value);
+        }
+
+        void putInt(int value) {
+            ensure(4).putInt(value);
+        }
+
+        void string(String value) {
+            if (value == null) {
+                putShort(NULL_LENGTH);
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            if (bytes.length >= NULL_LENGTH) {
+                throw new IllegalArgumentException("String too long for the binary encoding");
+            }
+            putShort(bytes.length);
+            ensure(bytes.length).put(bytes);
+        }
+
+        void amount(BigDecimal amount) {
+            if (amount == null) {
+                throw new IllegalArgumentException("Amounts are mandatory in the binary encoding");
+            }
+            if (amount.scale() < Byte.MIN_VALUE || amount.scale() > Byte.MAX_VALUE
+                    || amount.unscaledValue().bitLength() > 63) {
+                throw new IllegalArgumentException("Amount " + amount + " does not fit the binary encoding");
+            }
+            ensure(9).putLong(amount.unscaledValue().longValue()).put((byte) amount.scale());
+        }
+
+        byte[] toByteArray() {
+            byte[] bytes = new byte[buffer.position()];
+            buffer.get(0, bytes);
+            return bytes;
+        }
+
+        private ByteBuffer ensure(int bytes) {
+            if (buffer.remaining() < bytes) {
+                ByteBuffer grown = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + bytes));
+                grown.put(buffer.flip());
+                buffer = grown;
+            }
+            return buffer;
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.dws.challenge.web;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.dws.challenge.domain.BalanceChange;
+import com.dws.challenge.dto.BalanceChangePage;
+import com.dws.challenge.service.ChangeFeed;
+import com.dws.challenge.service.ChangeFeedProperties;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Serves the {@link ChangeFeed} to downstream consumers, as a server-sent event stream or by
+ * long-polling. Both resume from a sequence number. A consumer that asks for events no longer
+ * retained is told so, with a {@code gap} event on the stream and a 410 when polling, and has to
+ * re-read the balances it tracks before continuing from the oldest retained event.
+ */
+@RestController
+@RequestMapping("/v1/changes")
+@Slf4j
+public class ChangeFeedController {
+
+  private final ChangeFeed changeFeed;
+
+  private final ChangeFeedProperties properties;
+
+  // One thread per stream: a consumer that reads slowly blocks its own thread and nothing else
+  private final ExecutorService streams;
+
+  @Autowired
+  public ChangeFeedController(ChangeFeed changeFeed, ChangeFeedProperties properties) {
+    this.changeFeed = changeFeed;
+    this.properties = properties;
+    AtomicInteger threads = new AtomicInteger();
+    this.streams = new ThreadPoolExecutor(0, properties.getMaxSubscribers(), 60, TimeUnit.SECONDS,
+      new SynchronousQueue<>(), runnable -> {
+        Thread thread = new Thread(runnable, "change-feed-" + threads.getAndIncrement());
+        thread.setDaemon(true);
+        return thread;
+      });
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    this.streams.shutdownNow();
+  }
+
+  /**
+   * Streams the events from sequence number {@code from}, or from the one after
+   * {@code Last-Event-ID} when an event source reconnects, or else from the next event published.
+   * Every event carries its sequence number as id and its type as name. Refusals carry no message,
+   * an event stream has no body to put it in.
+   */
+  @GetMapping(produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+  public ResponseEntity<SseEmitter> stream(@RequestParam(required = false) Long from,
+                                           @RequestHeader(name = "Last-Event-ID", required = false) Long lastEventId) {
+    long start = lastEventId != null ? lastEventId + 1 : from != null ? from : this.changeFeed.next();
+    if (start < 0) {
+      return ResponseEntity.badRequest().build();
+    }
+    log.info("Streaming changes from {}", start);
+
+    SseEmitter emitter = new SseEmitter(0L);
+    AtomicBoolean open = new AtomicBoolean(true);
+    emitter.onCompletion(() -> open.set(false));
+    emitter.onError(ex -> open.set(false));
+    try {
+      this.streams.execute(() -> stream(emitter, start, open));
+    } catch (RejectedExecutionException ex) {
+      log.warn("Refusing a change feed subscriber, all {} streams are taken", this.properties.getMaxSubscribers());
+      return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+    }
+    return ResponseEntity.ok(emitter);
+  }
+
+  /**
+   * Returns up to {@code limit} events from sequence number {@code from}, waiting up to
+   * {@code waitMillis} for the first one if there is none yet. The wait holds the request thread,
+   * bounded by {@code changes.max-poll-wait}.
+   */
+  @GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
+  public ResponseEntity<Object> poll(@RequestParam long from,
+                                     @RequestParam(required = false) Integer limit,
+                                     @RequestParam(defaultValue = "0") long waitMillis) {
+    int batchSize = limit != null ? limit : this.properties.getBatchSize();
+    if (from < 0 || batchSize < 1 || batchSize > this.properties.getBatchSize()) {
+      return new ResponseEntity<>("From must not be negative and limit between 1 and "
+        + this.properties.getBatchSize(), HttpStatus.BAD_REQUEST);
+    }
+
+    List<BalanceChange> changes = new ArrayList<>();
+    long next = this.changeFeed.read(from, batchSize, changes::add);
+    if (changes.isEmpty() && waitMillis > 0 && from >= this.changeFeed.oldest()) {
+      try {
+        this.changeFeed.await(from, Math.min(waitMillis, this.properties.getMaxPollWait().toMillis()),
+          TimeUnit.MILLISECONDS);
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+      }
+      next = this.changeFeed.read(from, batchSize, changes::add);
+    }
+    if (changes.isEmpty() && from < this.changeFeed.oldest()) {
+      return new ResponseEntity<>("Sequence " + from + " is no longer retained, the oldest is "
+        + this.changeFeed.oldest(), HttpStatus.GONE);
+    }
+    return ResponseEntity.ok(new BalanceChangePage(changes, next));
+  }
+
+  private void stream(SseEmitter emitter, long start, AtomicBoolean open) {
+    long next = start;
+    try {
+      while (open.get()) {
+        long oldest = this.changeFeed.oldest();
+        if (next < oldest) {
+          emitter.send(SseEmitter.event().name("gap").data(oldest));
+          next = oldest;
+        }
+        long read = this.changeFeed.read(next, this.properties.getBatchSize(), change -> send(emitter, change));
+        if (read == next && !this.changeFeed.await(next, this.properties.getHeartbeat().toMillis(),
+          TimeUnit.MILLISECONDS)) {
+          // Also finds out about consumers that went away
+          emitter.send(SseEmitter.event().comment("heartbeat"));
+        }
+        next = read;
+      }
+    } catch (IOException | UncheckedIOException ex) {
+      log.debug("Change feed subscriber went away at {}", next);
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    } finally {
+      emitter.complete();
+    }
+  }
+
+  private static void send(SseEmitter emitter, BalanceChange change) {
+    try {
+      emitter.send(SseEmitter.event().id(String.valueOf(change.sequence())).name(change.type().name())
+        .data(change, MediaType.APPLICATION_JSON));
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+  }
+}
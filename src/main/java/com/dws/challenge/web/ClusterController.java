@@ -0,0 +1,107 @@
+package com.dws.challenge.web;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.dws.challenge.dto.ClusterTransferLeg;
+import com.dws.challenge.exception.AccountNotFoundException;
+import com.dws.challenge.exception.UnknownTransactionException;
+import com.dws.challenge.service.ClusterClient;
+import com.dws.challenge.service.ClusterRouter;
+import com.dws.challenge.service.ClusterTransfers;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Participant side of the cross-partition transfer protocol of {@link ClusterTransfers}, called by
+ * the other cluster nodes only. Calls must name a node of the cluster as their sender and carry the
+ * cluster's secret, see {@link ClusterRouter#authenticates}; as the secret travels with every call,
+ * the nodes should talk over TLS outside a private network.
+ */
+@RestController
+@RequestMapping("/internal/cluster/transfers/{transactionId}")
+@Slf4j
+public class ClusterController {
+
+  private final ClusterRouter clusterRouter;
+
+  private final ClusterTransfers clusterTransfers;
+
+  @Autowired
+  public ClusterController(ClusterRouter clusterRouter, ClusterTransfers clusterTransfers) {
+    this.clusterRouter = clusterRouter;
+    this.clusterTransfers = clusterTransfers;
+  }
+
+  @PostMapping(path = "/prepare", consumes = MediaType.APPLICATION_JSON_VALUE)
+  public ResponseEntity<Object> prepare(@PathVariable String transactionId, @RequestBody ClusterTransferLeg leg,
+                                        @RequestHeader(name = ClusterClient.FORWARDED_HEADER, required = false) String node,
+                                        @RequestHeader(name = ClusterClient.SECRET_HEADER, required = false) String secret) {
+    if (!this.clusterRouter.authenticates(node, secret)) {
+      return notANode(node);
+    }
+    try {
+      return ResponseEntity.ok(this.clusterTransfers.prepare(transactionId, leg));
+    } catch (AccountNotFoundException ex) {
+      return new ResponseEntity<>(ex.getMessage(), HttpStatus.NOT_FOUND);
+    } catch (IllegalArgumentException ex) {
+      return new ResponseEntity<>(ex.getMessage(), HttpStatus.BAD_REQUEST);
+    }
+  }
+
+  // 400 tells the coordinator the credit was not applied, 409 that this node does not know it, 503 to ask again
+  @PostMapping(path = "/commit", consumes = MediaType.APPLICATION_JSON_VALUE)
+  public ResponseEntity<Object> commit(@PathVariable String transactionId, @RequestBody ClusterTransferLeg leg,
+                                       @RequestHeader(name = ClusterClient.FORWARDED_HEADER, required = false) String node,
+                                       @RequestHeader(name = ClusterClient.SECRET_HEADER, required = false) String secret) {
+    if (!this.clusterRouter.authenticates(node, secret)) {
+      return notANode(node);
+    }
+    try {
+      this.clusterTransfers.commit(transactionId, leg);
+    } catch (IllegalArgumentException ex) {
+      log.info("Refused transfer {} from node {}: {}", transactionId, node, ex.getMessage());
+      return new ResponseEntity<>(ex.getMessage(), HttpStatus.BAD_REQUEST);
+    } catch (UnknownTransactionException ex) {
+      return new ResponseEntity<>(ex.getMessage(), HttpStatus.CONFLICT);
+    } catch (IllegalStateException ex) {
+      return new ResponseEntity<>(ex.getMessage(), HttpStatus.SERVICE_UNAVAILABLE);
+    }
+    return ResponseEntity.ok().build();
+  }
+
+  @PostMapping(path = "/abort", consumes = MediaType.APPLICATION_JSON_VALUE)
+  public ResponseEntity<Object> abort(@PathVariable String transactionId,
+                                      @RequestHeader(name = ClusterClient.FORWARDED_HEADER, required = false) String node,
+                                      @RequestHeader(name = ClusterClient.SECRET_HEADER, required = false) String secret) {
+    if (!this.clusterRouter.authenticates(node, secret)) {
+      return notANode(node);
+    }
+    this.clusterTransfers.abort(transactionId);
+    return ResponseEntity.ok().build();
+  }
+
+  @PostMapping(path = "/forget", consumes = MediaType.APPLICATION_JSON_VALUE)
+  public ResponseEntity<Object> forget(@PathVariable String transactionId,
+                                       @RequestHeader(name = ClusterClient.FORWARDED_HEADER, required = false) String node,
+                                       @RequestHeader(name = ClusterClient.SECRET_HEADER, required = false) String secret) {
+    if (!this.clusterRouter.authenticates(node, secret)) {
+      return notANode(node);
+    }
+    this.clusterTransfers.forget(transactionId);
+    return ResponseEntity.ok().build();
+  }
+
+  private static ResponseEntity<Object> notANode(String node) {
+    return new ResponseEntity<>("Sender " + node + " is not an authenticated node of this cluster",
+      HttpStatus.FORBIDDEN);
+  }
+}
@@ -0,0 +1,197 @@
+package com.dws.challenge.web;
+
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import com.dws.challenge.dto.AccountBalance;
+import com.dws.challenge.dto.TransferRequest;
+import com.dws.challenge.dto.TransferResult;
+import com.dws.challenge.exception.AccountNotFoundException;
+import com.dws.challenge.exception.NodeUnavailableException;
+import com.dws.challenge.service.ClusterClient;
+import com.dws.challenge.service.ClusterRouter;
+import com.dws.challenge.service.TransferAdmissionProperties;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.servlet.http.HttpServletRequest;
+
+/**
+ * Forwards requests about accounts of other cluster nodes to their owner, see {@link ClusterRouter}.
+ * The client gets the owner's answer as is. The idempotency key and the client identity used by
+ * admission control travel with the request, so the owner treats it as if it had come directly.
+ */
+@Component
+public class ClusterForwarder {
+
+    // Status of a request sent to a node that does not own the account, RFC 9110
+    private static final int MISDIRECTED_REQUEST = 421;
+
+    private static final TypeReference<List<AccountBalance>> BALANCES = new TypeReference<>() {
+    };
+    private static final TypeReference<List<TransferResult>> RESULTS = new TypeReference<>() {
+    };
+
+    private final ClusterRouter router;
+    private final ClusterClient client;
+    private final ObjectMapper objectMapper;
+    private final TransferAdmissionProperties admissionProperties;
+
+    @Autowired
+    public ClusterForwarder(ClusterRouter router, ClusterClient client, ObjectMapper objectMapper,
+            TransferAdmissionProperties admissionProperties) {
+        this.router = router;
+        this.client = client;
+        this.objectMapper = objectMapper;
+        this.admissionProperties = admissionProperties;
+    }
+
+    public boolean isClustered() {
+        return router.isClustered();
+    }
+
+    /**
+     * Sends the request to the owner of {@code accountId}, unless that is this node.
+     *
+     * @param body the request body: sent as is if it is a byte array, as JSON otherwise, and
+     *             left out if null
+     * @return null if the account is owned here, otherwise the owner's answer, with the body as bytes
+     */
+    public ResponseEntity<Object> forwardIfRemote(String accountId, HttpServletRequest request, Object body) {
+        if (router.isLocal(accountId)) {
+            return null;
+        }
+        if (isForwarded(request)) {
+            return misdirected(accountId);
+        }
+
+        String node = router.ownerOf(accountId);
+        String query = request.getQueryString();
+        ClusterClient.Reply reply;
+        try {
+            reply = client.send(node, request.getMethod(),
+                    request.getRequestURI() + (query == null ? "" : "?" + query), bytes(body),
+                    HttpHeaders.CONTENT_TYPE, body instanceof byte[] ? request.getContentType()
+                            : body != null ? MediaType.APPLICATION_JSON_VALUE : null,
+                    HttpHeaders.ACCEPT, request.getHeader(HttpHeaders.ACCEPT),
+                    "Idempotency-Key", request.getHeader("Idempotency-Key"),
+                    admissionProperties.getClientHeader(), client(request));
+        } catch (NodeUnavailableException ex) {
+            return text(HttpStatus.BAD_GATEWAY.value(), ex.getMessage());
+        }
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.status(reply.status());
+        for (String header : List.of(HttpHeaders.CONTENT_TYPE, HttpHeaders.RETRY_AFTER)) {
+            String value = reply.header(header);
+            if (value != null) {
+                response.header(header, value);
+            }
+        }
+        return reply.body().length == 0 ? response.build() : response.body(reply.body());
+    }
+
+    /**
+     * Groups account ids by owning node, keeping their order.
+     */
+    public Map<String, List<String>> byOwner(Collection<String> accountIds) {
+        return accountIds.stream().collect(Collectors.groupingBy(router::ownerOf, LinkedHashMap::new,
+                Collectors.toList()));
+    }
+
+    public String getSelf() {
+        return router.getSelf();
+    }
+
+    public String ownerOf(String accountId) {
+        return router.ownerOf(accountId);
+    }
+
+    public boolean isLocal(String node) {
+        return node.equals(router.getSelf());
+    }
+
+    // A request that came from another node must be answered here, whoever this node thinks owns the accounts
+    public boolean isForwarded(HttpServletRequest request) {
+        return request.getHeader(ClusterClient.FORWARDED_HEADER) != null;
+    }
+
+    public ResponseEntity<Object> misdirected(String accountId) {
+        return text(MISDIRECTED_REQUEST, "Account id " + accountId + " is owned by " + router.ownerOf(accountId)
+                + " according to " + router.getSelf() + ", the nodes disagree on the cluster");
+    }
+
+    /**
+     * Reads balances of accounts owned by {@code node}, with one request.
+     *
+     * @throws AccountNotFoundException if one of the accounts does not exist
+     * @throws NodeUnavailableException if the node does not answer
+     */
+    public List<AccountBalance> fetchBalances(String node, List<String> accountIds, HttpServletRequest request) {
+        String ids = accountIds.stream()
+                .map(id -> URLEncoder.encode(id, StandardCharsets.UTF_8))
+                .collect(Collectors.joining(","));
+        ClusterClient.Reply reply = client.send(node, "GET", "/v1/accounts?ids=" + ids, null,
+                HttpHeaders.ACCEPT, MediaType.APPLICATION_JSON_VALUE,
+                admissionProperties.getClientHeader(), client(request));
+        if (reply.status() == HttpStatus.NOT_FOUND.value()) {
+            throw new AccountNotFoundException(reply.text());
+        }
+        if (!reply.isSuccess()) {
+            throw new NodeUnavailableException("Node " + node + " answered " + reply.status() + ": " + reply.text());
+        }
+        return client.read(reply, BALANCES);
+    }
+
+    /**
+     * Runs a batch of transfers on {@code node}, which must own the source account of each of them.
+     *
+     * @return one result per transfer, indexed as in {@code transferRequests}
+     * @throws NodeUnavailableException if the node does not answer or turns the batch away
+     */
+    public List<TransferResult> forwardBatch(String node, List<TransferRequest> transferRequests,
+            HttpServletRequest request) {
+        ClusterClient.Reply reply = client.send(node, "POST", "/v1/transfers/batch", bytes(transferRequests),
+                HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE,
+                HttpHeaders.ACCEPT, MediaType.APPLICATION_JSON_VALUE,
+                admissionProperties.getClientHeader(), client(request));
+        if (!reply.isSuccess()) {
+            throw new NodeUnavailableException("Node " + node + " answered " + reply.status() + ": " + reply.text());
+        }
+        return client.read(reply, RESULTS);
+    }
+
+    private byte[] bytes(Object body) {
+        if (body == null || body instanceof byte[]) {
+            return (byte[]) body;
+        }
+        try {
+            return objectMapper.writeValueAsBytes(body);
+        } catch (JsonProcessingException ex) {
+            throw new IllegalStateException("Cannot serialize " + body, ex);
+        }
+    }
+
+    // As TransferController identifies clients, so that the owner charges the same client
+    private String client(HttpServletRequest request) {
+        String client = request.getHeader(admissionProperties.getClientHeader());
+        return client != null ? client : request.getRemoteAddr();
+    }
+
+    private static ResponseEntity<Object> text(int status, String message) {
+        return ResponseEntity.status(status).contentType(MediaType.TEXT_PLAIN)
+                .body(message.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,56 @@
+package com.dws.challenge.web;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.dws.challenge.dto.FxRateTable;
+import com.dws.challenge.service.FxRateSnapshot;
+import com.dws.challenge.service.FxRates;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Reads and replaces the exchange rates of cross-currency transfers. An update replaces the whole
+ * table at once, currencies left out of it can no longer be converted.
+ */
+@RestController
+@RequestMapping("/v1/fx/rates")
+@Slf4j
+public class FxRatesController {
+
+  private final FxRates fxRates;
+
+  @Autowired
+  public FxRatesController(FxRates fxRates) {
+    this.fxRates = fxRates;
+  }
+
+  @GetMapping
+  public FxRateTable getRates() {
+    return table(this.fxRates.current());
+  }
+
+  @PutMapping(consumes = MediaType.APPLICATION_JSON_VALUE)
+  public ResponseEntity<Object> updateRates(@RequestBody FxRateTable rates) {
+    log.info("Updating exchange rates against {}", rates.getBase());
+    if (rates.getRates() == null) {
+      return new ResponseEntity<>("Rates must be provided", HttpStatus.BAD_REQUEST);
+    }
+    try {
+      return ResponseEntity.ok(table(this.fxRates.update(rates.getBase(), rates.getRates())));
+    } catch (IllegalArgumentException ex) {
+      return new ResponseEntity<>(ex.getMessage(), HttpStatus.BAD_REQUEST);
+    }
+  }
+
+  private static FxRateTable table(FxRateSnapshot snapshot) {
+    return new FxRateTable(snapshot.getBase(), snapshot.getRates(), snapshot.getVersion(), snapshot.getUpdatedAt());
+  }
+}
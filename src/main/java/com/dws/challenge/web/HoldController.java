@@ -0,0 +1,117 @@
+package com.dws.challenge.web;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.dws.challenge.domain.Hold;
+import com.dws.challenge.dto.AccountHolds;
+import com.dws.challenge.dto.HoldCaptureRequest;
+import com.dws.challenge.dto.HoldRequest;
+import com.dws.challenge.service.HoldService;
+
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Balance holds of an account, see {@link HoldService}: authorize with a POST, then capture or void.
+ * They live on the node that owns the account, requests about them are forwarded there.
+ */
+@RestController
+@RequestMapping("/v1/accounts/{accountId}/holds")
+@Slf4j
+public class HoldController {
+
+  private final HoldService holdService;
+
+  private final ClusterForwarder clusterForwarder;
+
+  @Autowired
+  public HoldController(HoldService holdService, ClusterForwarder clusterForwarder) {
+    this.holdService = holdService;
+    this.clusterForwarder = clusterForwarder;
+  }
+
+  @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE)
+  public ResponseEntity<Object> authorize(@PathVariable String accountId, @RequestBody HoldRequest holdRequest,
+                                          HttpServletRequest request) {
+    ResponseEntity<Object> forwarded = this.clusterForwarder.forwardIfRemote(accountId, request, holdRequest);
+    if (forwarded != null) {
+      return forwarded;
+    }
+    log.info("Authorizing hold on {}: {}", accountId, holdRequest);
+
+    try {
+      return new ResponseEntity<>(this.holdService.authorize(accountId, holdRequest), HttpStatus.CREATED);
+    } catch (IllegalArgumentException ex) {
+      return new ResponseEntity<>(ex.getMessage(), HttpStatus.BAD_REQUEST);
+    }
+  }
+
+  // The active holds, with the available balance and the held total
+  @GetMapping
+  public ResponseEntity<Object> getHolds(@PathVariable String accountId, HttpServletRequest request) {
+    ResponseEntity<Object> forwarded = this.clusterForwarder.forwardIfRemote(accountId, request, null);
+    if (forwarded != null) {
+      return forwarded;
+    }
+    AccountHolds holds = this.holdService.getHolds(accountId);
+    return holds == null ? new ResponseEntity<>(HttpStatus.NOT_FOUND) : ResponseEntity.ok(holds);
+  }
+
+  @GetMapping(path = "/{id}")
+  public ResponseEntity<Object> getHold(@PathVariable String accountId, @PathVariable String id,
+                                        HttpServletRequest request) {
+    ResponseEntity<Object> forwarded = this.clusterForwarder.forwardIfRemote(accountId, request, null);
+    if (forwarded != null) {
+      return forwarded;
+    }
+    Hold hold = this.holdService.getHold(accountId, id);
+    return hold == null ? new ResponseEntity<>(HttpStatus.NOT_FOUND) : ResponseEntity.ok(hold);
+  }
+
+  /**
+   * Captures the amount of the body, or the whole hold without one. A hold no longer authorized is
+   * a conflict.
+   */
+  @PostMapping(path = "/{id}/capture")
+  public ResponseEntity<Object> capture(@PathVariable String accountId, @PathVariable String id,
+                                        @RequestBody(required = false) HoldCaptureRequest captureRequest,
+                                        HttpServletRequest request) {
+    ResponseEntity<Object> forwarded = this.clusterForwarder.forwardIfRemote(accountId, request, captureRequest);
+    if (forwarded != null) {
+      return forwarded;
+    }
+    log.info("Capturing hold {} of {}: {}", id, accountId, captureRequest);
+
+    try {
+      Hold hold = this.holdService.capture(accountId, id, captureRequest == null ? null : captureRequest.getAmount());
+      return hold == null ? new ResponseEntity<>(HttpStatus.NOT_FOUND) : ResponseEntity.ok(hold);
+    } catch (IllegalArgumentException ex) {
+      return new ResponseEntity<>(ex.getMessage(), HttpStatus.BAD_REQUEST);
+    } catch (IllegalStateException ex) {
+      return new ResponseEntity<>(ex.getMessage(), HttpStatus.CONFLICT);
+    }
+  }
+
+  // Voids the hold and returns it as it is then, unchanged if it had already finished
+  @DeleteMapping(path = "/{id}")
+  public ResponseEntity<Object> voidHold(@PathVariable String accountId, @PathVariable String id,
+                                         HttpServletRequest request) {
+    ResponseEntity<Object> forwarded = this.clusterForwarder.forwardIfRemote(accountId, request, null);
+    if (forwarded != null) {
+      return forwarded;
+    }
+    log.info("Voiding hold {} of {}", id, accountId);
+    Hold hold = this.holdService.voidHold(accountId, id);
+    return hold == null ? new ResponseEntity<>(HttpStatus.NOT_FOUND) : ResponseEntity.ok(hold);
+  }
+}
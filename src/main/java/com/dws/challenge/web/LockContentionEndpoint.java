@@ -0,0 +1,43 @@
+package com.dws.challenge.web;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import com.dws.challenge.dto.LockContentionReport;
+import com.dws.challenge.service.LockContentionProfiler;
+import com.dws.challenge.service.LockProfilerProperties;
+
+/**
+ * {@code /actuator/lockcontention}: the accounts whose locks transfers waited for the longest, with
+ * their wait time percentiles, see {@link LockContentionProfiler}. A DELETE starts the profile over.
+ * Empty unless {@code metrics.transfers.lock-profiler.enabled} is set, and under the sharded
+ * engine, which takes no account locks; the report names the engine in use.
+ */
+@Component
+@Endpoint(id = "lockcontention")
+public class LockContentionEndpoint {
+
+  private final LockContentionProfiler lockContentionProfiler;
+
+  private final LockProfilerProperties properties;
+
+  @Autowired
+  public LockContentionEndpoint(LockContentionProfiler lockContentionProfiler, LockProfilerProperties properties) {
+    this.lockContentionProfiler = lockContentionProfiler;
+    this.properties = properties;
+  }
+
+  @ReadOperation
+  public LockContentionReport report(@Nullable Integer limit) {
+    return this.lockContentionProfiler.report(limit != null ? limit : this.properties.getTop());
+  }
+
+  @DeleteOperation
+  public void reset() {
+    this.lockContentionProfiler.reset();
+  }
+}
@@ -0,0 +1,98 @@
+package com.dws.challenge.web;
+
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.dws.challenge.domain.ScheduledTransfer;
+import com.dws.challenge.dto.ScheduledTransferRequest;
+import com.dws.challenge.service.TransferScheduler;
+
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Future-dated transfers and standing orders of an account, see {@link TransferScheduler}. They
+ * live on the node that owns the source account, requests about them are forwarded there.
+ */
+@RestController
+@RequestMapping("/v1/accounts/{accountId}/scheduled-transfers")
+@Slf4j
+public class ScheduledTransferController {
+
+  private final TransferScheduler transferScheduler;
+
+  private final ClusterForwarder clusterForwarder;
+
+  @Autowired
+  public ScheduledTransferController(TransferScheduler transferScheduler, ClusterForwarder clusterForwarder) {
+    this.transferScheduler = transferScheduler;
+    this.clusterForwarder = clusterForwarder;
+  }
+
+  @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE)
+  public ResponseEntity<Object> scheduleTransfer(@PathVariable String accountId,
+                                                 @RequestBody ScheduledTransferRequest scheduledTransferRequest,
+                                                 HttpServletRequest request) {
+    ResponseEntity<Object> forwarded = this.clusterForwarder.forwardIfRemote(accountId, request,
+      scheduledTransferRequest);
+    if (forwarded != null) {
+      return forwarded;
+    }
+    log.info("Scheduling transfer from {}: {}", accountId, scheduledTransferRequest);
+
+    try {
+      return new ResponseEntity<>(this.transferScheduler.schedule(accountId, scheduledTransferRequest),
+        HttpStatus.CREATED);
+    } catch (IllegalArgumentException ex) {
+      return new ResponseEntity<>(ex.getMessage(), HttpStatus.BAD_REQUEST);
+    }
+  }
+
+  @GetMapping
+  public ResponseEntity<Object> getScheduledTransfers(@PathVariable String accountId, HttpServletRequest request) {
+    ResponseEntity<Object> forwarded = this.clusterForwarder.forwardIfRemote(accountId, request, null);
+    if (forwarded != null) {
+      return forwarded;
+    }
+    List<ScheduledTransfer> transfers = this.transferScheduler.getScheduledTransfers(accountId);
+    return ResponseEntity.ok(transfers);
+  }
+
+  @GetMapping(path = "/{id}")
+  public ResponseEntity<Object> getScheduledTransfer(@PathVariable String accountId, @PathVariable String id,
+                                                     HttpServletRequest request) {
+    ResponseEntity<Object> forwarded = this.clusterForwarder.forwardIfRemote(accountId, request, null);
+    if (forwarded != null) {
+      return forwarded;
+    }
+    ScheduledTransfer transfer = this.transferScheduler.getScheduledTransfer(accountId, id);
+    return transfer == null ? new ResponseEntity<>(HttpStatus.NOT_FOUND) : ResponseEntity.ok(transfer);
+  }
+
+  /**
+   * Cancels the transfers still to come and returns the scheduled transfer as it is then. An
+   * occurrence already released keeps running.
+   */
+  @DeleteMapping(path = "/{id}")
+  public ResponseEntity<Object> cancelScheduledTransfer(@PathVariable String accountId, @PathVariable String id,
+                                                        HttpServletRequest request) {
+    ResponseEntity<Object> forwarded = this.clusterForwarder.forwardIfRemote(accountId, request, null);
+    if (forwarded != null) {
+      return forwarded;
+    }
+    log.info("Cancelling scheduled transfer {} of {}", id, accountId);
+    ScheduledTransfer transfer = this.transferScheduler.cancel(accountId, id);
+    return transfer == null ? new ResponseEntity<>(HttpStatus.NOT_FOUND) : ResponseEntity.ok(transfer);
+  }
+}
@@ -1,37 +1,274 @@
 package com.dws.challenge.web;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.dws.challenge.dto.MultiTransferRequest;
 import com.dws.challenge.dto.TransferRequest;
+import com.dws.challenge.dto.TransferResult;
+import com.dws.challenge.exception.NodeUnavailableException;
+import com.dws.challenge.exception.TransferOutcomeUnknownException;
+import com.dws.challenge.exception.TransferPendingException;
+import com.dws.challenge.exception.TransferRejectedException;
+import com.dws.challenge.service.TransferAdmissionControl;
+import com.dws.challenge.service.TransferAdmissionProperties;
 import com.dws.challenge.service.TransferService;
 
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.validation.ConstraintViolationException;
 import jakarta.validation.Valid;
 import lombok.extern.slf4j.Slf4j;
 
 @RestController
 @RequestMapping("/v1/transfers")
+@Validated
 @Slf4j
 public class TransferController {
 
 	@Autowired
 	private TransferService transferService;
 
+	@Autowired
+	private TransferAdmissionControl admissionControl;
+
+	@Autowired
+	private TransferAdmissionProperties admissionProperties;
+
+	@Autowired
+	private ClusterForwarder clusterForwarder;
+
 	@PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE)
-	public ResponseEntity<Object> transferMoney(@RequestBody @Valid TransferRequest transferRequest) {
+	public ResponseEntity<Object> transferMoney(@RequestBody @Valid TransferRequest transferRequest,
+			@RequestHeader(name = "Idempotency-Key", required = false) String idempotencyKey,
+			HttpServletRequest request) {
+		return transfer(transferRequest, idempotencyKey, request, transferRequest);
+	}
+
+	/**
+	 * Same as the JSON endpoint, for a transfer in the {@link BinaryTransferCodec} encoding. The
+	 * binary endpoints skip bean validation, the layout itself is checked by the decoder and the
+	 * values by the service, as for JSON.
+	 */
+	@PostMapping(consumes = BinaryTransferCodec.MEDIA_TYPE_VALUE)
+	public ResponseEntity<Object> transferMoneyBinary(@RequestBody byte[] body,
+			@RequestHeader(name = "Idempotency-Key", required = false) String idempotencyKey,
+			HttpServletRequest request) {
+		TransferRequest transferRequest;
+		try {
+			transferRequest = BinaryTransferCodec.decodeTransfer(body);
+		} catch (IllegalArgumentException ex) {
+			return new ResponseEntity<>(ex.getMessage(), HttpStatus.BAD_REQUEST);
+		}
+		return transfer(transferRequest, idempotencyKey, request, body);
+	}
+
+	/**
+	 * Executes a transfer on the cluster node that owns its source account, forwarding it there if
+	 * need be. {@code body} is what is forwarded, as received.
+	 */
+	private ResponseEntity<Object> transfer(TransferRequest transferRequest, String idempotencyKey,
+			HttpServletRequest request, Object body) {
+		ResponseEntity<Object> forwarded = clusterForwarder.forwardIfRemote(transferRequest.getAccountFromId(),
+				request, body);
+		if (forwarded != null) {
+			return forwarded;
+		}
+		// The header wins over the body field when both are sent
+		if (idempotencyKey != null) {
+			transferRequest.setIdempotencyKey(idempotencyKey);
+		}
 		log.info("Begin Transfer {}", transferRequest);
+		TransferAdmissionControl.Permit permit = null;
 		try {
-			transferService.transferMoney(transferRequest);
+			permit = admissionControl.admit(client(request), List.of(String.valueOf(transferRequest.getAccountFromId())));
+			transferService.transferMoney(transferRequest, client(request));
+		} catch (TransferRejectedException ex) {
+			return tooManyRequests(ex);
 		} catch (IllegalArgumentException ex) {
 			return new ResponseEntity<>(ex.getMessage(), HttpStatus.BAD_REQUEST);
+		} catch (TransferPendingException ex) {
+			// Neither done nor failed yet: completed or refunded once the other node answers
+			return new ResponseEntity<>(ex.getMessage(), HttpStatus.ACCEPTED);
+		} catch (NodeUnavailableException ex) {
+			return new ResponseEntity<>(ex.getMessage(), HttpStatus.BAD_GATEWAY);
+		} catch (TransferOutcomeUnknownException ex) {
+			// Not run again under the same key, the client has to find out whether the first attempt took effect
+			return new ResponseEntity<>(ex.getMessage(), HttpStatus.CONFLICT);
+		} finally {
+			if (permit != null) {
+				permit.release();
+			}
 		}
 		log.info("End Transfer {}", transferRequest);
 		return ResponseEntity.ok().build();
 	}
+
+	@PostMapping(path = "/multi", consumes = MediaType.APPLICATION_JSON_VALUE)
+	public ResponseEntity<Object> transferMoneyMulti(@RequestBody @Valid MultiTransferRequest transferRequest,
+			HttpServletRequest request) {
+		return transferMulti(transferRequest, request, transferRequest);
+	}
+
+	@PostMapping(path = "/multi", consumes = BinaryTransferCodec.MEDIA_TYPE_VALUE)
+	public ResponseEntity<Object> transferMoneyMultiBinary(@RequestBody byte[] body, HttpServletRequest request) {
+		MultiTransferRequest transferRequest;
+		try {
+			transferRequest = BinaryTransferCodec.decodeMultiTransfer(body);
+		} catch (IllegalArgumentException ex) {
+			return new ResponseEntity<>(ex.getMessage(), HttpStatus.BAD_REQUEST);
+		}
+		return transferMulti(transferRequest, request, body);
+	}
+
+	private ResponseEntity<Object> transferMulti(MultiTransferRequest transferRequest, HttpServletRequest request,
+			Object body) {
+		ResponseEntity<Object> forwarded = clusterForwarder.forwardIfRemote(transferRequest.getAccountFromId(),
+				request, body);
+		if (forwarded != null) {
+			return forwarded;
+		}
+		log.info("Begin Multi-leg Transfer {}", transferRequest);
+		// The source account is touched once, so it is charged once however many legs there are
+		TransferAdmissionControl.Permit permit = null;
+		try {
+			permit = admissionControl.admit(client(request), List.of(String.valueOf(transferRequest.getAccountFromId())));
+			transferService.transferMoneyMulti(transferRequest);
+		} catch (TransferRejectedException ex) {
+			return tooManyRequests(ex);
+		} catch (IllegalArgumentException ex) {
+			return new ResponseEntity<>(ex.getMessage(), HttpStatus.BAD_REQUEST);
+		} finally {
+			if (permit != null) {
+				permit.release();
+			}
+		}
+		log.info("End Multi-leg Transfer {}", transferRequest);
+		return ResponseEntity.ok().build();
+	}
+
+	@PostMapping(path = "/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+	public ResponseEntity<Object> transferMoneyBatch(@RequestBody List<@Valid TransferRequest> transferRequests,
+			HttpServletRequest request) {
+		List<TransferResult> results;
+		try {
+			results = transferBatch(transferRequests, request);
+		} catch (TransferRejectedException ex) {
+			return tooManyRequests(ex);
+		} catch (IllegalArgumentException ex) {
+			return new ResponseEntity<>(ex.getMessage(), HttpStatus.BAD_REQUEST);
+		}
+		return ResponseEntity.ok(results);
+	}
+
+	/**
+	 * Batch of transfers in the {@link BinaryTransferCodec} encoding, answered with their results in
+	 * the same encoding. The response has a known length, so a client can pipeline batches on one
+	 * keep-alive connection and read the responses back in order.
+	 */
+	@PostMapping(path = "/batch", consumes = BinaryTransferCodec.MEDIA_TYPE_VALUE)
+	public ResponseEntity<Object> transferMoneyBatchBinary(@RequestBody byte[] body, HttpServletRequest request) {
+		List<TransferResult> results;
+		try {
+			results = transferBatch(BinaryTransferCodec.decodeTransfers(body), request);
+		} catch (TransferRejectedException ex) {
+			return tooManyRequests(ex);
+		} catch (IllegalArgumentException ex) {
+			return new ResponseEntity<>(ex.getMessage(), HttpStatus.BAD_REQUEST);
+		}
+		return ResponseEntity.ok().contentType(BinaryTransferCodec.MEDIA_TYPE)
+				.body(BinaryTransferCodec.encodeResults(results));
+	}
+
+	/**
+	 * Executes the transfers of a batch whose source accounts this node owns, and forwards the others
+	 * to their owners, one sub-batch per node. The results are put back in submission order. If a
+	 * node cannot take its sub-batch, its transfers fail with the reason.
+	 */
+	private List<TransferResult> transferBatch(List<TransferRequest> transferRequests, HttpServletRequest request) {
+		if (!clusterForwarder.isClustered() || clusterForwarder.isForwarded(request)) {
+			return transferLocalBatch(transferRequests, request);
+		}
+		// This node's share runs first, so that admission control turns the batch away before anything moved
+		Map<String, List<Integer>> indexesByNode = new LinkedHashMap<>();
+		indexesByNode.put(clusterForwarder.getSelf(), new ArrayList<>());
+		for (int i = 0; i < transferRequests.size(); i++) {
+			indexesByNode.computeIfAbsent(clusterForwarder.ownerOf(transferRequests.get(i).getAccountFromId()),
+					node -> new ArrayList<>()).add(i);
+		}
+
+		TransferResult[] results = new TransferResult[transferRequests.size()];
+		for (Map.Entry<String, List<Integer>> node : indexesByNode.entrySet()) {
+			List<Integer> indexes = node.getValue();
+			if (indexes.isEmpty()) {
+				continue;
+			}
+			List<TransferRequest> share = indexes.stream().map(transferRequests::get).toList();
+			List<TransferResult> shareResults;
+			if (clusterForwarder.isLocal(node.getKey())) {
+				shareResults = transferLocalBatch(share, request);
+			} else {
+				try {
+					shareResults = clusterForwarder.forwardBatch(node.getKey(), share, request);
+				} catch (NodeUnavailableException ex) {
+					shareResults = new ArrayList<>();
+					for (int i = 0; i < share.size(); i++) {
+						shareResults.add(TransferResult.failed(i, ex.getMessage()));
+					}
+				}
+			}
+			for (TransferResult result : shareResults) {
+				int index = indexes.get(result.getIndex());
+				results[index] = new TransferResult(index, result.getStatus(), result.getMessage());
+			}
+		}
+		return List.of(results);
+	}
+
+	private List<TransferResult> transferLocalBatch(List<TransferRequest> transferRequests, HttpServletRequest request) {
+		log.info("Begin Batch Transfer of {} items", transferRequests.size());
+		List<TransferResult> results;
+		TransferAdmissionControl.Permit permit = admissionControl.admit(client(request),
+				transferRequests.stream().map(TransferRequest::getAccountFromId).toList());
+		try {
+			results = transferService.transferMoneyBatch(transferRequests, client(request));
+		} finally {
+			permit.release();
+		}
+		log.info("End Batch Transfer of {} items", transferRequests.size());
+		return results;
+	}
+
+	// An invalid element of a batch, the list itself is not a bean and is validated as a method argument
+	@ExceptionHandler(ConstraintViolationException.class)
+	public ResponseEntity<Object> invalidArgument(ConstraintViolationException ex) {
+		return new ResponseEntity<>(ex.getMessage(), HttpStatus.BAD_REQUEST);
+	}
+
+	// Clients that do not identify themselves are told apart by address
+	private String client(HttpServletRequest request) {
+		String client = request.getHeader(admissionProperties.getClientHeader());
+		return client != null ? client : request.getRemoteAddr();
+	}
+
+	private static ResponseEntity<Object> tooManyRequests(TransferRejectedException ex) {
+		long retryAfterSeconds = Math.max(1, (ex.getRetryAfter().toMillis() + 999) / 1000);
+		return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+				.header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds))
+				.body(ex.getMessage());
+	}
 }
@@ -1,16 +1,23 @@
 package com.dws.challenge;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 import static org.springframework.test.web.servlet.setup.MockMvcBuilders.webAppContextSetup;
 
 import java.math.BigDecimal;
 
 import com.dws.challenge.domain.Account;
+import com.dws.challenge.dto.AccountBalance;
+import com.dws.challenge.dto.TransferRequest;
 import com.dws.challenge.service.AccountsService;
+import com.dws.challenge.service.TransferService;
+import com.dws.challenge.web.BinaryTransferCodec;
+import com.jayway.jsonpath.JsonPath;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -20,6 +27,7 @@ import org.springframework.http.MediaType;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.test.context.web.WebAppConfiguration;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.web.context.WebApplicationContext;
 
 @ExtendWith(SpringExtension.class)
@@ -32,6 +40,9 @@ class AccountsControllerTest {
   @Autowired
   private AccountsService accountsService;
 
+  @Autowired
+  private TransferService transferService;
+
   @Autowired
   private WebApplicationContext webApplicationContext;
 
@@ -100,6 +111,165 @@ class AccountsControllerTest {
     this.mockMvc.perform(get("/v1/accounts/" + uniqueAccountId))
       .andExpect(status().isOk())
       .andExpect(
-        content().string("{\"accountId\":\"" + uniqueAccountId + "\",\"balance\":123.45}"));
+        content().string("{\"accountId\":\"" + uniqueAccountId + "\",\"balance\":123.45,\"currency\":\"EUR\"}"));
+  }
+
+  @Test
+  void getBalances() throws Exception {
+    this.accountsService.createAccount(new Account("Id-1", new BigDecimal("10")));
+    this.accountsService.createAccount(new Account("Id-2", new BigDecimal("20.5")));
+
+    this.mockMvc.perform(get("/v1/accounts?ids=Id-2,Id-1"))
+      .andExpect(status().isOk())
+      .andExpect(content().string("[{\"accountId\":\"Id-2\",\"balance\":20.50,\"currency\":\"EUR\"},"
+        + "{\"accountId\":\"Id-1\",\"balance\":10.00,\"currency\":\"EUR\"}]"));
+    this.mockMvc.perform(get("/v1/accounts?ids=Id-1,Id-missing"))
+      .andExpect(status().isNotFound());
+    this.mockMvc.perform(get("/v1/accounts?ids="))
+      .andExpect(status().isBadRequest());
+  }
+
+  @Test
+  void getBalancesBinary() throws Exception {
+    this.accountsService.createAccount(new Account("Id-1", new BigDecimal("10")));
+    this.accountsService.createAccount(new Account("Id-2", new BigDecimal("20.5")));
+
+    MvcResult bulk = this.mockMvc.perform(get("/v1/accounts?ids=Id-2,Id-1").accept(BinaryTransferCodec.MEDIA_TYPE))
+      .andExpect(status().isOk())
+      .andExpect(content().contentType(BinaryTransferCodec.MEDIA_TYPE))
+      .andReturn();
+    assertThat(BinaryTransferCodec.decodeBalances(bulk.getResponse().getContentAsByteArray())).containsExactly(
+      new AccountBalance("Id-2", new BigDecimal("20.50"), "EUR"),
+      new AccountBalance("Id-1", new BigDecimal("10.00"), "EUR"));
+
+    MvcResult single = this.mockMvc.perform(get("/v1/accounts/Id-1").accept(BinaryTransferCodec.MEDIA_TYPE))
+      .andExpect(status().isOk())
+      .andReturn();
+    assertThat(BinaryTransferCodec.decodeBalances(single.getResponse().getContentAsByteArray()))
+      .containsExactly(new AccountBalance("Id-1", new BigDecimal("10.00"), "EUR"));
+    this.mockMvc.perform(get("/v1/accounts/Id-missing").accept(BinaryTransferCodec.MEDIA_TYPE))
+      .andExpect(status().isNotFound());
+  }
+
+  @Test
+  void getTransactionsPagesNewestFirst() throws Exception {
+    String accountId = "Id-history-" + System.nanoTime();
+    String otherAccountId = accountId + "-other";
+    this.accountsService.createAccount(new Account(accountId, new BigDecimal("100")));
+    this.accountsService.createAccount(new Account(otherAccountId, new BigDecimal("100")));
+    for (int i = 1; i <= 3; i++) {
+      TransferRequest transferRequest = new TransferRequest();
+      transferRequest.setAccountFromId(accountId);
+      transferRequest.setAccountToId(otherAccountId);
+      transferRequest.setAmount(BigDecimal.valueOf(i));
+      this.transferService.transferMoney(transferRequest);
+    }
+
+    MvcResult firstPage = this.mockMvc.perform(get("/v1/accounts/" + accountId + "/transactions?limit=2")).andReturn();
+    String firstBody = this.mockMvc.perform(asyncDispatch(firstPage))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$.transactions.length()").value(2))
+      .andExpect(jsonPath("$.transactions[0].amount").value(3.0))
+      .andExpect(jsonPath("$.transactions[0].accountToId").value(otherAccountId))
+      .andExpect(jsonPath("$.transactions[1].amount").value(2.0))
+      .andReturn().getResponse().getContentAsString();
+
+    Number cursor = JsonPath.read(firstBody, "$.nextCursor");
+    MvcResult secondPage = this.mockMvc.perform(
+      get("/v1/accounts/" + accountId + "/transactions?limit=2&cursor=" + cursor)).andReturn();
+    this.mockMvc.perform(asyncDispatch(secondPage))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$.transactions.length()").value(1))
+      .andExpect(jsonPath("$.transactions[0].amount").value(1.0))
+      .andExpect(jsonPath("$.nextCursor").isEmpty());
+  }
+
+  @Test
+  void getTransactionsRejectsUnknownAccountAndBadCursor() throws Exception {
+    this.mockMvc.perform(get("/v1/accounts/Id-missing/transactions")).andExpect(status().isNotFound());
+
+    String accountId = "Id-history-" + System.nanoTime();
+    this.accountsService.createAccount(new Account(accountId, new BigDecimal("100")));
+    this.mockMvc.perform(get("/v1/accounts/" + accountId + "/transactions?cursor=123456789"))
+      .andExpect(status().isBadRequest());
+    this.mockMvc.perform(get("/v1/accounts/" + accountId + "/transactions?limit=0"))
+      .andExpect(status().isBadRequest());
+    this.mockMvc.perform(get("/v1/accounts/" + accountId
+        + "/transactions?since=2024-01-02T00:00:00Z&until=2024-01-01T00:00:00Z"))
+      .andExpect(status().isBadRequest());
+  }
+
+  @Test
+  void getTransactionsBetweenTwoInstants() throws Exception {
+    String accountId = "Id-history-" + System.nanoTime();
+    String otherAccountId = accountId + "-other";
+    this.accountsService.createAccount(new Account(accountId, new BigDecimal("100")));
+    this.accountsService.createAccount(new Account(otherAccountId, new BigDecimal("100")));
+    TransferRequest transferRequest = new TransferRequest();
+    transferRequest.setAccountFromId(accountId);
+    transferRequest.setAccountToId(otherAccountId);
+    transferRequest.setAmount(BigDecimal.ONE);
+    this.transferService.transferMoney(transferRequest);
+
+    MvcResult before = this.mockMvc.perform(get("/v1/accounts/" + accountId
+      + "/transactions?until=2000-01-01T00:00:00Z")).andReturn();
+    this.mockMvc.perform(asyncDispatch(before))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$.transactions.length()").value(0))
+      .andExpect(jsonPath("$.nextCursor").isEmpty());
+    MvcResult since = this.mockMvc.perform(get("/v1/accounts/" + accountId
+      + "/transactions?since=2000-01-01T00:00:00Z")).andReturn();
+    this.mockMvc.perform(asyncDispatch(since))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$.transactions.length()").value(1))
+      .andExpect(jsonPath("$.transactions[0].amount").value(1.0));
+  }
+
+  @Test
+  void importAccountsReportsRejectedLines() throws Exception {
+    this.accountsService.createAccount(new Account("Id-existing", new BigDecimal("1")));
+    String ndjson = """
+      {"accountId":"Id-import-1","balance":10}
+      {"accountId":"Id-existing","balance":20}
+
+      {"accountId":"Id-import-2","balance":-5}
+      not json
+      {"accountId":"Id-import-3","balance":30.5}
+      """;
+
+    MvcResult result = this.mockMvc.perform(post("/v1/accounts/import")
+      .contentType(MediaType.APPLICATION_NDJSON).content(ndjson)).andReturn();
+    String body = this.mockMvc.perform(asyncDispatch(result))
+      .andExpect(status().isOk())
+      .andReturn().getResponse().getContentAsString();
+
+    String[] lines = body.split("\n");
+    assertThat(lines).hasSize(4);
+    assertThat(lines[0]).isEqualTo("{\"line\":2,\"accountId\":\"Id-existing\",\"status\":\"DUPLICATE\","
+      + "\"message\":\"Account id Id-existing already exists!\"}");
+    assertThat(lines[1]).startsWith("{\"line\":4,\"accountId\":\"Id-import-2\",\"status\":\"INVALID\"");
+    assertThat(lines[2]).startsWith("{\"line\":5,\"accountId\":null,\"status\":\"INVALID\"");
+    assertThat(lines[3]).isEqualTo("{\"created\":2,\"duplicates\":1,\"invalid\":2}");
+
+    assertThat(accountsService.getAccount("Id-import-1").getBalance()).isEqualByComparingTo("10");
+    assertThat(accountsService.getAccount("Id-import-2")).isNull();
+    assertThat(accountsService.getAccount("Id-import-3").getBalance()).isEqualByComparingTo("30.5");
+    assertThat(accountsService.getAccount("Id-existing").getBalance()).isEqualByComparingTo("1");
+  }
+
+  @Test
+  void exportAccountsStreamsOneAccountPerLine() throws Exception {
+    this.accountsService.createAccount(new Account("Id-export-1", new BigDecimal("12.30")));
+    this.accountsService.createAccount(new Account("Id-export-2", new BigDecimal("0")));
+
+    MvcResult result = this.mockMvc.perform(get("/v1/accounts/export")).andReturn();
+    String body = this.mockMvc.perform(asyncDispatch(result))
+      .andExpect(status().isOk())
+      .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+      .andReturn().getResponse().getContentAsString();
+
+    assertThat(body.split("\n")).containsExactlyInAnyOrder(
+      "{\"accountId\":\"Id-export-1\",\"balance\":12.30,\"currency\":\"EUR\"}",
+      "{\"accountId\":\"Id-export-2\",\"balance\":0.00,\"currency\":\"EUR\"}");
   }
 }
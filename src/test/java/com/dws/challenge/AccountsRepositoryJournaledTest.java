@@ -0,0 +1,233 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.exception.DuplicateAccountIdException;
+import com.dws.challenge.repository.AccountsRepositoryJournaled;
+import com.dws.challenge.repository.JournalProperties;
+import com.dws.challenge.repository.StripedAccountsProperties;
+
+class AccountsRepositoryJournaledTest {
+
+  @TempDir
+  Path directory;
+
+  private JournalProperties properties() {
+    JournalProperties properties = new JournalProperties();
+    properties.setDirectory(directory);
+    properties.setSegmentSize(4096);
+    properties.setGroupCommitMaxDelay(Duration.ofMillis(1));
+    properties.setSnapshotInterval(Duration.ZERO);
+    return properties;
+  }
+
+  @Test
+  void replaysAccountsAndTransfersAfterRestart() throws IOException {
+    AccountsRepositoryJournaled repository = open();
+    Account accountFrom = new Account("Id-123", new BigDecimal("1000.00"));
+    Account accountTo = new Account("Id-234", new BigDecimal("50.25"));
+    repository.createAccount(accountFrom);
+    repository.createAccount(accountTo);
+
+    // Enough records to roll over several 4 KiB segments
+    for (int i = 0; i < 500; i++) {
+      accountFrom.debit(100);
+      accountTo.credit(100);
+      repository.recordTransfer(accountFrom.getAccountId(), accountTo.getAccountId(), 100, 100);
+    }
+    repository.close();
+
+    AccountsRepositoryJournaled reopened = open();
+    assertThat(reopened.getAccount("Id-123").getBalance()).isEqualByComparingTo("500.00");
+    assertThat(reopened.getAccount("Id-234").getBalance()).isEqualByComparingTo("550.25");
+    assertThatThrownBy(() -> reopened.createAccount(new Account("Id-123")))
+      .isInstanceOf(DuplicateAccountIdException.class);
+    reopened.close();
+  }
+
+  @Test
+  void publishesNoAccountWhoseCreationCannotBeJournaled() throws IOException {
+    AccountsRepositoryJournaled repository = open();
+    repository.createAccount(new Account("Id-123", BigDecimal.TEN));
+    repository.close();
+
+    assertThatThrownBy(() -> repository.createAccount(new Account("Id-234", BigDecimal.ONE)))
+      .isInstanceOf(IllegalStateException.class);
+    assertThat(repository.getAccount("Id-234")).isNull();
+    assertThatThrownBy(() -> repository.createAccount(new Account("Id-123")))
+      .isInstanceOf(DuplicateAccountIdException.class);
+  }
+
+  @Test
+  void recoversFromSnapshotAndNewerSegments() throws IOException {
+    AccountsRepositoryJournaled repository = open();
+    Account accountFrom = new Account("Id-123", new BigDecimal("1000.00"));
+    Account accountTo = new Account("Id-234", BigDecimal.ZERO);
+    repository.createAccount(accountFrom);
+    repository.createAccount(accountTo);
+    transfer(repository, accountFrom, accountTo, 300);
+
+    repository.snapshot();
+    assertThat(files(".snapshot")).hasSize(1);
+    assertThat(files(".seg")).hasSize(1);
+
+    // Journaled after the snapshot, replayed on top of it
+    repository.createAccount(new Account("Id-345", BigDecimal.ONE));
+    transfer(repository, accountFrom, accountTo, 200);
+    repository.close();
+
+    AccountsRepositoryJournaled reopened = open();
+    assertThat(reopened.getAccount("Id-123").getBalance()).isEqualByComparingTo("500.00");
+    assertThat(reopened.getAccount("Id-234").getBalance()).isEqualByComparingTo("500.00");
+    assertThat(reopened.getAccount("Id-345").getBalance()).isEqualByComparingTo("1");
+
+    // A second snapshot builds on the first and replaces it
+    reopened.snapshot();
+    reopened.close();
+    assertThat(files(".snapshot")).hasSize(1);
+    AccountsRepositoryJournaled recoveredAgain = open();
+    assertThat(recoveredAgain.getAccount("Id-123").getBalance()).isEqualByComparingTo("500.00");
+    assertThat(recoveredAgain.getAccount("Id-345").getBalance()).isEqualByComparingTo("1");
+    recoveredAgain.close();
+  }
+
+  @Test
+  void snapshotsManyAccountsInParallelChunks() throws IOException {
+    JournalProperties properties = properties();
+    properties.setSegmentSize(1 << 20);
+    properties.setSnapshotParallelism(4);
+    AccountsRepositoryJournaled repository = new AccountsRepositoryJournaled(properties, new StripedAccountsProperties());
+    for (int i = 0; i < 1_001; i++) {
+      repository.createAccount(new Account("Id-" + i, BigDecimal.valueOf(i)));
+    }
+    repository.snapshot();
+    repository.close();
+
+    AccountsRepositoryJournaled reopened = new AccountsRepositoryJournaled(properties, new StripedAccountsProperties());
+    for (int i = 0; i < 1_001; i++) {
+      assertThat(reopened.getAccount("Id-" + i).getBalance()).isEqualByComparingTo(BigDecimal.valueOf(i));
+    }
+    reopened.close();
+  }
+
+  @Test
+  void recoversCurrenciesAndConvertedTransfers() throws IOException {
+    AccountsRepositoryJournaled repository = open();
+    Account accountFrom = new Account("Id-123", new BigDecimal("100.00"), "EUR");
+    Account accountTo = new Account("Id-234", BigDecimal.ZERO, "USD");
+    repository.createAccount(accountFrom);
+    repository.createAccount(accountTo);
+    repository.recordTransfer(accountFrom.getAccountId(), accountTo.getAccountId(), 1000, 1083);
+    repository.snapshot();
+    repository.recordTransfer(accountFrom.getAccountId(), accountTo.getAccountId(), 2000, 2166);
+    repository.close();
+
+    AccountsRepositoryJournaled reopened = open();
+    assertThat(reopened.getAccount("Id-123").getCurrency()).isEqualTo("EUR");
+    assertThat(reopened.getAccount("Id-123").getBalance()).isEqualByComparingTo("70.00");
+    assertThat(reopened.getAccount("Id-234").getCurrency()).isEqualTo("USD");
+    assertThat(reopened.getAccount("Id-234").getBalance()).isEqualByComparingTo("32.49");
+    reopened.snapshot();
+    reopened.close();
+
+    AccountsRepositoryJournaled recoveredAgain = open();
+    assertThat(recoveredAgain.getAccount("Id-234").getCurrency()).isEqualTo("USD");
+    assertThat(recoveredAgain.getAccount("Id-234").getBalance()).isEqualByComparingTo("32.49");
+    recoveredAgain.close();
+  }
+
+  @Test
+  void replaysMultiLegTransfersAsOneRecord() throws IOException {
+    AccountsRepositoryJournaled repository = open();
+    repository.createAccount(new Account("Id-123", new BigDecimal("100.00")));
+    repository.createAccount(new Account("Id-234", BigDecimal.ZERO));
+    repository.createAccount(new Account("Id-345", BigDecimal.ZERO));
+    repository.awaitDurable(repository.appendTransfers("Id-123", List.of("Id-234", "Id-345"),
+      new long[] {3000, 2000}, new long[] {3000, 2166}));
+    repository.close();
+
+    AccountsRepositoryJournaled reopened = open();
+    assertThat(reopened.getAccount("Id-123").getBalance()).isEqualByComparingTo("50.00");
+    assertThat(reopened.getAccount("Id-234").getBalance()).isEqualByComparingTo("30.00");
+    assertThat(reopened.getAccount("Id-345").getBalance()).isEqualByComparingTo("21.66");
+    reopened.close();
+  }
+
+  @Test
+  void refusesCorruptSnapshot() throws IOException {
+    AccountsRepositoryJournaled repository = open();
+    repository.createAccount(new Account("Id-123", BigDecimal.TEN));
+    repository.snapshot();
+    repository.close();
+
+    Path snapshot = files(".snapshot").get(0);
+    byte[] content = Files.readAllBytes(snapshot);
+    content[content.length - 1] ^= 1;
+    Files.write(snapshot, content);
+
+    assertThatThrownBy(() -> open())
+      .isInstanceOf(IllegalStateException.class)
+      .hasMessageContaining("Checksum mismatch");
+  }
+
+  @Test
+  void discardsTornRecordAtTheTail() throws IOException {
+    AccountsRepositoryJournaled repository = open();
+    repository.createAccount(new Account("Id-123", BigDecimal.TEN));
+    repository.createAccount(new Account("Id-234", BigDecimal.TEN));
+    repository.close();
+
+    // Flip a payload byte of the second record, as if the crash happened while writing it
+    List<Path> segments = files(".seg");
+    try (RandomAccessFile segment = new RandomAccessFile(segments.get(segments.size() - 1).toFile(), "rw")) {
+      int firstRecordLength = segment.readInt();
+      long secondRecordPayload = Integer.BYTES + firstRecordLength + Integer.BYTES + Integer.BYTES + 1;
+      segment.seek(secondRecordPayload + 2);
+      segment.write('X');
+    }
+
+    AccountsRepositoryJournaled reopened = open();
+    assertThat(reopened.getAccount("Id-123").getBalance()).isEqualByComparingTo("10");
+    assertThat(reopened.getAccount("Id-234")).isNull();
+
+    // The torn tail is overwritten by new records
+    reopened.createAccount(new Account("Id-345", BigDecimal.ONE));
+    reopened.close();
+    AccountsRepositoryJournaled recoveredAgain = open();
+    assertThat(recoveredAgain.getAccount("Id-345").getBalance()).isEqualByComparingTo("1");
+    recoveredAgain.close();
+  }
+
+  private AccountsRepositoryJournaled open() throws IOException {
+    return new AccountsRepositoryJournaled(properties(), new StripedAccountsProperties());
+  }
+
+  private static void transfer(AccountsRepositoryJournaled repository, Account accountFrom, Account accountTo,
+                               long amount) {
+    for (int i = 0; i < amount; i++) {
+      accountFrom.debit(100);
+      accountTo.credit(100);
+      repository.recordTransfer(accountFrom.getAccountId(), accountTo.getAccountId(), 100, 100);
+    }
+  }
+
+  private List<Path> files(String suffix) throws IOException {
+    try (Stream<Path> files = Files.list(directory)) {
+      return files.filter(path -> path.toString().endsWith(suffix)).sorted().toList();
+    }
+  }
+}
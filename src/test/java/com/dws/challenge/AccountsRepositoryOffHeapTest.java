@@ -0,0 +1,191 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.StripedAccount;
+import com.dws.challenge.exception.DuplicateAccountIdException;
+import com.dws.challenge.repository.AccountsRepositoryOffHeap;
+import com.dws.challenge.repository.OffHeapAccountsProperties;
+import com.dws.challenge.service.LockingTransferEngine;
+import com.dws.challenge.service.OptimisticTransferEngine;
+import com.dws.challenge.service.TransferEngine;
+import com.dws.challenge.service.TransferMetrics;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class AccountsRepositoryOffHeapTest {
+
+  private final TransferMetrics transferMetrics = new TransferMetrics(new SimpleMeterRegistry(), List.of());
+
+  private static AccountsRepositoryOffHeap open(int lockStripes) {
+    OffHeapAccountsProperties properties = new OffHeapAccountsProperties();
+    properties.setCapacity(1024);
+    properties.setMaxIdBytes(16);
+    properties.setLockStripes(lockStripes);
+    return new AccountsRepositoryOffHeap(properties);
+  }
+
+  @Test
+  void storesAccountsInTheTable() {
+    AccountsRepositoryOffHeap repository = open(16);
+    repository.createAccount(new Account("Id-123", new BigDecimal("1000.25")));
+
+    Account account = repository.getAccount("Id-123");
+    assertThat(account.getAccountId()).isEqualTo("Id-123");
+    assertThat(account.getBalance()).isEqualByComparingTo("1000.25");
+
+    // Every lookup is a view of the same slot
+    account.debit(25);
+    assertThat(repository.getAccount("Id-123").getBalance()).isEqualByComparingTo("1000.00");
+
+    assertThat(repository.getAccount("Id-missing")).isNull();
+    assertThat(repository.getAccount("Id-longer-than-the-slot")).isNull();
+    assertThatThrownBy(() -> repository.createAccount(new Account("Id-123")))
+      .isInstanceOf(DuplicateAccountIdException.class);
+    assertThatThrownBy(() -> repository.createAccount(new Account("Id-longer-than-the-slot")))
+      .isInstanceOf(IllegalArgumentException.class);
+
+    repository.clearAccounts();
+    assertThat(repository.getAccount("Id-123")).isNull();
+  }
+
+  @Test
+  void refusesAccountsOnceFull() {
+    AccountsRepositoryOffHeap repository = open(16);
+    assertThatThrownBy(() -> {
+      for (int i = 0; i <= 1024; i++) {
+        repository.createAccount(new Account("Id-" + i));
+      }
+    }).isInstanceOf(IllegalStateException.class);
+
+    List<String> accountIds = new ArrayList<>();
+    repository.forEachAccount(account -> accountIds.add(account.getAccountId()));
+    assertThat(accountIds).hasSizeGreaterThan(1024 / 2).allSatisfy(accountId ->
+      assertThat(repository.getAccount(accountId)).isNotNull());
+  }
+
+  @Test
+  void keepsStripedAccountsOnTheHeap() {
+    AccountsRepositoryOffHeap repository = open(16);
+    StripedAccount hot = new StripedAccount("Id-hot", 4);
+    repository.createAccount(hot);
+
+    assertThat(repository.getAccount("Id-hot")).isSameAs(hot);
+    assertThatThrownBy(() -> repository.createAccount(new Account("Id-hot")))
+      .isInstanceOf(DuplicateAccountIdException.class);
+  }
+
+  @Test
+  void ordersTheLocksOfOffHeapAndStripedAccountsTotally() throws InterruptedException {
+    // Off-heap views share two lock stripes, striped accounts have locks of their own
+    AccountsRepositoryOffHeap repository = open(2);
+    List<String> accountIds = new ArrayList<>();
+    for (int i = 0; i < 8; i++) {
+      repository.createAccount(new Account("Id-" + i, new BigDecimal("100")));
+      repository.createAccount(new StripedAccount("Id-hot-" + i, 4));
+      repository.getAccount("Id-hot-" + i).credit(10_000);
+      accountIds.add("Id-" + i);
+      accountIds.add("Id-hot-" + i);
+    }
+    List<Account> accounts = new ArrayList<>();
+    accountIds.forEach(accountId -> accounts.add(repository.getAccount(accountId)));
+    for (Account first : accounts) {
+      for (Account second : accounts) {
+        assertThat(first.locksBefore(second)).isEqualTo(first != second && !second.locksBefore(first));
+        for (Account third : accounts) {
+          if (first.locksBefore(second) && second.locksBefore(third)) {
+            assertThat(first.locksBefore(third)).isTrue();
+          }
+        }
+      }
+    }
+
+    for (TransferEngine engine : List.of(new LockingTransferEngine(transferMetrics),
+        new OptimisticTransferEngine(2, transferMetrics))) {
+      ExecutorService executor = Executors.newFixedThreadPool(8);
+      for (int t = 0; t < 8; t++) {
+        executor.execute(() -> {
+          ThreadLocalRandom random = ThreadLocalRandom.current();
+          for (int i = 0; i < 2_000; i++) {
+            List<String> shuffled = new ArrayList<>(accountIds);
+            Collections.shuffle(shuffled, random);
+            Account accountFrom = repository.getAccount(shuffled.get(0));
+            List<Account> accountsTo = List.of(repository.getAccount(shuffled.get(1)),
+              repository.getAccount(shuffled.get(2)), repository.getAccount(shuffled.get(3)));
+            long[] amounts = {random.nextLong(1, 300), random.nextLong(1, 300), random.nextLong(1, 300)};
+            try {
+              engine.transfer(accountFrom, accountsTo, amounts, amounts.clone());
+            } catch (IllegalArgumentException ex) {
+              // Insufficient balance
+            }
+          }
+        });
+      }
+      executor.shutdown();
+      assertThat(executor.awaitTermination(60, TimeUnit.SECONDS)).as("no deadlock").isTrue();
+    }
+
+    long total = 0;
+    for (String accountId : accountIds) {
+      long balance = repository.getAccount(accountId).getBalanceMinorUnits();
+      assertThat(balance).isNotNegative();
+      total += balance;
+    }
+    assertThat(total).isEqualTo(8 * 10_000L + 8 * 10_000L);
+  }
+
+  @Test
+  void concurrentTransfersOnSharedLockStripesConserveMoney() throws InterruptedException {
+    // Two stripes for 32 accounts: most transfers share a lock with unrelated transfers
+    AccountsRepositoryOffHeap repository = open(2);
+    int accounts = 32;
+    for (int i = 0; i < accounts; i++) {
+      repository.createAccount(new Account("Id-" + i, new BigDecimal("100")));
+    }
+
+    for (TransferEngine engine : List.of(new LockingTransferEngine(transferMetrics),
+        new OptimisticTransferEngine(2, transferMetrics))) {
+      ExecutorService executor = Executors.newFixedThreadPool(8);
+      for (int t = 0; t < 8; t++) {
+        executor.execute(() -> {
+          ThreadLocalRandom random = ThreadLocalRandom.current();
+          for (int i = 0; i < 5_000; i++) {
+            Account accountFrom = repository.getAccount("Id-" + random.nextInt(accounts));
+            Account accountTo = repository.getAccount("Id-" + random.nextInt(accounts));
+            if (accountFrom.getAccountId().equals(accountTo.getAccountId())) {
+              continue;
+            }
+            try {
+              engine.transfer(accountFrom, accountTo, random.nextLong(1, 500));
+            } catch (IllegalArgumentException ex) {
+              // Insufficient balance
+            }
+          }
+        });
+      }
+      executor.shutdown();
+      assertThat(executor.awaitTermination(60, TimeUnit.SECONDS)).isTrue();
+    }
+
+    long total = 0;
+    for (int i = 0; i < accounts; i++) {
+      long balance = repository.getAccount("Id-" + i).getBalanceMinorUnits();
+      assertThat(balance).isNotNegative();
+      total += balance;
+    }
+    assertThat(total).isEqualTo(accounts * 10_000L);
+  }
+}
@@ -1,9 +1,21 @@
 package com.dws.challenge;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.junit.jupiter.api.Assertions.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -12,8 +24,22 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
 import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.StripedAccount;
+import com.dws.challenge.dto.AccountBalance;
+import com.dws.challenge.exception.AccountNotFoundException;
 import com.dws.challenge.exception.DuplicateAccountIdException;
+import com.dws.challenge.repository.AccountsRepository;
+import com.dws.challenge.repository.StripedAccountsProperties;
+import com.dws.challenge.repository.TransactionLog;
+import com.dws.challenge.service.ChangeFeed;
 import com.dws.challenge.service.AccountsService;
+import com.dws.challenge.service.LockingTransferEngine;
+import com.dws.challenge.service.OptimisticTransferEngine;
+import com.dws.challenge.service.ShardedTransferEngine;
+import com.dws.challenge.service.TransferEngine;
+import com.dws.challenge.service.TransferMetrics;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 
 @ExtendWith(SpringExtension.class)
 @SpringBootTest
@@ -44,4 +70,87 @@ class AccountsServiceTest {
       assertThat(ex.getMessage()).isEqualTo("Account id " + uniqueId + " already exists!");
     }
   }
+
+  @Test
+  void addAccount_publishesTheInitialBalance() {
+    AccountsRepository repository = mock(AccountsRepository.class);
+    ChangeFeed changeFeed = mock(ChangeFeed.class);
+    // A transfer into the account lands as soon as it is in the repository, and is published on its own
+    doAnswer(invocation -> {
+      invocation.<Account>getArgument(0).credit(500);
+      return null;
+    }).when(repository).createAccount(any());
+    AccountsService service = new AccountsService(repository, new StripedAccountsProperties(),
+      mock(TransactionLog.class), changeFeed);
+
+    service.createAccount(new Account("Id-123", new BigDecimal("10")));
+    verify(changeFeed).publishCreation("Id-123", "EUR", 1000);
+  }
+
+  @Test
+  void getBalances_missingAccount() {
+    String uniqueId = "Id-" + System.nanoTime();
+    this.accountsService.createAccount(new Account(uniqueId, new BigDecimal("12.50")));
+
+    assertThat(this.accountsService.getBalances(List.of(uniqueId, uniqueId)))
+      .containsExactly(new AccountBalance(uniqueId, new BigDecimal("12.50"), "EUR"));
+    assertThatThrownBy(() -> this.accountsService.getBalances(List.of(uniqueId, "Id-missing")))
+      .isInstanceOf(AccountNotFoundException.class)
+      .hasMessage("Account id Id-missing not found");
+  }
+
+  @Test
+  void getBalances_consistentDuringTransfers() throws InterruptedException {
+    String prefix = "Id-snapshot-" + System.nanoTime() + "-";
+    List<String> accountIds = new ArrayList<>();
+    List<Account> accounts = new ArrayList<>();
+    for (int i = 0; i < 8; i++) {
+      Account account = i == 0 ? StripedAccount.copyOf(new Account(prefix + i, new BigDecimal("100")), 4)
+        : new Account(prefix + i, new BigDecimal("100"));
+      this.accountsService.createAccount(account);
+      accountIds.add(account.getAccountId());
+      accounts.add(this.accountsService.getAccount(account.getAccountId()));
+    }
+
+    // One engine at a time, the sharded one with a single shard so transfers never have funds in flight
+    TransferMetrics transferMetrics = new TransferMetrics(new SimpleMeterRegistry(), List.of());
+    ShardedTransferEngine shardedEngine = new ShardedTransferEngine(1, 64);
+    for (TransferEngine engine : List.of(new LockingTransferEngine(transferMetrics),
+        new OptimisticTransferEngine(2, transferMetrics), shardedEngine)) {
+      AtomicBoolean running = new AtomicBoolean(true);
+      ExecutorService executor = Executors.newFixedThreadPool(4);
+      for (int t = 0; t < 3; t++) {
+        executor.execute(() -> {
+          ThreadLocalRandom random = ThreadLocalRandom.current();
+          while (running.get()) {
+            Account accountFrom = accounts.get(random.nextInt(accounts.size()));
+            Account accountTo = accounts.get(random.nextInt(accounts.size()));
+            try {
+              if (random.nextInt(4) == 0) {
+                engine.transfer(accountFrom, List.of(accountTo, accounts.get(random.nextInt(accounts.size()))),
+                  new long[] {random.nextLong(1, 500), random.nextLong(1, 500)});
+              } else if (accountFrom != accountTo) {
+                engine.transfer(accountFrom, accountTo, random.nextLong(1, 1000));
+              }
+            } catch (IllegalArgumentException ex) {
+              // Insufficient balance
+            }
+          }
+        });
+      }
+      try {
+        for (int i = 0; i < 20_000; i++) {
+          BigDecimal total = this.accountsService.getBalances(accountIds).stream()
+            .map(AccountBalance::getBalance)
+            .reduce(BigDecimal.ZERO, BigDecimal::add);
+          assertThat(total).isEqualByComparingTo("800");
+        }
+      } finally {
+        running.set(false);
+        executor.shutdown();
+      }
+      assertThat(executor.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+    }
+    shardedEngine.shutdown();
+  }
 }
@@ -0,0 +1,71 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.dws.challenge.dto.AccountBalance;
+import com.dws.challenge.dto.MultiTransferRequest;
+import com.dws.challenge.dto.TransferLeg;
+import com.dws.challenge.dto.TransferRequest;
+import com.dws.challenge.dto.TransferResult;
+import com.dws.challenge.web.BinaryTransferCodec;
+
+class BinaryTransferCodecTest {
+
+  @Test
+  void transfersRoundTrip() {
+    TransferRequest first = transferRequest("Id-123", "Id-234", "10.05", null);
+    TransferRequest second = transferRequest("Id-ü", "Id-345", "-7", "key-1");
+
+    assertThat(BinaryTransferCodec.decodeTransfer(BinaryTransferCodec.encodeTransfer(first))).isEqualTo(first);
+    assertThat(BinaryTransferCodec.decodeTransfers(BinaryTransferCodec.encodeTransfers(List.of(first, second))))
+      .containsExactly(first, second);
+    assertThat(BinaryTransferCodec.decodeTransfers(new byte[0])).isEmpty();
+  }
+
+  @Test
+  void otherMessagesRoundTrip() {
+    MultiTransferRequest multi = new MultiTransferRequest();
+    multi.setAccountFromId("Id-123");
+    multi.setLegs(List.of(new TransferLeg("Id-234", new BigDecimal("1.5")), new TransferLeg("Id-345", BigDecimal.TEN)));
+    assertThat(BinaryTransferCodec.decodeMultiTransfer(BinaryTransferCodec.encodeMultiTransfer(multi)))
+      .isEqualTo(multi);
+
+    List<TransferResult> results = List.of(TransferResult.success(0), TransferResult.failed(1, "Insufficient balance"));
+    assertThat(BinaryTransferCodec.decodeResults(BinaryTransferCodec.encodeResults(results))).isEqualTo(results);
+
+    List<AccountBalance> balances = List.of(new AccountBalance("Id-123", new BigDecimal("123.45"), "USD"));
+    assertThat(BinaryTransferCodec.decodeBalances(BinaryTransferCodec.encodeBalances(balances))).isEqualTo(balances);
+  }
+
+  @Test
+  void rejectsMalformedMessages() {
+    byte[] encoded = BinaryTransferCodec.encodeTransfer(transferRequest("Id-123", "Id-234", "10", null));
+
+    assertThatThrownBy(() -> BinaryTransferCodec.decodeTransfer(Arrays.copyOf(encoded, encoded.length - 1)))
+      .isInstanceOf(IllegalArgumentException.class)
+      .hasMessage("Malformed binary message");
+    assertThatThrownBy(() -> BinaryTransferCodec.decodeTransfer(Arrays.copyOf(encoded, encoded.length + 1)))
+      .isInstanceOf(IllegalArgumentException.class);
+    // An id length pointing past the end of the body
+    assertThatThrownBy(() -> BinaryTransferCodec.decodeTransfer(new byte[] {0x10, 0, 'I', 'd'}))
+      .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> BinaryTransferCodec.encodeTransfer(transferRequest("Id-123", "Id-234",
+      "123456789012345678901234567890", null))).isInstanceOf(IllegalArgumentException.class);
+  }
+
+  private static TransferRequest transferRequest(String fromId, String toId, String amount, String idempotencyKey) {
+    TransferRequest transferRequest = new TransferRequest();
+    transferRequest.setAccountFromId(fromId);
+    transferRequest.setAccountToId(toId);
+    transferRequest.setAmount(new BigDecimal(amount));
+    transferRequest.setIdempotencyKey(idempotencyKey);
+    return transferRequest;
+  }
+}
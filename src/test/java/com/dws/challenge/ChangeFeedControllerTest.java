@@ -0,0 +1,108 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static org.springframework.test.web.servlet.setup.MockMvcBuilders.webAppContextSetup;
+
+import java.math.BigDecimal;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.context.web.WebAppConfiguration;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.web.context.WebApplicationContext;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.dto.TransferRequest;
+import com.dws.challenge.service.AccountsService;
+import com.dws.challenge.service.ChangeFeed;
+import com.dws.challenge.service.TransferService;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest
+@WebAppConfiguration
+class ChangeFeedControllerTest {
+
+  private MockMvc mockMvc;
+
+  @Autowired
+  private AccountsService accountsService;
+
+  @Autowired
+  private TransferService transferService;
+
+  @Autowired
+  private ChangeFeed changeFeed;
+
+  @Autowired
+  private WebApplicationContext webApplicationContext;
+
+  @BeforeEach
+  void prepareMockMvc() {
+    this.mockMvc = webAppContextSetup(this.webApplicationContext).build();
+  }
+
+  @Test
+  void pollResumesFromASequence() throws Exception {
+    long from = this.changeFeed.next();
+    String accountId = "Id-feed-" + System.nanoTime();
+    this.accountsService.createAccount(new Account(accountId, new BigDecimal("100")));
+    this.accountsService.createAccount(new Account(accountId + "-other", BigDecimal.ZERO));
+    this.transferService.transferMoney(transferRequest(accountId, accountId + "-other", "12.50"));
+
+    this.mockMvc.perform(get("/v1/changes?from=" + from).accept(MediaType.APPLICATION_JSON))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$.changes.length()").value(3))
+      .andExpect(jsonPath("$.changes[0].type").value("ACCOUNT_CREATED"))
+      .andExpect(jsonPath("$.changes[0].amount").value(100.00))
+      .andExpect(jsonPath("$.changes[2].sequence").value(from + 2))
+      .andExpect(jsonPath("$.changes[2].accountFromId").value(accountId))
+      .andExpect(jsonPath("$.changes[2].amount").value(12.50))
+      .andExpect(jsonPath("$.next").value(from + 3));
+
+    this.mockMvc.perform(get("/v1/changes?from=" + (from + 2) + "&limit=1").accept(MediaType.APPLICATION_JSON))
+      .andExpect(jsonPath("$.changes[0].type").value("TRANSFER"))
+      .andExpect(jsonPath("$.next").value(from + 3));
+    // Nothing new: the poll waits and comes back empty
+    this.mockMvc.perform(get("/v1/changes?from=" + (from + 3) + "&waitMillis=10").accept(MediaType.APPLICATION_JSON))
+      .andExpect(jsonPath("$.changes").isEmpty())
+      .andExpect(jsonPath("$.next").value(from + 3));
+    this.mockMvc.perform(get("/v1/changes?from=-1").accept(MediaType.APPLICATION_JSON))
+      .andExpect(status().isBadRequest());
+  }
+
+  @Test
+  void streamSendsEventsAsTheyArePublished() throws Exception {
+    long from = this.changeFeed.next();
+    MvcResult stream = this.mockMvc.perform(get("/v1/changes?from=" + from).accept(MediaType.TEXT_EVENT_STREAM))
+      .andExpect(request().asyncStarted())
+      .andReturn();
+
+    String accountId = "Id-stream-" + System.nanoTime();
+    this.accountsService.createAccount(new Account(accountId, new BigDecimal("100")));
+
+    String expected = "id:" + from + "\nevent:ACCOUNT_CREATED\ndata:";
+    long deadline = System.currentTimeMillis() + 10_000;
+    while (!stream.getResponse().getContentAsString().contains(accountId) && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    assertThat(stream.getResponse().getContentAsString()).contains(expected).contains(accountId);
+  }
+
+  private static TransferRequest transferRequest(String fromId, String toId, String amount) {
+    TransferRequest transferRequest = new TransferRequest();
+    transferRequest.setAccountFromId(fromId);
+    transferRequest.setAccountToId(toId);
+    transferRequest.setAmount(new BigDecimal(amount));
+    return transferRequest;
+  }
+}
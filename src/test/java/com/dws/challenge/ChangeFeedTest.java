@@ -0,0 +1,82 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import com.dws.challenge.domain.BalanceChange;
+import com.dws.challenge.service.ChangeFeed;
+import com.dws.challenge.service.ChangeFeedProperties;
+
+class ChangeFeedTest {
+
+  private static ChangeFeed feed(int capacity) {
+    ChangeFeedProperties properties = new ChangeFeedProperties();
+    properties.setCapacity(capacity);
+    return new ChangeFeed(properties);
+  }
+
+  @Test
+  void readsEventsInSequenceOrder() {
+    ChangeFeed feed = feed(8);
+    feed.publishCreation("Id-1", "EUR", 1000);
+    feed.publishTransfer("Id-1", "Id-2", 250, 250);
+
+    List<BalanceChange> changes = new ArrayList<>();
+    assertThat(feed.read(0, 10, changes::add)).isEqualTo(2);
+    assertThat(changes).extracting(BalanceChange::sequence).containsExactly(0L, 1L);
+    assertThat(changes.get(0).type()).isEqualTo(BalanceChange.Type.ACCOUNT_CREATED);
+    assertThat(changes.get(0).accountFromId()).isNull();
+    assertThat(changes.get(1).getAmount()).isEqualByComparingTo("2.50");
+
+    // Resuming in the middle, and at the end
+    changes.clear();
+    assertThat(feed.read(1, 10, changes::add)).isEqualTo(2);
+    assertThat(changes).extracting(BalanceChange::accountToId).containsExactly("Id-2");
+    assertThat(feed.read(2, 10, change -> { })).isEqualTo(2);
+  }
+
+  @Test
+  void dropsEventsOnceLapped() {
+    ChangeFeed feed = feed(4);
+    for (int i = 0; i < 10; i++) {
+      feed.publishTransfer("Id-1", "Id-2", i, i);
+    }
+
+    assertThat(feed.oldest()).isEqualTo(6);
+    assertThat(feed.read(2, 10, change -> { })).isEqualTo(2);
+    List<BalanceChange> changes = new ArrayList<>();
+    assertThat(feed.read(6, 10, changes::add)).isEqualTo(10);
+    assertThat(changes).extracting(BalanceChange::amountMinorUnits).containsExactly(6L, 7L, 8L, 9L);
+  }
+
+  @Test
+  void waitingSubscribersAreWokenUp() throws Exception {
+    ChangeFeed feed = feed(1024);
+    assertThat(feed.await(0, 10, TimeUnit.MILLISECONDS)).isFalse();
+
+    CompletableFuture<Boolean> published = CompletableFuture.supplyAsync(() -> {
+      try {
+        return feed.await(999, 30, TimeUnit.SECONDS);
+      } catch (InterruptedException ex) {
+        throw new IllegalStateException(ex);
+      }
+    });
+    ExecutorService publishers = Executors.newFixedThreadPool(4);
+    for (int i = 0; i < 1000; i++) {
+      publishers.execute(() -> feed.publishTransfer("Id-1", "Id-2", 1, 1));
+    }
+    publishers.shutdown();
+    assertThat(publishers.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+
+    assertThat(published.get(10, TimeUnit.SECONDS)).isTrue();
+    assertThat(feed.read(0, 1000, change -> { })).isEqualTo(1000);
+  }
+}
@@ -0,0 +1,180 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.dws.challenge.service.ConsistentHashRing;
+
+/**
+ * Runs two nodes of a cluster on localhost, each a Spring application of its own, and talks to them
+ * over HTTP like a client would.
+ */
+class ClusterTest {
+
+  private final HttpClient http = HttpClient.newHttpClient();
+
+  private final List<ConfigurableApplicationContext> nodes = new ArrayList<>();
+
+  private String nodeA;
+
+  private String nodeB;
+
+  // An account owned by each node
+  private String accountA;
+
+  private String accountB;
+
+  @BeforeEach
+  void startNodes() throws IOException {
+    nodeA = "http://localhost:" + freePort();
+    nodeB = "http://localhost:" + freePort();
+    for (String node : List.of(nodeA, nodeB)) {
+      nodes.add(new SpringApplicationBuilder(ChallengeApplication.class).run(
+        "--server.port=" + URI.create(node).getPort(),
+        "--cluster.nodes=" + nodeA + "," + nodeB,
+        "--cluster.self=" + node,
+        "--cluster.secret=test-secret",
+        "--cluster.request-timeout=2s",
+        "--cluster.commit-attempts=1"));
+    }
+
+    ConsistentHashRing ring = new ConsistentHashRing(List.of(nodeA, nodeB), 128);
+    for (int i = 0; accountA == null || accountB == null; i++) {
+      String accountId = "Id-" + i;
+      if (ring.ownerOf(accountId).equals(nodeA)) {
+        accountA = accountA == null ? accountId : accountA;
+      } else {
+        accountB = accountB == null ? accountId : accountB;
+      }
+    }
+  }
+
+  @AfterEach
+  void stopNodes() {
+    nodes.forEach(ConfigurableApplicationContext::close);
+  }
+
+  @Test
+  void forwardsRequestsAndTransfersAcrossPartitions() throws Exception {
+    // Both accounts are created through node A, the second one is forwarded to B
+    assertThat(post(nodeA, "/v1/accounts", "{\"accountId\":\"" + accountA + "\",\"balance\":1000}").statusCode())
+      .isEqualTo(201);
+    assertThat(post(nodeA, "/v1/accounts", "{\"accountId\":\"" + accountB + "\",\"balance\":500}").statusCode())
+      .isEqualTo(201);
+    assertThat(get(nodeB, "/v1/accounts/" + accountB).body())
+      .isEqualTo("{\"accountId\":\"" + accountB + "\",\"balance\":500.00,\"currency\":\"EUR\"}");
+    assertThat(get(nodeA, "/v1/accounts/" + accountB).body())
+      .isEqualTo("{\"accountId\":\"" + accountB + "\",\"balance\":500.00,\"currency\":\"EUR\"}");
+
+    // Sent to B, forwarded to A, which debits and has B credit
+    assertThat(post(nodeB, "/v1/transfers", transfer(accountA, accountB, "300")).statusCode()).isEqualTo(200);
+    assertThat(post(nodeA, "/v1/transfers", transfer(accountB, accountA, "50")).statusCode()).isEqualTo(200);
+    assertThat(get(nodeB, "/v1/accounts?ids=" + accountA + "," + accountB).body())
+      .isEqualTo("[{\"accountId\":\"" + accountA + "\",\"balance\":750.00,\"currency\":\"EUR\"},"
+        + "{\"accountId\":\"" + accountB + "\",\"balance\":750.00,\"currency\":\"EUR\"}]");
+
+    HttpResponse<String> insufficient = post(nodeA, "/v1/transfers", transfer(accountA, accountB, "5000"));
+    assertThat(insufficient.statusCode()).isEqualTo(400);
+    assertThat(insufficient.body()).isEqualTo("Insufficient balance");
+    HttpResponse<String> unknown = post(nodeA, "/v1/transfers", transfer(accountA, accountB + "-missing", "10"));
+    assertThat(unknown.statusCode()).isEqualTo(400);
+
+    HttpResponse<String> multi = post(nodeA, "/v1/transfers/multi", "{\"accountFromId\":\"" + accountA
+      + "\",\"legs\":[{\"accountToId\":\"" + accountB + "\",\"amount\":10}]}");
+    assertThat(multi.statusCode()).isEqualTo(400);
+
+    // Each node runs the share of the batch whose source accounts it owns
+    HttpResponse<String> batch = post(nodeA, "/v1/transfers/batch", "[" + transfer(accountB, accountA, "10") + ","
+      + transfer(accountA, accountB, "20") + "," + transfer(accountB, accountA, "9000") + "]");
+    assertThat(batch.statusCode()).isEqualTo(200);
+    assertThat(batch.body())
+      .isEqualTo("[{\"index\":0,\"status\":\"SUCCESS\",\"message\":null},"
+        + "{\"index\":1,\"status\":\"SUCCESS\",\"message\":null},"
+        + "{\"index\":2,\"status\":\"FAILED\",\"message\":\"Insufficient balance\"}]");
+
+    assertThat(get(nodeA, "/v1/accounts?ids=" + accountB + "," + accountA).body())
+      .isEqualTo("[{\"accountId\":\"" + accountB + "\",\"balance\":760.00,\"currency\":\"EUR\"},"
+        + "{\"accountId\":\"" + accountA + "\",\"balance\":740.00,\"currency\":\"EUR\"}]");
+    // Each node keeps the history of its own accounts
+    assertThat(get(nodeA, "/v1/accounts/" + accountB + "/transactions").body()).contains("\"amount\":20");
+  }
+
+  @Test
+  void refusesProtocolCallsWithoutTheClusterSecret() throws Exception {
+    assertThat(post(nodeB, "/v1/accounts", "{\"accountId\":\"" + accountB + "\",\"balance\":0}").statusCode())
+      .isEqualTo(201);
+    String leg = "{\"accountFromId\":\"" + accountA + "\",\"accountToId\":\"" + accountB
+      + "\",\"amount\":100000,\"currency\":\"EUR\"}";
+    String path = "/internal/cluster/transfers/tx-1/";
+
+    // Naming a node as the sender is not enough
+    assertThat(http.send(internal(nodeB, path + "prepare", leg).header("X-Cluster-Forwarded-By", nodeA).build(),
+      HttpResponse.BodyHandlers.ofString()).statusCode()).isEqualTo(403);
+    assertThat(http.send(internal(nodeB, path + "prepare", leg).header("X-Cluster-Forwarded-By", nodeA)
+      .header("X-Cluster-Secret", "guess").build(), HttpResponse.BodyHandlers.ofString()).statusCode()).isEqualTo(403);
+
+    // A commit credits what was prepared, not what it says
+    assertThat(http.send(internal(nodeB, path + "prepare", leg).header("X-Cluster-Forwarded-By", nodeA)
+      .header("X-Cluster-Secret", "test-secret").build(), HttpResponse.BodyHandlers.ofString()).statusCode())
+      .isEqualTo(200);
+    String inflated = leg.replace("}", ",\"creditedAmount\":99900000}");
+    assertThat(http.send(internal(nodeB, path + "commit", inflated).header("X-Cluster-Forwarded-By", nodeA)
+      .header("X-Cluster-Secret", "test-secret").build(), HttpResponse.BodyHandlers.ofString()).statusCode())
+      .isEqualTo(200);
+    assertThat(get(nodeB, "/v1/accounts/" + accountB).body()).contains("\"balance\":1000.00");
+  }
+
+  @Test
+  void leavesTheSourceAloneWhenTheOtherNodeIsDown() throws Exception {
+    assertThat(post(nodeA, "/v1/accounts", "{\"accountId\":\"" + accountA + "\",\"balance\":1000}").statusCode())
+      .isEqualTo(201);
+    nodes.get(1).close();
+
+    HttpResponse<String> transfer = post(nodeA, "/v1/transfers", transfer(accountA, accountB, "300"));
+    assertThat(transfer.statusCode()).isEqualTo(502);
+    assertThat(get(nodeA, "/v1/accounts/" + accountA).body()).contains("\"balance\":1000");
+    assertThat(get(nodeA, "/v1/accounts/" + accountB).statusCode()).isEqualTo(502);
+  }
+
+  private static String transfer(String accountFromId, String accountToId, String amount) {
+    return "{\"accountFromId\":\"" + accountFromId + "\",\"accountToId\":\"" + accountToId + "\",\"amount\":"
+      + amount + "}";
+  }
+
+  private HttpResponse<String> post(String node, String path, String json) throws Exception {
+    return http.send(HttpRequest.newBuilder(URI.create(node + path))
+      .header("Content-Type", "application/json")
+      .POST(HttpRequest.BodyPublishers.ofString(json))
+      .build(), HttpResponse.BodyHandlers.ofString());
+  }
+
+  private static HttpRequest.Builder internal(String node, String path, String json) {
+    return HttpRequest.newBuilder(URI.create(node + path))
+      .header("Content-Type", "application/json")
+      .POST(HttpRequest.BodyPublishers.ofString(json));
+  }
+
+  private HttpResponse<String> get(String node, String path) throws Exception {
+    return http.send(HttpRequest.newBuilder(URI.create(node + path)).build(), HttpResponse.BodyHandlers.ofString());
+  }
+
+  private static int freePort() throws IOException {
+    try (ServerSocket socket = new ServerSocket(0)) {
+      return socket.getLocalPort();
+    }
+  }
+}
@@ -0,0 +1,248 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.catchThrowableOfType;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.endsWith;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+import java.net.http.HttpHeaders;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.dto.ClusterTransferLeg;
+import com.dws.challenge.dto.TransferRequest;
+import com.dws.challenge.exception.InvalidAmountException;
+import com.dws.challenge.exception.TransferPendingException;
+import com.dws.challenge.exception.UnknownTransactionException;
+import com.dws.challenge.service.AccountsService;
+import com.dws.challenge.service.ClusterClient;
+import com.dws.challenge.service.ClusterProperties;
+import com.dws.challenge.service.ClusterRouter;
+import com.dws.challenge.service.ClusterTransfers;
+import com.dws.challenge.service.FxProperties;
+import com.dws.challenge.service.FxRates;
+import com.dws.challenge.service.LockingTransferEngine;
+import com.dws.challenge.service.NotificationDispatcher;
+import com.dws.challenge.service.TransferIdempotencyCache;
+import com.dws.challenge.service.TransferMetrics;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Both sides of the transfer protocol on one node, the other node being a mocked client.
+ */
+class ClusterTransfersTest {
+
+  private static final String OTHER_NODE = "http://node-b";
+
+  private final ClusterProperties properties = new ClusterProperties();
+
+  private final ClusterClient client = mock(ClusterClient.class);
+
+  private final AccountsService accountsService = mock(AccountsService.class);
+
+  private ClusterRouter router;
+
+  private ClusterTransfers clusterTransfers;
+
+  // Owned by this node, and by the other one
+  private Account account;
+
+  private String remoteAccountId;
+
+  @BeforeEach
+  void setUp() {
+    properties.setNodes(List.of("http://node-a", OTHER_NODE));
+    properties.setSelf("http://node-a");
+    properties.setSecret("secret");
+    properties.setCommitAttempts(1);
+    properties.setResolveInterval(Duration.ofHours(1));
+    router = new ClusterRouter(properties);
+    for (int i = 0; account == null || remoteAccountId == null; i++) {
+      String accountId = "Id-" + i;
+      if (router.isLocal(accountId)) {
+        account = account == null ? new Account(accountId, new BigDecimal("100")) : account;
+      } else {
+        remoteAccountId = remoteAccountId == null ? accountId : remoteAccountId;
+      }
+    }
+    when(accountsService.getAccount(account.getAccountId())).thenReturn(account);
+    clusterTransfers = open();
+  }
+
+  @AfterEach
+  void tearDown() {
+    clusterTransfers.shutdown();
+  }
+
+  private ClusterTransfers open() {
+    return new ClusterTransfers(properties, router, client, accountsService,
+      new LockingTransferEngine(new TransferMetrics(new SimpleMeterRegistry(), List.of())),
+      new FxRates(new FxProperties()), mock(NotificationDispatcher.class));
+  }
+
+  private static ClusterClient.Reply reply(int status, String text) {
+    return new ClusterClient.Reply(status, HttpHeaders.of(Map.of(), (name, value) -> true), text.getBytes());
+  }
+
+  private static ClusterTransferLeg leg(long amount) {
+    return new ClusterTransferLeg("Id-remote", null, amount, 0, "EUR");
+  }
+
+  @Test
+  void keepsATransferTheParticipantDoesNotKnowPendingInsteadOfRefundingIt() {
+    ClusterClient.Reply prepared = reply(200, "{}");
+    when(client.read(prepared, ClusterTransferLeg.class))
+      .thenReturn(new ClusterTransferLeg(account.getAccountId(), remoteAccountId, 3000, 3000, "EUR"));
+    ClusterClient.Reply unknown = reply(409, "Transfer is not prepared on this node");
+    when(client.post(eq(OTHER_NODE), any(String.class), any())).thenReturn(prepared, unknown);
+
+    TransferPendingException pending = catchThrowableOfType(
+      () -> clusterTransfers.transfer(account, remoteAccountId, 3000), TransferPendingException.class);
+    verify(accountsService).journalTransfer(account.getAccountId(), remoteAccountId, 3000, 3000);
+    clusterTransfers.resolve();
+    assertThat(clusterTransfers.getPendingCount()).isEqualTo(1);
+    assertThat(pending.getSettlement()).isNotDone();
+    assertThat(account.getBalance()).isEqualByComparingTo("70");
+
+    when(client.post(eq(OTHER_NODE), any(String.class), any())).thenReturn(reply(200, ""));
+    clusterTransfers.resolve();
+    assertThat(clusterTransfers.getPendingCount()).isZero();
+    assertThat(account.getBalance()).isEqualByComparingTo("70");
+    assertThat(pending.getSettlement()).isCompleted();
+    verify(accountsService).recordTransfer(account.getAccountId(), remoteAccountId, 3000, 3000, 0);
+  }
+
+  @Test
+  void aRetryOfAPendingTransferGetsItsOutcomeOnceSettled() {
+    ClusterClient.Reply prepared = reply(200, "{}");
+    when(client.read(prepared, ClusterTransferLeg.class))
+      .thenReturn(new ClusterTransferLeg(account.getAccountId(), remoteAccountId, 3000, 3000, "EUR"));
+    when(client.post(eq(OTHER_NODE), any(String.class), any())).thenReturn(prepared, reply(409, "Not prepared"));
+    TransferIdempotencyCache idempotencyCache = new TransferIdempotencyCache(10, Duration.ofHours(1),
+      new SimpleMeterRegistry());
+    TransferRequest transferRequest = new TransferRequest();
+    transferRequest.setAccountFromId(account.getAccountId());
+    transferRequest.setAccountToId(remoteAccountId);
+    transferRequest.setAmount(new BigDecimal("30"));
+    TransferIdempotencyCache.Transfer transfer = movingMoney -> {
+      movingMoney.run();
+      clusterTransfers.transfer(account, remoteAccountId, 3000);
+    };
+
+    assertThatThrownBy(() -> idempotencyCache.execute("client", "key-1", transferRequest, transfer))
+      .isInstanceOf(TransferPendingException.class);
+    assertThatThrownBy(() -> idempotencyCache.execute("client", "key-1", transferRequest, transfer))
+      .isInstanceOf(TransferPendingException.class);
+
+    when(client.post(eq(OTHER_NODE), any(String.class), any())).thenReturn(reply(400, "Balance overflow"));
+    clusterTransfers.resolve();
+    assertThatThrownBy(() -> idempotencyCache.execute("client", "key-1", transferRequest, transfer))
+      .isInstanceOf(InvalidAmountException.class)
+      .hasMessage("Balance overflow");
+    assertThat(account.getBalance()).isEqualByComparingTo("100");
+    verify(client).post(eq(OTHER_NODE), endsWith("/prepare"), any());
+  }
+
+  @Test
+  void journalsTheReservationAndTheRefundOfARefusedTransfer() {
+    ClusterClient.Reply prepared = reply(200, "{}");
+    when(client.read(prepared, ClusterTransferLeg.class))
+      .thenReturn(new ClusterTransferLeg(account.getAccountId(), remoteAccountId, 3000, 3000, "EUR"));
+    when(client.post(eq(OTHER_NODE), any(String.class), any())).thenReturn(prepared, reply(400, "Balance overflow"));
+
+    assertThatThrownBy(() -> clusterTransfers.transfer(account, remoteAccountId, 3000))
+      .isInstanceOf(InvalidAmountException.class)
+      .hasMessage("Balance overflow");
+    assertThat(account.getBalance()).isEqualByComparingTo("100");
+    verify(accountsService).journalTransfer(account.getAccountId(), remoteAccountId, 3000, 3000);
+    verify(accountsService).journalTransfer(remoteAccountId, account.getAccountId(), 3000, 3000);
+  }
+
+  @Test
+  void leavesTheSourceAloneIfTheReservationCannotBeJournaled() {
+    ClusterClient.Reply prepared = reply(200, "{}");
+    when(client.read(prepared, ClusterTransferLeg.class))
+      .thenReturn(new ClusterTransferLeg(account.getAccountId(), remoteAccountId, 3000, 3000, "EUR"));
+    when(client.post(eq(OTHER_NODE), any(String.class), any())).thenReturn(prepared);
+    when(accountsService.journalTransfer(account.getAccountId(), remoteAccountId, 3000, 3000))
+      .thenThrow(new IllegalStateException("Journal accounts is closed"));
+
+    assertThatThrownBy(() -> clusterTransfers.transfer(account, remoteAccountId, 3000))
+      .hasMessage("Journal accounts is closed");
+    assertThat(account.getBalance()).isEqualByComparingTo("100");
+    verify(client).post(eq(OTHER_NODE), endsWith("/abort"), any());
+    verify(client, never()).post(eq(OTHER_NODE), endsWith("/commit"), any());
+  }
+
+  @Test
+  void remembersACommittedTransferUntilTheCoordinatorForgetsIt() {
+    properties.setTransactionRetention(Duration.ZERO);
+    clusterTransfers.shutdown();
+    clusterTransfers = open();
+    ClusterTransferLeg leg = leg(2000);
+    leg.setAccountToId(account.getAccountId());
+    clusterTransfers.prepare("tx-1", leg);
+    clusterTransfers.commit("tx-1", leg);
+    assertThat(account.getBalance()).isEqualByComparingTo("120");
+
+    // Retained however long the coordinator takes to ask again
+    clusterTransfers.resolve();
+    clusterTransfers.commit("tx-1", leg);
+    assertThat(account.getBalance()).isEqualByComparingTo("120");
+
+    clusterTransfers.forget("tx-1");
+    assertThatThrownBy(() -> clusterTransfers.commit("tx-1", leg)).isInstanceOf(UnknownTransactionException.class);
+    assertThat(account.getBalance()).isEqualByComparingTo("120");
+  }
+
+  @Test
+  void refusesAPreparedTransferNotCommittedInTime() {
+    properties.setTransactionRetention(Duration.ZERO);
+    clusterTransfers.shutdown();
+    clusterTransfers = open();
+    ClusterTransferLeg leg = leg(2000);
+    leg.setAccountToId(account.getAccountId());
+    clusterTransfers.prepare("tx-1", leg);
+
+    clusterTransfers.resolve();
+    assertThatThrownBy(() -> clusterTransfers.commit("tx-1", leg))
+      .isInstanceOf(InvalidAmountException.class)
+      .hasMessage("Transfer tx-1 was not committed in time");
+    assertThat(account.getBalance()).isEqualByComparingTo("100");
+  }
+
+  @Test
+  void aCreditThatCannotBeJournaledMayBeCommittedAgain() {
+    ClusterTransferLeg leg = leg(2000);
+    leg.setAccountToId(account.getAccountId());
+    clusterTransfers.prepare("tx-1", leg);
+    when(accountsService.journalTransfer("Id-remote", account.getAccountId(), 2000, 2000))
+      .thenThrow(new IllegalStateException("Journal accounts is closed"));
+
+    assertThatThrownBy(() -> clusterTransfers.commit("tx-1", leg)).isInstanceOf(IllegalStateException.class)
+      .isNotInstanceOf(UnknownTransactionException.class);
+    assertThat(account.getBalance()).isEqualByComparingTo("100");
+    verify(accountsService, never()).recordTransfer("Id-remote", account.getAccountId(), 2000, 2000, 0);
+
+    reset(accountsService);
+    when(accountsService.getAccount(account.getAccountId())).thenReturn(account);
+    clusterTransfers.commit("tx-1", leg);
+    assertThat(account.getBalance()).isEqualByComparingTo("120");
+    verify(accountsService).recordTransfer("Id-remote", account.getAccountId(), 2000, 2000, 0);
+  }
+}
@@ -0,0 +1,64 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import com.dws.challenge.service.ConsistentHashRing;
+
+class ConsistentHashRingTest {
+
+  private static final List<String> NODES = List.of("http://node-a:18080", "http://node-b:18080",
+    "http://node-c:18080", "http://node-d:18080");
+
+  @Test
+  void spreadsAccountsEvenlyAndAgreesWhateverTheOrderOfTheNodes() {
+    ConsistentHashRing ring = new ConsistentHashRing(NODES, 128);
+    List<String> reversedNodes = new ArrayList<>(NODES);
+    Collections.reverse(reversedNodes);
+    ConsistentHashRing reversed = new ConsistentHashRing(reversedNodes, 128);
+
+    Map<String, Integer> accounts = new HashMap<>();
+    for (int i = 0; i < 100_000; i++) {
+      String accountId = "Id-" + i;
+      assertThat(reversed.ownerOf(accountId)).isEqualTo(ring.ownerOf(accountId));
+      accounts.merge(ring.ownerOf(accountId), 1, Integer::sum);
+    }
+    assertThat(accounts).hasSize(4);
+    assertThat(accounts.values()).allSatisfy(count -> assertThat(count).isBetween(20_000, 30_000));
+  }
+
+  @Test
+  void movesOnlyTheAccountsOfAnAddedNode() {
+    ConsistentHashRing ring = new ConsistentHashRing(NODES.subList(0, 3), 128);
+    ConsistentHashRing grown = new ConsistentHashRing(NODES, 128);
+
+    int moved = 0;
+    for (int i = 0; i < 100_000; i++) {
+      String accountId = "Id-" + i;
+      if (!grown.ownerOf(accountId).equals(ring.ownerOf(accountId))) {
+        assertThat(grown.ownerOf(accountId)).isEqualTo("http://node-d:18080");
+        moved++;
+      }
+    }
+    // About a quarter of the accounts move to the fourth node
+    assertThat(moved).isBetween(20_000, 30_000);
+  }
+
+  @Test
+  void refusesInvalidNodeLists() {
+    assertThatThrownBy(() -> new ConsistentHashRing(List.of(), 128))
+      .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> new ConsistentHashRing(List.of("http://node-a:18080", "http://node-a:18080"), 128))
+      .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> new ConsistentHashRing(NODES, 0))
+      .isInstanceOf(IllegalArgumentException.class);
+  }
+}
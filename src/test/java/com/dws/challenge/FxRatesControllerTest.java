@@ -0,0 +1,97 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static org.springframework.test.web.servlet.setup.MockMvcBuilders.webAppContextSetup;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.context.web.WebAppConfiguration;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.web.context.WebApplicationContext;
+
+import com.dws.challenge.service.AccountsService;
+import com.dws.challenge.service.FxRates;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest
+@WebAppConfiguration
+class FxRatesControllerTest {
+
+  private MockMvc mockMvc;
+
+  @Autowired
+  private AccountsService accountsService;
+
+  @Autowired
+  private FxRates fxRates;
+
+  @Autowired
+  private WebApplicationContext webApplicationContext;
+
+  @BeforeEach
+  void prepareMockMvc() {
+    this.mockMvc = webAppContextSetup(this.webApplicationContext).build();
+  }
+
+  @Test
+  void updatesTheRatesUsedByTransfers() throws Exception {
+    long version = this.fxRates.current().getVersion();
+    this.mockMvc.perform(put("/v1/fx/rates").contentType(MediaType.APPLICATION_JSON)
+        .content("{\"base\":\"EUR\",\"rates\":{\"USD\":1.0834,\"GBP\":0.8571}}"))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$.version").value(version + 1))
+      .andExpect(jsonPath("$.rates.EUR").value(1))
+      .andExpect(jsonPath("$.rates.USD").value(1.0834));
+    this.mockMvc.perform(get("/v1/fx/rates"))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$.base").value("EUR"))
+      .andExpect(jsonPath("$.rates.GBP").value(0.8571));
+
+    String accountId = "Id-fx-" + System.nanoTime();
+    this.mockMvc.perform(post("/v1/accounts").contentType(MediaType.APPLICATION_JSON)
+      .content("{\"accountId\":\"" + accountId + "\",\"balance\":100,\"currency\":\"EUR\"}"))
+      .andExpect(status().isCreated());
+    this.mockMvc.perform(post("/v1/accounts").contentType(MediaType.APPLICATION_JSON)
+      .content("{\"accountId\":\"" + accountId + "-gbp\",\"balance\":0,\"currency\":\"GBP\"}"))
+      .andExpect(status().isCreated());
+    this.mockMvc.perform(post("/v1/transfers").contentType(MediaType.APPLICATION_JSON)
+      .content("{\"accountFromId\":\"" + accountId + "\",\"accountToId\":\"" + accountId + "-gbp\",\"amount\":10}"))
+      .andExpect(status().isOk());
+
+    assertThat(this.accountsService.getAccount(accountId).getBalance()).isEqualByComparingTo("90.00");
+    assertThat(this.accountsService.getAccount(accountId + "-gbp").getBalance()).isEqualByComparingTo("8.57");
+    MvcResult history = this.mockMvc.perform(get("/v1/accounts/" + accountId + "-gbp/transactions")).andReturn();
+    this.mockMvc.perform(asyncDispatch(history))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$.transactions[0].amount").value(10.0))
+      .andExpect(jsonPath("$.transactions[0].creditedAmount").value(8.57));
+  }
+
+  @Test
+  void refusesInvalidRatesAndCurrencies() throws Exception {
+    long version = this.fxRates.current().getVersion();
+    this.mockMvc.perform(put("/v1/fx/rates").contentType(MediaType.APPLICATION_JSON)
+        .content("{\"base\":\"EUR\",\"rates\":{\"USD\":-1}}"))
+      .andExpect(status().isBadRequest());
+    this.mockMvc.perform(put("/v1/fx/rates").contentType(MediaType.APPLICATION_JSON)
+        .content("{\"base\":\"EUR\"}"))
+      .andExpect(status().isBadRequest());
+    assertThat(this.fxRates.current().getVersion()).isEqualTo(version);
+
+    this.mockMvc.perform(post("/v1/accounts").contentType(MediaType.APPLICATION_JSON)
+      .content("{\"accountId\":\"Id-fx-invalid\",\"balance\":100,\"currency\":\"euro\"}"))
+      .andExpect(status().isBadRequest());
+  }
+}
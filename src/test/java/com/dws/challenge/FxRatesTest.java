@@ -0,0 +1,89 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.Test;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.exception.InvalidAmountException;
+import com.dws.challenge.service.FxProperties;
+import com.dws.challenge.service.FxRateSnapshot;
+import com.dws.challenge.service.FxRates;
+
+class FxRatesTest {
+
+  private static FxRates fxRates(Map<String, BigDecimal> rates) {
+    FxProperties properties = new FxProperties();
+    properties.setRates(rates);
+    return new FxRates(properties);
+  }
+
+  @Test
+  void convertsLikeDecimalArithmeticRoundedHalfUp() {
+    SplittableRandom random = new SplittableRandom(42);
+    for (int i = 0; i < 10_000; i++) {
+      // Up to six decimal places, from 0.000001 to 100000
+      BigDecimal rate = BigDecimal.valueOf(random.nextLong(1, 100_000_000_000L), 6);
+      FxRateSnapshot snapshot = fxRates(Map.of("XTS", rate)).current();
+      // Exact up to converted amounts of 2^40 minor units
+      long amount = random.nextLong(1, (1L << 40) / (rate.longValue() + 1));
+
+      long expected = rate.multiply(BigDecimal.valueOf(amount)).setScale(0, RoundingMode.HALF_UP).longValueExact();
+      assertThat(snapshot.convert("EUR", "XTS", amount)).as("%d at %s", amount, rate).isEqualTo(expected);
+    }
+  }
+
+  @Test
+  void convertsBetweenTwoQuotedCurrenciesThroughTheirCrossRate() {
+    FxRateSnapshot snapshot = fxRates(Map.of("USD", new BigDecimal("1.0834"), "JPY", new BigDecimal("162.41")))
+      .current();
+
+    BigDecimal crossRate = new BigDecimal("162.41").divide(new BigDecimal("1.0834"), MathContext.DECIMAL128);
+    long expected = crossRate.multiply(BigDecimal.valueOf(123_456)).setScale(0, RoundingMode.HALF_UP).longValueExact();
+    assertThat(snapshot.convert("USD", "JPY", 123_456)).isEqualTo(expected);
+    assertThat(snapshot.convert("EUR", "USD", 1000)).isEqualTo(1083);
+    assertThat(snapshot.convert("USD", "USD", 1000)).isEqualTo(1000);
+    // 5 * 1.1 is exactly 5.5, the rounded-up multiplier keeps it from falling below the half
+    assertThat(fxRates(Map.of("XTS", new BigDecimal("1.1"))).current().convert("EUR", "XTS", 5)).isEqualTo(6);
+
+    assertThatThrownBy(() -> snapshot.convert("EUR", "CHF", 1000))
+      .isInstanceOf(InvalidAmountException.class)
+      .hasMessage("No exchange rate from EUR to CHF");
+    assertThatThrownBy(() -> snapshot.convert("EUR", "JPY", Long.MAX_VALUE / 2))
+      .isInstanceOf(InvalidAmountException.class)
+      .hasMessage("Converted amount is too large");
+    // 0.01 JPY is worth less than half a US cent
+    assertThatThrownBy(() -> snapshot.convert("JPY", "USD", 1))
+      .isInstanceOf(InvalidAmountException.class)
+      .hasMessage("Amount is too small to be converted from JPY to USD");
+  }
+
+  @Test
+  void updatesReplaceTheSnapshotAsAWhole() {
+    FxRates fxRates = fxRates(Map.of("USD", new BigDecimal("1.10")));
+    FxRateSnapshot before = fxRates.current();
+    Account euros = new Account("Id-eur", BigDecimal.ZERO, "EUR");
+    Account dollars = new Account("Id-usd", BigDecimal.ZERO, "USD");
+    assertThat(fxRates.convert(euros, dollars, 1000)).isEqualTo(1100);
+
+    FxRateSnapshot after = fxRates.update("EUR", Map.of("USD", new BigDecimal("1.20")));
+    assertThat(after.getVersion()).isEqualTo(before.getVersion() + 1);
+    assertThat(fxRates.current()).isSameAs(after);
+    assertThat(fxRates.convert(euros, dollars, 1000)).isEqualTo(1200);
+    // Readers holding the old snapshot keep its rates
+    assertThat(before.convert("EUR", "USD", 1000)).isEqualTo(1100);
+
+    assertThatThrownBy(() -> fxRates.update("EUR", Map.of("USD", BigDecimal.ZERO)))
+      .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> fxRates.update("EUR", Map.of("usd", BigDecimal.ONE)))
+      .isInstanceOf(IllegalArgumentException.class);
+    assertThat(fxRates.current()).isSameAs(after);
+  }
+}
@@ -0,0 +1,116 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static org.springframework.test.web.servlet.setup.MockMvcBuilders.webAppContextSetup;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.context.web.WebAppConfiguration;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.web.context.WebApplicationContext;
+
+import com.dws.challenge.service.AccountsService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest
+@WebAppConfiguration
+class HoldControllerTest {
+
+  private MockMvc mockMvc;
+
+  @Autowired
+  private AccountsService accountsService;
+
+  @Autowired
+  private ObjectMapper objectMapper;
+
+  @Autowired
+  private WebApplicationContext webApplicationContext;
+
+  @BeforeEach
+  void prepareMockMvc() {
+    this.mockMvc = webAppContextSetup(this.webApplicationContext).build();
+  }
+
+  @Test
+  void authorizesAndCapturesAHold() throws Exception {
+    String accountId = "Id-hold-" + System.nanoTime();
+    createAccount(accountId, 100);
+    createAccount(accountId + "-to", 0);
+
+    String id = authorize(accountId, 60);
+    this.mockMvc.perform(get("/v1/accounts/" + accountId + "/holds"))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$.availableBalance").value(40))
+      .andExpect(jsonPath("$.heldAmount").value(60))
+      .andExpect(jsonPath("$.holds[0].id").value(id));
+    this.mockMvc.perform(post("/v1/transfers").contentType(MediaType.APPLICATION_JSON)
+        .content("{\"accountFromId\":\"" + accountId + "\",\"accountToId\":\"" + accountId + "-to\",\"amount\":50}"))
+      .andExpect(status().isBadRequest());
+
+    this.mockMvc.perform(post("/v1/accounts/" + accountId + "/holds/" + id + "/capture")
+        .contentType(MediaType.APPLICATION_JSON).content("{\"amount\":45.5}"))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$.status").value("CAPTURED"))
+      .andExpect(jsonPath("$.capturedAmount").value(45.5));
+    this.mockMvc.perform(post("/v1/accounts/" + accountId + "/holds/" + id + "/capture"))
+      .andExpect(status().isConflict());
+    assertThat(this.accountsService.getAccount(accountId).getBalance()).isEqualByComparingTo("54.50");
+    assertThat(this.accountsService.getAccount(accountId + "-to").getBalance()).isEqualByComparingTo("45.50");
+  }
+
+  @Test
+  void voidsHolds() throws Exception {
+    String accountId = "Id-hold-" + System.nanoTime();
+    createAccount(accountId, 100);
+    createAccount(accountId + "-to", 0);
+
+    String id = authorize(accountId, 60);
+    this.mockMvc.perform(delete("/v1/accounts/" + accountId + "/holds/" + id))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$.status").value("VOIDED"));
+    this.mockMvc.perform(get("/v1/accounts/" + accountId + "/holds/" + id))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$.status").value("VOIDED"));
+    this.mockMvc.perform(delete("/v1/accounts/" + accountId + "/holds/unknown"))
+      .andExpect(status().isNotFound());
+    assertThat(this.accountsService.getAccount(accountId).getBalance()).isEqualByComparingTo("100.00");
+
+    this.mockMvc.perform(post("/v1/accounts/" + accountId + "/holds").contentType(MediaType.APPLICATION_JSON)
+        .content("{\"accountToId\":\"" + accountId + "-to\",\"amount\":101}"))
+      .andExpect(status().isBadRequest());
+    this.mockMvc.perform(post("/v1/accounts/" + accountId + "/holds").contentType(MediaType.APPLICATION_JSON)
+        .content("{\"accountToId\":\"" + accountId + "-to\",\"amount\":10,\"expiresAt\":\"2000-01-01T00:00:00Z\"}"))
+      .andExpect(status().isBadRequest())
+      .andExpect(content().string("A hold must expire within PT720H from now"));
+  }
+
+  private String authorize(String accountId, int amount) throws Exception {
+    String created = this.mockMvc.perform(post("/v1/accounts/" + accountId + "/holds")
+        .contentType(MediaType.APPLICATION_JSON)
+        .content("{\"accountToId\":\"" + accountId + "-to\",\"amount\":" + amount + "}"))
+      .andExpect(status().isCreated())
+      .andExpect(jsonPath("$.status").value("AUTHORIZED"))
+      .andExpect(jsonPath("$.amount").value(amount))
+      .andReturn().getResponse().getContentAsString();
+    return this.objectMapper.readTree(created).get("id").asText();
+  }
+
+  private void createAccount(String accountId, int balance) throws Exception {
+    this.mockMvc.perform(post("/v1/accounts").contentType(MediaType.APPLICATION_JSON)
+        .content("{\"accountId\":\"" + accountId + "\",\"balance\":" + balance + "}"))
+      .andExpect(status().isCreated());
+  }
+}
@@ -0,0 +1,225 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.Hold;
+import com.dws.challenge.dto.AccountHolds;
+import com.dws.challenge.dto.HoldRequest;
+import com.dws.challenge.exception.InsufficientBalanceException;
+import com.dws.challenge.service.AccountsService;
+import com.dws.challenge.service.ClusterProperties;
+import com.dws.challenge.service.ClusterRouter;
+import com.dws.challenge.service.FxProperties;
+import com.dws.challenge.service.FxRates;
+import com.dws.challenge.service.HoldProperties;
+import com.dws.challenge.service.HoldService;
+import com.dws.challenge.service.LockingTransferEngine;
+import com.dws.challenge.service.NotificationDispatcher;
+import com.dws.challenge.service.TransferEngine;
+import com.dws.challenge.service.TransferMetrics;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class HoldServiceTest {
+
+  private final AccountsService accountsService = mock(AccountsService.class);
+
+  private final TransferEngine transferEngine =
+    new LockingTransferEngine(new TransferMetrics(new SimpleMeterRegistry(), List.of()));
+
+  private final HoldProperties properties = new HoldProperties();
+
+  private final Account account = new Account("Id-123", new BigDecimal("100"));
+
+  private final Account merchant = new Account("Id-234", BigDecimal.ZERO);
+
+  private HoldService holdService;
+
+  @BeforeEach
+  void setUp() {
+    when(accountsService.getAccount("Id-123")).thenReturn(account);
+    when(accountsService.getAccount("Id-234")).thenReturn(merchant);
+    properties.setSweepInterval(Duration.ofMillis(10));
+    holdService = new HoldService(properties, accountsService, transferEngine, new FxRates(new FxProperties()),
+      new ClusterRouter(new ClusterProperties()), mock(NotificationDispatcher.class), new SimpleMeterRegistry());
+  }
+
+  @AfterEach
+  void tearDown() {
+    holdService.shutdown();
+  }
+
+  private static HoldRequest request(String amount, Instant expiresAt) {
+    HoldRequest request = new HoldRequest();
+    request.setAccountToId("Id-234");
+    request.setAmount(new BigDecimal(amount));
+    request.setExpiresAt(expiresAt);
+    return request;
+  }
+
+  @Test
+  void heldFundsCannotBeSpent() {
+    Hold hold = holdService.authorize("Id-123", request("80", null));
+    assertThat(hold.status()).isEqualTo(Hold.Status.AUTHORIZED);
+    assertThat(hold.getAmount()).isEqualByComparingTo("80.00");
+
+    assertThat(account.getBalance()).isEqualByComparingTo("20.00");
+    AccountHolds holds = holdService.getHolds("Id-123");
+    assertThat(holds.getAvailableBalance()).isEqualByComparingTo("20.00");
+    assertThat(holds.getHeldAmount()).isEqualByComparingTo("80.00");
+    assertThat(holds.getHolds()).containsExactly(hold);
+
+    assertThatThrownBy(() -> transferEngine.transfer(account, merchant, 3000))
+      .isInstanceOf(InsufficientBalanceException.class);
+    assertThatThrownBy(() -> holdService.authorize("Id-123", request("30", null)))
+      .isInstanceOf(InsufficientBalanceException.class);
+    assertThat(holdService.getHolds("Id-123").getHeldAmount()).isEqualByComparingTo("80.00");
+  }
+
+  @Test
+  void capturesPartOfAHoldAndGivesBackTheRest() {
+    Hold hold = holdService.authorize("Id-123", request("80", null));
+
+    Hold captured = holdService.capture("Id-123", hold.id(), new BigDecimal("50"));
+    assertThat(captured.status()).isEqualTo(Hold.Status.CAPTURED);
+    assertThat(captured.getCapturedAmount()).isEqualByComparingTo("50.00");
+    assertThat(account.getBalance()).isEqualByComparingTo("50.00");
+    assertThat(merchant.getBalance()).isEqualByComparingTo("50.00");
+    assertThat(holdService.getHolds("Id-123").getHeldAmount()).isEqualByComparingTo("0.00");
+    assertThat(holdService.getHold("Id-123", hold.id())).isEqualTo(captured);
+    verify(accountsService).recordTransfer(account, merchant, 5000, 5000, 0);
+
+    assertThatThrownBy(() -> holdService.capture("Id-123", hold.id(), null))
+      .isInstanceOf(IllegalStateException.class);
+    assertThat(holdService.voidHold("Id-123", hold.id())).isEqualTo(captured);
+    assertThat(holdService.capture("Id-234", hold.id(), null)).isNull();
+  }
+
+  @Test
+  void aCaptureThatCannotBeJournaledLeavesTheHoldAuthorized() {
+    Hold hold = holdService.authorize("Id-123", request("80", null));
+    when(accountsService.journalTransfer(account, merchant, 5000, 5000))
+      .thenThrow(new IllegalStateException("Journal accounts is closed"));
+
+    assertThatThrownBy(() -> holdService.capture("Id-123", hold.id(), new BigDecimal("50")))
+      .hasMessage("Journal accounts is closed");
+    assertThat(merchant.getBalance()).isEqualByComparingTo("0.00");
+    assertThat(holdService.getHold("Id-123", hold.id())).isEqualTo(hold);
+    verify(accountsService, never()).recordTransfer(any(Account.class), any(Account.class), anyLong(), anyLong(),
+      anyLong());
+
+    assertThat(holdService.voidHold("Id-123", hold.id()).status()).isEqualTo(Hold.Status.VOIDED);
+    assertThat(account.getBalance()).isEqualByComparingTo("100.00");
+  }
+
+  @Test
+  void takesTheCreditBackIfTheRestCannotBeGivenBack() {
+    Hold hold = holdService.authorize("Id-123", request("80", null));
+    // Credited meanwhile, so that giving back the rest overflows the balance
+    account.credit(Long.MAX_VALUE - account.getBalanceMinorUnits() - 1000);
+
+    assertThatThrownBy(() -> holdService.capture("Id-123", hold.id(), new BigDecimal("50")))
+      .hasMessage("Balance overflow");
+    assertThat(merchant.getBalance()).isEqualByComparingTo("0.00");
+    assertThat(holdService.getHold("Id-123", hold.id()).status()).isEqualTo(Hold.Status.AUTHORIZED);
+    verify(accountsService).journalTransfer(merchant, account, 5000, 5000);
+    verify(accountsService, never()).recordTransfer(any(Account.class), any(Account.class), anyLong(), anyLong(),
+      anyLong());
+  }
+
+  @Test
+  void voidedHoldsGiveEverythingBack() {
+    Hold hold = holdService.authorize("Id-123", request("80", null));
+    assertThatThrownBy(() -> holdService.capture("Id-123", hold.id(), new BigDecimal("80.01")))
+      .isInstanceOf(IllegalArgumentException.class);
+
+    Hold voided = holdService.voidHold("Id-123", hold.id());
+    assertThat(voided.status()).isEqualTo(Hold.Status.VOIDED);
+    assertThat(account.getBalance()).isEqualByComparingTo("100.00");
+    assertThat(merchant.getBalance()).isEqualByComparingTo("0.00");
+    assertThat(holdService.getHolds("Id-123").getHolds()).isEmpty();
+    verify(accountsService, never()).recordTransfer(any(Account.class), any(Account.class), anyLong(), anyLong(),
+      anyLong());
+  }
+
+  @Test
+  void releasesExpiredHolds() throws InterruptedException {
+    Hold expiring = holdService.authorize("Id-123", request("30", Instant.now().plusMillis(50)));
+    Hold kept = holdService.authorize("Id-123", request("20", null));
+
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+    while (holdService.getHold("Id-123", expiring.id()).status() == Hold.Status.AUTHORIZED
+      && System.nanoTime() < deadline) {
+      Thread.sleep(10);
+    }
+    assertThat(holdService.getHold("Id-123", expiring.id()).status()).isEqualTo(Hold.Status.EXPIRED);
+    assertThat(account.getBalance()).isEqualByComparingTo("80.00");
+    assertThat(holdService.getHolds("Id-123").getHolds()).containsExactly(kept);
+    assertThat(holdService.getHolds("Id-123").getHeldAmount()).isEqualByComparingTo("20.00");
+  }
+
+  @Test
+  void rejectsInvalidHolds() {
+    assertThatThrownBy(() -> holdService.authorize("Id-missing", request("10", null)))
+      .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> holdService.authorize("Id-123", request("0", null)))
+      .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> holdService.authorize("Id-123", request("10", Instant.now().minusSeconds(1))))
+      .hasMessageContaining("must expire within");
+    assertThatThrownBy(() -> holdService.authorize("Id-123", request("10", Instant.now().plus(Duration.ofDays(31)))))
+      .hasMessageContaining("must expire within");
+    assertThat(account.getBalance()).isEqualByComparingTo("100.00");
+  }
+
+  @Test
+  void concurrentAuthorizationsNeverHoldMoreThanTheBalance() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    AtomicInteger authorized = new AtomicInteger();
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int i = 0; i < 8; i++) {
+        futures.add(executor.submit(() -> {
+          for (int j = 0; j < 50; j++) {
+            try {
+              holdService.authorize("Id-123", request("1", null));
+              authorized.incrementAndGet();
+            } catch (InsufficientBalanceException ex) {
+              // Expected once the balance is held
+            }
+          }
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get(10, TimeUnit.SECONDS);
+      }
+    } finally {
+      executor.shutdown();
+    }
+    assertThat(authorized).hasValue(100);
+    assertThat(account.getBalance()).isEqualByComparingTo("0.00");
+    assertThat(holdService.getHolds("Id-123").getHeldAmount()).isEqualByComparingTo("100.00");
+  }
+}
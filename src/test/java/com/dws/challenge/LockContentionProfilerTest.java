@@ -0,0 +1,132 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.junit.jupiter.api.Test;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.dto.ContendedAccount;
+import com.dws.challenge.dto.LockContentionReport;
+import com.dws.challenge.service.LockContentionProfiler;
+import com.dws.challenge.service.LockProfilerProperties;
+import com.dws.challenge.service.OptimisticTransferEngine;
+import com.dws.challenge.service.TransferMetrics;
+import com.dws.challenge.web.LockContentionEndpoint;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class LockContentionProfilerTest {
+
+  private static LockProfilerProperties properties(int sampleEvery, int capacity) {
+    LockProfilerProperties properties = new LockProfilerProperties();
+    properties.setEnabled(true);
+    properties.setSampleEvery(sampleEvery);
+    properties.setCapacity(capacity);
+    properties.setTop(3);
+    return properties;
+  }
+
+  @Test
+  void keepsTheMostWaitedForAccountsAmongMany() {
+    LockContentionProfiler profiler = new LockContentionProfiler(properties(1, 16));
+    for (int i = 0; i < 10_000; i++) {
+      for (int hot = 0; hot < 3; hot++) {
+        if (i % 10 == 0) {
+          profiler.recordWait("Id-hot-" + hot, 10_000L * (hot + 1));
+        }
+      }
+      profiler.recordWait("Id-" + i, 100);
+    }
+
+    LockContentionReport report = profiler.report(3);
+    assertThat(report.getSamples()).isEqualTo(13_000);
+    assertThat(report.getAccounts()).extracting(ContendedAccount::getAccountId)
+      .containsExactly("Id-hot-2", "Id-hot-1", "Id-hot-0");
+    ContendedAccount hottest = report.getAccounts().get(0);
+    assertThat(hottest.getWaits()).isEqualTo(1_000);
+    assertThat(hottest.getWaitNanos() - hottest.getErrorNanos()).isLessThanOrEqualTo(30_000_000L);
+    assertThat(hottest.getWaitNanos()).isGreaterThanOrEqualTo(30_000_000L);
+    assertThat(hottest.getMaxNanos()).isEqualTo(30_000);
+  }
+
+  @Test
+  void reportsWaitTimePercentiles() {
+    LockContentionProfiler profiler = new LockContentionProfiler(properties(1, 4));
+    for (long micros = 1; micros <= 1_000; micros++) {
+      profiler.recordWait("Id-123", micros * 1_000);
+    }
+
+    ContendedAccount account = profiler.report(10).getAccounts().get(0);
+    assertThat(account.getWaits()).isEqualTo(1_000);
+    assertThat(account.getWaitNanos()).isEqualTo(500_500_000L);
+    assertThat((double) account.getP50Nanos()).isCloseTo(500_000, within(125_000.0));
+    assertThat((double) account.getP90Nanos()).isCloseTo(900_000, within(225_000.0));
+    assertThat(account.getP99Nanos()).isBetween(990_000L, 1_000_000L);
+    assertThat(account.getMaxNanos()).isEqualTo(1_000_000);
+  }
+
+  @Test
+  void recordsTheLockWaitsOfTheOptimisticEngine() throws InterruptedException {
+    LockContentionProfiler profiler = new LockContentionProfiler(properties(1, 4), "optimistic");
+    OptimisticTransferEngine engine =
+      new OptimisticTransferEngine(8, new TransferMetrics(new SimpleMeterRegistry(), List.of(), profiler));
+    Account account = new Account("Id-123", BigDecimal.TEN);
+
+    account.lock();
+    Thread credit = new Thread(() -> engine.credit(account, 100));
+    try {
+      credit.start();
+      while (!((ReentrantLock) account.getLock()).hasQueuedThreads()) {
+        Thread.sleep(1);
+      }
+    } finally {
+      account.unlock();
+    }
+    credit.join();
+
+    LockContentionReport report = profiler.report(10);
+    assertThat(report.getEngine()).isEqualTo("optimistic");
+    assertThat(report.getAccounts()).extracting(ContendedAccount::getAccountId).containsExactly("Id-123");
+  }
+
+  @Test
+  void scalesSampledWaitsBackUp() {
+    LockContentionProfiler profiler = new LockContentionProfiler(properties(4, 4));
+    for (int i = 0; i < 40_000; i++) {
+      profiler.recordWait("Id-123", 1_000);
+    }
+
+    LockContentionReport report = profiler.report(10);
+    assertThat(report.getSampleEvery()).isEqualTo(4);
+    assertThat((double) report.getAccounts().get(0).getWaits()).isCloseTo(40_000, within(4_000.0));
+  }
+
+  @Test
+  void endpointReportsTheWaitsOfTransferMetrics() {
+    LockProfilerProperties properties = properties(1, 4);
+    LockContentionProfiler profiler = new LockContentionProfiler(properties);
+    TransferMetrics transferMetrics = new TransferMetrics(new SimpleMeterRegistry(), List.of(), profiler);
+    LockContentionEndpoint endpoint = new LockContentionEndpoint(profiler, properties);
+    for (int i = 0; i < 5; i++) {
+      transferMetrics.recordLockWait(new Account("Id-" + i, BigDecimal.ONE), 1_000L * (i + 1));
+    }
+
+    assertThat(endpoint.report(null).getAccounts()).extracting(ContendedAccount::getAccountId)
+      .containsExactly("Id-4", "Id-3", "Id-2");
+    assertThat(endpoint.report(1).getAccounts()).hasSize(1);
+    endpoint.reset();
+    assertThat(endpoint.report(null).getAccounts()).isEmpty();
+
+    assertThat(endpoint.report(null).getEngine()).isEqualTo("locking");
+
+    LockContentionProfiler disabled = new LockContentionProfiler(new LockProfilerProperties());
+    disabled.recordWait("Id-123", 1_000);
+    assertThat(disabled.report(10).isEnabled()).isFalse();
+    assertThat(disabled.report(10).getAccounts()).isEmpty();
+  }
+}
@@ -0,0 +1,131 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.StripedAccount;
+import com.dws.challenge.service.LockingTransferEngine;
+import com.dws.challenge.service.OptimisticTransferEngine;
+import com.dws.challenge.service.ShardedTransferEngine;
+import com.dws.challenge.service.TransferEngine;
+import com.dws.challenge.service.TransferMetrics;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class MultiLegTransferTest {
+
+  private static TransferEngine engine(String name) {
+    TransferMetrics transferMetrics = new TransferMetrics(new SimpleMeterRegistry(), List.of());
+    return switch (name) {
+      case "locking" -> new LockingTransferEngine(transferMetrics);
+      case "optimistic" -> new OptimisticTransferEngine(2, transferMetrics);
+      case "sharded" -> new ShardedTransferEngine(4, 64);
+      default -> throw new IllegalArgumentException(name);
+    };
+  }
+
+  private static void stop(TransferEngine engine) {
+    if (engine instanceof ShardedTransferEngine sharded) {
+      sharded.shutdown();
+    }
+  }
+
+  @ParameterizedTest
+  @ValueSource(strings = {"locking", "optimistic", "sharded"})
+  void appliesEveryLegOnce(String name) {
+    TransferEngine engine = engine(name);
+    Account accountFrom = new Account("Id-payer", new BigDecimal("100"));
+    Account first = new Account("Id-1", BigDecimal.ZERO);
+    Account second = new Account("Id-2", BigDecimal.ZERO);
+    StripedAccount hot = new StripedAccount("Id-hot", 4);
+
+    engine.transfer(accountFrom, List.of(first, second, first, hot), new long[] {1000, 2000, 500, 1500});
+
+    assertThat(accountFrom.getBalance()).isEqualByComparingTo("50");
+    assertThat(first.getBalance()).isEqualByComparingTo("15");
+    assertThat(second.getBalance()).isEqualByComparingTo("20");
+    assertThat(hot.getBalance()).isEqualByComparingTo("15");
+    stop(engine);
+  }
+
+  @ParameterizedTest
+  @ValueSource(strings = {"locking", "optimistic", "sharded"})
+  void appliesNoLegWhenOneFails(String name) {
+    TransferEngine engine = engine(name);
+    Account accountFrom = new Account("Id-payer", new BigDecimal("100"));
+    Account first = new Account("Id-1", BigDecimal.ZERO);
+    Account full = new Account("Id-full");
+    full.setBalanceMinorUnits(Long.MAX_VALUE - 10);
+
+    assertThatThrownBy(() -> engine.transfer(accountFrom, List.of(first, full), new long[] {1000, 1000}))
+      .isInstanceOf(IllegalArgumentException.class)
+      .hasMessage("Balance overflow");
+    assertThatThrownBy(() -> engine.transfer(accountFrom, List.of(first, first), new long[] {5000, 5001}))
+      .isInstanceOf(IllegalArgumentException.class)
+      .hasMessage("Insufficient balance");
+
+    assertThat(accountFrom.getBalance()).isEqualByComparingTo("100");
+    assertThat(first.getBalance()).isEqualByComparingTo("0");
+    assertThat(full.getBalanceMinorUnits()).isEqualTo(Long.MAX_VALUE - 10);
+    stop(engine);
+  }
+
+  @ParameterizedTest
+  @ValueSource(strings = {"locking", "optimistic", "sharded"})
+  void concurrentFanOutsConserveMoney(String name) throws InterruptedException {
+    TransferEngine engine = engine(name);
+    Account[] accounts = new Account[12];
+    for (int i = 0; i < accounts.length; i++) {
+      accounts[i] = new Account("Id-" + i, BigDecimal.valueOf(1000));
+    }
+
+    // Fan-outs over overlapping accounts in every order, mixed with single transfers
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    for (int i = 0; i < 4_000; i++) {
+      executor.execute(() -> {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Account accountFrom = accounts[random.nextInt(accounts.length)];
+        try {
+          if (random.nextBoolean()) {
+            List<Account> accountsTo = new ArrayList<>();
+            long[] amounts = new long[random.nextInt(1, 5)];
+            for (int leg = 0; leg < amounts.length; leg++) {
+              accountsTo.add(accounts[random.nextInt(accounts.length)]);
+              amounts[leg] = random.nextLong(1, 2_000);
+            }
+            engine.transfer(accountFrom, accountsTo, amounts);
+          } else {
+            Account accountTo = accounts[random.nextInt(accounts.length)];
+            if (accountTo != accountFrom) {
+              engine.transfer(accountFrom, accountTo, random.nextLong(1, 2_000));
+            }
+          }
+        } catch (IllegalArgumentException ex) {
+          // Insufficient balance
+        }
+      });
+    }
+    executor.shutdown();
+    assertThat(executor.awaitTermination(60, TimeUnit.SECONDS)).isTrue();
+
+    long total = 0;
+    for (Account account : accounts) {
+      assertThat(account.getBalanceMinorUnits()).isNotNegative();
+      total += account.getBalanceMinorUnits();
+    }
+    assertThat(total).isEqualTo(accounts.length * 100_000L);
+    stop(engine);
+  }
+}
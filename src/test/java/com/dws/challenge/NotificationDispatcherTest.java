@@ -0,0 +1,172 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.service.NotificationDeadLetterStore;
+import com.dws.challenge.service.NotificationDispatcher;
+import com.dws.challenge.service.NotificationProperties;
+import com.dws.challenge.service.NotificationService;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class NotificationDispatcherTest {
+
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private final NotificationProperties properties = new NotificationProperties();
+  private NotificationDispatcher dispatcher;
+
+  NotificationDispatcherTest() {
+    properties.setWorkers(1);
+    properties.setInitialBackoff(Duration.ofMillis(1));
+  }
+
+  @AfterEach
+  void stopDispatcher() throws InterruptedException {
+    dispatcher.shutdown();
+  }
+
+  @Test
+  void coalescesPendingNotificationsPerAccount() throws InterruptedException {
+    CountDownLatch firstSendStarted = new CountDownLatch(1);
+    CountDownLatch releaseFirstSend = new CountDownLatch(1);
+    List<String> sends = new CopyOnWriteArrayList<>();
+    NotificationService stub = new NotificationService() {
+      @Override
+      public void notifyAboutTransfer(Account account, String transferDescription) {
+        firstSendStarted.countDown();
+        awaitQuietly(releaseFirstSend);
+        sends.add(account.getAccountId() + ":" + transferDescription);
+      }
+
+      @Override
+      public void notifyAboutTransfers(Account account, List<String> transferDescriptions) {
+        sends.add(account.getAccountId() + ":" + String.join(",", transferDescriptions));
+      }
+    };
+    dispatcher = newDispatcher(stub);
+    Account account = new Account("Id-123", BigDecimal.TEN);
+
+    dispatcher.notifyAboutTransfer(account, "first");
+    assertThat(firstSendStarted.await(5, TimeUnit.SECONDS)).isTrue();
+    // The worker is busy, these pile up and go out together
+    dispatcher.notifyAboutTransfer(account, "second");
+    dispatcher.notifyAboutTransfer(account, "third");
+    releaseFirstSend.countDown();
+
+    awaitCount("notifications.sent", 3);
+    assertThat(sends).containsExactly("Id-123:first", "Id-123:second,third");
+  }
+
+  @Test
+  void retriesFailedSendsWithBackoff() {
+    AtomicInteger attempts = new AtomicInteger();
+    dispatcher = newDispatcher((account, description) -> {
+      if (attempts.incrementAndGet() < 3) {
+        throw new IllegalStateException("mail backend unavailable");
+      }
+    });
+
+    dispatcher.notifyAboutTransfer(new Account("Id-123", BigDecimal.TEN), "Money Credited to Id-123");
+
+    awaitCount("notifications.sent", 1);
+    assertThat(attempts).hasValue(3);
+    assertThat(meterRegistry.counter("notifications.retried").count()).isEqualTo(2);
+  }
+
+  @Test
+  void deadLettersNotificationsOnceAttemptsRunOut() {
+    properties.setMaxAttempts(2);
+    NotificationDeadLetterStore deadLetterStore = new NotificationDeadLetterStore(properties);
+    dispatcher = new NotificationDispatcher((account, description) -> {
+      throw new IllegalStateException("mailbox does not exist");
+    }, deadLetterStore, properties, meterRegistry);
+
+    dispatcher.notifyAboutTransfer(new Account("Id-123", BigDecimal.TEN), "Money Credited to Id-123");
+
+    awaitCount("notifications.dead.lettered", 1);
+    assertThat(deadLetterStore.getDeadLetters()).singleElement().satisfies(deadLetter -> {
+      assertThat(deadLetter.accountId()).isEqualTo("Id-123");
+      assertThat(deadLetter.transferDescriptions()).containsExactly("Money Credited to Id-123");
+    });
+  }
+
+  @Test
+  void backsOffWithoutHoldingUpTheWorker() throws InterruptedException {
+    properties.setInitialBackoff(Duration.ofMinutes(10));
+    NotificationDeadLetterStore deadLetterStore = new NotificationDeadLetterStore(properties);
+    List<String> sends = new CopyOnWriteArrayList<>();
+    dispatcher = new NotificationDispatcher((account, description) -> {
+      if (account.getAccountId().equals("Id-123")) {
+        throw new IllegalStateException("mail backend unavailable");
+      }
+      sends.add(description);
+    }, deadLetterStore, properties, meterRegistry);
+
+    dispatcher.notifyAboutTransfer(new Account("Id-123", BigDecimal.TEN), "Money Credited to Id-123");
+    awaitCount("notifications.retried", 1);
+    // The only worker is free while Id-123 waits for its retry
+    dispatcher.notifyAboutTransfer(new Account("Id-456", BigDecimal.TEN), "Money Credited to Id-456");
+    awaitCount("notifications.sent", 1);
+    assertThat(sends).containsExactly("Money Credited to Id-456");
+
+    // A retry not yet due at shutdown is dead-lettered rather than lost
+    dispatcher.shutdown();
+    assertThat(deadLetterStore.getDeadLetters()).singleElement()
+      .satisfies(deadLetter -> assertThat(deadLetter.accountId()).isEqualTo("Id-123"));
+  }
+
+  @Test
+  void dropsNotificationsWhenQueueIsFull() throws InterruptedException {
+    properties.setQueueCapacity(1);
+    properties.setOfferTimeout(Duration.ZERO);
+    CountDownLatch firstSendStarted = new CountDownLatch(1);
+    CountDownLatch releaseSends = new CountDownLatch(1);
+    dispatcher = newDispatcher((account, description) -> {
+      firstSendStarted.countDown();
+      awaitQuietly(releaseSends);
+    });
+    Account account = new Account("Id-123", BigDecimal.TEN);
+
+    dispatcher.notifyAboutTransfer(account, "in flight");
+    assertThat(firstSendStarted.await(5, TimeUnit.SECONDS)).isTrue();
+    dispatcher.notifyAboutTransfer(account, "queued");
+    dispatcher.notifyAboutTransfer(account, "dropped");
+    releaseSends.countDown();
+
+    assertThat(meterRegistry.counter("notifications.dropped").count()).isEqualTo(1);
+    awaitCount("notifications.sent", 2);
+  }
+
+  private NotificationDispatcher newDispatcher(NotificationService notificationService) {
+    return new NotificationDispatcher(notificationService, new NotificationDeadLetterStore(properties), properties,
+      meterRegistry);
+  }
+
+  private void awaitCount(String counter, double expected) {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    while (meterRegistry.counter(counter).count() < expected && System.nanoTime() < deadline) {
+      Thread.onSpinWait();
+    }
+    assertThat(meterRegistry.counter(counter).count()).isEqualTo(expected);
+  }
+
+  private static void awaitQuietly(CountDownLatch latch) {
+    try {
+      latch.await(5, TimeUnit.SECONDS);
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
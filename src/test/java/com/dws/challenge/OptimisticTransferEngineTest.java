@@ -0,0 +1,130 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.junit.jupiter.api.Test;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.service.OptimisticTransferEngine;
+import com.dws.challenge.service.TransferMetrics;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class OptimisticTransferEngineTest {
+
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+  private OptimisticTransferEngine engine(int maxAttempts) {
+    return new OptimisticTransferEngine(maxAttempts, new TransferMetrics(meterRegistry, List.of()));
+  }
+
+  @Test
+  void transferAppliesDebitAndCredit() {
+    Account accountFrom = new Account("Id-123", BigDecimal.valueOf(100));
+    Account accountTo = new Account("Id-234", BigDecimal.valueOf(50));
+
+    engine(8).transfer(accountFrom, accountTo, 1000);
+
+    assertThat(accountFrom.getBalance()).isEqualByComparingTo("90");
+    assertThat(accountTo.getBalance()).isEqualByComparingTo("60");
+    assertThat(accountFrom.getVersion()).isEqualTo(2);
+    assertThat(accountTo.getVersion()).isEqualTo(2);
+  }
+
+  @Test
+  void lockedPathReportsLockWaits() throws InterruptedException {
+    Account account = new Account("Id-123", BigDecimal.valueOf(100));
+    OptimisticTransferEngine engine = engine(8);
+
+    account.lock();
+    Thread debit = new Thread(() -> engine.debit(account, 1000));
+    try {
+      debit.start();
+      // Until the debit queues up behind the lock held here
+      while (!((ReentrantLock) account.getLock()).hasQueuedThreads()) {
+        Thread.sleep(1);
+      }
+    } finally {
+      account.unlock();
+    }
+    debit.join();
+
+    assertThat(account.getBalance()).isEqualByComparingTo("90");
+    assertThat(meterRegistry.get("transfers.lock.wait").timer().count()).isEqualTo(1);
+  }
+
+  @Test
+  void transferRejectsInsufficientBalance() {
+    Account accountFrom = new Account("Id-123", BigDecimal.valueOf(100));
+    Account accountTo = new Account("Id-234", BigDecimal.valueOf(50));
+
+    assertThatThrownBy(() -> engine(8).transfer(accountFrom, accountTo, 100_000))
+      .isInstanceOf(IllegalArgumentException.class)
+      .hasMessage("Insufficient balance");
+    assertThat(accountFrom.getBalance()).isEqualByComparingTo("100");
+    assertThat(accountTo.getBalance()).isEqualByComparingTo("50");
+    assertThat(accountFrom.getVersion()).isZero();
+  }
+
+  @Test
+  void transferToSameAccountOnlyChecksFunds() {
+    Account account = new Account("Id-123", BigDecimal.valueOf(100));
+
+    engine(8).transfer(account, account, 1000);
+    assertThatThrownBy(() -> engine(8).transfer(account, account, 100_000)).hasMessage("Insufficient balance");
+    assertThat(account.getBalance()).isEqualByComparingTo("100");
+  }
+
+  @Test
+  void concurrentTransfersConserveMoneyAndNeverOverdraw() throws InterruptedException {
+    // A single attempt and few accounts force plenty of conflicts, so both paths run concurrently
+    OptimisticTransferEngine engine = engine(1);
+    Account[] accounts = new Account[4];
+    for (int i = 0; i < accounts.length; i++) {
+      accounts[i] = new Account("Id-" + i, BigDecimal.valueOf(1000));
+    }
+
+    int threads = 8;
+    CountDownLatch start = new CountDownLatch(1);
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    for (int t = 0; t < threads; t++) {
+      executor.execute(() -> {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        try {
+          start.await();
+        } catch (InterruptedException ex) {
+          return;
+        }
+        for (int i = 0; i < 20_000; i++) {
+          try {
+            engine.transfer(accounts[random.nextInt(accounts.length)], accounts[random.nextInt(accounts.length)],
+              random.nextInt(1, 50_000));
+          } catch (IllegalArgumentException ex) {
+            // Insufficient balance is expected under random load
+          }
+        }
+      });
+    }
+    start.countDown();
+    executor.shutdown();
+    assertThat(executor.awaitTermination(60, TimeUnit.SECONDS)).isTrue();
+
+    BigDecimal total = BigDecimal.ZERO;
+    for (Account account : accounts) {
+      assertThat(account.getBalance().signum()).isGreaterThanOrEqualTo(0);
+      assertThat(account.getVersion() & 1).isZero();
+      total = total.add(account.getBalance());
+    }
+    assertThat(total).isEqualByComparingTo("4000");
+  }
+}
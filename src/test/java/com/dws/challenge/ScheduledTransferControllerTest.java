@@ -0,0 +1,122 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static org.springframework.test.web.servlet.setup.MockMvcBuilders.webAppContextSetup;
+
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.context.web.WebAppConfiguration;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.web.context.WebApplicationContext;
+
+import com.dws.challenge.domain.ScheduledTransfer;
+import com.dws.challenge.service.AccountsService;
+import com.dws.challenge.service.TransferScheduler;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest
+@WebAppConfiguration
+class ScheduledTransferControllerTest {
+
+  private MockMvc mockMvc;
+
+  @Autowired
+  private AccountsService accountsService;
+
+  @Autowired
+  private TransferScheduler transferScheduler;
+
+  @Autowired
+  private ObjectMapper objectMapper;
+
+  @Autowired
+  private WebApplicationContext webApplicationContext;
+
+  @BeforeEach
+  void prepareMockMvc() {
+    this.mockMvc = webAppContextSetup(this.webApplicationContext).build();
+  }
+
+  @Test
+  void runsAScheduledTransferWhenItIsDue() throws Exception {
+    String accountId = "Id-scheduled-" + System.nanoTime();
+    createAccount(accountId, 100);
+    createAccount(accountId + "-to", 0);
+
+    String created = this.mockMvc.perform(post("/v1/accounts/" + accountId + "/scheduled-transfers")
+        .contentType(MediaType.APPLICATION_JSON)
+        .content("{\"accountToId\":\"" + accountId + "-to\",\"amount\":10,\"executeAt\":\"" + Instant.now().plusMillis(100)
+          + "\",\"interval\":\"PT0.1S\",\"executions\":2}"))
+      .andExpect(status().isCreated())
+      .andExpect(jsonPath("$.status").value("ACTIVE"))
+      .andExpect(jsonPath("$.amount").value(10))
+      .andExpect(jsonPath("$.interval").value("PT0.1S"))
+      .andReturn().getResponse().getContentAsString();
+    String id = this.objectMapper.readTree(created).get("id").asText();
+
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+    while (this.transferScheduler.getScheduledTransfer(accountId, id).status() != ScheduledTransfer.Status.COMPLETED
+      && System.nanoTime() < deadline) {
+      Thread.sleep(20);
+    }
+    this.mockMvc.perform(get("/v1/accounts/" + accountId + "/scheduled-transfers/" + id))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$.status").value("COMPLETED"))
+      .andExpect(jsonPath("$.executions").value(2))
+      .andExpect(jsonPath("$.lastResult").value("SUCCESS"));
+    assertThat(this.accountsService.getAccount(accountId).getBalance()).isEqualByComparingTo("80.00");
+    assertThat(this.accountsService.getAccount(accountId + "-to").getBalance()).isEqualByComparingTo("20.00");
+  }
+
+  @Test
+  void cancelsAndListsScheduledTransfers() throws Exception {
+    String accountId = "Id-scheduled-" + System.nanoTime();
+    createAccount(accountId, 100);
+    createAccount(accountId + "-to", 0);
+
+    String created = this.mockMvc.perform(post("/v1/accounts/" + accountId + "/scheduled-transfers")
+        .contentType(MediaType.APPLICATION_JSON)
+        .content("{\"accountToId\":\"" + accountId + "-to\",\"amount\":10,\"executeAt\":\"2099-01-31T09:00:00Z\","
+          + "\"interval\":\"P1M\"}"))
+      .andExpect(status().isCreated())
+      .andReturn().getResponse().getContentAsString();
+    String id = this.objectMapper.readTree(created).get("id").asText();
+
+    this.mockMvc.perform(delete("/v1/accounts/" + accountId + "/scheduled-transfers/" + id))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$.status").value("CANCELLED"));
+    this.mockMvc.perform(get("/v1/accounts/" + accountId + "/scheduled-transfers"))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$[0].id").value(id))
+      .andExpect(jsonPath("$[0].status").value("CANCELLED"));
+    this.mockMvc.perform(delete("/v1/accounts/" + accountId + "/scheduled-transfers/unknown"))
+      .andExpect(status().isNotFound());
+
+    this.mockMvc.perform(post("/v1/accounts/" + accountId + "/scheduled-transfers")
+        .contentType(MediaType.APPLICATION_JSON)
+        .content("{\"accountToId\":\"" + accountId + "-to\",\"amount\":10}"))
+      .andExpect(status().isBadRequest())
+      .andExpect(content().string("The time of the first transfer must be given"));
+  }
+
+  private void createAccount(String accountId, int balance) throws Exception {
+    this.mockMvc.perform(post("/v1/accounts").contentType(MediaType.APPLICATION_JSON)
+        .content("{\"accountId\":\"" + accountId + "\",\"balance\":" + balance + "}"))
+      .andExpect(status().isCreated());
+  }
+}
@@ -0,0 +1,111 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.service.ShardedTransferEngine;
+
+class ShardedTransferEngineTest {
+
+  private final ShardedTransferEngine engine = new ShardedTransferEngine(4, 64);
+
+  @AfterEach
+  void stopEngine() {
+    engine.shutdown();
+  }
+
+  @Test
+  void transferAppliesDebitAndCredit() {
+    Account accountFrom = new Account("Id-123", BigDecimal.valueOf(100));
+    Account accountTo = new Account("Id-234", BigDecimal.valueOf(50));
+
+    engine.transfer(accountFrom, accountTo, 1000);
+
+    assertThat(accountFrom.getBalance()).isEqualByComparingTo("90");
+    assertThat(accountTo.getBalance()).isEqualByComparingTo("60");
+  }
+
+  @Test
+  void transferRejectsInsufficientBalance() {
+    Account accountFrom = new Account("Id-123", BigDecimal.valueOf(100));
+    Account accountTo = new Account("Id-234", BigDecimal.valueOf(50));
+
+    assertThatThrownBy(() -> engine.transfer(accountFrom, accountTo, 100_000))
+      .isInstanceOf(IllegalArgumentException.class)
+      .hasMessage("Insufficient balance");
+    assertThat(accountFrom.getBalance()).isEqualByComparingTo("100");
+    assertThat(accountTo.getBalance()).isEqualByComparingTo("50");
+  }
+
+  @Test
+  void anErrorFailsTheTransferAndLeavesTheShardRunning() {
+    Account accountFrom = new Account("Id-123", BigDecimal.valueOf(100));
+    Account accountTo = new Account("Id-234", BigDecimal.valueOf(50));
+
+    assertThatThrownBy(() -> engine.transfer(accountFrom, accountTo, 1000, 1000, () -> {
+      throw new StackOverflowError();
+    })).isInstanceOf(StackOverflowError.class);
+
+    // The shards that ran it still take commands
+    assertTimeoutPreemptively(Duration.ofSeconds(5), () -> engine.transfer(accountTo, accountFrom, 1000));
+  }
+
+  @Test
+  void refusesTransfersOnceShutDown() {
+    Account accountFrom = new Account("Id-123", BigDecimal.valueOf(100));
+    Account accountTo = new Account("Id-234", BigDecimal.valueOf(50));
+    engine.shutdown();
+
+    assertThatThrownBy(() -> engine.transfer(accountFrom, accountTo, 1000))
+      .isInstanceOf(IllegalStateException.class)
+      .hasMessage("Transfer shard is stopped");
+    assertThatThrownBy(() -> engine.transfer(accountFrom, List.of(accountTo), new long[] {1000}, new long[] {1000},
+      () -> {
+      }))
+      .isInstanceOf(IllegalStateException.class);
+    assertThat(accountFrom.getBalance()).isEqualByComparingTo("100");
+  }
+
+  @Test
+  void concurrentTransfersConserveMoney() throws InterruptedException {
+    Account[] accounts = new Account[16];
+    for (int i = 0; i < accounts.length; i++) {
+      accounts[i] = new Account("Id-" + i, BigDecimal.valueOf(1000));
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    for (int i = 0; i < 10_000; i++) {
+      executor.execute(() -> {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        try {
+          engine.transfer(accounts[random.nextInt(accounts.length)], accounts[random.nextInt(accounts.length)],
+            random.nextInt(1, 20_000));
+        } catch (IllegalArgumentException ex) {
+          // Insufficient balance is expected under random load
+        }
+      });
+    }
+    executor.shutdown();
+    assertThat(executor.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+
+    BigDecimal total = BigDecimal.ZERO;
+    for (Account account : accounts) {
+      assertThat(account.getBalance().signum()).isGreaterThanOrEqualTo(0);
+      total = total.add(account.getBalance());
+    }
+    assertThat(total).isEqualByComparingTo("16000");
+  }
+}
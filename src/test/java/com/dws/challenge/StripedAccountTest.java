@@ -0,0 +1,120 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.StripedAccount;
+import com.dws.challenge.service.LockingTransferEngine;
+import com.dws.challenge.service.OptimisticTransferEngine;
+import com.dws.challenge.service.TransferEngine;
+import com.dws.challenge.service.TransferMetrics;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class StripedAccountTest {
+
+  private final TransferMetrics transferMetrics = new TransferMetrics(new SimpleMeterRegistry(), List.of());
+
+  @Test
+  void debitDrawsFromEveryCell() throws InterruptedException {
+    StripedAccount account = new StripedAccount("Id-hot", 4);
+    assertThat(account.getCellCount()).isEqualTo(4);
+
+    // Credits from different threads land in different cells
+    Thread[] threads = new Thread[4];
+    for (int i = 0; i < threads.length; i++) {
+      threads[i] = new Thread(() -> account.credit(100));
+      threads[i].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertThat(account.getBalance()).isEqualByComparingTo("4");
+
+    account.debit(350);
+    assertThat(account.getBalanceMinorUnits()).isEqualTo(50);
+    assertThatThrownBy(() -> account.debit(51))
+      .isInstanceOf(IllegalArgumentException.class)
+      .hasMessage("Insufficient balance");
+    assertThat(account.getBalanceMinorUnits()).isEqualTo(50);
+  }
+
+  @Test
+  void creditsNeverOverflowTheSumOfTheCells() throws InterruptedException {
+    StripedAccount account = new StripedAccount("Id-hot", 4);
+    account.setBalanceMinorUnits(Long.MAX_VALUE - 1000);
+
+    // Each thread's cell has room of its own, the sum of the cells does not
+    Thread[] threads = new Thread[4];
+    for (int i = 0; i < threads.length; i++) {
+      threads[i] = new Thread(() -> assertThatThrownBy(() -> account.credit(1001))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessage("Balance overflow"));
+      threads[i].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertThat(account.getBalanceMinorUnits()).isEqualTo(Long.MAX_VALUE - 1000);
+
+    account.debit(Long.MAX_VALUE / 2);
+    account.credit(1000);
+    assertThat(account.getBalanceMinorUnits()).isEqualTo(Long.MAX_VALUE - Long.MAX_VALUE / 2);
+  }
+
+  @Test
+  void lockingEngineConservesMoneyThroughStripedAccount() throws InterruptedException {
+    assertTransfersConserveMoney(new LockingTransferEngine(transferMetrics));
+  }
+
+  @Test
+  void optimisticEngineConservesMoneyThroughStripedAccount() throws InterruptedException {
+    assertTransfersConserveMoney(new OptimisticTransferEngine(2, transferMetrics));
+  }
+
+  // Mostly credits into the striped account, with debits out of it racing against them
+  private static void assertTransfersConserveMoney(TransferEngine engine) throws InterruptedException {
+    Account hot = StripedAccount.copyOf(new Account("Id-hot", BigDecimal.valueOf(1000)), 8);
+    Account[] accounts = new Account[8];
+    for (int i = 0; i < accounts.length; i++) {
+      accounts[i] = new Account("Id-" + i, BigDecimal.valueOf(1000));
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    for (int i = 0; i < 20_000; i++) {
+      executor.execute(() -> {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Account other = accounts[random.nextInt(accounts.length)];
+        try {
+          if (random.nextInt(4) == 0) {
+            engine.transfer(hot, other, random.nextInt(1, 50_000));
+          } else {
+            engine.transfer(other, hot, random.nextInt(1, 5_000));
+          }
+        } catch (IllegalArgumentException ex) {
+          // Insufficient balance is expected under random load
+        }
+      });
+    }
+    executor.shutdown();
+    assertThat(executor.awaitTermination(60, TimeUnit.SECONDS)).isTrue();
+
+    BigDecimal total = hot.getBalance();
+    assertThat(hot.getBalance().signum()).isGreaterThanOrEqualTo(0);
+    for (Account account : accounts) {
+      assertThat(account.getBalance().signum()).isGreaterThanOrEqualTo(0);
+      total = total.add(account.getBalance());
+    }
+    assertThat(total).isEqualByComparingTo("9000");
+  }
+}
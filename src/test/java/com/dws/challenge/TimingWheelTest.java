@@ -0,0 +1,96 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.Test;
+
+import com.dws.challenge.service.TimingWheel;
+
+class TimingWheelTest {
+
+  @Test
+  void expiresEachTimeoutOnItsTickAcrossLevels() {
+    long start = 1_700_000_000_000L;
+    TimingWheel<Long> wheel = new TimingWheel<>(10, 4, start);
+    // Within level 0, a few level-1 and level-2 slots ahead, and a deadline already passed
+    long[] delays = {30, 5_110, 5_130, 2_621_440, 2_621_450, 40_000_000, -500};
+    for (long delay : delays) {
+      wheel.schedule(start + delay, delay);
+    }
+    assertThat(wheel.size()).isEqualTo(delays.length);
+
+    Map<Long, Long> expiredAt = new HashMap<>();
+    for (long now = start; now <= start + 40_000_000; now += 10) {
+      long at = now;
+      wheel.advance(now, delay -> expiredAt.put(delay, at - start));
+    }
+    assertThat(wheel.size()).isZero();
+    for (long delay : delays) {
+      assertThat(expiredAt.get(delay)).isEqualTo(Math.max(delay, 10));
+    }
+  }
+
+  @Test
+  void cancelledTimeoutsNeverExpire() {
+    TimingWheel<String> wheel = new TimingWheel<>(10, 4, 0);
+    TimingWheel.Timeout<String> cancelled = wheel.schedule(100_000, "cancelled");
+    TimingWheel.Timeout<String> kept = wheel.schedule(100_000, "kept");
+
+    assertThat(wheel.cancel(cancelled)).isTrue();
+    assertThat(wheel.cancel(cancelled)).isFalse();
+    List<String> expired = new ArrayList<>();
+    wheel.advance(200_000, expired::add);
+    assertThat(expired).containsExactly("kept");
+    assertThat(kept.isPending()).isFalse();
+    assertThat(wheel.cancel(kept)).isFalse();
+  }
+
+  @Test
+  void timeoutsBeyondTheSpanWaitAndExpireOnTime() {
+    // One level of 512 ticks
+    TimingWheel<Integer> wheel = new TimingWheel<>(1, 1, 0);
+    wheel.schedule(2_000, 1);
+    wheel.schedule(511, 2);
+
+    List<Integer> expired = new ArrayList<>();
+    wheel.advance(1_999, expired::add);
+    assertThat(expired).containsExactly(2);
+    wheel.advance(2_000, expired::add);
+    assertThat(expired).containsExactly(2, 1);
+  }
+
+  @Test
+  void expiresEachTimeoutInTheAdvanceThatReachesItsTick() {
+    SplittableRandom random = new SplittableRandom(42);
+    TimingWheel<long[]> wheel = new TimingWheel<>(10, 3, 0);
+    List<TimingWheel.Timeout<long[]>> timeouts = new ArrayList<>();
+    List<long[]> misplaced = new ArrayList<>();
+    long now = 0;
+    for (int round = 0; round < 2_000; round++) {
+      for (int i = 0; i < 10; i++) {
+        long deadline = now + random.nextLong(30_000_000);
+        // The tick it is due on: rounded up, and never the current one
+        long tick = Math.max(-Math.floorDiv(-deadline, 10), Math.floorDiv(now, 10) + 1);
+        timeouts.add(wheel.schedule(deadline, new long[] {tick}));
+      }
+      if (round % 3 == 0) {
+        wheel.cancel(timeouts.get(random.nextInt(timeouts.size())));
+      }
+      long previousTick = Math.floorDiv(now, 10);
+      now += random.nextLong(20_000);
+      long currentTick = Math.floorDiv(now, 10);
+      wheel.advance(now, tick -> {
+        if (tick[0] <= previousTick || tick[0] > currentTick) {
+          misplaced.add(tick);
+        }
+      });
+    }
+    assertThat(misplaced).isEmpty();
+  }
+}
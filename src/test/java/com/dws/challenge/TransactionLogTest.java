@@ -0,0 +1,115 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import com.dws.challenge.domain.Transaction;
+import com.dws.challenge.repository.TransactionLog;
+
+class TransactionLogTest {
+
+  @Test
+  void chainsTransactionsPerAccountNewestFirst() {
+    TransactionLog log = new TransactionLog(4, 4);
+    log.append("Id-A", "Id-B", 100, 100);
+    log.append("Id-C", "Id-D", 200, 200);
+    log.append("Id-B", "Id-A", 300, 300);
+    log.append("Id-A", "Id-A", 400, 400);
+
+    List<Transaction> page = new ArrayList<>();
+    long next = log.visit("Id-A", log.newest("Id-A"), 2, page::add);
+    assertThat(page).extracting(Transaction::amountMinorUnits).containsExactly(400L, 300L);
+    assertThat(log.involves(next, "Id-A")).isTrue();
+    assertThat(log.involves(next, "Id-C")).isFalse();
+
+    page.clear();
+    assertThat(log.visit("Id-A", next, 10, page::add)).isEqualTo(TransactionLog.NO_TRANSACTION);
+    assertThat(page).singleElement().satisfies(transaction -> {
+      assertThat(transaction.accountFromId()).isEqualTo("Id-A");
+      assertThat(transaction.accountToId()).isEqualTo("Id-B");
+      assertThat(transaction.getAmount()).isEqualByComparingTo("1.00");
+    });
+
+    assertThat(log.newest("Id-unknown")).isEqualTo(TransactionLog.NO_TRANSACTION);
+  }
+
+  @Test
+  void visitsOnlyTransactionsBetweenTheBounds() throws InterruptedException {
+    TransactionLog log = new TransactionLog(4, 8);
+    for (int i = 0; i < 6; i++) {
+      log.append("Id-A", "Id-B", i, i);
+    }
+    Thread.sleep(5);
+    long since = System.currentTimeMillis();
+    Thread.sleep(5);
+    for (int i = 6; i < 9; i++) {
+      log.append("Id-A", "Id-B", i, i);
+    }
+    Thread.sleep(5);
+    long until = System.currentTimeMillis();
+    Thread.sleep(5);
+    log.append("Id-A", "Id-B", 9, 9);
+
+    List<Transaction> page = new ArrayList<>();
+    long next = log.visit("Id-A", log.newest("Id-A"), 2, since, until, page::add);
+    assertThat(page).extracting(Transaction::amountMinorUnits).containsExactly(8L, 7L);
+
+    // The first chunk holds only older transactions, the walk ends at it rather than stepping through it
+    page.clear();
+    assertThat(log.visit("Id-A", next, 10, since, until, page::add)).isEqualTo(TransactionLog.NO_TRANSACTION);
+    assertThat(page).extracting(Transaction::amountMinorUnits).containsExactly(6L);
+
+    page.clear();
+    log.visit("Id-A", log.newest("Id-A"), 20, Long.MIN_VALUE, since, page::add);
+    assertThat(page).extracting(Transaction::amountMinorUnits).containsExactly(5L, 4L, 3L, 2L, 1L, 0L);
+  }
+
+  @Test
+  void forgetsChunksThatFallOutOfTheRing() {
+    // Three chunks of four records: the thirteenth transaction recycles the first chunk
+    TransactionLog log = new TransactionLog(4, 3);
+    for (int i = 0; i < 13; i++) {
+      log.append("Id-A", "Id-B", i, i);
+    }
+
+    List<Transaction> page = new ArrayList<>();
+    assertThat(log.visit("Id-B", log.newest("Id-B"), 20, page::add)).isEqualTo(TransactionLog.NO_TRANSACTION);
+    assertThat(page).extracting(Transaction::amountMinorUnits).containsExactly(12L, 11L, 10L, 9L, 8L, 7L, 6L, 5L, 4L);
+  }
+
+  @Test
+  void concurrentAppendsKeepEveryChainComplete() throws InterruptedException {
+    TransactionLog log = new TransactionLog(1024, 64);
+    int threads = 8;
+    int perThread = 5_000;
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    for (int t = 0; t < threads; t++) {
+      int thread = t;
+      executor.execute(() -> {
+        for (int i = 0; i < perThread; i++) {
+          log.append("Id-shared", "Id-" + thread, 1, 1);
+        }
+      });
+    }
+    executor.shutdown();
+    assertThat(executor.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+
+    Set<Long> ids = new HashSet<>();
+    long next = log.visit("Id-shared", log.newest("Id-shared"), Integer.MAX_VALUE, transaction -> ids.add(transaction.id()));
+    assertThat(next).isEqualTo(TransactionLog.NO_TRANSACTION);
+    assertThat(ids).hasSize(threads * perThread);
+
+    List<Transaction> own = new ArrayList<>();
+    log.visit("Id-3", log.newest("Id-3"), Integer.MAX_VALUE, own::add);
+    assertThat(own).hasSize(perThread).allSatisfy(transaction -> assertThat(transaction.accountToId()).isEqualTo("Id-3"));
+  }
+}
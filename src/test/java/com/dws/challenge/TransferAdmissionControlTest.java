@@ -0,0 +1,123 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.dws.challenge.exception.TransferRejectedException;
+import com.dws.challenge.service.TransferAdmissionControl;
+import com.dws.challenge.service.TransferAdmissionProperties;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class TransferAdmissionControlTest {
+
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+  private TransferAdmissionControl admissionControl(int maxInFlight, int accountBurst, int clientBurst) {
+    TransferAdmissionProperties properties = new TransferAdmissionProperties();
+    properties.setMaxInFlight(maxInFlight);
+    properties.setAccountRate(0.001);
+    properties.setAccountBurst(accountBurst);
+    properties.setClientRate(0.001);
+    properties.setClientBurst(clientBurst);
+    properties.setBuckets(1024);
+    return new TransferAdmissionControl(properties, meterRegistry);
+  }
+
+  private double rejected(String limit) {
+    return meterRegistry.counter("transfers.rejected", "limit", limit).count();
+  }
+
+  @Test
+  void capsTransfersInFlight() {
+    TransferAdmissionControl admissionControl = admissionControl(2, 100, 100);
+    TransferAdmissionControl.Permit first = admissionControl.admit("client", List.of("Id-1"));
+    TransferAdmissionControl.Permit second = admissionControl.admit("client", List.of("Id-2"));
+
+    assertThatThrownBy(() -> admissionControl.admit("client", List.of("Id-3")))
+      .isInstanceOf(TransferRejectedException.class)
+      .hasMessage("Too many transfers in flight");
+    assertThat(rejected("in_flight")).isEqualTo(1);
+
+    first.release();
+    admissionControl.admit("client", List.of("Id-3")).release();
+    second.release();
+  }
+
+  @Test
+  void chargesEachTransferOfABatchAgainstTheInFlightCap() {
+    TransferAdmissionControl admissionControl = admissionControl(3, 100, 100);
+    TransferAdmissionControl.Permit batch = admissionControl.admit("client", List.of("Id-1", "Id-2"));
+
+    assertThatThrownBy(() -> admissionControl.admit("client", List.of("Id-3", "Id-4")))
+      .hasMessage("Too many transfers in flight");
+    TransferAdmissionControl.Permit single = admissionControl.admit("client", List.of("Id-3"));
+    assertThatThrownBy(() -> admissionControl.admit("client", List.of("Id-4")))
+      .hasMessage("Too many transfers in flight");
+
+    batch.release();
+    admissionControl.admit("client", List.of("Id-4", "Id-5")).release();
+    single.release();
+
+    // A batch larger than the cap would never be admitted
+    assertThatThrownBy(() -> admissionControl.admit("client", List.of("Id-1", "Id-2", "Id-3", "Id-4")))
+      .isInstanceOf(IllegalArgumentException.class)
+      .hasMessage("A request may hold at most 3 transfers");
+  }
+
+  @Test
+  void limitsEachAccountAndClientSeparately() {
+    TransferAdmissionControl admissionControl = admissionControl(100, 2, 5);
+    admissionControl.admit("client-1", List.of("Id-hot")).release();
+    admissionControl.admit("client-1", List.of("Id-hot")).release();
+
+    assertThatThrownBy(() -> admissionControl.admit("client-1", List.of("Id-hot")))
+      .isInstanceOfSatisfying(TransferRejectedException.class, ex ->
+        assertThat(ex.getRetryAfter()).isPositive())
+      .hasMessage("Transfer rate limit exceeded for account Id-hot");
+    assertThat(rejected("account")).isEqualTo(1);
+
+    // Other accounts are not affected, until the client runs out of its own budget
+    admissionControl.admit("client-1", List.of("Id-cold")).release();
+    assertThatThrownBy(() -> admissionControl.admit("client-1", List.of("Id-a", "Id-b", "Id-c")))
+      .hasMessage("Transfer rate limit exceeded for client client-1");
+    admissionControl.admit("client-2", List.of("Id-other")).release();
+  }
+
+  @Test
+  void chargesEachSourceOfABatchOnce() {
+    TransferAdmissionControl admissionControl = admissionControl(100, 2, 100);
+    admissionControl.admit("client", List.of("Id-hot", "Id-hot", "Id-hot", "Id-cold")).release();
+    admissionControl.admit("client", List.of("Id-hot", "Id-hot")).release();
+
+    assertThatThrownBy(() -> admissionControl.admit("client", List.of("Id-hot")))
+      .hasMessage("Transfer rate limit exceeded for account Id-hot");
+  }
+
+  @Test
+  void refundsTheTokensOfARejectedRequest() {
+    TransferAdmissionControl admissionControl = admissionControl(100, 1, 3);
+    admissionControl.admit("client", List.of("Id-hot")).release();
+
+    // Id-cold and the client are charged before Id-hot turns the request away, and get their tokens back
+    for (int i = 0; i < 5; i++) {
+      assertThatThrownBy(() -> admissionControl.admit("client", List.of("Id-cold", "Id-hot")))
+        .hasMessage("Transfer rate limit exceeded for account Id-hot");
+    }
+    admissionControl.admit("client", List.of("Id-cold", "Id-other")).release();
+  }
+
+  @Test
+  void refusesRequestsLargerThanTheClientBurst() {
+    TransferAdmissionControl admissionControl = admissionControl(100, 10, 3);
+
+    assertThatThrownBy(() -> admissionControl.admit("client", List.of("Id-1", "Id-2", "Id-3", "Id-4")))
+      .isInstanceOf(IllegalArgumentException.class)
+      .hasMessage("A request may hold at most 3 transfers");
+    admissionControl.admit("client", List.of("Id-1", "Id-2", "Id-3")).release();
+  }
+}
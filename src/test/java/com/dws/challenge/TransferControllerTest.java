@@ -1,27 +1,52 @@
 package com.dws.challenge;
 
+import static org.hamcrest.Matchers.containsString;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import java.math.BigDecimal;
+import java.util.List;
 
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
+import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
+import com.dws.challenge.dto.MultiTransferRequest;
+import com.dws.challenge.dto.TransferLeg;
 import com.dws.challenge.dto.TransferRequest;
+import com.dws.challenge.dto.TransferResult;
 import com.dws.challenge.service.AccountsService;
+import com.dws.challenge.service.ClusterClient;
+import com.dws.challenge.service.ClusterProperties;
+import com.dws.challenge.service.ClusterRouter;
+import com.dws.challenge.service.TransferAdmissionControl;
+import com.dws.challenge.service.TransferAdmissionProperties;
 import com.dws.challenge.service.TransferService;
+import com.dws.challenge.web.BinaryTransferCodec;
+import com.dws.challenge.web.ClusterForwarder;
 import com.dws.challenge.web.TransferController;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
 @WebMvcTest(TransferController.class)
+@Import({TransferAdmissionControl.class, TransferAdmissionProperties.class, SimpleMeterRegistry.class,
+    ClusterForwarder.class, ClusterRouter.class, ClusterClient.class, ClusterProperties.class})
+@TestPropertySource(properties = {"transfer.admission.account-rate=1", "transfer.admission.account-burst=20"})
 public class TransferControllerTest {
 
     @Autowired
@@ -45,7 +70,7 @@ public class TransferControllerTest {
                 .content(asJsonString(transferRequest)))
                 .andExpect(status().isOk());
 
-        verify(transferService).transferMoney(transferRequest);
+        verify(transferService).transferMoney(transferRequest, "127.0.0.1");
     }
 
     @Test
@@ -55,7 +80,7 @@ public class TransferControllerTest {
         transferRequest.setAccountToId("toAccountId");
         transferRequest.setAmount(BigDecimal.valueOf(1000)); // Assuming insufficient balance
 
-        doThrow(new IllegalArgumentException("Insufficient balance")).when(transferService).transferMoney(transferRequest);
+        doThrow(new IllegalArgumentException("Insufficient balance")).when(transferService).transferMoney(transferRequest, "127.0.0.1");
 
         mockMvc.perform(post("/v1/transfers")
                 .contentType(MediaType.APPLICATION_JSON_VALUE)
@@ -63,7 +88,7 @@ public class TransferControllerTest {
                 .andExpect(status().isBadRequest())
                 .andExpect(content().string("Insufficient balance"));
 
-        verify(transferService).transferMoney(transferRequest);
+        verify(transferService).transferMoney(transferRequest, "127.0.0.1");
     }
     
     @Test
@@ -72,6 +97,151 @@ public class TransferControllerTest {
         .andExpect(status().isBadRequest());
     }
 
+    @Test
+    void transferWithIdempotencyKeyHeader() throws Exception {
+        TransferRequest transferRequest = new TransferRequest();
+        transferRequest.setAccountFromId("fromAccountId");
+        transferRequest.setAccountToId("toAccountId");
+        transferRequest.setAmount(BigDecimal.TEN);
+
+        mockMvc.perform(post("/v1/transfers")
+                .contentType(MediaType.APPLICATION_JSON_VALUE)
+                .header("Idempotency-Key", "key-1")
+                .header("X-Client-Id", "client-1")
+                .content(asJsonString(transferRequest)))
+                .andExpect(status().isOk());
+
+        // The key is scoped to the client that sent it
+        transferRequest.setIdempotencyKey("key-1");
+        verify(transferService).transferMoney(transferRequest, "client-1");
+    }
+
+    @Test
+    void transferBatch() throws Exception {
+        TransferRequest transferRequest = new TransferRequest();
+        transferRequest.setAccountFromId("fromAccountId");
+        transferRequest.setAccountToId("toAccountId");
+        transferRequest.setAmount(BigDecimal.TEN);
+        List<TransferRequest> batch = List.of(transferRequest, transferRequest);
+
+        when(transferService.transferMoneyBatch(batch, "127.0.0.1")).thenReturn(List.of(
+                TransferResult.success(0), TransferResult.failed(1, "Insufficient balance")));
+
+        mockMvc.perform(post("/v1/transfers/batch")
+                .contentType(MediaType.APPLICATION_JSON_VALUE)
+                .content(asJsonString(batch)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].status").value("SUCCESS"))
+                .andExpect(jsonPath("$[1].status").value("FAILED"))
+                .andExpect(jsonPath("$[1].message").value("Insufficient balance"));
+    }
+
+    @Test
+    void transferBatchWithAnInvalidTransfer() throws Exception {
+        TransferRequest transferRequest = new TransferRequest();
+        transferRequest.setAccountFromId("fromAccountId");
+        transferRequest.setAccountToId("toAccountId");
+        transferRequest.setAmount(BigDecimal.TEN);
+        TransferRequest noAmount = new TransferRequest();
+        noAmount.setAccountFromId("fromAccountId");
+        noAmount.setAccountToId("toAccountId");
+
+        mockMvc.perform(post("/v1/transfers/batch")
+                .contentType(MediaType.APPLICATION_JSON_VALUE)
+                .content(asJsonString(List.of(transferRequest, noAmount))))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string(containsString("transferRequests[1].amount")));
+
+        verify(transferService, never()).transferMoneyBatch(any(), any());
+    }
+
+    @Test
+    void transferMulti() throws Exception {
+        MultiTransferRequest transferRequest = new MultiTransferRequest();
+        transferRequest.setAccountFromId("fromAccountId");
+        transferRequest.setLegs(List.of(new TransferLeg("toAccountId", BigDecimal.TEN),
+                new TransferLeg("otherAccountId", BigDecimal.ONE)));
+
+        mockMvc.perform(post("/v1/transfers/multi")
+                .contentType(MediaType.APPLICATION_JSON_VALUE)
+                .content(asJsonString(transferRequest)))
+                .andExpect(status().isOk());
+        verify(transferService).transferMoneyMulti(transferRequest);
+
+        doThrow(new IllegalArgumentException("Insufficient balance")).when(transferService)
+                .transferMoneyMulti(transferRequest);
+        mockMvc.perform(post("/v1/transfers/multi")
+                .contentType(MediaType.APPLICATION_JSON_VALUE)
+                .content(asJsonString(transferRequest)))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string("Insufficient balance"));
+    }
+
+    @Test
+    void transferBinary() throws Exception {
+        TransferRequest transferRequest = new TransferRequest();
+        transferRequest.setAccountFromId("fromAccountId");
+        transferRequest.setAccountToId("toAccountId");
+        transferRequest.setAmount(new BigDecimal("10.25"));
+
+        mockMvc.perform(post("/v1/transfers")
+                .contentType(BinaryTransferCodec.MEDIA_TYPE)
+                .content(BinaryTransferCodec.encodeTransfer(transferRequest)))
+                .andExpect(status().isOk());
+        verify(transferService).transferMoney(transferRequest, "127.0.0.1");
+
+        mockMvc.perform(post("/v1/transfers")
+                .contentType(BinaryTransferCodec.MEDIA_TYPE)
+                .content(new byte[] {0, 3, 'I'}))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string("Malformed binary message"));
+    }
+
+    @Test
+    void transferBatchBinary() throws Exception {
+        TransferRequest transferRequest = new TransferRequest();
+        transferRequest.setAccountFromId("fromAccountId");
+        transferRequest.setAccountToId("toAccountId");
+        transferRequest.setAmount(BigDecimal.TEN);
+        List<TransferRequest> batch = List.of(transferRequest, transferRequest);
+        List<TransferResult> results = List.of(TransferResult.success(0), TransferResult.failed(1, "Insufficient balance"));
+        when(transferService.transferMoneyBatch(batch, "127.0.0.1")).thenReturn(results);
+
+        MvcResult response = mockMvc.perform(post("/v1/transfers/batch")
+                .contentType(BinaryTransferCodec.MEDIA_TYPE)
+                .content(BinaryTransferCodec.encodeTransfers(batch)))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(BinaryTransferCodec.MEDIA_TYPE))
+                .andReturn();
+        assertThat(BinaryTransferCodec.decodeResults(response.getResponse().getContentAsByteArray())).isEqualTo(results);
+    }
+
+    @Test
+    void transfersFromAHammeredAccountAreRejected() throws Exception {
+        TransferRequest transferRequest = new TransferRequest();
+        transferRequest.setAccountFromId("hammeredAccountId");
+        transferRequest.setAccountToId("toAccountId");
+        transferRequest.setAmount(BigDecimal.ONE);
+
+        // The account burst is 20, far more than its refill during the loop
+        MvcResult rejected = null;
+        for (int i = 0; i < 100 && rejected == null; i++) {
+            MvcResult result = mockMvc.perform(post("/v1/transfers")
+                    .contentType(MediaType.APPLICATION_JSON_VALUE)
+                    .header("X-Client-Id", "client-" + i)
+                    .content(asJsonString(transferRequest)))
+                    .andReturn();
+            if (result.getResponse().getStatus() == 429) {
+                rejected = result;
+            }
+        }
+
+        assertThat(rejected).isNotNull();
+        assertThat(rejected.getResponse().getHeader("Retry-After")).isEqualTo("1");
+        assertThat(rejected.getResponse().getContentAsString())
+                .isEqualTo("Transfer rate limit exceeded for account hammeredAccountId");
+    }
+
     // Utility method to convert object to JSON string
     private String asJsonString(final Object obj) {
         try {
@@ -0,0 +1,209 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.ScheduledTransfer;
+import com.dws.challenge.dto.ScheduledTransferRequest;
+import com.dws.challenge.exception.InsufficientBalanceException;
+import com.dws.challenge.repository.JournalProperties;
+import com.dws.challenge.service.AccountsService;
+import com.dws.challenge.service.ClusterProperties;
+import com.dws.challenge.service.ClusterRouter;
+import com.dws.challenge.service.TransferScheduler;
+import com.dws.challenge.service.TransferSchedulerProperties;
+import com.dws.challenge.service.TransferService;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class TransferSchedulerTest {
+
+  @TempDir
+  Path directory;
+
+  private final TransferService transferService = mock(TransferService.class);
+
+  private final AccountsService accountsService = mock(AccountsService.class);
+
+  private final TransferSchedulerProperties properties = new TransferSchedulerProperties();
+
+  private TransferScheduler scheduler;
+
+  @BeforeEach
+  void setUp() {
+    when(accountsService.getAccount("Id-123")).thenReturn(new Account("Id-123", new BigDecimal("1000")));
+    when(accountsService.getAccount("Id-234")).thenReturn(new Account("Id-234", BigDecimal.ZERO));
+    properties.setJournaled(true);
+    properties.setCompactionInterval(Duration.ZERO);
+  }
+
+  @AfterEach
+  void tearDown() throws InterruptedException {
+    if (scheduler != null) {
+      scheduler.shutdown();
+    }
+  }
+
+  private TransferScheduler open() throws IOException {
+    JournalProperties journalProperties = new JournalProperties();
+    journalProperties.setDirectory(directory);
+    journalProperties.setSegmentSize(64 * 1024);
+    journalProperties.setGroupCommitMaxDelay(Duration.ofMillis(1));
+    return new TransferScheduler(properties, journalProperties, transferService, accountsService,
+      new ClusterRouter(new ClusterProperties()), new SimpleMeterRegistry());
+  }
+
+  private static ScheduledTransferRequest request(Instant executeAt, String interval, Long executions) {
+    ScheduledTransferRequest request = new ScheduledTransferRequest();
+    request.setAccountToId("Id-234");
+    request.setAmount(new BigDecimal("12.50"));
+    request.setExecuteAt(executeAt);
+    request.setInterval(interval);
+    request.setExecutions(executions);
+    return request;
+  }
+
+  private ScheduledTransfer awaitStatus(String id, ScheduledTransfer.Status status) throws InterruptedException {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+    ScheduledTransfer transfer = scheduler.getScheduledTransfer("Id-123", id);
+    while (transfer.status() != status && System.nanoTime() < deadline) {
+      Thread.sleep(10);
+      transfer = scheduler.getScheduledTransfer("Id-123", id);
+    }
+    return transfer;
+  }
+
+  @Test
+  void runsStandingOrdersUntilTheirLastExecution() throws Exception {
+    scheduler = open();
+    ScheduledTransfer scheduled = scheduler.schedule("Id-123", request(Instant.now().plusMillis(50), "PT0.05S", 3L));
+    assertThat(scheduled.status()).isEqualTo(ScheduledTransfer.Status.ACTIVE);
+    assertThat(scheduled.getAmount()).isEqualByComparingTo("12.50");
+    assertThat(scheduled.currency()).isEqualTo("EUR");
+
+    ScheduledTransfer completed = awaitStatus(scheduled.id(), ScheduledTransfer.Status.COMPLETED);
+    assertThat(completed.executions()).isEqualTo(3);
+    assertThat(completed.lastResult()).isEqualTo(ScheduledTransfer.Result.SUCCESS);
+    assertThat(completed.nextExecution()).isNull();
+    verify(transferService, timeout(1000).times(3)).transferMoney(any());
+  }
+
+  @Test
+  void recordsFailuresAndKeepsGoing() throws Exception {
+    doThrow(new InsufficientBalanceException("Insufficient balance")).when(transferService).transferMoney(any());
+    scheduler = open();
+    ScheduledTransfer scheduled = scheduler.schedule("Id-123", request(Instant.now(), "PT0.02S", 2L));
+
+    ScheduledTransfer completed = awaitStatus(scheduled.id(), ScheduledTransfer.Status.COMPLETED);
+    assertThat(completed.executions()).isEqualTo(2);
+    assertThat(completed.lastResult()).isEqualTo(ScheduledTransfer.Result.FAILED);
+    assertThat(completed.lastMessage()).isEqualTo("Insufficient balance");
+  }
+
+  @Test
+  void rejectsInvalidSchedules() throws Exception {
+    scheduler = open();
+    assertThatThrownBy(() -> scheduler.schedule("Id-missing", request(Instant.now(), null, null)))
+      .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> scheduler.schedule("Id-123", request(null, null, null)))
+      .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> scheduler.schedule("Id-123", request(Instant.now(), "monthly", null)))
+      .hasMessageContaining("ISO 8601");
+    assertThatThrownBy(() -> scheduler.schedule("Id-123", request(Instant.now(), "-P1M", null)))
+      .hasMessage("Interval must be positive");
+    assertThatThrownBy(() -> scheduler.schedule("Id-123", request(Instant.now(), null, 2L)))
+      .hasMessage("Repeated transfers need an interval");
+  }
+
+  @Test
+  void cancelledTransfersDoNotRun() throws Exception {
+    scheduler = open();
+    ScheduledTransfer scheduled = scheduler.schedule("Id-123", request(Instant.now().plusMillis(200), "P1M", null));
+
+    assertThat(scheduler.cancel("Id-234", scheduled.id())).isNull();
+    ScheduledTransfer cancelled = scheduler.cancel("Id-123", scheduled.id());
+    assertThat(cancelled.status()).isEqualTo(ScheduledTransfer.Status.CANCELLED);
+    assertThat(cancelled.nextExecution()).isNull();
+    assertThat(scheduler.getScheduledTransfers("Id-123")).containsExactly(cancelled);
+
+    Thread.sleep(400);
+    verify(transferService, never()).transferMoney(any());
+  }
+
+  @Test
+  void keepsScheduledTransfersAcrossRestarts() throws Exception {
+    scheduler = open();
+    Instant executeAt = Instant.now().plus(Duration.ofDays(31));
+    ScheduledTransfer monthly = scheduler.schedule("Id-123", request(executeAt, "P1M", 12L));
+    ScheduledTransfer once = scheduler.schedule("Id-123", request(executeAt.plusSeconds(60), null, null));
+    scheduler.cancel("Id-123", once.id());
+    scheduler.shutdown();
+
+    scheduler = open();
+    assertThat(scheduler.getScheduledTransfers("Id-123"))
+      .containsExactly(monthly, scheduler.getScheduledTransfer("Id-123", once.id()));
+    assertThat(scheduler.getScheduledTransfer("Id-123", once.id()).status())
+      .isEqualTo(ScheduledTransfer.Status.CANCELLED);
+    assertThat(scheduler.getScheduledTransfer("Id-123", monthly.id()).nextExecution()).isEqualTo(executeAt);
+  }
+
+  @Test
+  void neverRepeatsAnExecutionInterruptedByARestart() throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    doAnswer(invocation -> release.await(10, TimeUnit.SECONDS)).when(transferService).transferMoney(any());
+    TransferScheduler interrupted = open();
+    ScheduledTransfer scheduled = interrupted.schedule("Id-123", request(Instant.now(), null, null));
+    verify(transferService, timeout(5000)).transferMoney(any());
+
+    // Reads the journal as the interrupted node left it, as if it had crashed
+    scheduler = open();
+    ScheduledTransfer recovered = scheduler.getScheduledTransfer("Id-123", scheduled.id());
+    assertThat(recovered.status()).isEqualTo(ScheduledTransfer.Status.COMPLETED);
+    assertThat(recovered.executions()).isEqualTo(1);
+    assertThat(recovered.lastResult()).isEqualTo(ScheduledTransfer.Result.UNKNOWN);
+    scheduler.shutdown();
+    scheduler = null;
+
+    release.countDown();
+    interrupted.shutdown();
+    verify(transferService, timeout(1000).times(1)).transferMoney(any());
+  }
+
+  @Test
+  void compactionForgetsFinishedTransfers() throws Exception {
+    properties.setRetention(Duration.ZERO);
+    scheduler = open();
+    ScheduledTransfer later = scheduler.schedule("Id-123", request(Instant.now().plus(Duration.ofDays(1)), null, null));
+    ScheduledTransfer now = scheduler.schedule("Id-123", request(Instant.now(), null, null));
+    awaitStatus(now.id(), ScheduledTransfer.Status.COMPLETED);
+
+    scheduler.compact();
+    assertThat(scheduler.getScheduledTransfers("Id-123")).containsExactly(later);
+    scheduler.shutdown();
+
+    scheduler = open();
+    assertThat(scheduler.getScheduledTransfers("Id-123")).containsExactly(later);
+  }
+}
@@ -1,13 +1,18 @@
 package com.dws.challenge;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -20,11 +25,18 @@ import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.context.TestPropertySource;
 
 import com.dws.challenge.domain.Account;
+import com.dws.challenge.dto.MultiTransferRequest;
+import com.dws.challenge.dto.TransferLeg;
 import com.dws.challenge.dto.TransferRequest;
+import com.dws.challenge.dto.TransferResult;
+import com.dws.challenge.exception.TransferOutcomeUnknownException;
 import com.dws.challenge.service.AccountsService;
 import com.dws.challenge.service.EmailNotificationService;
+import com.dws.challenge.service.FxRates;
 import com.dws.challenge.service.TransferService;
 
+import io.micrometer.core.instrument.MeterRegistry;
+
 @SpringBootTest
 @TestPropertySource(properties = { "spring.main.allow-bean-definition-overriding=true" })
 @DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
@@ -39,6 +51,12 @@ public class TransferServiceTest {
 	@Autowired
 	private TransferService transferService;
 
+	@Autowired
+	private MeterRegistry meterRegistry;
+
+	@Autowired
+	private FxRates fxRates;
+
 	@Test
 	public void testTransferMoney_SuccessfulTransfer() {
 		// Mock accounts
@@ -58,11 +76,12 @@ public class TransferServiceTest {
 		transferService.transferMoney(transferRequest);
 
 		// Verify balances and notifications
-		assertThat(BigDecimal.valueOf(90.0)).isEqualTo(accountFrom.getBalance());
-		assertThat(BigDecimal.valueOf(60.0)).isEqualTo(accountTo.getBalance());
+		assertThat(accountFrom.getBalance()).isEqualByComparingTo(BigDecimal.valueOf(90.0));
+		assertThat(accountTo.getBalance()).isEqualByComparingTo(BigDecimal.valueOf(60.0));
 
-		verify(notificationService, times(1)).notifyAboutTransfer(eq(accountFrom), anyString());
-		verify(notificationService, times(1)).notifyAboutTransfer(eq(accountTo), anyString());
+		// Notifications are sent asynchronously by the dispatcher
+		verify(notificationService, timeout(1000).times(1)).notifyAboutTransfer(eq(accountFrom), anyString());
+		verify(notificationService, timeout(1000).times(1)).notifyAboutTransfer(eq(accountTo), anyString());
 	}
 
 	// Test cases to cover edge cases and failure scenarios
@@ -89,6 +108,44 @@ public class TransferServiceTest {
 		}
 	}
 
+	@Test
+	public void testTransferMoney_ConvertsBetweenCurrencies() {
+		fxRates.update("EUR", Map.of("USD", new BigDecimal("1.0834")));
+		Account accountFrom = new Account("Id-123", new BigDecimal("100.00"), "EUR");
+		Account accountTo = new Account("Id-234", BigDecimal.ZERO, "USD");
+
+		TransferRequest transferRequest = new TransferRequest();
+		transferRequest.setAccountFromId("Id-123");
+		transferRequest.setAccountToId("Id-234");
+		transferRequest.setAmount(new BigDecimal("10.00"));
+
+		when(accountService.getAccount("Id-123")).thenReturn(accountFrom);
+		when(accountService.getAccount("Id-234")).thenReturn(accountTo);
+
+		transferService.transferMoney(transferRequest);
+
+		// Debited in euros, credited in dollars, and recorded with both amounts
+		assertThat(accountFrom.getBalance()).isEqualByComparingTo("90.00");
+		assertThat(accountTo.getBalance()).isEqualByComparingTo("10.83");
+		verify(accountService).recordTransfer(accountFrom, accountTo, 1000, 1083, 0);
+
+		// The amount may only be given in the source account's currency
+		transferRequest.setCurrency("USD");
+		assertThatThrownBy(() -> transferService.transferMoney(transferRequest))
+				.isInstanceOf(IllegalArgumentException.class)
+				.hasMessage("Amount must be given in EUR, the currency of the source account");
+
+		// Without a rate the transfer is refused and nothing moves
+		accountTo = new Account("Id-345", BigDecimal.ZERO, "CHF");
+		when(accountService.getAccount("Id-345")).thenReturn(accountTo);
+		transferRequest.setCurrency(null);
+		transferRequest.setAccountToId("Id-345");
+		assertThatThrownBy(() -> transferService.transferMoney(transferRequest))
+				.isInstanceOf(IllegalArgumentException.class)
+				.hasMessage("No exchange rate from EUR to CHF");
+		assertThat(accountFrom.getBalance()).isEqualByComparingTo("90.00");
+	}
+
 	@Test
 	public void testTransferMoney_NegativeTransfer() {
 		// Mock accounts
@@ -144,8 +201,232 @@ public class TransferServiceTest {
         latch.await();
 
         // Verify balances after transfers
-        assertThat(BigDecimal.valueOf(0.0)).isEqualTo(accountFrom.getBalance());
-		assertThat(BigDecimal.valueOf(150.0)).isEqualTo(accountTo.getBalance());
+        assertThat(accountFrom.getBalance()).isEqualByComparingTo(BigDecimal.valueOf(0.0));
+		assertThat(accountTo.getBalance()).isEqualByComparingTo(BigDecimal.valueOf(150.0));
     }
-}
 
+	@Test
+	public void testTransferMoney_AmountBelowMinorUnit() {
+		Account accountFrom = new Account("Id-123", BigDecimal.valueOf(100.0));
+		Account accountTo = new Account("Id-234", BigDecimal.valueOf(50.0));
+
+		TransferRequest transferRequest = new TransferRequest();
+		transferRequest.setAccountFromId("Id-123");
+		transferRequest.setAccountToId("Id-234");
+		transferRequest.setAmount(new BigDecimal("0.001")); // Smaller than one cent
+
+		when(accountService.getAccount("Id-123")).thenReturn(accountFrom);
+		when(accountService.getAccount("Id-234")).thenReturn(accountTo);
+
+		assertThatThrownBy(() -> transferService.transferMoney(transferRequest))
+				.isInstanceOf(IllegalArgumentException.class)
+				.hasMessage("Amount 0.001 is not representable with 2 decimal places");
+		assertThat(accountFrom.getBalanceMinorUnits()).isEqualTo(10_000);
+		assertThat(accountTo.getBalanceMinorUnits()).isEqualTo(5_000);
+	}
+
+	@Test
+	public void testTransferMoneyBatch_ResultsInSubmissionOrder() {
+		Account accountA = new Account("Id-A", BigDecimal.valueOf(100));
+		Account accountB = new Account("Id-B", BigDecimal.valueOf(0));
+		Account accountC = new Account("Id-C", BigDecimal.valueOf(50));
+		Account accountD = new Account("Id-D", BigDecimal.valueOf(0));
+
+		when(accountService.getAccount("Id-A")).thenReturn(accountA);
+		when(accountService.getAccount("Id-B")).thenReturn(accountB);
+		when(accountService.getAccount("Id-C")).thenReturn(accountC);
+		when(accountService.getAccount("Id-D")).thenReturn(accountD);
+
+		// A->B and B->A share accounts and must run in order, C->D is independent
+		List<TransferRequest> batch = List.of(
+				transferRequest("Id-A", "Id-B", 80),
+				transferRequest("Id-C", "Id-D", 50),
+				transferRequest("Id-B", "Id-A", 30),
+				transferRequest("Id-A", "Id-B", 60),
+				transferRequest("Id-C", "Id-unknown", 10));
+
+		List<TransferResult> results = transferService.transferMoneyBatch(batch);
+
+		assertThat(results).extracting(TransferResult::getIndex).containsExactly(0, 1, 2, 3, 4);
+		assertThat(results).extracting(TransferResult::getStatus).containsExactly(
+				TransferResult.Status.SUCCESS, TransferResult.Status.SUCCESS, TransferResult.Status.SUCCESS,
+				TransferResult.Status.FAILED, TransferResult.Status.FAILED);
+		assertThat(results.get(3).getMessage()).isEqualTo("Insufficient balance");
+		assertThat(results.get(4).getMessage()).isEqualTo("To or from account Id missing!");
+
+		assertThat(accountA.getBalance()).isEqualByComparingTo("50");
+		assertThat(accountB.getBalance()).isEqualByComparingTo("50");
+		assertThat(accountC.getBalance()).isEqualByComparingTo("0");
+		assertThat(accountD.getBalance()).isEqualByComparingTo("50");
+	}
+
+	@Test
+	public void testTransferMoney_RecordsOutcomeAndLatency() {
+		Account accountFrom = new Account("Id-123", BigDecimal.valueOf(100.0));
+		Account accountTo = new Account("Id-234", BigDecimal.valueOf(50.0));
+
+		when(accountService.getAccount("Id-123")).thenReturn(accountFrom);
+		when(accountService.getAccount("Id-234")).thenReturn(accountTo);
+
+		transferService.transferMoney(transferRequest("Id-123", "Id-234", 10));
+		assertThatThrownBy(() -> transferService.transferMoney(transferRequest("Id-123", "Id-234", 1000)))
+				.isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> transferService.transferMoney(transferRequest("Id-123", "Id-unknown", 10)))
+				.isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> transferService.transferMoney(transferRequest("Id-123", "Id-234", -10)))
+				.isInstanceOf(IllegalArgumentException.class);
+
+		assertThat(outcomeCount("success")).isEqualTo(1);
+		assertThat(outcomeCount("insufficient_balance")).isEqualTo(1);
+		assertThat(outcomeCount("unknown_account")).isEqualTo(1);
+		assertThat(outcomeCount("invalid_amount")).isEqualTo(1);
+		assertThat(outcomeCount("failed")).isZero();
+		assertThat(meterRegistry.get("transfers.latency").timer().count()).isEqualTo(4);
+	}
+
+	@Test
+	public void testTransferMoney_RetryWithIdempotencyKeyIsReplayed() {
+		Account accountFrom = new Account("Id-123", BigDecimal.valueOf(100.0));
+		Account accountTo = new Account("Id-234", BigDecimal.valueOf(50.0));
+
+		when(accountService.getAccount("Id-123")).thenReturn(accountFrom);
+		when(accountService.getAccount("Id-234")).thenReturn(accountTo);
+
+		TransferRequest transferRequest = transferRequest("Id-123", "Id-234", 10);
+		transferRequest.setIdempotencyKey("key-1");
+		transferService.transferMoney(transferRequest);
+		transferService.transferMoney(transferRequest);
+
+		assertThat(accountFrom.getBalance()).isEqualByComparingTo("90");
+		assertThat(accountTo.getBalance()).isEqualByComparingTo("60");
+
+		// Same key for another transfer is rejected, a failed outcome is replayed as well
+		TransferRequest otherTransfer = transferRequest("Id-123", "Id-234", 20);
+		otherTransfer.setIdempotencyKey("key-1");
+		assertThatThrownBy(() -> transferService.transferMoney(otherTransfer))
+				.isInstanceOf(IllegalArgumentException.class)
+				.hasMessage("Idempotency key key-1 was already used for a different transfer");
+
+		TransferRequest tooLarge = transferRequest("Id-123", "Id-234", 1000);
+		tooLarge.setIdempotencyKey("key-2");
+		assertThatThrownBy(() -> transferService.transferMoney(tooLarge)).hasMessage("Insufficient balance");
+		accountFrom.setBalance(BigDecimal.valueOf(5000));
+		assertThatThrownBy(() -> transferService.transferMoney(tooLarge)).hasMessage("Insufficient balance");
+
+		assertThat(outcomeCount("success")).isEqualTo(1);
+		assertThat(meterRegistry.get("cache.gets").tag("cache", "transfer.idempotency").tag("result", "hit")
+				.functionCounter().count()).isEqualTo(3);
+	}
+
+	@Test
+	public void testTransferMoney_JournalFailureUndoesTheTransfer() {
+		Account accountFrom = new Account("Id-123", BigDecimal.valueOf(100.0));
+		Account accountTo = new Account("Id-234", BigDecimal.valueOf(50.0));
+		when(accountService.getAccount("Id-123")).thenReturn(accountFrom);
+		when(accountService.getAccount("Id-234")).thenReturn(accountTo);
+		when(accountService.journalTransfer(accountFrom, accountTo, 1000, 1000))
+				.thenThrow(new IllegalStateException("Journal accounts is closed"));
+
+		assertThatThrownBy(() -> transferService.transferMoney(transferRequest("Id-123", "Id-234", 10)))
+				.hasMessage("Journal accounts is closed");
+
+		assertThat(accountFrom.getBalance()).isEqualByComparingTo("100");
+		assertThat(accountTo.getBalance()).isEqualByComparingTo("50");
+		verify(accountService, times(0)).recordTransfer(accountFrom, accountTo, 1000, 1000, 0);
+	}
+
+	@Test
+	public void testTransferMoney_IdempotencyKeysAreScopedPerClient() {
+		Account accountFrom = new Account("Id-123", BigDecimal.valueOf(100.0));
+		Account accountTo = new Account("Id-234", BigDecimal.valueOf(50.0));
+		when(accountService.getAccount("Id-123")).thenReturn(accountFrom);
+		when(accountService.getAccount("Id-234")).thenReturn(accountTo);
+
+		TransferRequest transferRequest = transferRequest("Id-123", "Id-234", 10);
+		transferRequest.setIdempotencyKey("key-1");
+		transferService.transferMoney(transferRequest, "client-1");
+		transferService.transferMoney(transferRequest, "client-2");
+		transferService.transferMoney(transferRequest, "client-1");
+
+		assertThat(accountFrom.getBalance()).isEqualByComparingTo("80");
+	}
+
+	@Test
+	public void testTransferMoney_RetryAfterMoneyMovedIsNotRunAgain() {
+		Account accountFrom = new Account("Id-123", BigDecimal.valueOf(100.0));
+		Account accountTo = new Account("Id-234", BigDecimal.valueOf(50.0));
+		when(accountService.getAccount("Id-123")).thenReturn(accountFrom);
+		when(accountService.getAccount("Id-234")).thenReturn(accountTo);
+		doThrow(new IllegalStateException("Journal unavailable")).when(accountService)
+				.recordTransfer(accountFrom, accountTo, 1000, 1000, 0);
+
+		TransferRequest transferRequest = transferRequest("Id-123", "Id-234", 10);
+		transferRequest.setIdempotencyKey("key-1");
+		assertThatThrownBy(() -> transferService.transferMoney(transferRequest)).hasMessage("Journal unavailable");
+		assertThatThrownBy(() -> transferService.transferMoney(transferRequest))
+				.isInstanceOf(TransferOutcomeUnknownException.class);
+		verify(accountService, times(1)).recordTransfer(accountFrom, accountTo, 1000, 1000, 0);
+
+		// A failure before any money moved forgets the key, the retry runs the transfer
+		when(accountService.getAccount("Id-345")).thenThrow(new IllegalStateException("Store unavailable"))
+				.thenReturn(new Account("Id-345", BigDecimal.ZERO));
+		TransferRequest beforeMoving = transferRequest("Id-123", "Id-345", 10);
+		beforeMoving.setIdempotencyKey("key-2");
+		assertThatThrownBy(() -> transferService.transferMoney(beforeMoving)).hasMessage("Store unavailable");
+		transferService.transferMoney(beforeMoving);
+	}
+
+	@Test
+	public void testTransferMoneyMulti_AllLegsOrNone() {
+		Account accountFrom = new Account("Id-123", BigDecimal.valueOf(100));
+		Account first = new Account("Id-234", BigDecimal.ZERO);
+		Account second = new Account("Id-345", BigDecimal.ZERO);
+		when(accountService.getAccount("Id-123")).thenReturn(accountFrom);
+		when(accountService.getAccount("Id-234")).thenReturn(first);
+		when(accountService.getAccount("Id-345")).thenReturn(second);
+
+		transferService.transferMoneyMulti(multiTransferRequest("Id-123",
+				new TransferLeg("Id-234", BigDecimal.valueOf(30)), new TransferLeg("Id-345", BigDecimal.valueOf(20))));
+
+		assertThat(accountFrom.getBalance()).isEqualByComparingTo("50");
+		assertThat(first.getBalance()).isEqualByComparingTo("30");
+		assertThat(second.getBalance()).isEqualByComparingTo("20");
+		verify(accountService).recordTransfer(accountFrom, first, 3000, 3000, 0);
+		verify(accountService).recordTransfer(accountFrom, second, 2000, 2000, 0);
+		verify(notificationService, timeout(1000).times(1)).notifyAboutTransfer(eq(second), anyString());
+
+		// The sum of the legs exceeds the balance, so neither leg is applied
+		assertThatThrownBy(() -> transferService.transferMoneyMulti(multiTransferRequest("Id-123",
+				new TransferLeg("Id-234", BigDecimal.valueOf(30)), new TransferLeg("Id-345", BigDecimal.valueOf(30)))))
+				.hasMessage("Insufficient balance");
+		assertThatThrownBy(() -> transferService.transferMoneyMulti(multiTransferRequest("Id-123",
+				new TransferLeg("Id-234", BigDecimal.TEN), new TransferLeg("Id-missing", BigDecimal.TEN))))
+				.hasMessage("To or from account Id missing!");
+		assertThatThrownBy(() -> transferService.transferMoneyMulti(multiTransferRequest("Id-123")))
+				.isInstanceOf(IllegalArgumentException.class);
+
+		assertThat(accountFrom.getBalance()).isEqualByComparingTo("50");
+		assertThat(first.getBalance()).isEqualByComparingTo("30");
+		assertThat(second.getBalance()).isEqualByComparingTo("20");
+		assertThat(outcomeCount("success")).isEqualTo(1);
+	}
+
+	private double outcomeCount(String outcome) {
+		return meterRegistry.get("transfers").tag("outcome", outcome).counter().count();
+	}
+
+	private static TransferRequest transferRequest(String fromId, String toId, long amount) {
+		TransferRequest transferRequest = new TransferRequest();
+		transferRequest.setAccountFromId(fromId);
+		transferRequest.setAccountToId(toId);
+		transferRequest.setAmount(BigDecimal.valueOf(amount));
+		return transferRequest;
+	}
+
+	private static MultiTransferRequest multiTransferRequest(String fromId, TransferLeg... legs) {
+		MultiTransferRequest transferRequest = new MultiTransferRequest();
+		transferRequest.setAccountFromId(fromId);
+		transferRequest.setLegs(List.of(legs));
+		return transferRequest;
+	}
+}